@@ -23,6 +23,7 @@ package org.h2gis.ext.osgi;
 import org.h2gis.functions.io.csv.CSVDriverFunction;
 import org.h2gis.functions.io.dbf.DBFDriverFunction;
 import org.h2gis.functions.io.geojson.GeoJsonDriverFunction;
+import org.h2gis.functions.io.geojson.GeoJsonSeqDriverFunction;
 import org.h2gis.functions.io.gpx.GPXDriverFunction;
 import org.h2gis.functions.io.kml.KMLDriverFunction;
 import org.h2gis.functions.io.osm.OSMDriverFunction;
@@ -47,6 +48,7 @@ public class Activator implements BundleActivator {
                 bc.registerService(DriverFunction.class, new SHPDriverFunction(), null);
                 bc.registerService(DriverFunction.class, new GPXDriverFunction(), null);
                 bc.registerService(DriverFunction.class, new GeoJsonDriverFunction(), null);
+                bc.registerService(DriverFunction.class, new GeoJsonSeqDriverFunction(), null);
                 bc.registerService(DriverFunction.class, new OSMDriverFunction(), null);
                 bc.registerService(DriverFunction.class, new KMLDriverFunction(), null);
                 bc.registerService(DriverFunction.class, new CSVDriverFunction(), null);
@@ -37,12 +37,15 @@ import org.h2gis.functions.io.DriverManager;
 import org.h2gis.functions.io.dbf.DBFRead;
 import org.h2gis.functions.io.dbf.DBFWrite;
 import org.h2gis.functions.io.geojson.GeoJsonRead;
+import org.h2gis.functions.io.geojson.GeoJsonSeqRead;
+import org.h2gis.functions.io.geojson.GeoJsonSeqWrite;
 import org.h2gis.functions.io.geojson.GeoJsonWrite;
 import org.h2gis.functions.io.geojson.ST_AsGeoJSON;
 import org.h2gis.functions.io.geojson.ST_GeomFromGeoJSON;
 import org.h2gis.functions.io.gpx.GPXRead;
 import org.h2gis.functions.io.kml.KMLWrite;
 import org.h2gis.functions.io.kml.ST_AsKml;
+import org.h2gis.functions.io.osm.OSMPBFRead;
 import org.h2gis.functions.io.osm.OSMRead;
 import org.h2gis.functions.io.osm.ST_OSMDownloader;
 import org.h2gis.functions.io.shp.SHPRead;
@@ -101,6 +104,7 @@ import org.h2gis.functions.spatial.create.ST_OctogonalEnvelope;
 import org.h2gis.functions.spatial.create.ST_RingBuffer;
 import org.h2gis.functions.spatial.crs.ST_SetSRID;
 import org.h2gis.functions.spatial.crs.ST_Transform;
+import org.h2gis.functions.spatial.crs.ST_TransformTable;
 import org.h2gis.functions.spatial.distance.ST_ClosestCoordinate;
 import org.h2gis.functions.spatial.distance.ST_ClosestPoint;
 import org.h2gis.functions.spatial.distance.ST_FurthestCoordinate;
@@ -208,6 +212,7 @@ import org.h2gis.functions.spatial.topography.ST_TriangleContouring;
 import org.h2gis.functions.spatial.topography.ST_TriangleDirection;
 import org.h2gis.functions.spatial.topography.ST_TriangleSlope;
 import org.h2gis.functions.spatial.topology.ST_Graph;
+import org.h2gis.functions.spatial.topology.ST_GraphUpdate;
 import org.h2gis.functions.spatial.topology.ST_Polygonize;
 import org.h2gis.functions.spatial.trigonometry.ST_Azimuth;
 import org.h2gis.functions.spatial.type.DimensionFromConstraint;
@@ -307,6 +312,7 @@ public class H2GISFunctions {
                 new ST_EnvelopesIntersect(),
                 new ST_Accum(),
                 new ST_Transform(),
+                new ST_TransformTable(),
                 new ST_SetSRID(),
                 new ST_CoordDim(),
                 new ST_GeometryTypeCode(),
@@ -320,6 +326,8 @@ public class H2GISFunctions {
                 new GPXRead(),
                 new GeoJsonRead(),
                 new GeoJsonWrite(),
+                new GeoJsonSeqRead(),
+                new GeoJsonSeqWrite(),
                 new KMLWrite(),
                 new SHPRead(),
                 new SHPWrite(),
@@ -399,6 +407,7 @@ public class H2GISFunctions {
                 new ST_LineIntersector(),        
                 new ST_OffSetCurve(),
                 new OSMRead(),
+                new OSMPBFRead(),
                 new ST_OSMDownloader(),
                 new ST_ProjectPoint(),
                 new ST_CollectionExtract(),
@@ -426,6 +435,7 @@ public class H2GISFunctions {
                 new TSVWrite(),
                 new ST_NPoints(),
                 new ST_Graph(),
+                new ST_GraphUpdate(),
                 new H2GISversion(),
                 new ST_Collect(),
                 new ST_RemoveDuplicatedCoordinates(),
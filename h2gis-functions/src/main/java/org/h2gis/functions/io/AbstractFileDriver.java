@@ -0,0 +1,44 @@
+/**
+ * H2GIS is a library that brings spatial support to the H2 Database Engine
+ * <http://www.h2database.com>. H2GIS is developed by CNRS
+ * <http://www.cnrs.fr/>.
+ *
+ * This code is part of the H2GIS project. H2GIS is free software; 
+ * you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation;
+ * version 3.0 of the License.
+ *
+ * H2GIS is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details <http://www.gnu.org/licenses/>.
+ *
+ *
+ * For more information, please consult: <http://www.h2gis.org/>
+ * or contact directly: info_at_h2gis.org
+ */
+
+package org.h2gis.functions.io;
+
+import java.io.IOException;
+
+/**
+ * Base class of the {@link FileDriver} implementations that can read a single field of a row.
+ * The default implementation decodes the whole row, drivers override {@link #getField(long, int)}
+ * in order to decode only the requested field.
+ * Linked tables read the fields one by one when the driver extends this class, otherwise they
+ * read the whole row once.
+ */
+public abstract class AbstractFileDriver implements FileDriver {
+
+    /**
+     * Read a single field.
+     * @param rowId Row index [0-getRowCount()[
+     * @param columnId Field index in the {@link #getRow(long)} array
+     * @return The field value
+     * @throws java.io.IOException Read error
+     */
+    public Object getField(long rowId, int columnId) throws IOException {
+        return getRow(rowId)[columnId];
+    }
+}
@@ -0,0 +1,51 @@
+/**
+ * H2GIS is a library that brings spatial support to the H2 Database Engine
+ * <http://www.h2database.com>. H2GIS is developed by CNRS
+ * <http://www.cnrs.fr/>.
+ *
+ * This code is part of the H2GIS project. H2GIS is free software; 
+ * you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation;
+ * version 3.0 of the License.
+ *
+ * H2GIS is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details <http://www.gnu.org/licenses/>.
+ *
+ *
+ * For more information, please consult: <http://www.h2gis.org/>
+ * or contact directly: info_at_h2gis.org
+ */
+
+
+package org.h2gis.functions.io;
+
+import com.vividsolutions.jts.geom.Envelope;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * A {@link FileDriver} that stores one geometry per row and is able to read the row bounding box
+ * without decoding the geometry. Used by {@link org.h2gis.functions.io.file_table.H2Table} to build spatial indexes.
+ */
+public interface SpatialFileDriver extends FileDriver {
+
+    /**
+     * @return The geometry field index in getRow() array.
+     */
+    int getGeometryFieldIndex();
+
+    /**
+     * @param rowId Row index [0-getRowCount()[
+     * @return The bounding box of the row geometry, null if the geometry is null
+     * @throws IOException Read error
+     */
+    Envelope getEnvelope(long rowId) throws IOException;
+
+    /**
+     * @return The file that contains the geometries
+     */
+    File getFile();
+}
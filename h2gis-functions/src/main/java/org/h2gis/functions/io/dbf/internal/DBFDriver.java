@@ -20,7 +20,7 @@
 
 package org.h2gis.functions.io.dbf.internal;
 
-import org.h2gis.functions.io.FileDriver;
+import org.h2gis.functions.io.AbstractFileDriver;
 
 import java.io.File;
 import java.io.FileInputStream;
@@ -31,10 +31,26 @@ import java.io.IOException;
  * Manage DBFReader and DBFWriter
  * @author Nicolas Fortin
  */
-public class DBFDriver implements FileDriver {
+public class DBFDriver extends AbstractFileDriver {
     private File dbfFile;
     private DbaseFileReader dbaseFileReader;
     private DbaseFileWriter dbaseFileWriter;
+    private boolean memoryMapped = false;
+
+    /**
+     * @param memoryMapped True to read the file through memory mapped buffers, must be set before
+     *                     {@link #initDriverFromFile(java.io.File, String)}
+     */
+    public void setMemoryMapped(boolean memoryMapped) {
+        this.memoryMapped = memoryMapped;
+    }
+
+    /**
+     * @return True if the file is read through memory mapped buffers
+     */
+    public boolean isMemoryMapped() {
+        return memoryMapped;
+    }
 
     /**
      * Init file header for DBF File
@@ -55,7 +71,7 @@ public class DBFDriver implements FileDriver {
         // Read columns from files metadata
         this.dbfFile = dbfFile;
         FileInputStream fis = new FileInputStream(dbfFile);
-        dbaseFileReader = new DbaseFileReader(fis.getChannel(), forceEncoding);
+        dbaseFileReader = new DbaseFileReader(fis.getChannel(), forceEncoding, memoryMapped);
     }
 
     public void initDriver(File dbfFile, DbaseFileHeader dbaseHeader) throws IOException {
@@ -144,4 +160,9 @@ public class DBFDriver implements FileDriver {
         }
         return values;
     }
+
+    @Override
+    public Object getField(long rowId, int columnId) throws IOException {
+        return dbaseFileReader.getFieldValue((int) rowId, columnId);
+    }
 }
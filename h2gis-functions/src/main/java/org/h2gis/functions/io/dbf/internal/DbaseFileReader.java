@@ -20,6 +20,7 @@
 
 package org.h2gis.functions.io.dbf.internal;
 
+import org.h2gis.functions.io.utility.MappedReadBufferManager;
 import org.h2gis.functions.io.utility.ReadBufferManager;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -70,6 +71,10 @@ public class DbaseFileReader {
         private CharsetDecoder decoder;
         private char[] fieldTypes;
         private int[] fieldLengths;
+        private int[] fieldOffsets;
+        private byte[] fieldBytes;
+        private ByteBuffer fieldBuffer;
+        private final boolean memoryMapped;
     private static final Logger LOG = LoggerFactory.getLogger(DbaseFileReader.class);
 
         /**
@@ -81,8 +86,26 @@ public class DbaseFileReader {
          *             If an error occurs while initializing.
          */
         public DbaseFileReader(FileChannel channel,String forceEncoding)
+                throws IOException {
+                this(channel, forceEncoding, false);
+        }
+
+        /**
+         * Creates a new instance of DBaseFileReader
+         *
+         * @param channel
+         *            The readable channel to use.
+         * @param forceEncoding
+         *            If defined use this encoding instead of the one defined in dbf header.
+         * @param memoryMapped
+         *            True to read the file through memory mapped buffers
+         * @throws java.io.IOException
+         *             If an error occurs while initializing.
+         */
+        public DbaseFileReader(FileChannel channel, String forceEncoding, boolean memoryMapped)
                 throws IOException {
                 this.channel = channel;
+                this.memoryMapped = memoryMapped;
 
                 header = new DbaseFileHeader();
                 header.readHeader(channel, forceEncoding);
@@ -91,7 +114,11 @@ public class DbaseFileReader {
         }
 
         private void init() throws IOException {
-                buffer = new ReadBufferManager(channel);
+                if (memoryMapped) {
+                        buffer = new MappedReadBufferManager(channel);
+                } else {
+                        buffer = new ReadBufferManager(channel);
+                }
 
                 // The entire file is in little endian
                 buffer.order(ByteOrder.LITTLE_ENDIAN);
@@ -99,10 +126,19 @@ public class DbaseFileReader {
                 // Set up some buffers and lookups for efficiency
                 fieldTypes = new char[header.getNumFields()];
                 fieldLengths = new int[header.getNumFields()];
+                fieldOffsets = new int[header.getNumFields()];
+                int fieldOffset = 0;
+                int maxFieldLength = 0;
                 for (int i = 0, ii = header.getNumFields(); i < ii; i++) {
                         fieldTypes[i] = header.getFieldType(i);
                         fieldLengths[i] = header.getFieldLength(i);
+                        fieldOffsets[i] = fieldOffset;
+                        fieldOffset += fieldLengths[i];
+                        maxFieldLength = Math.max(maxFieldLength, fieldLengths[i]);
                 }
+                // Field content is copied into this buffer before decoding, it is shared by all fields
+                fieldBytes = new byte[maxFieldLength];
+                fieldBuffer = ByteBuffer.wrap(fieldBytes);
 
                 charBuffer = CharBuffer.allocate(header.getRecordLength() - 1);
                 Charset chars = Charset.forName(header.getFileEncoding());
@@ -135,48 +171,38 @@ public class DbaseFileReader {
                 channel = null;
                 charBuffer = null;
                 decoder = null;
+                fieldBytes = null;
+                fieldBuffer = null;
                 header = null;
         }
 
         /**
-         * @param pos Pos index in the buffer
-         * @param length Array length to extract
-         * @return byte array extracted from the buffer
+         * Read and decode a single field.
+         *
+         * @param row Row index [0-getRecordCount()[
+         * @param column Field index [0-getFieldCount()[
+         * @return The field value, may be null
          * @throws IOException
          */
-        private byte[] getBytes(int pos, int length) throws IOException {
-                byte[] bytes = new byte[length];
-                buffer.get(pos, bytes);
-                return bytes;
-        }
-
         public Object getFieldValue(int row, int column) throws IOException {
-                int fieldPosition = getPositionFor(row, column);
-                int fieldLength = getLengthFor(column);
-                byte[] fieldBytes = getBytes(fieldPosition, fieldLength);
-                ByteBuffer field = ByteBuffer.wrap(fieldBytes);
+                long fieldPosition = getPositionFor(row, column);
+                int fieldLength = fieldLengths[column];
+                buffer.get(fieldPosition, fieldBytes, 0, fieldLength);
+                fieldBuffer.clear();
+                fieldBuffer.limit(fieldLength);
 
                 charBuffer.clear();
-                decoder.decode(field, charBuffer, true);
+                decoder.decode(fieldBuffer, charBuffer, true);
                 charBuffer.flip();
 
                 return readObject(0, column);
 
         }
 
-        private int getLengthFor(int column) {
-                return header.getFieldLength(column);
-        }
-
-        private int getPositionFor(int row, int column) {
-                int recordOffset = header.getHeaderLength() + row
+        private long getPositionFor(int row, int column) {
+                long recordOffset = header.getHeaderLength() + (long) row
                         * header.getRecordLength() + 1;
-                int fieldOffset = 0;
-                for (int i = 0; i < column; i++) {
-                        fieldOffset += header.getFieldLength(i);
-                }
-
-                return fieldOffset + recordOffset;
+                return fieldOffsets[column] + recordOffset;
         }
 
         private Object readObject(final int fieldOffset, final int fieldNum) throws IOException {
@@ -38,6 +38,7 @@ import org.h2.util.MathUtils;
 import org.h2.util.New;
 import org.h2.value.Value;
 import org.h2gis.functions.io.FileDriver;
+import org.h2gis.functions.io.SpatialFileDriver;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -62,6 +63,13 @@ public class H2Table extends TableBase {
         indexes.add(new H2TableIndex(driver,this,this.getId(), data.columns.get(0),
                 data.schema.getUniqueIndexName(data.session, this,data.tableName + "." +
                         data.columns.get(0).getName() + "_INDEX_")));
+        if (driver instanceof SpatialFileDriver) {
+            // Filter rows with the bounding boxes stored in the file, the first column is the primary key
+            Column geometryColumn = data.columns.get(((SpatialFileDriver) driver).getGeometryFieldIndex() + 1);
+            indexes.add(new H2TableEnvelopeIndex((SpatialFileDriver) driver, this, this.getId(), geometryColumn,
+                    data.schema.getUniqueIndexName(data.session, this, data.tableName + "." +
+                            geometryColumn.getName() + "_ENVELOPE_")));
+        }
         this.driver = driver;
     }
     /**
@@ -106,7 +114,10 @@ public class H2Table extends TableBase {
             database.lockMeta(session);
         }
         Index index;
-        if (isPersistIndexes() && indexType.isPersistent()) {
+        if (indexType.isSpatial() && isDriverGeometryColumn(cols)) {
+            // Bounding boxes are read from the file, the R-Tree is stored next to it
+            index = new H2TableSpatialIndex((SpatialFileDriver) driver, this, indexId, indexName, cols, indexType);
+        } else if (isPersistIndexes() && indexType.isPersistent()) {
             if (indexType.isSpatial()) {
                 index = new SpatialTreeIndex(this, indexId, indexName, cols,
                         indexType, true, create, session);
@@ -175,6 +186,16 @@ public class H2Table extends TableBase {
         return index;
     }
 
+    /**
+     * @param cols Index columns
+     * @return True if the driver is able to provide the bounding boxes of the indexed column
+     */
+    private boolean isDriverGeometryColumn(IndexColumn[] cols) {
+        // The first column is the primary key
+        return driver instanceof SpatialFileDriver && cols.length == 1 &&
+                cols[0].column.getColumnId() == ((SpatialFileDriver) driver).getGeometryFieldIndex() + 1;
+    }
+
     private static void addRowsToIndex(Session session, ArrayList<Row> list,
                                        Index index) {
         final Index idx = index;
@@ -0,0 +1,229 @@
+/**
+ * H2GIS is a library that brings spatial support to the H2 Database Engine
+ * <http://www.h2database.com>. H2GIS is developed by CNRS
+ * <http://www.cnrs.fr/>.
+ *
+ * This code is part of the H2GIS project. H2GIS is free software; 
+ * you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation;
+ * version 3.0 of the License.
+ *
+ * H2GIS is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details <http://www.gnu.org/licenses/>.
+ *
+ *
+ * For more information, please consult: <http://www.h2gis.org/>
+ * or contact directly: info_at_h2gis.org
+ */
+
+package org.h2gis.functions.io.file_table;
+
+import com.vividsolutions.jts.geom.Envelope;
+import org.h2.api.ErrorCode;
+import org.h2.engine.Session;
+import org.h2.index.BaseIndex;
+import org.h2.index.Cursor;
+import org.h2.index.IndexCondition;
+import org.h2.index.IndexType;
+import org.h2.index.SpatialIndex;
+import org.h2.message.DbException;
+import org.h2.result.Row;
+import org.h2.result.SearchRow;
+import org.h2.result.SortOrder;
+import org.h2.table.Column;
+import org.h2.table.IndexColumn;
+import org.h2.table.Table;
+import org.h2.table.TableFilter;
+import org.h2gis.functions.io.SpatialFileDriver;
+
+import java.io.IOException;
+import java.util.HashSet;
+
+/**
+ * Implicit spatial index of a {@link SpatialFileDriver}, there is no index structure. The bounding box of each record
+ * is read from the file and only the rows that intersect the search envelope are fetched. It avoids the decoding of
+ * all geometries and attributes when a linked file without spatial index is filtered with the && operator.
+ */
+public class H2TableEnvelopeIndex extends BaseIndex implements SpatialIndex {
+    private final SpatialFileDriver driver;
+    private final int geometryColumnId;
+
+    /**
+     * Constructor
+     * @param driver Linked file driver
+     * @param table Linked table
+     * @param id Index identifier
+     * @param geometryColumn Geometry column declaration
+     * @param indexName Unique index name
+     */
+    public H2TableEnvelopeIndex(SpatialFileDriver driver, Table table, int id, Column geometryColumn,
+                                String indexName) {
+        this.driver = driver;
+        IndexColumn indexColumn = new IndexColumn();
+        indexColumn.columnName = geometryColumn.getName();
+        indexColumn.column = geometryColumn;
+        initBaseIndex(table, id, indexName, new IndexColumn[]{indexColumn},
+                IndexType.createNonUnique(false, false, true));
+        geometryColumnId = geometryColumn.getColumnId();
+    }
+
+    @Override
+    public String getCreateSQL() {
+        // Implicit index, not stored in the database and not listed in the information schema
+        return null;
+    }
+
+    @Override
+    public Cursor findByGeometry(TableFilter filter, SearchRow first, SearchRow last, SearchRow intersection) {
+        return new EnvelopeCursor(table, filter.getSession(), driver,
+                H2TableSpatialIndex.getEnvelope(intersection, geometryColumnId), intersection != null);
+    }
+
+    @Override
+    public Cursor find(Session session, SearchRow first, SearchRow last) {
+        return new EnvelopeCursor(table, session, driver, null, false);
+    }
+
+    @Override
+    public double getCost(Session session, int[] masks, TableFilter[] filters, int filter, SortOrder sortOrder,
+                          HashSet<Column> allColumnsSet) {
+        if (masks == null) {
+            return Double.MAX_VALUE;
+        }
+        if ((masks[geometryColumnId] & IndexCondition.SPATIAL_INTERSECTS) != 0) {
+            // Cheaper than the scan of all rows but more expensive than a spatial index
+            return 10 * (3 + getRowCountApproximation());
+        }
+        return Double.MAX_VALUE;
+    }
+
+    @Override
+    public void checkRename() {
+        // Nothing to check
+    }
+
+    @Override
+    public void close(Session session) {
+        // The driver is closed by the table
+    }
+
+    @Override
+    public void add(Session session, Row row) {
+        throw DbException.get(ErrorCode.FEATURE_NOT_SUPPORTED_1, "add in Shape files");
+    }
+
+    @Override
+    public void remove(Session session, Row row) {
+        throw DbException.get(ErrorCode.FEATURE_NOT_SUPPORTED_1, "remove in Shape files");
+    }
+
+    @Override
+    public void remove(Session session) {
+        // Nothing to remove
+    }
+
+    @Override
+    public void truncate(Session session) {
+        throw DbException.get(ErrorCode.FEATURE_NOT_SUPPORTED_1, "truncate in Shape files");
+    }
+
+    @Override
+    public boolean canGetFirstOrLast() {
+        return false;
+    }
+
+    @Override
+    public Cursor findFirstOrLast(Session session, boolean first) {
+        throw DbException.getUnsupportedException("SPATIAL INDEX");
+    }
+
+    @Override
+    public boolean needRebuild() {
+        return false;
+    }
+
+    @Override
+    public long getRowCount(Session session) {
+        return driver.getRowCount();
+    }
+
+    @Override
+    public long getRowCountApproximation() {
+        return driver.getRowCount();
+    }
+
+    @Override
+    public long getDiskSpaceUsed() {
+        return 0;
+    }
+
+    /**
+     * Read the bounding box of each record and stop on the records that intersect the search envelope.
+     */
+    private static class EnvelopeCursor implements Cursor {
+        private final Table table;
+        private final Session session;
+        private final SpatialFileDriver driver;
+        private final Envelope intersection;
+        private final boolean filter;
+        private final long rowCount;
+        private long rowIndex = 0;
+
+        /**
+         * @param intersection Search envelope
+         * @param filter If true the rows that do not intersect the envelope are skipped, a null envelope skips all
+         *               rows
+         */
+        private EnvelopeCursor(Table table, Session session, SpatialFileDriver driver, Envelope intersection,
+                               boolean filter) {
+            this.table = table;
+            this.session = session;
+            this.driver = driver;
+            this.intersection = intersection;
+            this.filter = filter;
+            this.rowCount = driver.getRowCount();
+        }
+
+        @Override
+        public Row get() {
+            return table.getRow(session, rowIndex);
+        }
+
+        @Override
+        public SearchRow getSearchRow() {
+            // Fields are decoded only when H2 reads them
+            return new H2TableSearchRow(driver, session, table.getColumns(), rowIndex);
+        }
+
+        @Override
+        public boolean next() {
+            if (filter && intersection == null) {
+                // Null or empty search geometry
+                return false;
+            }
+            try {
+                while (rowIndex < rowCount) {
+                    // Row keys are [1-n]
+                    rowIndex++;
+                    if (!filter) {
+                        return true;
+                    }
+                    Envelope envelope = driver.getEnvelope(rowIndex - 1);
+                    if (envelope != null && envelope.intersects(intersection)) {
+                        return true;
+                    }
+                }
+                return false;
+            } catch (IOException ex) {
+                throw DbException.get(ErrorCode.IO_EXCEPTION_1, ex);
+            }
+        }
+
+        @Override
+        public boolean previous() {
+            return false;
+        }
+    }
+}
@@ -251,15 +251,8 @@ public class H2TableIndex extends BaseIndex {
 
         @Override
         public SearchRow getSearchRow() {
-            Row row =  session.createRow(new Value[tIndex.getTable().getColumns().length], Row.MEMORY_CALCULATE);
-            row.setKey(rowIndex);
-            // Add indexed columns values
-            for(IndexColumn column : tIndex.getIndexColumns()) {
-                if(column.column.getColumnId() >= 0) {
-                    row.setValue(column.column.getColumnId(), ValueLong.get(rowIndex));
-                }
-            }
-            return row;
+            // Fields are decoded only when H2 reads them
+            return new H2TableSearchRow(tIndex.getDriver(), session, tIndex.getTable().getColumns(), rowIndex);
         }
 
         @Override
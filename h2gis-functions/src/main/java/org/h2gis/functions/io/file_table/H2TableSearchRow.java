@@ -0,0 +1,140 @@
+/**
+ * H2GIS is a library that brings spatial support to the H2 Database Engine
+ * <http://www.h2database.com>. H2GIS is developed by CNRS
+ * <http://www.cnrs.fr/>.
+ *
+ * This code is part of the H2GIS project. H2GIS is free software; 
+ * you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation;
+ * version 3.0 of the License.
+ *
+ * H2GIS is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details <http://www.gnu.org/licenses/>.
+ *
+ *
+ * For more information, please consult: <http://www.h2gis.org/>
+ * or contact directly: info_at_h2gis.org
+ */
+
+package org.h2gis.functions.io.file_table;
+
+import org.h2.api.ErrorCode;
+import org.h2.engine.Session;
+import org.h2.message.DbException;
+import org.h2.result.SearchRow;
+import org.h2.table.Column;
+import org.h2.value.DataType;
+import org.h2.value.Value;
+import org.h2.value.ValueLong;
+import org.h2gis.functions.io.AbstractFileDriver;
+import org.h2gis.functions.io.FileDriver;
+
+import java.io.IOException;
+
+/**
+ * Row of a {@link FileDriver} returned by the cursors of the linked tables. The fields are read from the file only when
+ * H2 asks for their value, so a query that does not reference all columns does not decode the others.
+ * Drivers that do not extend {@link AbstractFileDriver} cannot read a single field, their row is read once on the
+ * first access to a field. The first column is the primary key, equal to the row key.
+ */
+class H2TableSearchRow implements SearchRow {
+    private final FileDriver driver;
+    private final Session session;
+    private final Column[] columns;
+    private final Value[] values;
+    private long key;
+    // Whole row of the drivers that cannot read a single field
+    private Object[] row;
+
+    /**
+     * @param driver Linked file driver
+     * @param session Database session
+     * @param columns Table columns
+     * @param key Row key [1-n]
+     */
+    H2TableSearchRow(FileDriver driver, Session session, Column[] columns, long key) {
+        this.driver = driver;
+        this.session = session;
+        this.columns = columns;
+        this.values = new Value[columns.length];
+        this.key = key;
+    }
+
+    @Override
+    public int getColumnCount() {
+        return values.length;
+    }
+
+    @Override
+    public Value getValue(int index) {
+        Value value = values[index];
+        if (value == null) {
+            if (index == 0) {
+                value = ValueLong.get(key);
+            } else {
+                try {
+                    value = DataType.convertToValue(session, readField(index - 1), columns[index].getType());
+                } catch (IOException ex) {
+                    throw DbException.get(ErrorCode.IO_EXCEPTION_1, ex);
+                }
+            }
+            values[index] = value;
+        }
+        return value;
+    }
+
+    private Object readField(int columnId) throws IOException {
+        if (driver instanceof AbstractFileDriver) {
+            return ((AbstractFileDriver) driver).getField(key - 1, columnId);
+        }
+        if (row == null) {
+            row = driver.getRow(key - 1);
+        }
+        return row[columnId];
+    }
+
+    @Override
+    public void setValue(int index, Value v) {
+        values[index] = v;
+    }
+
+    @Override
+    public void setKeyAndVersion(SearchRow old) {
+        setKey(old.getKey());
+    }
+
+    @Override
+    public int getVersion() {
+        return 0;
+    }
+
+    @Override
+    public void setKey(long key) {
+        if (this.key != key) {
+            this.key = key;
+            // Cached values belong to the previous row
+            for (int i = 0; i < values.length; i++) {
+                values[i] = null;
+            }
+            row = null;
+        }
+    }
+
+    @Override
+    public long getKey() {
+        return key;
+    }
+
+    @Override
+    public int getMemory() {
+        int memory = 24 + values.length * 8;
+        for (Value value : values) {
+            if (value != null) {
+                memory += value.getMemory();
+            }
+        }
+        return memory;
+    }
+}
@@ -0,0 +1,347 @@
+/**
+ * H2GIS is a library that brings spatial support to the H2 Database Engine
+ * <http://www.h2database.com>. H2GIS is developed by CNRS
+ * <http://www.cnrs.fr/>.
+ *
+ * This code is part of the H2GIS project. H2GIS is free software; 
+ * you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation;
+ * version 3.0 of the License.
+ *
+ * H2GIS is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details <http://www.gnu.org/licenses/>.
+ *
+ *
+ * For more information, please consult: <http://www.h2gis.org/>
+ * or contact directly: info_at_h2gis.org
+ */
+
+package org.h2gis.functions.io.file_table;
+
+import com.vividsolutions.jts.geom.Envelope;
+import org.h2.api.DatabaseEventListener;
+import org.h2.api.ErrorCode;
+import org.h2.engine.Database;
+import org.h2.engine.Session;
+import org.h2.index.BaseIndex;
+import org.h2.index.Cursor;
+import org.h2.index.IndexCondition;
+import org.h2.index.IndexType;
+import org.h2.index.SpatialIndex;
+import org.h2.message.DbException;
+import org.h2.mvstore.MVMap;
+import org.h2.mvstore.MVStore;
+import org.h2.mvstore.rtree.MVRTreeMap;
+import org.h2.mvstore.rtree.SpatialKey;
+import org.h2.result.Row;
+import org.h2.result.SearchRow;
+import org.h2.result.SortOrder;
+import org.h2.table.Column;
+import org.h2.table.IndexColumn;
+import org.h2.table.Table;
+import org.h2.table.TableFilter;
+import org.h2.util.MathUtils;
+import org.h2.value.Value;
+import org.h2.value.ValueGeometry;
+import org.h2.value.ValueNull;
+import org.h2gis.functions.io.SpatialFileDriver;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+
+/**
+ * Spatial index of a {@link SpatialFileDriver}. The R-Tree is stored in a sidecar file next to the linked file, it is
+ * built from the bounding boxes of the records and reused as long as the linked file is not modified.
+ * If the sidecar file cannot be written the R-Tree is kept in memory.
+ */
+public class H2TableSpatialIndex extends BaseIndex implements SpatialIndex {
+    /** Extension of the sidecar file, it replaces the extension of the linked file */
+    public static final String SIDECAR_EXTENSION = ".rtree.mv";
+    private static final String TREE_MAP = "rtree";
+    private static final String INFO_MAP = "info";
+    private static final String INFO_VERSION = "version";
+    private static final String INFO_LAST_MODIFIED = "lastModified";
+    private static final String INFO_LENGTH = "length";
+    private static final String INFO_ROW_COUNT = "rowCount";
+    private static final long VERSION = 1;
+    private static final Logger LOG = LoggerFactory.getLogger(H2TableSpatialIndex.class);
+
+    private final SpatialFileDriver driver;
+    private final int geometryColumnId;
+    private final MVStore store;
+    private final MVRTreeMap<Long> treeMap;
+
+    /**
+     * Constructor, open or build the sidecar R-Tree.
+     * @param driver Linked file driver
+     * @param table Linked table
+     * @param id Index identifier
+     * @param indexName Unique index name
+     * @param columns Geometry column
+     * @param indexType Spatial index type
+     */
+    public H2TableSpatialIndex(SpatialFileDriver driver, Table table, int id, String indexName,
+                               IndexColumn[] columns, IndexType indexType) {
+        this.driver = driver;
+        initBaseIndex(table, id, indexName, columns, indexType);
+        geometryColumnId = columns[0].column.getColumnId();
+        store = openStore(getSidecarFile(driver.getFile()));
+        treeMap = store.openMap(TREE_MAP, new MVRTreeMap.Builder<Long>());
+        try {
+            if (!isUpToDate()) {
+                rebuild();
+            }
+        } catch (IOException ex) {
+            store.close();
+            throw DbException.get(ErrorCode.IO_EXCEPTION_1, ex);
+        }
+    }
+
+    /**
+     * @param file Linked file
+     * @return The sidecar file that contains the R-Tree of the linked file
+     */
+    public static File getSidecarFile(File file) {
+        String path = file.getAbsolutePath();
+        int dotIndex = path.lastIndexOf('.');
+        if (dotIndex > path.lastIndexOf(File.separatorChar)) {
+            path = path.substring(0, dotIndex);
+        }
+        return new File(path + SIDECAR_EXTENSION);
+    }
+
+    private static MVStore openStore(File sidecarFile) {
+        try {
+            return new MVStore.Builder().fileName(sidecarFile.getAbsolutePath()).open();
+        } catch (IllegalStateException ex) {
+            // Read only folder or file already opened by another index
+            LOG.warn("Cannot open the spatial index file " + sidecarFile.getAbsolutePath() +
+                    ", the index will be kept in memory", ex);
+            return new MVStore.Builder().open();
+        }
+    }
+
+    private boolean isUpToDate() {
+        File file = driver.getFile();
+        MVMap<String, Long> info = store.openMap(INFO_MAP);
+        return Long.valueOf(VERSION).equals(info.get(INFO_VERSION)) &&
+                Long.valueOf(file.lastModified()).equals(info.get(INFO_LAST_MODIFIED)) &&
+                Long.valueOf(file.length()).equals(info.get(INFO_LENGTH)) &&
+                Long.valueOf(driver.getRowCount()).equals(info.get(INFO_ROW_COUNT));
+    }
+
+    private void rebuild() throws IOException {
+        File file = driver.getFile();
+        MVMap<String, Long> info = store.openMap(INFO_MAP);
+        info.clear();
+        treeMap.clear();
+        Database database = table.getDatabase();
+        String progressName = table.getName() + ":" + getName();
+        long rowCount = driver.getRowCount();
+        int total = MathUtils.convertLongToInt(rowCount);
+        for (long rowId = 0; rowId < rowCount; rowId++) {
+            database.setProgress(DatabaseEventListener.STATE_CREATE_INDEX, progressName,
+                    MathUtils.convertLongToInt(rowId), total);
+            Envelope envelope = driver.getEnvelope(rowId);
+            if (envelope != null) {
+                // Row keys are [1-n]
+                long key = rowId + 1;
+                treeMap.add(getKey(key, envelope), key);
+            }
+        }
+        info.put(INFO_LAST_MODIFIED, file.lastModified());
+        info.put(INFO_LENGTH, file.length());
+        info.put(INFO_ROW_COUNT, rowCount);
+        info.put(INFO_VERSION, VERSION);
+        store.commit();
+    }
+
+    /**
+     * Round the envelope outward in order to not miss any row because of the float precision.
+     */
+    private static SpatialKey getKey(long key, Envelope envelope) {
+        return new SpatialKey(key,
+                Math.nextAfter((float) envelope.getMinX(), Double.NEGATIVE_INFINITY),
+                Math.nextAfter((float) envelope.getMaxX(), Double.POSITIVE_INFINITY),
+                Math.nextAfter((float) envelope.getMinY(), Double.NEGATIVE_INFINITY),
+                Math.nextAfter((float) envelope.getMaxY(), Double.POSITIVE_INFINITY));
+    }
+
+    /**
+     * @param row Search row
+     * @param geometryColumnId Index of the geometry column
+     * @return The envelope of the row geometry, null if the geometry is null or empty
+     */
+    static Envelope getEnvelope(SearchRow row, int geometryColumnId) {
+        if (row == null) {
+            return null;
+        }
+        Value v = row.getValue(geometryColumnId);
+        if (v == null || v == ValueNull.INSTANCE) {
+            return null;
+        }
+        Envelope envelope = ((ValueGeometry) v.convertTo(Value.GEOMETRY)).getGeometryNoCopy().getEnvelopeInternal();
+        return envelope.isNull() ? null : envelope;
+    }
+
+    @Override
+    public Cursor findByGeometry(TableFilter filter, SearchRow first, SearchRow last, SearchRow intersection) {
+        if (intersection == null) {
+            return find(filter.getSession(), first, last);
+        }
+        Envelope envelope = getEnvelope(intersection, geometryColumnId);
+        if (envelope == null) {
+            return new SpatialCursor(Collections.<SpatialKey>emptyIterator(), table, filter.getSession(), driver,
+                    null);
+        }
+        return new SpatialCursor(treeMap.findIntersectingKeys(getKey(0, envelope)), table, filter.getSession(),
+                driver, envelope);
+    }
+
+    @Override
+    public Cursor find(Session session, SearchRow first, SearchRow last) {
+        return new SpatialCursor(treeMap.keySet().iterator(), table, session, driver, null);
+    }
+
+    @Override
+    public double getCost(Session session, int[] masks, TableFilter[] filters, int filter, SortOrder sortOrder,
+                          HashSet<Column> allColumnsSet) {
+        if (masks == null) {
+            return Double.MAX_VALUE;
+        }
+        for (Column column : columns) {
+            if ((masks[column.getColumnId()] & IndexCondition.SPATIAL_INTERSECTS) != 0) {
+                // Same cost as the H2 spatial index
+                return 10 * (3 + getRowCountApproximation() / 4);
+            }
+        }
+        return Double.MAX_VALUE;
+    }
+
+    @Override
+    public void checkRename() {
+        // Nothing to check
+    }
+
+    @Override
+    public void close(Session session) {
+        if (!store.isClosed()) {
+            store.close();
+        }
+    }
+
+    @Override
+    public void add(Session session, Row row) {
+        throw DbException.get(ErrorCode.FEATURE_NOT_SUPPORTED_1, "add in Shape files");
+    }
+
+    @Override
+    public void remove(Session session, Row row) {
+        throw DbException.get(ErrorCode.FEATURE_NOT_SUPPORTED_1, "remove in Shape files");
+    }
+
+    @Override
+    public void remove(Session session) {
+        // The sidecar file is kept, it will be reused if the file is linked again
+        close(session);
+    }
+
+    @Override
+    public void truncate(Session session) {
+        throw DbException.get(ErrorCode.FEATURE_NOT_SUPPORTED_1, "truncate in Shape files");
+    }
+
+    @Override
+    public boolean canGetFirstOrLast() {
+        return false;
+    }
+
+    @Override
+    public Cursor findFirstOrLast(Session session, boolean first) {
+        throw DbException.getUnsupportedException("SPATIAL INDEX");
+    }
+
+    @Override
+    public boolean needRebuild() {
+        return false;
+    }
+
+    @Override
+    public long getRowCount(Session session) {
+        return treeMap.sizeAsLong();
+    }
+
+    @Override
+    public long getRowCountApproximation() {
+        return treeMap.sizeAsLong();
+    }
+
+    @Override
+    public long getDiskSpaceUsed() {
+        return 0;
+    }
+
+    /**
+     * Iterate over the R-Tree keys. The R-Tree stores float bounding boxes, if an intersection envelope is provided
+     * the exact bounding box of the candidate is read from the file before fetching the row.
+     */
+    private static class SpatialCursor implements Cursor {
+        private final Iterator<SpatialKey> it;
+        private final Table table;
+        private final Session session;
+        private final SpatialFileDriver driver;
+        private final Envelope intersection;
+        private SpatialKey current;
+
+        private SpatialCursor(Iterator<SpatialKey> it, Table table, Session session, SpatialFileDriver driver,
+                              Envelope intersection) {
+            this.it = it;
+            this.table = table;
+            this.session = session;
+            this.driver = driver;
+            this.intersection = intersection;
+        }
+
+        @Override
+        public Row get() {
+            return table.getRow(session, current.getId());
+        }
+
+        @Override
+        public SearchRow getSearchRow() {
+            // Fields are decoded only when H2 reads them
+            return new H2TableSearchRow(driver, session, table.getColumns(), current.getId());
+        }
+
+        @Override
+        public boolean next() {
+            while (it.hasNext()) {
+                current = it.next();
+                if (intersection == null) {
+                    return true;
+                }
+                try {
+                    Envelope envelope = driver.getEnvelope(current.getId() - 1);
+                    if (envelope != null && envelope.intersects(intersection)) {
+                        return true;
+                    }
+                } catch (IOException ex) {
+                    throw DbException.get(ErrorCode.IO_EXCEPTION_1, ex);
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public boolean previous() {
+            return false;
+        }
+    }
+}
@@ -76,7 +76,27 @@ public class GeoJsonDriverFunction implements DriverFunction {
 
     @Override
     public void importFile(Connection connection, String tableReference, File fileName, ProgressVisitor progress) throws SQLException, IOException {
+        importFile(connection, tableReference, fileName, progress, false);
+    }
+
+    /**
+     * Import the GeoJSON file.
+     *
+     * @param connection
+     * @param tableReference
+     * @param fileName
+     * @param progress
+     * @param singlePass True to parse the file only once, the table schema is inferred from the first features and
+     *                   altered when new properties appear
+     * @throws SQLException
+     * @throws IOException
+     */
+    public void importFile(Connection connection, String tableReference, File fileName, ProgressVisitor progress,
+                           boolean singlePass) throws SQLException, IOException {
         GeoJsonReaderDriver geoJsonReaderDriver = new GeoJsonReaderDriver(connection, fileName);
+        if (singlePass) {
+            geoJsonReaderDriver.setSchemaSampleSize(GeoJsonReaderDriver.DEFAULT_SCHEMA_SAMPLE_SIZE);
+        }
         geoJsonReaderDriver.read(progress, tableReference);
     }
 }
@@ -0,0 +1,699 @@
+/**
+ * H2GIS is a library that brings spatial support to the H2 Database Engine
+ * <http://www.h2database.com>. H2GIS is developed by CNRS
+ * <http://www.cnrs.fr/>.
+ *
+ * This code is part of the H2GIS project. H2GIS is free software; 
+ * you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation;
+ * version 3.0 of the License.
+ *
+ * H2GIS is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details <http://www.gnu.org/licenses/>.
+ *
+ *
+ * For more information, please consult: <http://www.h2gis.org/>
+ * or contact directly: info_at_h2gis.org
+ */
+
+package org.h2gis.functions.io.geojson;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.GeometryCollection;
+import com.vividsolutions.jts.geom.GeometryFactory;
+import com.vividsolutions.jts.geom.LineString;
+import com.vividsolutions.jts.geom.LinearRing;
+import com.vividsolutions.jts.geom.MultiLineString;
+import com.vividsolutions.jts.geom.MultiPoint;
+import com.vividsolutions.jts.geom.MultiPolygon;
+import com.vividsolutions.jts.geom.Point;
+import com.vividsolutions.jts.geom.Polygon;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import org.h2gis.utilities.TableLocation;
+
+/**
+ * Parses GeoJSON features into table rows. Used by the GeoJSON and the GeoJSONSeq readers.
+ *
+ * The parser collects the table schema while the features are parsed: each property is a column whose type is
+ * widened when a value does not fit in it. A JSON null value is imported as the "null" string and a JSON object as
+ * the "{}" string, so that GeoJsonWrite writes them back.
+ *
+ * A parser is not thread safe, each thread must use its own instance.
+ */
+class GeoJsonFeatureParser {
+    private final GeometryFactory GF;
+    private final boolean isH2;
+    // Quoted column names and SQL types in the column order
+    private final Map<String, String> columnTypes = new LinkedHashMap<String, String>();
+    private final Map<String, Integer> columnIndex = new HashMap<String, Integer>();
+    // Columns added or widened since the last call to clear
+    private final Set<String> alteredColumns = new LinkedHashSet<String>();
+    private final Set<String> geometryTypes = new HashSet<String>();
+    private boolean hasGeometryField = false;
+
+    /**
+     * @param GF Factory of the parsed geometries
+     * @param isH2 True if the column names are quoted for H2
+     */
+    GeoJsonFeatureParser(GeometryFactory GF, boolean isH2) {
+        this.GF = GF;
+        this.isH2 = isH2;
+    }
+
+    /**
+     * @return Quoted column names and SQL types of the properties, in the column order
+     */
+    Map<String, String> getColumnTypes() {
+        return columnTypes;
+    }
+
+    /**
+     * @return Index of each column in the feature values, the geometry is at index 0
+     */
+    Map<String, Integer> getColumnIndex() {
+        return columnIndex;
+    }
+
+    /**
+     * @return Columns added or widened since the set has been cleared
+     */
+    Set<String> getAlteredColumns() {
+        return alteredColumns;
+    }
+
+    /**
+     * @return Lower case types of the parsed geometries
+     */
+    Set<String> getGeometryTypes() {
+        return geometryTypes;
+    }
+
+    /**
+     * @return True if a feature has a geometry member, even a null one
+     */
+    boolean hasGeometryField() {
+        return hasGeometryField;
+    }
+
+    /**
+     * Features in GeoJSON contain a geometry object and additional properties.
+     * This method returns all values stored in a feature and registers its
+     * properties in the schema. The members can be in any order, the current
+     * token is the START_OBJECT of the feature and the last parsed token is
+     * its END_OBJECT.
+     *
+     * Syntax:
+     *
+     * { "type": "Feature", "geometry":{"type": "Point", "coordinates": [102.0,
+     * 0.5]}, "properties": {"prop0": "value0"} }
+     *
+     * @param jp
+     * @return Feature values, geometry first then properties at their column index. Trailing null values are omitted.
+     * @throws IOException
+     * @throws SQLException
+     */
+    Object[] parseFeature(JsonParser jp) throws IOException, SQLException {
+        ArrayList<Object> values = new ArrayList<Object>(columnTypes.size() + 1);
+        values.add(null);
+        while (jp.nextToken() != JsonToken.END_OBJECT) {
+            String field = jp.getText(); // field name
+            JsonToken token = jp.nextToken();
+            if (field.equalsIgnoreCase(GeoJsonField.GEOMETRY)) {
+                if (token != JsonToken.VALUE_NULL) {//START_OBJECT { in case of null geometry
+                    jp.nextToken(); // FIELD_NAME type
+                    jp.nextToken(); //VALUE_STRING Point
+                    String geometryType = jp.getText();
+                    values.set(0, parseGeometry(jp, geometryType));
+                    geometryTypes.add(geometryType.toLowerCase());
+                }
+                hasGeometryField = true;
+            } else if (field.equalsIgnoreCase(GeoJsonField.PROPERTIES)) {
+                if (token != JsonToken.VALUE_NULL) {
+                    parseProperties(jp, values);
+                }
+            } else if (field.equalsIgnoreCase(GeoJsonField.TYPE)) {
+                if (!jp.getText().equalsIgnoreCase(GeoJsonField.FEATURE)) {
+                    throw new SQLException("Malformed GeoJSON file. Expected 'Feature', found '" + jp.getText() + "'");
+                }
+            } else {
+                // Members such as id or bbox are not imported
+                jp.skipChildren();
+            }
+        }
+        return values.toArray();
+    }
+
+    /**
+     * Parses the properties of a feature, new properties and wider types are added to the schema.
+     *
+     * Syntax:
+     *
+     * "properties": {"prop0": "value0"}
+     *
+     * @param jp
+     * @param values Feature values
+     */
+    private void parseProperties(JsonParser jp, ArrayList<Object> values) throws IOException {
+        while (jp.nextToken() != JsonToken.END_OBJECT) {
+            String fieldName = TableLocation.quoteIdentifier(jp.getText().toUpperCase(), isH2); //FIELD_NAME columnName
+            JsonToken value = jp.nextToken();
+            String fieldType = getPropertyType(value);
+            if (fieldType == null) {
+                //ignore other value
+                continue;
+            }
+            Object fieldValue = parsePropertyValue(jp, value);
+            int index = registerColumn(fieldName, fieldType);
+            while (values.size() <= index) {
+                values.add(null);
+            }
+            values.set(index, fieldValue);
+        }
+    }
+
+    /**
+     * @param value Token of a property value
+     * @return The SQL type of the value, null if the value is not imported
+     */
+    static String getPropertyType(JsonToken value) {
+        if (value == null) {
+            return null;
+        }
+        switch (value) {
+            case VALUE_STRING:
+            case START_OBJECT:
+            case VALUE_NULL:
+                return "VARCHAR";
+            case VALUE_TRUE:
+            case VALUE_FALSE:
+                return "BOOLEAN";
+            case VALUE_NUMBER_FLOAT:
+                return "DOUBLE PRECISION";
+            case VALUE_NUMBER_INT:
+                return "BIGINT";
+            case START_ARRAY:
+                return "ARRAY";
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Parses a property value. Arrays and objects are consumed up to their end token.
+     *
+     * @param jp
+     * @param value Current token
+     * @return The value to insert in the table
+     * @throws IOException
+     */
+    static Object parsePropertyValue(JsonParser jp, JsonToken value) throws IOException {
+        if (value == JsonToken.VALUE_STRING) {
+            return jp.getText();
+        } else if (value == JsonToken.VALUE_TRUE || value == JsonToken.VALUE_FALSE) {
+            return jp.getValueAsBoolean();
+        } else if (value == JsonToken.VALUE_NUMBER_FLOAT) {
+            return jp.getValueAsDouble();
+        } else if (value == JsonToken.VALUE_NUMBER_INT) {
+            return jp.getBigIntegerValue();
+        } else if (value == JsonToken.START_ARRAY) {
+            return parseArray(jp).toArray();
+        } else if (value == JsonToken.START_OBJECT) {
+            return parseObject(jp);
+        } else if (value == JsonToken.VALUE_NULL) {
+            return "null";
+        } else {
+            return null;
+        }
+    }
+
+    /**
+     * Adds a column to the schema or widens its type.
+     *
+     * @param columnName Quoted column name
+     * @param columnType SQL type of the parsed value
+     * @return The column index in the feature values
+     */
+    int registerColumn(String columnName, String columnType) {
+        String currentType = columnTypes.get(columnName);
+        if (currentType == null) {
+            columnTypes.put(columnName, columnType);
+            columnIndex.put(columnName, columnIndex.size() + 1);
+            alteredColumns.add(columnName);
+        } else if (!currentType.equals(columnType)) {
+            String widenedType = getWidenedType(currentType, columnType);
+            if (!widenedType.equals(currentType)) {
+                columnTypes.put(columnName, widenedType);
+                alteredColumns.add(columnName);
+            }
+        }
+        return columnIndex.get(columnName);
+    }
+
+    /**
+     * Adds the columns and the geometry types collected by another parser to this schema.
+     *
+     * @param other Parser of other features
+     * @return The index in this schema of each feature value of the other parser
+     */
+    int[] merge(GeoJsonFeatureParser other) {
+        hasGeometryField |= other.hasGeometryField;
+        geometryTypes.addAll(other.geometryTypes);
+        int[] indices = new int[other.columnIndex.size() + 1];
+        for (Map.Entry<String, String> column : other.columnTypes.entrySet()) {
+            indices[other.columnIndex.get(column.getKey())] = registerColumn(column.getKey(), column.getValue());
+        }
+        return indices;
+    }
+
+    /**
+     * Adds the new columns to the table and changes the type of the widened columns, then clears the altered
+     * columns.
+     *
+     * @param connection
+     * @param tableLocation Table that stores the features
+     * @param isH2 True if the table is stored in H2
+     * @param tableColumnCount Number of property columns of the table before the update
+     * @throws SQLException
+     */
+    void alterTable(Connection connection, TableLocation tableLocation, boolean isH2, int tableColumnCount)
+            throws SQLException {
+        try (Statement stmt = connection.createStatement()) {
+            for (String columnName : alteredColumns) {
+                String columnType = columnTypes.get(columnName);
+                if (columnIndex.get(columnName) > tableColumnCount) {
+                    stmt.execute(String.format("ALTER TABLE %s ADD COLUMN %s %s", tableLocation, columnName,
+                            columnType));
+                } else if (isH2) {
+                    stmt.execute(String.format("ALTER TABLE %s ALTER COLUMN %s %s", tableLocation, columnName,
+                            columnType));
+                } else {
+                    stmt.execute(String.format("ALTER TABLE %s ALTER COLUMN %s SET DATA TYPE %s", tableLocation,
+                            columnName, columnType));
+                }
+            }
+        }
+        alteredColumns.clear();
+    }
+
+    /**
+     * @param currentType Type of the column
+     * @param valueType Type of a new value
+     * @return The type that can store both values
+     */
+    static String getWidenedType(String currentType, String valueType) {
+        if (currentType.equals(valueType)) {
+            return currentType;
+        } else if ((currentType.equals("BIGINT") || currentType.equals("DOUBLE PRECISION"))
+                && (valueType.equals("BIGINT") || valueType.equals("DOUBLE PRECISION"))) {
+            return "DOUBLE PRECISION";
+        } else {
+            return "VARCHAR";
+        }
+    }
+
+    /**
+     * Parses a GeoJSON geometry and returns its JTS representation.
+     *
+     * Syntax:
+     *
+     * "geometry":{"type": "Point", "coordinates": [102.0,0.5]}
+     *
+     * @param jp
+     * @throws IOException
+     * @return Geometry
+     */
+    Geometry parseGeometry(JsonParser jp, String geometryType) throws IOException, SQLException {
+        if (geometryType.equalsIgnoreCase(GeoJsonField.POINT)) {
+            return parsePoint(jp);
+        } else if (geometryType.equalsIgnoreCase(GeoJsonField.MULTIPOINT)) {
+            return parseMultiPoint(jp);
+        } else if (geometryType.equalsIgnoreCase(GeoJsonField.LINESTRING)) {
+            return parseLinestring(jp);
+        } else if (geometryType.equalsIgnoreCase(GeoJsonField.MULTILINESTRING)) {
+            return parseMultiLinestring(jp);
+        } else if (geometryType.equalsIgnoreCase(GeoJsonField.POLYGON)) {
+            return parsePolygon(jp);
+        } else if (geometryType.equalsIgnoreCase(GeoJsonField.MULTIPOLYGON)) {
+            return parseMultiPolygon(jp);
+        } else if (geometryType.equalsIgnoreCase(GeoJsonField.GEOMETRYCOLLECTION)) {
+            return parseGeometryCollection(jp);
+        } else {
+            throw new SQLException("Unsupported geometry : " + geometryType);
+        }
+    }
+
+    /**
+     * Parses one position
+     *
+     * Syntax:
+     *
+     * { "type": "Point", "coordinates": [100.0, 0.0] }
+     *
+     * @param jp
+     * @throws IOException
+     * @return Point
+     */
+    private Point parsePoint(JsonParser jp) throws IOException, SQLException {
+        jp.nextToken(); // FIELD_NAME coordinates        
+        String coordinatesField = jp.getText();
+        if (coordinatesField.equalsIgnoreCase(GeoJsonField.COORDINATES)) {
+            jp.nextToken(); // START_ARRAY [ to parse the coordinate
+            Point point = GF.createPoint(parseCoordinate(jp));
+            return point;
+        } else {
+            throw new SQLException("Malformed GeoJSON file. Expected 'coordinates', found '" + coordinatesField + "'");
+        }
+    }
+
+    /**
+     * Parses an array of positions
+     *
+     * Syntax:
+     *
+     * { "type": "MultiPoint", "coordinates": [ [100.0, 0.0], [101.0, 1.0] ] }
+     *
+     * @param jp
+     * @throws IOException
+     * @return MultiPoint
+     */
+    private MultiPoint parseMultiPoint(JsonParser jp) throws IOException, SQLException {
+        jp.nextToken(); // FIELD_NAME coordinates        
+        String coordinatesField = jp.getText();
+        if (coordinatesField.equalsIgnoreCase(GeoJsonField.COORDINATES)) {
+            jp.nextToken(); // START_ARRAY [ coordinates
+            MultiPoint mPoint = GF.createMultiPoint(parseCoordinates(jp));
+            jp.nextToken();//END_OBJECT } geometry
+            return mPoint;
+        } else {
+            throw new SQLException("Malformed GeoJSON file. Expected 'coordinates', found '" + coordinatesField + "'");
+        }
+    }
+
+    /**
+     *
+     * Parses the array of positions.
+     *
+     * Syntax:
+     *
+     * { "type": "LineString", "coordinates": [ [100.0, 0.0], [101.0, 1.0] ] }
+     *
+     * @param jp
+     */
+    private LineString parseLinestring(JsonParser jp) throws IOException, SQLException {
+        jp.nextToken(); // FIELD_NAME coordinates        
+        String coordinatesField = jp.getText();
+        if (coordinatesField.equalsIgnoreCase(GeoJsonField.COORDINATES)) {
+            jp.nextToken(); // START_ARRAY [ coordinates
+            LineString line = GF.createLineString(parseCoordinates(jp));
+            jp.nextToken();//END_OBJECT } geometry
+            return line;
+        } else {
+            throw new SQLException("Malformed GeoJSON file. Expected 'coordinates', found '" + coordinatesField + "'");
+        }
+    }
+
+    /**
+     * Parses an array of positions defined as:
+     *
+     * { "type": "MultiLineString", "coordinates": [ [ [100.0, 0.0], [101.0,
+     * 1.0] ], [ [102.0, 2.0], [103.0, 3.0] ] ] }
+     *
+     * @param jp
+     * @return MultiLineString
+     */
+    private MultiLineString parseMultiLinestring(JsonParser jp) throws IOException, SQLException {
+        jp.nextToken(); // FIELD_NAME coordinates        
+        String coordinatesField = jp.getText();
+        if (coordinatesField.equalsIgnoreCase(GeoJsonField.COORDINATES)) {
+            ArrayList<LineString> lineStrings = new ArrayList<LineString>();
+            jp.nextToken();//START_ARRAY [ coordinates
+            jp.nextToken(); // START_ARRAY [ coordinates line
+            while (jp.getCurrentToken() != JsonToken.END_ARRAY) {
+                lineStrings.add(GF.createLineString(parseCoordinates(jp)));
+                jp.nextToken();
+            }
+            MultiLineString line = GF.createMultiLineString(lineStrings.toArray(new LineString[lineStrings.size()]));
+            jp.nextToken();//END_OBJECT } geometry
+            return line;
+        } else {
+            throw new SQLException("Malformed GeoJSON file. Expected 'coordinates', found '" + coordinatesField + "'");
+        }
+
+    }
+
+    /**
+     * Coordinates of a Polygon are an array of LinearRing coordinate arrays.
+     * The first element in the array represents the exterior ring. Any
+     * subsequent elements represent interior rings (or holes).
+     *
+     * Syntax:
+     *
+     * No holes:
+     *
+     * { "type": "Polygon", "coordinates": [ [ [100.0, 0.0], [101.0, 0.0],
+     * [101.0, 1.0], [100.0, 1.0], [100.0, 0.0] ] ] }
+     *
+     * With holes:
+     *
+     * { "type": "Polygon", "coordinates": [ [ [100.0, 0.0], [101.0, 0.0],
+     * [101.0, 1.0], [100.0, 1.0], [100.0, 0.0] ], [ [100.2, 0.2], [100.8, 0.2],
+     * [100.8, 0.8], [100.2, 0.8], [100.2, 0.2] ] ] }
+     *
+     *
+     *
+     * @param jp
+     * @return Polygon
+     */
+    private Polygon parsePolygon(JsonParser jp) throws IOException, SQLException {
+        jp.nextToken(); // FIELD_NAME coordinates        
+        String coordinatesField = jp.getText();
+        if (coordinatesField.equalsIgnoreCase(GeoJsonField.COORDINATES)) {
+            jp.nextToken(); // START_ARRAY [ coordinates
+            jp.nextToken(); //Start the RING
+            int linesIndex = 0;
+            LinearRing linearRing = null;
+            ArrayList<LinearRing> holes = new ArrayList<LinearRing>();
+            while (jp.getCurrentToken() != JsonToken.END_ARRAY) {
+                if (linesIndex == 0) {
+                    linearRing = GF.createLinearRing(parseCoordinates(jp));
+                } else {
+                    holes.add(GF.createLinearRing(parseCoordinates(jp)));
+                }
+                jp.nextToken();//END RING
+                linesIndex++;
+            }
+            if (linesIndex > 1) {
+                jp.nextToken();//END_OBJECT } geometry
+                return GF.createPolygon(linearRing, holes.toArray(new LinearRing[holes.size()]));
+            } else {
+                jp.nextToken();//END_OBJECT } geometry
+                return GF.createPolygon(linearRing, null);
+            }
+        } else {
+            throw new SQLException("Malformed GeoJSON file. Expected 'coordinates', found '" + coordinatesField + "'");
+        }
+    }
+
+    /**
+     * Coordinates of a MultiPolygon are an array of Polygon coordinate arrays:
+     *
+     * { "type": "MultiPolygon", "coordinates": [ [[[102.0, 2.0], [103.0, 2.0],
+     * [103.0, 3.0], [102.0, 3.0], [102.0, 2.0]]], [[[100.0, 0.0], [101.0, 0.0],
+     * [101.0, 1.0], [100.0, 1.0], [100.0, 0.0]], [[100.2, 0.2], [100.8, 0.2],
+     * [100.8, 0.8], [100.2, 0.8], [100.2, 0.2]]] ] }
+     *
+     * @param jp
+     * @throws IOException
+     * @throws SQLException
+     * @return MultiPolygon
+     */
+    private MultiPolygon parseMultiPolygon(JsonParser jp) throws IOException, SQLException {
+        jp.nextToken(); // FIELD_NAME coordinates        
+        String coordinatesField = jp.getText();
+        if (coordinatesField.equalsIgnoreCase(GeoJsonField.COORDINATES)) {
+            ArrayList<Polygon> polygons = new ArrayList<Polygon>();
+            jp.nextToken(); // START_ARRAY [ coordinates             
+            jp.nextToken(); //Start the polygon
+            while (jp.getCurrentToken() != JsonToken.END_ARRAY) {
+                //Parses the polygon
+                jp.nextToken(); //Start the RING
+                int linesIndex = 0;
+                LinearRing linearRing = null;
+                ArrayList<LinearRing> holes = new ArrayList<LinearRing>();
+                while (jp.getCurrentToken() != JsonToken.END_ARRAY) {
+                    if (linesIndex == 0) {
+                        linearRing = GF.createLinearRing(parseCoordinates(jp));
+                    } else {
+                        holes.add(GF.createLinearRing(parseCoordinates(jp)));
+                    }
+                    jp.nextToken();//END RING
+                    linesIndex++;
+                }
+                if (linesIndex > 1) {
+                    jp.nextToken();//END_OBJECT
+                    polygons.add(GF.createPolygon(linearRing, holes.toArray(new LinearRing[holes.size()])));
+                } else {
+                    jp.nextToken();//END_OBJECT
+                    polygons.add(GF.createPolygon(linearRing, null));
+                }
+            }
+            jp.nextToken();//END_OBJECT } geometry
+            return GF.createMultiPolygon(polygons.toArray(new Polygon[polygons.size()]));
+
+        } else {
+            throw new SQLException("Malformed GeoJSON file. Expected 'coordinates', found '" + coordinatesField + "'");
+        }
+    }
+
+    /**
+     * Each element in the geometries array of a GeometryCollection is one of
+     * the geometry objects described above:
+     *
+     * { "type": "GeometryCollection", "geometries": [ { "type": "Point",
+     * "coordinates": [100.0, 0.0] }, { "type": "LineString", "coordinates": [
+     * [101.0, 0.0], [102.0, 1.0] ] } ]
+     *
+     * @param jp
+     *
+     * @throws IOException
+     * @throws SQLException
+     * @return GeometryCollection
+     */
+    private GeometryCollection parseGeometryCollection(JsonParser jp) throws IOException, SQLException {
+        jp.nextToken(); // FIELD_NAME geometries        
+        String coordinatesField = jp.getText();
+        if (coordinatesField.equalsIgnoreCase(GeoJsonField.GEOMETRIES)) {
+            jp.nextToken();//START array
+            jp.nextToken();//START object
+            ArrayList<Geometry> geometries = new ArrayList<Geometry>();
+            while (jp.getCurrentToken() != JsonToken.END_ARRAY) {
+                jp.nextToken(); // FIELD_NAME type     
+                jp.nextToken(); //VALUE_STRING Point
+                String geometryType = jp.getText();
+                geometries.add(parseGeometry(jp, geometryType));
+                jp.nextToken();
+            }
+            jp.nextToken();//END_OBJECT } geometry
+            return GF.createGeometryCollection(geometries.toArray(new Geometry[geometries.size()]));
+        } else {
+            throw new SQLException("Malformed GeoJSON file. Expected 'geometries', found '" + coordinatesField + "'");
+        }
+
+    }
+
+    /**
+     * Parses a sequence of coordinates array expressed as
+     *
+     * [ [100.0, 0.0], [101.0, 1.0] ]
+     *
+     * @param jp
+     * @throws IOException
+     * @throws SQLException
+     * @return Coordinate[]
+     */
+    private Coordinate[] parseCoordinates(JsonParser jp) throws IOException {
+        jp.nextToken(); // START_ARRAY [ to parse the each positions
+        ArrayList<Coordinate> coords = new ArrayList<Coordinate>();
+        while (jp.getCurrentToken() != JsonToken.END_ARRAY) {
+            coords.add(parseCoordinate(jp));
+        }
+        return coords.toArray(new Coordinate[coords.size()]);
+    }
+
+    /**
+     * Parses a GeoJSON coordinate array and returns a JTS coordinate. The first
+     * token corresponds to the first X value. The last token correponds to the
+     * end of the coordinate array "]".
+     *
+     * Parsed syntax:
+     *
+     * 100.0, 0.0]
+     *
+     * @param jp
+     * @throws IOException
+     * @return Coordinate
+     */
+    private Coordinate parseCoordinate(JsonParser jp) throws IOException {
+        jp.nextToken();
+        double x = jp.getDoubleValue();// VALUE_NUMBER_FLOAT
+        jp.nextToken(); // second value
+        double y = jp.getDoubleValue();
+        Coordinate coord;
+        //We look for a z value
+        jp.nextToken();
+        if (jp.getCurrentToken() == JsonToken.END_ARRAY) {
+            coord = new Coordinate(x, y);
+        } else {
+            double z = jp.getDoubleValue();
+            jp.nextToken(); // exit array
+            coord = new Coordinate(x, y, z);
+        }
+        jp.nextToken();
+        return coord;
+    }
+
+    /**
+     * Parses Json Array and returns an ArrayList
+     * Syntax:
+     * Json Array:
+     * {"member1": value1}, value2, value3, {"member4": value4}]
+     * @param jp the json parser
+     * @return the array
+     */
+    static ArrayList<Object> parseArray(JsonParser jp) throws IOException {
+        JsonToken value = jp.nextToken();
+        ArrayList<Object> ret = new ArrayList<>();
+        while(value != JsonToken.END_ARRAY) {
+            if (value == JsonToken.START_OBJECT) {
+                Object object = parseObject(jp);
+                ret.add(object);
+            } else if (value == JsonToken.START_ARRAY) {
+                ArrayList<Object> arrayList = parseArray(jp);
+                ret.add(arrayList.toArray());
+            } else if (value == JsonToken.VALUE_NUMBER_INT) {
+                ret.add(jp.getValueAsInt());
+            } else if (value == JsonToken.VALUE_FALSE || value == JsonToken.VALUE_TRUE) {
+                ret.add(jp.getValueAsBoolean());
+            } else if (value == JsonToken.VALUE_NUMBER_FLOAT) {
+                ret.add(jp.getValueAsDouble());
+            } else if (value == JsonToken.VALUE_STRING) {
+                ret.add(jp.getValueAsString());
+            } else if (value == JsonToken.VALUE_NULL) {
+                ret.add("null");
+            }
+            value = jp.nextToken();
+        }
+        return ret;
+    }
+
+    /**
+     * Parses Json Object. Since their elements could be
+     * anything and H2GIS doesn't support such complicated
+     * structure, this parser will just write ordinary
+     * String object "{}".
+     * Syntax:
+     * Json Object:
+     * "member1": value1, "member2": value2}
+     * @param jp the json parser
+     * @return the object but written like a String
+     */
+    static String parseObject(JsonParser jp) throws IOException {
+        jp.skipChildren();
+        return "{}";
+    }
+}
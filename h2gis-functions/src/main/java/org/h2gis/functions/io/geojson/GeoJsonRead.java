@@ -38,7 +38,7 @@ import java.sql.SQLException;
 public class GeoJsonRead extends AbstractFunction implements ScalarFunction {
 
     public GeoJsonRead() {
-        addProperty(PROP_REMARKS, "Import a GeoJSON 1.0 file.");
+        addProperty(PROP_REMARKS, "Import a GeoJSON 1.0 file.\nAn optional boolean argument reads the file in a single pass, the table schema is inferred from the first features.");
     }
 
     @Override
@@ -59,4 +59,20 @@ public class GeoJsonRead extends AbstractFunction implements ScalarFunction {
         GeoJsonDriverFunction gjdf = new GeoJsonDriverFunction();
         gjdf.importFile(connection, tableReference, URIUtilities.fileFromString(fileName), new EmptyProgressVisitor());
     }
+
+    /**
+     * Read the GeoJSON file.
+     * 
+     * @param connection
+     * @param fileName
+     * @param tableReference
+     * @param singlePass True to parse the file only once. The table schema is
+     * inferred from the first features and altered when new properties appear.
+     * @throws IOException
+     * @throws SQLException 
+     */
+    public static void readGeoJson(Connection connection, String fileName, String tableReference, boolean singlePass) throws IOException, SQLException {
+        GeoJsonDriverFunction gjdf = new GeoJsonDriverFunction();
+        gjdf.importFile(connection, tableReference, URIUtilities.fileFromString(fileName), new EmptyProgressVisitor(), singlePass);
+    }
 }
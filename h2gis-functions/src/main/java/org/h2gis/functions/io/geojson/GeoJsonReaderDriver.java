@@ -23,17 +23,7 @@ package org.h2gis.functions.io.geojson;
 import com.fasterxml.jackson.core.JsonFactory;
 import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.JsonToken;
-import com.vividsolutions.jts.geom.Coordinate;
-import com.vividsolutions.jts.geom.Geometry;
-import com.vividsolutions.jts.geom.GeometryCollection;
 import com.vividsolutions.jts.geom.GeometryFactory;
-import com.vividsolutions.jts.geom.LineString;
-import com.vividsolutions.jts.geom.LinearRing;
-import com.vividsolutions.jts.geom.MultiLineString;
-import com.vividsolutions.jts.geom.MultiPoint;
-import com.vividsolutions.jts.geom.MultiPolygon;
-import com.vividsolutions.jts.geom.Point;
-import com.vividsolutions.jts.geom.Polygon;
 import com.vividsolutions.jts.geom.PrecisionModel;
 import java.io.File;
 import java.io.FileInputStream;
@@ -48,6 +38,7 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import org.h2gis.functions.io.utility.FileUtil;
@@ -75,7 +66,7 @@ public class GeoJsonReaderDriver {
     private final static ArrayList<String> geomTypes;    
     private final File fileName;
     private final Connection connection;
-    private static GeometryFactory GF ;
+    private GeoJsonFeatureParser featureParser;
     private PreparedStatement preparedStatement = null;
     private JsonFactory jsFactory;
     private int featureCounter = 1;
@@ -94,6 +85,13 @@ public class GeoJsonReaderDriver {
     private Map<String, String> cachedColumnNames;
     private Map<String, Integer> cachedColumnIndex;
     private static final int BATCH_MAX_SIZE = 100;
+    /** Default number of features read to infer the table schema in single pass mode */
+    public static final int DEFAULT_SCHEMA_SAMPLE_SIZE = 1000;
+    private int schemaSampleSize = 0;
+    // Single pass mode: columns added or widened since the last table update
+    private Set<String> alteredColumns;
+    private int tableColumnCount = 0;
+    private long batchSize = 0;
     
     static {
         geomTypes = new ArrayList<String>();
@@ -118,6 +116,28 @@ public class GeoJsonReaderDriver {
         this.fileName = fileName;
     }
 
+    /**
+     * @return Number of features read to infer the table schema, 0 if the file is read twice
+     */
+    public int getSchemaSampleSize() {
+        return schemaSampleSize;
+    }
+
+    /**
+     * Set the number of features read to infer the table schema. When strictly positive, the file is parsed only once:
+     * the first features are buffered to create the table, then the table is altered if new properties or wider
+     * property types appear in the following features. The default value 0 keeps the two pass import that collects
+     * all the properties before inserting the features.
+     *
+     * @param schemaSampleSize Number of buffered features, 0 to parse the file twice
+     */
+    public void setSchemaSampleSize(int schemaSampleSize) {
+        if (schemaSampleSize < 0) {
+            throw new IllegalArgumentException("The schema sample size must be positive");
+        }
+        this.schemaSampleSize = schemaSampleSize;
+    }
+
     /**
      * Read the GeoJSON file.
      *
@@ -162,8 +182,11 @@ public class GeoJsonReaderDriver {
     private void parseGeoJson(ProgressVisitor progress) throws SQLException, IOException {
         this.progress = progress.subProcess(100);
         init();
-        if (parseMetadata()) {
-            GF = new GeometryFactory(new PrecisionModel(), parsedSRID);
+        if (schemaSampleSize > 0) {
+            parseSinglePass();
+            setGeometryTypeConstraints();
+        } else if (parseMetadata()) {
+            featureParser = new GeoJsonFeatureParser(new GeometryFactory(new PrecisionModel(), parsedSRID), isH2);
             parseData();
             setGeometryTypeConstraints();
         } else {
@@ -218,43 +241,204 @@ public class GeoJsonReaderDriver {
             }
         }
          // Now we create the table if there is at least one geometry field.          
-         if (hasGeometryField) {              
-            StringBuilder createTable = new StringBuilder();
-            createTable.append("CREATE TABLE ");
-            createTable.append(tableLocation);
-            createTable.append(" (");
-            
-             //Add the geometry column
-             if (isH2) {
-                 createTable.append("THE_GEOM GEOMETRY");
-             } else {
-                 createTable.append("THE_GEOM GEOMETRY(geometry,").append(parsedSRID).append(")");
-             }
-            
+         if (hasGeometryField) {
              cachedColumnIndex = new HashMap<String, Integer>();
-             StringBuilder insertTable = new StringBuilder("INSERT INTO ");
-             insertTable.append(tableLocation).append(" VALUES(?");
-             int i =1;
-             for (Map.Entry<String, String> columns : cachedColumnNames.entrySet()) {
-                 String columnName = columns.getKey();
+             int i = 1;
+             for (String columnName : cachedColumnNames.keySet()) {
                  cachedColumnIndex.put(columnName, i++);
-                 createTable.append(",").append(columns.getKey()).append(" ").append(columns.getValue());
-                 insertTable.append(",").append("?");
-             }
-             createTable.append(")");
-             insertTable.append(")");
-
-             try (Statement stmt = connection.createStatement()) {
-                 stmt.execute(createTable.toString());
              }
-             preparedStatement = connection.prepareStatement(insertTable.toString());
+             createTable();
              return true;
-
         } else {
             throw new SQLException("The geojson file  does not contain any geometry.");
         }
          
     }
+
+    /**
+     * Creates the table from the collected columns and prepares the insert statement.
+     *
+     * @throws SQLException
+     */
+    private void createTable() throws SQLException {
+        StringBuilder createTable = new StringBuilder();
+        createTable.append("CREATE TABLE ");
+        createTable.append(tableLocation);
+        createTable.append(" (");
+
+        //Add the geometry column
+        if (isH2) {
+            createTable.append("THE_GEOM GEOMETRY");
+        } else {
+            createTable.append("THE_GEOM GEOMETRY(geometry,").append(parsedSRID).append(")");
+        }
+
+        for (Map.Entry<String, String> columns : cachedColumnNames.entrySet()) {
+            createTable.append(",").append(columns.getKey()).append(" ").append(columns.getValue());
+        }
+        createTable.append(")");
+
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute(createTable.toString());
+        }
+        prepareInsert();
+    }
+
+    /**
+     * Prepares the insert statement with one parameter per column of the table.
+     *
+     * @throws SQLException
+     */
+    private void prepareInsert() throws SQLException {
+        if (preparedStatement != null) {
+            preparedStatement.close();
+        }
+        StringBuilder insertTable = new StringBuilder("INSERT INTO ");
+        insertTable.append(tableLocation).append(" VALUES(?");
+        for (int i = 0; i < cachedColumnNames.size(); i++) {
+            insertTable.append(",").append("?");
+        }
+        insertTable.append(")");
+        preparedStatement = connection.prepareStatement(insertTable.toString());
+        tableColumnCount = cachedColumnNames.size();
+    }
+
+    /**
+     * Parses the GeoJSON file only once. The first features are kept in memory to infer the table schema, the
+     * table is then created and the following features are inserted while they are parsed. A property that was not
+     * in the schema, or a value that does not fit in its column type, alters the table before the insertion.
+     *
+     * @throws SQLException
+     * @throws IOException
+     */
+    private void parseSinglePass() throws SQLException, IOException {
+        try (FileInputStream fis = new FileInputStream(fileName)) {
+            this.fc = fis.getChannel();
+            this.fileSize = fc.size();
+            // Given the file size and an average node file size.
+            // Skip how many nodes in order to update progression at a step of 1%
+            readFileSizeEachNode = Math.max(1, (this.fileSize / AVERAGE_NODE_SIZE) / 100);
+            nodeCountProgress = 0;
+            batchSize = 0;
+
+            JsonParser jp = jsFactory.createParser(fis);
+            jp.nextToken();//START_OBJECT
+            jp.nextToken(); // field_name (type)
+            jp.nextToken(); // value_string (FeatureCollection)
+            String geomType = jp.getText();
+            if (!geomType.equalsIgnoreCase(GeoJsonField.FEATURECOLLECTION)) {
+                throw new SQLException("Malformed GeoJSON file. Expected 'FeatureCollection', found '" + geomType + "'");
+            }
+            jp.nextToken(); // FIELD_NAME features
+            if (jp.getText().equalsIgnoreCase(GeoJsonField.CRS)) {
+                parsedSRID = readCRS(jp);
+            }
+            featureParser = new GeoJsonFeatureParser(new GeometryFactory(new PrecisionModel(), parsedSRID), isH2);
+            cachedColumnNames = featureParser.getColumnTypes();
+            cachedColumnIndex = featureParser.getColumnIndex();
+            alteredColumns = featureParser.getAlteredColumns();
+            if (!jp.getText().equalsIgnoreCase(GeoJsonField.FEATURES)) {
+                throw new SQLException("Malformed GeoJSON file. Expected 'features', found '" + jp.getText() + "'");
+            }
+            List<Object[]> sample = new ArrayList<Object[]>(Math.min(schemaSampleSize, 4096));
+            jp.nextToken(); // START_ARRAY [
+            JsonToken token = jp.nextToken(); // START_OBJECT {
+            while (token != JsonToken.END_ARRAY) {
+                if (progress.isCanceled()) {
+                    throw new SQLException("Canceled by user");
+                }
+                Object[] values = featureParser.parseFeature(jp);
+                if (preparedStatement == null) {
+                    sample.add(values);
+                    if (sample.size() >= schemaSampleSize) {
+                        createTable();
+                        alteredColumns.clear();
+                        for (Object[] row : sample) {
+                            insertRow(row);
+                        }
+                        sample = null;
+                    }
+                } else {
+                    if (!alteredColumns.isEmpty()) {
+                        alterTable();
+                    }
+                    insertRow(values);
+                }
+                token = jp.nextToken(); //START_OBJECT new feature
+                featureCounter++;
+                if (nodeCountProgress++ % readFileSizeEachNode == 0) {
+                    // Update Progress
+                    try {
+                        progress.setStep((int) (((double) fc.position() / fileSize) * 100));
+                    } catch (IOException ex) {
+                        // Ignore
+                    }
+                }
+            }
+            //LOOP END_ARRAY ]
+            jp.close();
+            hasGeometryField = featureParser.hasGeometryField();
+            finalGeometryTypes = featureParser.getGeometryTypes();
+            if (!hasGeometryField) {
+                if (preparedStatement != null) {
+                    preparedStatement.close();
+                    try (Statement stmt = connection.createStatement()) {
+                        stmt.execute("DROP TABLE " + tableLocation);
+                    }
+                }
+                throw new SQLException("The geojson file  does not contain any geometry.");
+            }
+            if (preparedStatement == null) {
+                // Less features than the sample size
+                createTable();
+                for (Object[] row : sample) {
+                    insertRow(row);
+                }
+            }
+            if (batchSize > 0) {
+                preparedStatement.executeBatch();
+                batchSize = 0;
+            }
+            preparedStatement.close();
+            log.info(featureCounter + " geojson features have been imported.");
+        } catch (FileNotFoundException ex) {
+            throw new SQLException(ex);
+        }
+    }
+
+    /**
+     * Flushes the pending rows then adds the new columns and changes the type of the widened columns.
+     *
+     * @throws SQLException
+     */
+    private void alterTable() throws SQLException {
+        if (batchSize > 0) {
+            preparedStatement.executeBatch();
+            preparedStatement.clearBatch();
+            batchSize = 0;
+        }
+        featureParser.alterTable(connection, tableLocation, isH2, tableColumnCount);
+        prepareInsert();
+    }
+
+    /**
+     * Adds a row to the insert batch.
+     *
+     * @param values Feature values, missing trailing values are set to null
+     * @throws SQLException
+     */
+    private void insertRow(Object[] values) throws SQLException {
+        for (int i = 0; i <= tableColumnCount; i++) {
+            preparedStatement.setObject(i + 1, i < values.length ? values[i] : null);
+        }
+        preparedStatement.addBatch();
+        batchSize++;
+        if (batchSize >= BATCH_MAX_SIZE) {
+            preparedStatement.executeBatch();
+            preparedStatement.clearBatch();
+            batchSize = 0;
+        }
+    }
     
     /**
      * Parses the featureCollection to collect the field properties
@@ -752,41 +936,10 @@ public class GeoJsonReaderDriver {
         jp.nextToken(); // FIELD_NAME type     
         jp.nextToken(); //VALUE_STRING Point
         String geometryType = jp.getText();
-        values[0] = parseGeometry(jp, geometryType);
+        values[0] = featureParser.parseGeometry(jp, geometryType);
         } 
     }
 
-    /**
-     * Parses a GeoJSON geometry and returns its JTS representation.
-     *
-     * Syntax:
-     *
-     * "geometry":{"type": "Point", "coordinates": [102.0,0.5]}
-     *
-     * @param jp
-     * @throws IOException
-     * @return Geometry
-     */
-    private Geometry parseGeometry(JsonParser jp, String geometryType) throws IOException, SQLException {        
-        if (geometryType.equalsIgnoreCase(GeoJsonField.POINT)) {
-            return parsePoint(jp);
-        } else if (geometryType.equalsIgnoreCase(GeoJsonField.MULTIPOINT)) {
-            return parseMultiPoint(jp);
-        } else if (geometryType.equalsIgnoreCase(GeoJsonField.LINESTRING)) {
-            return parseLinestring(jp);
-        } else if (geometryType.equalsIgnoreCase(GeoJsonField.MULTILINESTRING)) {
-            return parseMultiLinestring(jp);
-        } else if (geometryType.equalsIgnoreCase(GeoJsonField.POLYGON)) {
-            return parsePolygon(jp);
-        } else if (geometryType.equalsIgnoreCase(GeoJsonField.MULTIPOLYGON)) {
-            return parseMultiPolygon(jp);
-        } else if (geometryType.equalsIgnoreCase(GeoJsonField.GEOMETRYCOLLECTION)) {
-            return parseGeometryCollection(jp);
-        } else {
-            throw new SQLException("Unsupported geometry : " + geometryType);
-        }
-    }
-
     /**
      * Parses the properties of a feature
      *
@@ -801,28 +954,10 @@ public class GeoJsonReaderDriver {
         while (jp.nextToken() != JsonToken.END_OBJECT) {
             String fieldName = TableLocation.quoteIdentifier(jp.getText().toUpperCase(), isH2); //FIELD_NAME columnName 
             JsonToken value = jp.nextToken();
-            if (value == JsonToken.VALUE_STRING) {                
-                values[cachedColumnIndex.get(fieldName)] =  jp.getText();
-            } else if (value == JsonToken.VALUE_TRUE) {
-                values[cachedColumnIndex.get(fieldName)] =  jp.getValueAsBoolean();
-            } else if (value == JsonToken.VALUE_FALSE) {
-                values[cachedColumnIndex.get(fieldName)] =  jp.getValueAsBoolean();
-            } else if (value == JsonToken.VALUE_NUMBER_FLOAT) {
-                values[cachedColumnIndex.get(fieldName)] =  jp.getValueAsDouble();
-            } else if (value == JsonToken.VALUE_NUMBER_INT) {
-                values[cachedColumnIndex.get(fieldName)] =  jp.getBigIntegerValue();
-            } else if (value == JsonToken.START_ARRAY) {
-                ArrayList<Object> arrayList = parseArray(jp);
-                values[cachedColumnIndex.get(fieldName)] = arrayList.toArray();
-            } else if (value == JsonToken.START_OBJECT) {
-                String str = parseObject(jp);
-                values[cachedColumnIndex.get(fieldName)] = str;
-            } else if (value == JsonToken.VALUE_NULL) {
-                values[cachedColumnIndex.get(fieldName)] = "null";
-            }
-            else {
-                //ignore other value
+            if (GeoJsonFeatureParser.getPropertyType(value) != null) {
+                values[cachedColumnIndex.get(fieldName)] = GeoJsonFeatureParser.parsePropertyValue(jp, value);
             }
+            //ignore other value
         }
 
     }
@@ -890,296 +1025,6 @@ public class GeoJsonReaderDriver {
         }
     }
 
-    /**
-     * Parses one position
-     *
-     * Syntax:
-     *
-     * { "type": "Point", "coordinates": [100.0, 0.0] }
-     *
-     * @param jp
-     * @throws IOException
-     * @return Point
-     */
-    private Point parsePoint(JsonParser jp) throws IOException, SQLException {
-        jp.nextToken(); // FIELD_NAME coordinates        
-        String coordinatesField = jp.getText();
-        if (coordinatesField.equalsIgnoreCase(GeoJsonField.COORDINATES)) {
-            jp.nextToken(); // START_ARRAY [ to parse the coordinate
-            Point point = GF.createPoint(parseCoordinate(jp));
-            return point;
-        } else {
-            throw new SQLException("Malformed GeoJSON file. Expected 'coordinates', found '" + coordinatesField + "'");
-        }
-    }
-
-    /**
-     * Parses an array of positions
-     *
-     * Syntax:
-     *
-     * { "type": "MultiPoint", "coordinates": [ [100.0, 0.0], [101.0, 1.0] ] }
-     *
-     * @param jp
-     * @throws IOException
-     * @return MultiPoint
-     */
-    private MultiPoint parseMultiPoint(JsonParser jp) throws IOException, SQLException {
-        jp.nextToken(); // FIELD_NAME coordinates        
-        String coordinatesField = jp.getText();
-        if (coordinatesField.equalsIgnoreCase(GeoJsonField.COORDINATES)) {
-            jp.nextToken(); // START_ARRAY [ coordinates
-            MultiPoint mPoint = GF.createMultiPoint(parseCoordinates(jp));
-            jp.nextToken();//END_OBJECT } geometry
-            return mPoint;
-        } else {
-            throw new SQLException("Malformed GeoJSON file. Expected 'coordinates', found '" + coordinatesField + "'");
-        }
-    }
-
-    /**
-     *
-     * Parses the array of positions.
-     *
-     * Syntax:
-     *
-     * { "type": "LineString", "coordinates": [ [100.0, 0.0], [101.0, 1.0] ] }
-     *
-     * @param jp
-     */
-    private LineString parseLinestring(JsonParser jp) throws IOException, SQLException {
-        jp.nextToken(); // FIELD_NAME coordinates        
-        String coordinatesField = jp.getText();
-        if (coordinatesField.equalsIgnoreCase(GeoJsonField.COORDINATES)) {
-            jp.nextToken(); // START_ARRAY [ coordinates
-            LineString line = GF.createLineString(parseCoordinates(jp));
-            jp.nextToken();//END_OBJECT } geometry
-            return line;
-        } else {
-            throw new SQLException("Malformed GeoJSON file. Expected 'coordinates', found '" + coordinatesField + "'");
-        }
-    }
-
-    /**
-     * Parses an array of positions defined as:
-     *
-     * { "type": "MultiLineString", "coordinates": [ [ [100.0, 0.0], [101.0,
-     * 1.0] ], [ [102.0, 2.0], [103.0, 3.0] ] ] }
-     *
-     * @param jp
-     * @return MultiLineString
-     */
-    private MultiLineString parseMultiLinestring(JsonParser jp) throws IOException, SQLException {
-        jp.nextToken(); // FIELD_NAME coordinates        
-        String coordinatesField = jp.getText();
-        if (coordinatesField.equalsIgnoreCase(GeoJsonField.COORDINATES)) {
-            ArrayList<LineString> lineStrings = new ArrayList<LineString>();
-            jp.nextToken();//START_ARRAY [ coordinates
-            jp.nextToken(); // START_ARRAY [ coordinates line
-            while (jp.getCurrentToken() != JsonToken.END_ARRAY) {
-                lineStrings.add(GF.createLineString(parseCoordinates(jp)));
-                jp.nextToken();
-            }
-            MultiLineString line = GF.createMultiLineString(lineStrings.toArray(new LineString[lineStrings.size()]));
-            jp.nextToken();//END_OBJECT } geometry
-            return line;
-        } else {
-            throw new SQLException("Malformed GeoJSON file. Expected 'coordinates', found '" + coordinatesField + "'");
-        }
-
-    }
-
-    /**
-     * Coordinates of a Polygon are an array of LinearRing coordinate arrays.
-     * The first element in the array represents the exterior ring. Any
-     * subsequent elements represent interior rings (or holes).
-     *
-     * Syntax:
-     *
-     * No holes:
-     *
-     * { "type": "Polygon", "coordinates": [ [ [100.0, 0.0], [101.0, 0.0],
-     * [101.0, 1.0], [100.0, 1.0], [100.0, 0.0] ] ] }
-     *
-     * With holes:
-     *
-     * { "type": "Polygon", "coordinates": [ [ [100.0, 0.0], [101.0, 0.0],
-     * [101.0, 1.0], [100.0, 1.0], [100.0, 0.0] ], [ [100.2, 0.2], [100.8, 0.2],
-     * [100.8, 0.8], [100.2, 0.8], [100.2, 0.2] ] ] }
-     *
-     *
-     *
-     * @param jp
-     * @return Polygon
-     */
-    private Polygon parsePolygon(JsonParser jp) throws IOException, SQLException {
-        jp.nextToken(); // FIELD_NAME coordinates        
-        String coordinatesField = jp.getText();
-        if (coordinatesField.equalsIgnoreCase(GeoJsonField.COORDINATES)) {
-            jp.nextToken(); // START_ARRAY [ coordinates
-            jp.nextToken(); //Start the RING
-            int linesIndex = 0;
-            LinearRing linearRing = null;
-            ArrayList<LinearRing> holes = new ArrayList<LinearRing>();
-            while (jp.getCurrentToken() != JsonToken.END_ARRAY) {
-                if (linesIndex == 0) {
-                    linearRing = GF.createLinearRing(parseCoordinates(jp));
-                } else {
-                    holes.add(GF.createLinearRing(parseCoordinates(jp)));
-                }
-                jp.nextToken();//END RING
-                linesIndex++;
-            }
-            if (linesIndex > 1) {
-                jp.nextToken();//END_OBJECT } geometry
-                return GF.createPolygon(linearRing, holes.toArray(new LinearRing[holes.size()]));
-            } else {
-                jp.nextToken();//END_OBJECT } geometry
-                return GF.createPolygon(linearRing, null);
-            }
-        } else {
-            throw new SQLException("Malformed GeoJSON file. Expected 'coordinates', found '" + coordinatesField + "'");
-        }
-    }
-
-    /**
-     * Coordinates of a MultiPolygon are an array of Polygon coordinate arrays:
-     *
-     * { "type": "MultiPolygon", "coordinates": [ [[[102.0, 2.0], [103.0, 2.0],
-     * [103.0, 3.0], [102.0, 3.0], [102.0, 2.0]]], [[[100.0, 0.0], [101.0, 0.0],
-     * [101.0, 1.0], [100.0, 1.0], [100.0, 0.0]], [[100.2, 0.2], [100.8, 0.2],
-     * [100.8, 0.8], [100.2, 0.8], [100.2, 0.2]]] ] }
-     *
-     * @param jp
-     * @throws IOException
-     * @throws SQLException
-     * @return MultiPolygon
-     */
-    private MultiPolygon parseMultiPolygon(JsonParser jp) throws IOException, SQLException {
-        jp.nextToken(); // FIELD_NAME coordinates        
-        String coordinatesField = jp.getText();
-        if (coordinatesField.equalsIgnoreCase(GeoJsonField.COORDINATES)) {
-            ArrayList<Polygon> polygons = new ArrayList<Polygon>();
-            jp.nextToken(); // START_ARRAY [ coordinates             
-            jp.nextToken(); //Start the polygon
-            while (jp.getCurrentToken() != JsonToken.END_ARRAY) {
-                //Parses the polygon
-                jp.nextToken(); //Start the RING
-                int linesIndex = 0;
-                LinearRing linearRing = null;
-                ArrayList<LinearRing> holes = new ArrayList<LinearRing>();
-                while (jp.getCurrentToken() != JsonToken.END_ARRAY) {
-                    if (linesIndex == 0) {
-                        linearRing = GF.createLinearRing(parseCoordinates(jp));
-                    } else {
-                        holes.add(GF.createLinearRing(parseCoordinates(jp)));
-                    }
-                    jp.nextToken();//END RING
-                    linesIndex++;
-                }
-                if (linesIndex > 1) {
-                    jp.nextToken();//END_OBJECT
-                    polygons.add(GF.createPolygon(linearRing, holes.toArray(new LinearRing[holes.size()])));
-                } else {
-                    jp.nextToken();//END_OBJECT
-                    polygons.add(GF.createPolygon(linearRing, null));
-                }
-            }
-            jp.nextToken();//END_OBJECT } geometry
-            return GF.createMultiPolygon(polygons.toArray(new Polygon[polygons.size()]));
-
-        } else {
-            throw new SQLException("Malformed GeoJSON file. Expected 'coordinates', found '" + coordinatesField + "'");
-        }
-    }
-
-    /**
-     * Each element in the geometries array of a GeometryCollection is one of
-     * the geometry objects described above:
-     *
-     * { "type": "GeometryCollection", "geometries": [ { "type": "Point",
-     * "coordinates": [100.0, 0.0] }, { "type": "LineString", "coordinates": [
-     * [101.0, 0.0], [102.0, 1.0] ] } ]
-     *
-     * @param jp
-     *
-     * @throws IOException
-     * @throws SQLException
-     * @return GeometryCollection
-     */
-    private GeometryCollection parseGeometryCollection(JsonParser jp) throws IOException, SQLException {
-        jp.nextToken(); // FIELD_NAME geometries        
-        String coordinatesField = jp.getText();
-        if (coordinatesField.equalsIgnoreCase(GeoJsonField.GEOMETRIES)) {
-            jp.nextToken();//START array
-            jp.nextToken();//START object
-            ArrayList<Geometry> geometries = new ArrayList<Geometry>();
-            while (jp.getCurrentToken() != JsonToken.END_ARRAY) {
-                jp.nextToken(); // FIELD_NAME type     
-                jp.nextToken(); //VALUE_STRING Point
-                String geometryType = jp.getText();
-                geometries.add(parseGeometry(jp, geometryType));
-                jp.nextToken();
-            }
-            jp.nextToken();//END_OBJECT } geometry
-            return GF.createGeometryCollection(geometries.toArray(new Geometry[geometries.size()]));
-        } else {
-            throw new SQLException("Malformed GeoJSON file. Expected 'geometries', found '" + coordinatesField + "'");
-        }
-
-    }
-
-    /**
-     * Parses a sequence of coordinates array expressed as
-     *
-     * [ [100.0, 0.0], [101.0, 1.0] ]
-     *
-     * @param jp
-     * @throws IOException
-     * @throws SQLException
-     * @return Coordinate[]
-     */
-    private Coordinate[] parseCoordinates(JsonParser jp) throws IOException {
-        jp.nextToken(); // START_ARRAY [ to parse the each positions
-        ArrayList<Coordinate> coords = new ArrayList<Coordinate>();
-        while (jp.getCurrentToken() != JsonToken.END_ARRAY) {
-            coords.add(parseCoordinate(jp));
-        }
-        return coords.toArray(new Coordinate[coords.size()]);
-    }
-
-    /**
-     * Parses a GeoJSON coordinate array and returns a JTS coordinate. The first
-     * token corresponds to the first X value. The last token correponds to the
-     * end of the coordinate array "]".
-     *
-     * Parsed syntax:
-     *
-     * 100.0, 0.0]
-     *
-     * @param jp
-     * @throws IOException
-     * @return Coordinate
-     */
-    private Coordinate parseCoordinate(JsonParser jp) throws IOException {
-        jp.nextToken();
-        double x = jp.getDoubleValue();// VALUE_NUMBER_FLOAT
-        jp.nextToken(); // second value
-        double y = jp.getDoubleValue();
-        Coordinate coord;
-        //We look for a z value
-        jp.nextToken();
-        if (jp.getCurrentToken() == JsonToken.END_ARRAY) {
-            coord = new Coordinate(x, y);
-        } else {
-            double z = jp.getDoubleValue();
-            jp.nextToken(); // exit array
-            coord = new Coordinate(x, y, z);
-        }
-        jp.nextToken();
-        return coord;
-    }
-
     /**
      * Parses the GeoJSON data and set the values to the table.
      *
@@ -1338,64 +1183,4 @@ public class GeoJsonReaderDriver {
         }
     }
 
-    /**
-     * Parses Json Array and returns an ArrayList
-     * Syntax:
-     * Json Array:
-     * {"member1": value1}, value2, value3, {"member4": value4}]
-     * @param jp the json parser
-     * @return the array
-     */
-    private ArrayList<Object> parseArray(JsonParser jp) throws IOException {
-        JsonToken value = jp.nextToken();
-        ArrayList<Object> ret = new ArrayList<>();
-        while(value != JsonToken.END_ARRAY) {
-            if (value == JsonToken.START_OBJECT) {
-                Object object = parseObject(jp);
-                ret.add(object);
-            } else if (value == JsonToken.START_ARRAY) {
-                ArrayList<Object> arrayList = parseArray(jp);
-                ret.add(arrayList.toArray());
-            } else if (value == JsonToken.VALUE_NUMBER_INT) {
-                ret.add(jp.getValueAsInt());
-            } else if (value == JsonToken.VALUE_FALSE || value == JsonToken.VALUE_TRUE) {
-                ret.add(jp.getValueAsBoolean());
-            } else if (value == JsonToken.VALUE_NUMBER_FLOAT) {
-                ret.add(jp.getValueAsDouble());
-            } else if (value == JsonToken.VALUE_STRING) {
-                ret.add(jp.getValueAsString());
-            } else if (value == JsonToken.VALUE_NULL) {
-                ret.add("null");
-            }
-            value = jp.nextToken();
-        }
-        return ret;
-    }
-
-    /**
-     * Parses Json Object. Since their elements could be
-     * anything and H2GIS doesn't support such complicated
-     * structure, this parser will just write ordinary
-     * String object "{}".
-     * Syntax:
-     * Json Object:
-     * "member1": value1, "member2": value2}
-     * @param jp the json parser
-     * @return the object but written like a String
-     */
-    private String parseObject(JsonParser jp) throws IOException {
-        String ret = "{";
-        JsonToken value;
-        while (jp.nextToken() != JsonToken.END_OBJECT) {
-            value = jp.nextToken();
-            if (value == JsonToken.START_OBJECT) {
-                parseObjectMetadata(jp);
-            } else if (value == JsonToken.START_ARRAY) {
-                parseArrayMetadata(jp);
-            }
-        }
-        ret += "}";
-        return ret;
-    }
-
 }
@@ -0,0 +1,96 @@
+/**
+ * H2GIS is a library that brings spatial support to the H2 Database Engine
+ * <http://www.h2database.com>. H2GIS is developed by CNRS
+ * <http://www.cnrs.fr/>.
+ *
+ * This code is part of the H2GIS project. H2GIS is free software; 
+ * you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation;
+ * version 3.0 of the License.
+ *
+ * H2GIS is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details <http://www.gnu.org/licenses/>.
+ *
+ *
+ * For more information, please consult: <http://www.h2gis.org/>
+ * or contact directly: info_at_h2gis.org
+ */
+
+package org.h2gis.functions.io.geojson;
+
+import org.h2gis.api.DriverFunction;
+import org.h2gis.api.ProgressVisitor;
+import org.h2gis.utilities.JDBCUtilities;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * Newline delimited GeoJSON driver to import a GeoJSONSeq (.geojsonl) or NDJSON (.ndjson) file and export a spatial
+ * table in one of these formats.
+ */
+public class GeoJsonSeqDriverFunction implements DriverFunction {
+    private int importThreadCount = Runtime.getRuntime().availableProcessors();
+
+    @Override
+    public IMPORT_DRIVER_TYPE getImportDriverType() {
+        return IMPORT_DRIVER_TYPE.COPY;
+    }
+
+    @Override
+    public String[] getImportFormats() {
+        return new String[]{"geojsonl", "ndjson"};
+    }
+
+    @Override
+    public String[] getExportFormats() {
+        return new String[]{"geojsonl", "ndjson"};
+    }
+
+    @Override
+    public String getFormatDescription(String format) {
+        if (format.equalsIgnoreCase("geojsonl")) {
+            return "Newline delimited GeoJSON";
+        } else if (format.equalsIgnoreCase("ndjson")) {
+            return "Newline delimited JSON features";
+        } else {
+            return "";
+        }
+    }
+
+    @Override
+    public boolean isSpatialFormat(String extension) {
+        return extension.equals("geojsonl") || extension.equals("ndjson");
+    }
+
+    /**
+     * @return Number of threads that parse the file on import
+     */
+    public int getImportThreadCount() {
+        return importThreadCount;
+    }
+
+    /**
+     * @param importThreadCount Number of threads that parse the file on import
+     */
+    public void setImportThreadCount(int importThreadCount) {
+        this.importThreadCount = importThreadCount;
+    }
+
+    @Override
+    public void exportTable(Connection connection, String tableReference, File fileName, ProgressVisitor progress) throws SQLException, IOException {
+        GeoJsonSeqWriteDriver driver = new GeoJsonSeqWriteDriver(connection, tableReference, fileName);
+        driver.write(progress);
+    }
+
+    @Override
+    public void importFile(Connection connection, String tableReference, File fileName, ProgressVisitor progress) throws SQLException, IOException {
+        GeoJsonSeqReaderDriver driver = new GeoJsonSeqReaderDriver(connection, fileName);
+        driver.setThreadCount(importThreadCount);
+        driver.read(progress, tableReference);
+    }
+}
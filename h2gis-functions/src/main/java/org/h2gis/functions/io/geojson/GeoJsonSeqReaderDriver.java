@@ -0,0 +1,419 @@
+/**
+ * H2GIS is a library that brings spatial support to the H2 Database Engine
+ * <http://www.h2database.com>. H2GIS is developed by CNRS
+ * <http://www.cnrs.fr/>.
+ *
+ * This code is part of the H2GIS project. H2GIS is free software; 
+ * you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation;
+ * version 3.0 of the License.
+ *
+ * H2GIS is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details <http://www.gnu.org/licenses/>.
+ *
+ *
+ * For more information, please consult: <http://www.h2gis.org/>
+ * or contact directly: info_at_h2gis.org
+ */
+
+package org.h2gis.functions.io.geojson;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.vividsolutions.jts.geom.GeometryFactory;
+import org.h2gis.api.ProgressVisitor;
+import org.h2gis.functions.io.utility.FileUtil;
+import org.h2gis.utilities.JDBCUtilities;
+import org.h2gis.utilities.TableLocation;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Driver to import a newline delimited GeoJSON file (GeoJSONSeq, NDJSON) into a spatial table.
+ *
+ * Each line of the file is a GeoJSON Feature:
+ *
+ * {"type": "Feature", "geometry": {"type": "Point", "coordinates": [102.0, 0.5]}, "properties": {"prop0": "value0"}}
+ *
+ * The file is split in chunks at line boundaries, the chunks are parsed by several threads and inserted in the file
+ * order. The features are parsed as in {@link GeoJsonReaderDriver}. The table schema is built from the properties of
+ * the first chunk, the table is altered when new properties or wider property types appear in the following chunks.
+ * The record separator of RFC 8142 is accepted. The features do not carry a coordinate reference system, the
+ * geometries are imported with the SRID 0.
+ */
+public class GeoJsonSeqReaderDriver {
+    /** Default size of a chunk parsed by a thread (4 MB) */
+    public static final int DEFAULT_CHUNK_SIZE = 1 << 22;
+    private static final int BATCH_MAX_SIZE = 100;
+    private static final byte RECORD_SEPARATOR = 0x1E;
+    private static final Logger log = LoggerFactory.getLogger(GeoJsonSeqReaderDriver.class);
+    private final Connection connection;
+    private final File fileName;
+    private int threadCount = Runtime.getRuntime().availableProcessors();
+    private int chunkSize = DEFAULT_CHUNK_SIZE;
+    private boolean isH2;
+    private TableLocation tableLocation;
+    private JsonFactory jsFactory;
+    private PreparedStatement preparedStatement;
+    // Schema of the table, merged from the schema of each chunk
+    private GeoJsonFeatureParser schema;
+    private int tableColumnCount = 0;
+    private long batchSize = 0;
+
+    /**
+     * Driver to import a newline delimited GeoJSON file into a spatial table.
+     *
+     * @param connection
+     * @param fileName
+     */
+    public GeoJsonSeqReaderDriver(Connection connection, File fileName) {
+        this.connection = connection;
+        this.fileName = fileName;
+    }
+
+    /**
+     * @return Number of threads that parse the file
+     */
+    public int getThreadCount() {
+        return threadCount;
+    }
+
+    /**
+     * @param threadCount Number of threads that parse the file
+     */
+    public void setThreadCount(int threadCount) {
+        if (threadCount < 1) {
+            throw new IllegalArgumentException("The thread count must be strictly positive");
+        }
+        this.threadCount = threadCount;
+    }
+
+    /**
+     * @return Size in bytes of the chunks parsed by the threads
+     */
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    /**
+     * @param chunkSize Size in bytes of the chunks parsed by the threads, a chunk is extended to the end of its last
+     *                  line
+     */
+    public void setChunkSize(int chunkSize) {
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("The chunk size must be strictly positive");
+        }
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Read the newline delimited GeoJSON file.
+     *
+     * @param progress
+     * @param tableReference
+     * @throws SQLException
+     * @throws IOException
+     */
+    public void read(ProgressVisitor progress, String tableReference) throws SQLException, IOException {
+        if (!isSupportedExtension(fileName)) {
+            throw new SQLException("Please use geojsonl or ndjson extension.");
+        }
+        if (!fileName.exists()) {
+            throw new FileNotFoundException("The following file does not exists:\n" + fileName.getPath());
+        }
+        isH2 = JDBCUtilities.isH2DataBase(connection.getMetaData());
+        tableLocation = TableLocation.parse(tableReference, isH2);
+        jsFactory = new JsonFactory();
+        jsFactory.configure(JsonParser.Feature.ALLOW_COMMENTS, true);
+        jsFactory.configure(JsonParser.Feature.ALLOW_SINGLE_QUOTES, true);
+        jsFactory.configure(JsonParser.Feature.ALLOW_NON_NUMERIC_NUMBERS, true);
+        schema = new GeoJsonFeatureParser(new GeometryFactory(), isH2);
+        try (FileInputStream fis = new FileInputStream(fileName)) {
+            parseChunks(fis.getChannel(), progress);
+        }
+        if (preparedStatement != null) {
+            preparedStatement.close();
+        }
+        if (!schema.hasGeometryField()) {
+            if (preparedStatement != null) {
+                try (Statement stmt = connection.createStatement()) {
+                    stmt.execute("DROP TABLE " + tableLocation);
+                }
+            }
+            throw new SQLException("The geojson file  does not contain any geometry.");
+        }
+        setGeometryTypeConstraints();
+    }
+
+    /**
+     * @param file File to read or write
+     * @return True if the file extension is geojsonl or ndjson
+     */
+    static boolean isSupportedExtension(File file) {
+        return FileUtil.isExtensionWellFormated(file, "geojsonl") || FileUtil.isExtensionWellFormated(file, "ndjson");
+    }
+
+    /**
+     * Parse the chunks with several threads and insert the features in the file order.
+     *
+     * @param fc File channel, shared by the threads
+     * @param progress Progress, one step per chunk
+     */
+    private void parseChunks(FileChannel fc, ProgressVisitor progress) throws SQLException, IOException {
+        final long fileSize = fc.size();
+        ProgressVisitor copyProgress = progress.subProcess((int) Math.max(1, (fileSize + chunkSize - 1) / chunkSize));
+        ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+        try {
+            // Parsed chunks in the file order, the queue length limits the number of features kept in memory
+            ArrayDeque<Future<FeatureChunk>> pendingChunks = new ArrayDeque<Future<FeatureChunk>>();
+            final int maxPending = threadCount * 2;
+            long nextChunkStart = 0;
+            long featureCount = 0;
+            while (nextChunkStart < fileSize || !pendingChunks.isEmpty()) {
+                while (nextChunkStart < fileSize && pendingChunks.size() < maxPending) {
+                    long chunkEnd = findLineEnd(fc, Math.min(fileSize, nextChunkStart + chunkSize), fileSize);
+                    pendingChunks.add(executor.submit(new ChunkParser(fc, nextChunkStart, chunkEnd)));
+                    nextChunkStart = chunkEnd;
+                }
+                if (progress.isCanceled()) {
+                    throw new SQLException("Canceled by user");
+                }
+                FeatureChunk chunk = getChunk(pendingChunks.poll());
+                insertChunk(chunk);
+                featureCount += chunk.features.size();
+                copyProgress.endStep();
+            }
+            if (batchSize > 0) {
+                preparedStatement.executeBatch();
+                batchSize = 0;
+            }
+            copyProgress.endOfProgress();
+            log.info(featureCount + " geojson features have been imported.");
+        } finally {
+            executor.shutdownNow();
+            try {
+                executor.awaitTermination(1, TimeUnit.MINUTES);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * @param fc File channel
+     * @param position Position where the search begins
+     * @param fileSize File size
+     * @return The position following the first line feed at or after the provided position, or the file size
+     */
+    private static long findLineEnd(FileChannel fc, long position, long fileSize) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(8192);
+        while (position < fileSize) {
+            buffer.clear();
+            int read = fc.read(buffer, position);
+            if (read <= 0) {
+                break;
+            }
+            for (int i = 0; i < read; i++) {
+                if (buffer.get(i) == '\n') {
+                    return position + i + 1;
+                }
+            }
+            position += read;
+        }
+        return fileSize;
+    }
+
+    private static FeatureChunk getChunk(Future<FeatureChunk> chunk) throws SQLException, IOException {
+        try {
+            return chunk.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IOException("GeoJSON import has been interrupted", ex);
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof IOException) {
+                throw (IOException) ex.getCause();
+            } else if (ex.getCause() instanceof SQLException) {
+                throw (SQLException) ex.getCause();
+            }
+            throw new IOException(ex.getCause().getLocalizedMessage(), ex.getCause());
+        }
+    }
+
+    /**
+     * Update the table schema with the chunk properties then insert its features.
+     *
+     * @param chunk Parsed chunk
+     */
+    private void insertChunk(FeatureChunk chunk) throws SQLException {
+        int[] columnIndex = schema.merge(chunk.parser);
+        if (preparedStatement == null) {
+            createTable();
+        } else if (!schema.getAlteredColumns().isEmpty()) {
+            if (batchSize > 0) {
+                preparedStatement.executeBatch();
+                preparedStatement.clearBatch();
+                batchSize = 0;
+            }
+            schema.alterTable(connection, tableLocation, isH2, tableColumnCount);
+            prepareInsert();
+        }
+        schema.getAlteredColumns().clear();
+        for (Object[] values : chunk.features) {
+            preparedStatement.setObject(1, values[0]);
+            for (int i = 2; i <= tableColumnCount + 1; i++) {
+                preparedStatement.setObject(i, null);
+            }
+            for (int i = 1; i < values.length; i++) {
+                preparedStatement.setObject(columnIndex[i] + 1, values[i]);
+            }
+            preparedStatement.addBatch();
+            batchSize++;
+            if (batchSize >= BATCH_MAX_SIZE) {
+                preparedStatement.executeBatch();
+                preparedStatement.clearBatch();
+                batchSize = 0;
+            }
+        }
+    }
+
+    /**
+     * Creates the table from the collected columns and prepares the insert statement.
+     */
+    private void createTable() throws SQLException {
+        StringBuilder createTable = new StringBuilder();
+        createTable.append("CREATE TABLE ");
+        createTable.append(tableLocation);
+        createTable.append(" (");
+        if (isH2) {
+            createTable.append("THE_GEOM GEOMETRY");
+        } else {
+            createTable.append("THE_GEOM GEOMETRY(geometry,0)");
+        }
+        for (Map.Entry<String, String> columns : schema.getColumnTypes().entrySet()) {
+            createTable.append(",").append(columns.getKey()).append(" ").append(columns.getValue());
+        }
+        createTable.append(")");
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute(createTable.toString());
+        }
+        prepareInsert();
+    }
+
+    private void prepareInsert() throws SQLException {
+        if (preparedStatement != null) {
+            preparedStatement.close();
+        }
+        int columnCount = schema.getColumnTypes().size();
+        StringBuilder insertTable = new StringBuilder("INSERT INTO ");
+        insertTable.append(tableLocation).append(" VALUES(?");
+        for (int i = 0; i < columnCount; i++) {
+            insertTable.append(",?");
+        }
+        insertTable.append(")");
+        preparedStatement = connection.prepareStatement(insertTable.toString());
+        tableColumnCount = columnCount;
+    }
+
+    /**
+     * Adds the geometry type constraint
+     */
+    private void setGeometryTypeConstraints() throws SQLException {
+        if (!isH2) {
+            String finalGeometryType = GeoJsonField.GEOMETRY;
+            Set<String> geometryTypes = schema.getGeometryTypes();
+            if (geometryTypes.size() == 1) {
+                finalGeometryType = geometryTypes.iterator().next();
+            }
+            try (Statement stmt = connection.createStatement()) {
+                stmt.execute(String.format("ALTER TABLE %s ALTER COLUMN the_geom SET DATA TYPE geometry(%s,0)",
+                        tableLocation, finalGeometryType));
+            }
+        }
+    }
+
+    /**
+     * Features parsed from a chunk of the file
+     */
+    private static class FeatureChunk {
+        // Schema of the chunk features
+        private final GeoJsonFeatureParser parser;
+        private final List<Object[]> features = new ArrayList<Object[]>();
+
+        private FeatureChunk(GeoJsonFeatureParser parser) {
+            this.parser = parser;
+        }
+    }
+
+    /**
+     * Parse the features stored between two line boundaries.
+     */
+    private class ChunkParser implements Callable<FeatureChunk> {
+        private final FileChannel fc;
+        private final long begin;
+        private final long end;
+
+        /**
+         * @param fc File channel, only positional reads are used
+         * @param begin First byte of the chunk
+         * @param end Last byte of the chunk, excluded
+         */
+        private ChunkParser(FileChannel fc, long begin, long end) {
+            this.fc = fc;
+            this.begin = begin;
+            this.end = end;
+        }
+
+        @Override
+        public FeatureChunk call() throws Exception {
+            ByteBuffer buffer = ByteBuffer.allocate((int) (end - begin));
+            while (buffer.hasRemaining()) {
+                if (fc.read(buffer, begin + buffer.position()) < 0) {
+                    throw new IOException("Unexpected end of file at position " + (begin + buffer.position()));
+                }
+            }
+            byte[] bytes = buffer.array();
+            for (int i = 0; i < bytes.length; i++) {
+                if (bytes[i] == RECORD_SEPARATOR) {
+                    bytes[i] = ' ';
+                }
+            }
+            FeatureChunk chunk = new FeatureChunk(new GeoJsonFeatureParser(new GeometryFactory(), isH2));
+            try (JsonParser jp = jsFactory.createParser(bytes)) {
+                JsonToken token;
+                while ((token = jp.nextToken()) != null) {
+                    if (token != JsonToken.START_OBJECT) {
+                        throw new SQLException("Malformed GeoJSON sequence. Expected a Feature object at position "
+                                + (begin + jp.getCurrentLocation().getByteOffset()));
+                    }
+                    chunk.features.add(chunk.parser.parseFeature(jp));
+                }
+            }
+            return chunk;
+        }
+    }
+}
@@ -0,0 +1,111 @@
+/**
+ * H2GIS is a library that brings spatial support to the H2 Database Engine
+ * <http://www.h2database.com>. H2GIS is developed by CNRS
+ * <http://www.cnrs.fr/>.
+ *
+ * This code is part of the H2GIS project. H2GIS is free software; 
+ * you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation;
+ * version 3.0 of the License.
+ *
+ * H2GIS is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details <http://www.gnu.org/licenses/>.
+ *
+ *
+ * For more information, please consult: <http://www.h2gis.org/>
+ * or contact directly: info_at_h2gis.org
+ */
+
+package org.h2gis.functions.io.geojson;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import org.h2gis.api.ProgressVisitor;
+import org.h2gis.utilities.JDBCUtilities;
+import org.h2gis.utilities.SFSUtilities;
+import org.h2gis.utilities.TableLocation;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+
+/**
+ * Driver to write a spatial table to a newline delimited GeoJSON file (GeoJSONSeq, NDJSON). The features are written
+ * one per line while the table is read, without any enclosing FeatureCollection.
+ *
+ * Syntax:
+ *
+ * {"type":"Feature","geometry":{"type":"Point","coordinates":[102.0,0.5]},"properties":{"prop0":"value0"}}
+ */
+public class GeoJsonSeqWriteDriver {
+    private static final int FETCH_SIZE = 100;
+    private final String tableName;
+    private final File fileName;
+    private final Connection connection;
+
+    /**
+     * Driver to write a spatial table to a newline delimited GeoJSON file.
+     *
+     * @param connection
+     * @param tableName
+     * @param fileName
+     */
+    public GeoJsonSeqWriteDriver(Connection connection, String tableName, File fileName) {
+        this.connection = connection;
+        this.tableName = tableName;
+        this.fileName = fileName;
+    }
+
+    /**
+     * Write the spatial table.
+     *
+     * @param progress
+     * @throws SQLException
+     * @throws IOException
+     */
+    public void write(ProgressVisitor progress) throws SQLException, IOException {
+        if (!GeoJsonSeqReaderDriver.isSupportedExtension(fileName)) {
+            throw new SQLException("Only .geojsonl and .ndjson extensions are supported");
+        }
+        final TableLocation parse = TableLocation.parse(tableName, JDBCUtilities.isH2DataBase(connection.getMetaData()));
+        List<String> spatialFieldNames = SFSUtilities.getGeometryFields(connection, parse);
+        if (spatialFieldNames.isEmpty()) {
+            throw new SQLException(String.format("The table %s does not contain a geometry field", tableName));
+        }
+        // The features are encoded like in a GeoJSON FeatureCollection
+        GeoJsonWriteDriver featureWriter = new GeoJsonWriteDriver(connection, tableName, fileName);
+        JsonFactory jsonFactory = new JsonFactory();
+        jsonFactory.setRootValueSeparator("\n");
+        try (FileOutputStream fos = new FileOutputStream(fileName);
+             JsonGenerator jsonGenerator = jsonFactory.createGenerator(new BufferedOutputStream(fos), JsonEncoding.UTF8);
+             Statement st = connection.createStatement()) {
+            st.setFetchSize(FETCH_SIZE);
+            int recordCount = JDBCUtilities.getRowCount(connection, tableName);
+            ProgressVisitor copyProgress = progress.subProcess(recordCount);
+            try (ResultSet rs = st.executeQuery(String.format("select * from %s", tableName))) {
+                int geoFieldIndex = JDBCUtilities.getFieldIndex(rs.getMetaData(), spatialFieldNames.get(0));
+                featureWriter.cacheMetadata(rs.getMetaData());
+                boolean empty = true;
+                while (rs.next()) {
+                    featureWriter.writeFeature(jsonGenerator, rs, geoFieldIndex);
+                    empty = false;
+                    copyProgress.endStep();
+                }
+                if (!empty) {
+                    // Every line ends with a line feed
+                    jsonGenerator.writeRaw('\n');
+                }
+            }
+            copyProgress.endOfProgress();
+        }
+    }
+}
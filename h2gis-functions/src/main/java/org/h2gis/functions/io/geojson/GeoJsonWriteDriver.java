@@ -181,7 +181,7 @@ public class GeoJsonWriteDriver {
      * @param resultSetMetaData
      * @param geoFieldIndex
      */
-    private void writeFeature(JsonGenerator jsonGenerator, ResultSet rs, int geoFieldIndex) throws IOException, SQLException {
+    void writeFeature(JsonGenerator jsonGenerator, ResultSet rs, int geoFieldIndex) throws IOException, SQLException {
         // feature header
         jsonGenerator.writeStartObject();
         jsonGenerator.writeStringField("type", "Feature");
@@ -199,7 +199,7 @@ public class GeoJsonWriteDriver {
      * @param resultSetMetaData
      * @throws SQLException
      */
-    private void cacheMetadata(ResultSetMetaData resultSetMetaData) throws SQLException {
+    void cacheMetadata(ResultSetMetaData resultSetMetaData) throws SQLException {
         cachedColumnNames = new LinkedHashMap<String, Integer>();
         for (int i = 1; i <= resultSetMetaData.getColumnCount(); i++) {
             final String fieldTypeName = resultSetMetaData.getColumnTypeName(i);
@@ -37,6 +37,7 @@ public class OSMDriverFunction implements DriverFunction {
     public static String DESCRIPTION = "OSM file (0.6)";
     public static String DESCRIPTION_GZ = "OSM Gzipped file (0.6)";
     public static String DESCRIPTION_BZ2 = "OSM Bzipped file (0.6)";
+    public static String DESCRIPTION_PBF = "OSM PBF file (0.6)";
 
 
     @Override
@@ -57,6 +58,8 @@ public class OSMDriverFunction implements DriverFunction {
             return DESCRIPTION_GZ;
         } else  if (format.equalsIgnoreCase("bz2")) {
             return DESCRIPTION_BZ2;
+        } else if (format.equalsIgnoreCase("pbf")) {
+            return DESCRIPTION_PBF;
         } else {
             return "";
         }
@@ -66,7 +69,8 @@ public class OSMDriverFunction implements DriverFunction {
     public boolean isSpatialFormat(String extension) {
         return extension.equalsIgnoreCase("osm") ||
                 extension.equalsIgnoreCase("gz") ||
-                extension.equalsIgnoreCase("bz2");
+                extension.equalsIgnoreCase("bz2") ||
+                extension.equalsIgnoreCase("pbf");
     }
 
     @Override
@@ -91,19 +95,25 @@ public class OSMDriverFunction implements DriverFunction {
      * @throws IOException File read error
      */
     public void importFile(Connection connection, String tableReference, File fileName, ProgressVisitor progress, boolean deleteTables) throws SQLException, IOException {
-        if(fileName == null || !(fileName.getName().endsWith(".osm") || fileName.getName().endsWith("osm.gz") || fileName.getName().endsWith("osm.bz2"))) {
-            throw new IOException(new IllegalArgumentException("This driver handle only .osm, .osm.gz and .osm.bz2 files"));
+        if(fileName == null || !(fileName.getName().endsWith(".osm") || fileName.getName().endsWith("osm.gz") || fileName.getName().endsWith("osm.bz2")
+                || fileName.getName().endsWith(".pbf"))) {
+            throw new IOException(new IllegalArgumentException("This driver handle only .osm, .osm.gz, .osm.bz2 and .osm.pbf files"));
         }
         if(deleteTables){
             OSMTablesFactory.dropOSMTables(connection, JDBCUtilities.isH2DataBase(connection.getMetaData()), tableReference);
         }
-        OSMParser osmp = new OSMParser();
-        osmp.read(connection, tableReference, fileName, progress);
+        if (fileName.getName().endsWith(".pbf")) {
+            OSMPBFParser osmp = new OSMPBFParser();
+            osmp.read(connection, tableReference, fileName, progress);
+        } else {
+            OSMParser osmp = new OSMParser();
+            osmp.read(connection, tableReference, fileName, progress);
+        }
     }
 
     @Override
     public String[] getImportFormats() {
-        return new String[]{"osm","gz","bz2"};
+        return new String[]{"osm","gz","bz2","pbf"};
     }
 
 }
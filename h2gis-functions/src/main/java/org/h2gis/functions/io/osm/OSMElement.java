@@ -33,8 +33,6 @@ import org.xml.sax.SAXException;
  */
 public class OSMElement {
 
-    private final SimpleDateFormat dataFormat1 = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss'Z'");
-    private final SimpleDateFormat dataFormat2 = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss");
     private final HashMap<String, String> tags;
     private long id, uid;
     private String user;
@@ -65,6 +63,15 @@ public class OSMElement {
         this.id = Long.valueOf(id);
     }
 
+    /**
+     * Set an id to the element
+     *
+     * @param id
+     */
+    public void setId(long id) {
+        this.id = id;
+    }
+
     /**
      * The user
      *
@@ -88,6 +95,10 @@ public class OSMElement {
         }
     }
 
+    public void setUid(long uid) {
+        this.uid = uid;
+    }
+
     /**
      * @return The way name (extracted from tag)
      */
@@ -116,6 +127,10 @@ public class OSMElement {
         }
     }
 
+    public void setVisible(boolean visible) {
+        this.visible = visible;
+    }
+
     /**
      *
      * @return
@@ -128,6 +143,10 @@ public class OSMElement {
         this.version = version != null ? Integer.valueOf(version) : 0;
     }
 
+    public void setVersion(int version) {
+        this.version = version;
+    }
+
     /**
      *
      * @return
@@ -142,6 +161,10 @@ public class OSMElement {
         }
     }
 
+    public void setChangeset(int changeset) {
+        this.changeset = changeset;
+    }
+
     /**
      *
      * @return
@@ -154,16 +177,23 @@ public class OSMElement {
     public void setTimestamp(String OSMtime) throws SAXException {
         if(OSMtime!=null){
         try {
-            timestamp = new Timestamp(dataFormat1.parse(OSMtime).getTime());
+            timestamp = new Timestamp(new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss'Z'").parse(OSMtime).getTime());
         } catch (ParseException ex) {
             try {
-                timestamp = new Timestamp(dataFormat2.parse(OSMtime).getTime());
+                timestamp = new Timestamp(new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss").parse(OSMtime).getTime());
             } catch (ParseException ex1) {
                 throw new SAXException("Cannot parse the timestamp for the node  :  " + getID(), ex);
             }
         }}
     }
 
+    /**
+     * @param time Milliseconds since the epoch
+     */
+    public void setTimestamp(long time) {
+        timestamp = new Timestamp(time);
+    }
+
     /**
      *
      * @param key
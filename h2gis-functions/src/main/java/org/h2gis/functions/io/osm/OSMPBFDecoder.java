@@ -0,0 +1,653 @@
+/**
+ * H2GIS is a library that brings spatial support to the H2 Database Engine
+ * <http://www.h2database.com>. H2GIS is developed by CNRS
+ * <http://www.cnrs.fr/>.
+ *
+ * This code is part of the H2GIS project. H2GIS is free software; 
+ * you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation;
+ * version 3.0 of the License.
+ *
+ * H2GIS is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details <http://www.gnu.org/licenses/>.
+ *
+ *
+ * For more information, please consult: <http://www.h2gis.org/>
+ * or contact directly: info_at_h2gis.org
+ */
+
+package org.h2gis.functions.io.osm;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Decodes the blocks of an OSM PBF file into OSM elements.
+ *
+ * A PBF file is a sequence of blobs, each one preceded by a blob header. The
+ * first blob is a header block, the following ones are primitive blocks
+ * holding up to 8000 nodes, ways or relations. The decoding of a primitive
+ * block does not depend on the other blocks, so that the blocks may be
+ * decoded in parallel.
+ *
+ * See http://wiki.openstreetmap.org/wiki/PBF_Format
+ */
+final class OSMPBFDecoder {
+
+    public static final String HEADER_BLOCK = "OSMHeader";
+    public static final String DATA_BLOCK = "OSMData";
+    /** Largest blob header allowed by the format */
+    public static final int MAX_HEADER_SIZE = 64 * 1024;
+    /** Largest blob allowed by the format */
+    public static final int MAX_BLOB_SIZE = 32 * 1024 * 1024;
+    /** Relation member types */
+    public static final int MEMBER_NODE = 0;
+    public static final int MEMBER_WAY = 1;
+    public static final int MEMBER_RELATION = 2;
+    private static final Set<String> SUPPORTED_FEATURES = new HashSet<String>(Arrays.asList(
+            "OsmSchema-V0.6", "DenseNodes", "HistoricalInformation"));
+    private static final double COORDINATE_UNIT = 1e9;
+
+    private OSMPBFDecoder() {
+    }
+
+    /**
+     * Read a blob header.
+     *
+     * @param buffer Blob header bytes
+     * @param length Blob header length
+     * @return The blob header
+     * @throws IOException If the blob header is not valid
+     */
+    public static BlobHeader readBlobHeader(byte[] buffer, int length) throws IOException {
+        ProtobufReader reader = new ProtobufReader(buffer, 0, length);
+        String type = null;
+        int dataSize = -1;
+        while (reader.next()) {
+            switch (reader.getField()) {
+                case 1:
+                    type = reader.readString();
+                    break;
+                case 3:
+                    dataSize = reader.readInt32();
+                    break;
+                default:
+                    reader.skip();
+            }
+        }
+        if (type == null || dataSize < 0 || dataSize > MAX_BLOB_SIZE) {
+            throw new IOException("Invalid blob header");
+        }
+        return new BlobHeader(type, dataSize);
+    }
+
+    /**
+     * Read a blob and uncompress its content.
+     *
+     * @param buffer Blob bytes
+     * @param length Blob length
+     * @return Uncompressed block
+     * @throws IOException If the blob is not valid or uses an unsupported
+     * compression
+     */
+    public static byte[] readBlob(byte[] buffer, int length) throws IOException {
+        ProtobufReader reader = new ProtobufReader(buffer, 0, length);
+        int rawSize = -1;
+        ProtobufReader raw = null;
+        ProtobufReader zlibData = null;
+        while (reader.next()) {
+            switch (reader.getField()) {
+                case 1:
+                    raw = reader.readMessage();
+                    break;
+                case 2:
+                    rawSize = reader.readInt32();
+                    break;
+                case 3:
+                    zlibData = reader.readMessage();
+                    break;
+                case 4:
+                case 5:
+                case 6:
+                case 7:
+                    throw new IOException("Unsupported blob compression, only zlib is supported");
+                default:
+                    reader.skip();
+            }
+        }
+        if (raw != null) {
+            return Arrays.copyOfRange(buffer, raw.getPosition(), raw.getPosition() + raw.getRemaining());
+        }
+        if (zlibData == null || rawSize < 0 || rawSize > MAX_BLOB_SIZE) {
+            throw new IOException("Invalid blob");
+        }
+        byte[] data = new byte[rawSize];
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(buffer, zlibData.getPosition(), zlibData.getRemaining());
+            int inflated = 0;
+            while (inflated < rawSize && !inflater.finished()) {
+                int count = inflater.inflate(data, inflated, rawSize - inflated);
+                if (count == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                inflated += count;
+            }
+            if (inflated != rawSize) {
+                throw new IOException("Invalid blob, the uncompressed size does not match");
+            }
+        } catch (DataFormatException ex) {
+            throw new IOException("Invalid blob compressed data", ex);
+        } finally {
+            inflater.end();
+        }
+        return data;
+    }
+
+    /**
+     * Check that the file does not require features that are not supported.
+     *
+     * @param data Uncompressed header block
+     * @throws IOException If a required feature is not supported
+     */
+    public static void checkHeaderBlock(byte[] data) throws IOException {
+        ProtobufReader reader = new ProtobufReader(data, 0, data.length);
+        while (reader.next()) {
+            if (reader.getField() == 4) {
+                String feature = reader.readString();
+                if (!SUPPORTED_FEATURES.contains(feature)) {
+                    throw new IOException("The file requires an unsupported feature : " + feature);
+                }
+            } else {
+                reader.skip();
+            }
+        }
+    }
+
+    /**
+     * Decode the elements of a primitive block.
+     *
+     * @param data Uncompressed primitive block
+     * @return The elements of the block, in the order of the file
+     * @throws IOException If the block is not valid
+     */
+    public static Block readPrimitiveBlock(byte[] data) throws IOException {
+        ProtobufReader reader = new ProtobufReader(data, 0, data.length);
+        List<ProtobufReader> groups = new ArrayList<ProtobufReader>();
+        String[] strings = new String[0];
+        BlockContext context = new BlockContext();
+        // The groups come before the granularity and offsets, that are needed to decode them
+        while (reader.next()) {
+            switch (reader.getField()) {
+                case 1:
+                    strings = readStringTable(reader.readMessage());
+                    break;
+                case 2:
+                    groups.add(reader.readMessage());
+                    break;
+                case 17:
+                    context.granularity = reader.readInt32();
+                    break;
+                case 18:
+                    context.dateGranularity = reader.readInt32();
+                    break;
+                case 19:
+                    context.latOffset = reader.readVarint();
+                    break;
+                case 20:
+                    context.lonOffset = reader.readVarint();
+                    break;
+                default:
+                    reader.skip();
+            }
+        }
+        context.strings = strings;
+        Block block = new Block();
+        for (ProtobufReader group : groups) {
+            while (group.next()) {
+                switch (group.getField()) {
+                    case 1:
+                        block.nodes.add(readNode(group.readMessage(), context));
+                        break;
+                    case 2:
+                        readDenseNodes(group.readMessage(), context, block.nodes);
+                        break;
+                    case 3:
+                        block.ways.add(readWay(group.readMessage(), context));
+                        break;
+                    case 4:
+                        block.relations.add(readRelation(group.readMessage(), context));
+                        break;
+                    default:
+                        // Change sets are not stored
+                        group.skip();
+                }
+            }
+        }
+        return block;
+    }
+
+    private static String[] readStringTable(ProtobufReader reader) throws IOException {
+        List<String> strings = new ArrayList<String>();
+        while (reader.next()) {
+            if (reader.getField() == 1) {
+                strings.add(reader.readString());
+            } else {
+                reader.skip();
+            }
+        }
+        return strings.toArray(new String[strings.size()]);
+    }
+
+    private static NodeOSMElement readNode(ProtobufReader reader, BlockContext context) throws IOException {
+        long id = 0;
+        long lat = 0;
+        long lon = 0;
+        long[] keys = new long[0];
+        long[] values = new long[0];
+        ProtobufReader info = null;
+        while (reader.next()) {
+            switch (reader.getField()) {
+                case 1:
+                    id = reader.readSInt64();
+                    break;
+                case 2:
+                    keys = readPacked(reader, keys, false);
+                    break;
+                case 3:
+                    values = readPacked(reader, values, false);
+                    break;
+                case 4:
+                    info = reader.readMessage();
+                    break;
+                case 8:
+                    lat = reader.readSInt64();
+                    break;
+                case 9:
+                    lon = reader.readSInt64();
+                    break;
+                default:
+                    reader.skip();
+            }
+        }
+        NodeOSMElement node = new NodeOSMElement(context.getLatitude(lat), context.getLongitude(lon));
+        setCommonAttributes(node, id, keys, values, info, context);
+        return node;
+    }
+
+    private static void readDenseNodes(ProtobufReader reader, BlockContext context, List<NodeOSMElement> nodes)
+            throws IOException {
+        long[] ids = new long[0];
+        long[] lats = new long[0];
+        long[] lons = new long[0];
+        long[] keysValues = new long[0];
+        long[] versions = null;
+        long[] timestamps = null;
+        long[] changesets = null;
+        long[] uids = null;
+        long[] userSids = null;
+        long[] visibles = null;
+        while (reader.next()) {
+            switch (reader.getField()) {
+                case 1:
+                    ids = readPacked(reader, ids, true);
+                    break;
+                case 5:
+                    ProtobufReader info = reader.readMessage();
+                    versions = timestamps = changesets = uids = userSids = new long[0];
+                    while (info.next()) {
+                        switch (info.getField()) {
+                            case 1:
+                                versions = readPacked(info, versions, false);
+                                break;
+                            case 2:
+                                timestamps = readPacked(info, timestamps, true);
+                                break;
+                            case 3:
+                                changesets = readPacked(info, changesets, true);
+                                break;
+                            case 4:
+                                uids = readPacked(info, uids, true);
+                                break;
+                            case 5:
+                                userSids = readPacked(info, userSids, true);
+                                break;
+                            case 6:
+                                visibles = readPacked(info, visibles == null ? new long[0] : visibles, false);
+                                break;
+                            default:
+                                info.skip();
+                        }
+                    }
+                    break;
+                case 8:
+                    lats = readPacked(reader, lats, true);
+                    break;
+                case 9:
+                    lons = readPacked(reader, lons, true);
+                    break;
+                case 10:
+                    keysValues = readPacked(reader, keysValues, false);
+                    break;
+                default:
+                    reader.skip();
+            }
+        }
+        if (lats.length != ids.length || lons.length != ids.length) {
+            throw new IOException("Invalid dense nodes, the coordinates do not match the ids");
+        }
+        // Everything but the versions and the visible flags is delta coded
+        long id = 0, lat = 0, lon = 0, timestamp = 0, changeset = 0, uid = 0, userSid = 0;
+        int keyValue = 0;
+        for (int i = 0; i < ids.length; i++) {
+            id += ids[i];
+            lat += lats[i];
+            lon += lons[i];
+            NodeOSMElement node = new NodeOSMElement(context.getLatitude(lat), context.getLongitude(lon));
+            node.setId(id);
+            node.setVisible(true);
+            if (versions != null) {
+                if (i < versions.length) {
+                    node.setVersion((int) versions[i]);
+                }
+                if (i < timestamps.length) {
+                    timestamp += timestamps[i];
+                    node.setTimestamp(timestamp * context.dateGranularity);
+                }
+                if (i < changesets.length) {
+                    changeset += changesets[i];
+                    node.setChangeset((int) changeset);
+                }
+                if (i < uids.length) {
+                    uid += uids[i];
+                    node.setUid(uid);
+                }
+                if (i < userSids.length) {
+                    userSid += userSids[i];
+                    node.setUser(context.getUser(userSid));
+                }
+                if (visibles != null && i < visibles.length) {
+                    node.setVisible(visibles[i] != 0);
+                }
+            }
+            // Keys and values of the nodes, each node ends with a 0
+            while (keyValue < keysValues.length && keysValues[keyValue] != 0) {
+                if (keyValue + 1 >= keysValues.length) {
+                    throw new IOException("Invalid dense nodes, a key has no value");
+                }
+                node.addTag(context.getString(keysValues[keyValue]), context.getString(keysValues[keyValue + 1]));
+                keyValue += 2;
+            }
+            keyValue++;
+            nodes.add(node);
+        }
+    }
+
+    private static WayOSMElement readWay(ProtobufReader reader, BlockContext context) throws IOException {
+        long id = 0;
+        long[] keys = new long[0];
+        long[] values = new long[0];
+        long[] refs = new long[0];
+        ProtobufReader info = null;
+        while (reader.next()) {
+            switch (reader.getField()) {
+                case 1:
+                    id = reader.readVarint();
+                    break;
+                case 2:
+                    keys = readPacked(reader, keys, false);
+                    break;
+                case 3:
+                    values = readPacked(reader, values, false);
+                    break;
+                case 4:
+                    info = reader.readMessage();
+                    break;
+                case 8:
+                    refs = readPacked(reader, refs, true);
+                    break;
+                default:
+                    reader.skip();
+            }
+        }
+        WayOSMElement way = new WayOSMElement();
+        setCommonAttributes(way, id, keys, values, info, context);
+        long ref = 0;
+        for (long delta : refs) {
+            ref += delta;
+            way.addRef(ref);
+        }
+        return way;
+    }
+
+    private static Relation readRelation(ProtobufReader reader, BlockContext context) throws IOException {
+        long id = 0;
+        long[] keys = new long[0];
+        long[] values = new long[0];
+        long[] roles = new long[0];
+        long[] memberIds = new long[0];
+        long[] types = new long[0];
+        ProtobufReader info = null;
+        while (reader.next()) {
+            switch (reader.getField()) {
+                case 1:
+                    id = reader.readVarint();
+                    break;
+                case 2:
+                    keys = readPacked(reader, keys, false);
+                    break;
+                case 3:
+                    values = readPacked(reader, values, false);
+                    break;
+                case 4:
+                    info = reader.readMessage();
+                    break;
+                case 8:
+                    roles = readPacked(reader, roles, false);
+                    break;
+                case 9:
+                    memberIds = readPacked(reader, memberIds, true);
+                    break;
+                case 10:
+                    types = readPacked(reader, types, false);
+                    break;
+                default:
+                    reader.skip();
+            }
+        }
+        if (roles.length != memberIds.length || types.length != memberIds.length) {
+            throw new IOException("Invalid relation " + id + ", the member roles, ids and types do not match");
+        }
+        Relation relation = new Relation(memberIds.length);
+        setCommonAttributes(relation, id, keys, values, info, context);
+        long memberId = 0;
+        for (int i = 0; i < memberIds.length; i++) {
+            memberId += memberIds[i];
+            relation.memberIds[i] = memberId;
+            relation.memberTypes[i] = (int) types[i];
+            relation.memberRoles[i] = context.getString(roles[i]);
+        }
+        return relation;
+    }
+
+    /**
+     * Set the id, the tags and the information shared by all the elements.
+     */
+    private static void setCommonAttributes(OSMElement element, long id, long[] keys, long[] values,
+            ProtobufReader info, BlockContext context) throws IOException {
+        if (keys.length != values.length) {
+            throw new IOException("Invalid element " + id + ", the tag keys and values do not match");
+        }
+        element.setId(id);
+        element.setVisible(true);
+        for (int i = 0; i < keys.length; i++) {
+            element.addTag(context.getString(keys[i]), context.getString(values[i]));
+        }
+        if (info != null) {
+            while (info.next()) {
+                switch (info.getField()) {
+                    case 1:
+                        element.setVersion(info.readInt32());
+                        break;
+                    case 2:
+                        element.setTimestamp(info.readVarint() * context.dateGranularity);
+                        break;
+                    case 3:
+                        element.setChangeset((int) info.readVarint());
+                        break;
+                    case 4:
+                        element.setUid(info.readInt32());
+                        break;
+                    case 5:
+                        element.setUser(context.getUser(info.readVarint()));
+                        break;
+                    case 6:
+                        element.setVisible(info.readBool());
+                        break;
+                    default:
+                        info.skip();
+                }
+            }
+        }
+    }
+
+    /**
+     * Append the values of a repeated field, packed or not.
+     *
+     * @param reader Reader on the field
+     * @param values Values read so far
+     * @param zigZag True for signed values
+     * @return The values read so far and the values of the field
+     */
+    private static long[] readPacked(ProtobufReader reader, long[] values, boolean zigZag) throws IOException {
+        if (reader.getWireType() != ProtobufReader.LENGTH_DELIMITED) {
+            long[] result = Arrays.copyOf(values, values.length + 1);
+            result[values.length] = zigZag ? reader.readSInt64() : reader.readVarint();
+            return result;
+        }
+        ProtobufReader packed = reader.readMessage();
+        long[] result = Arrays.copyOf(values, values.length + packed.countVarints());
+        for (int i = values.length; i < result.length; i++) {
+            result[i] = zigZag ? packed.readSInt64() : packed.readVarint();
+        }
+        return result;
+    }
+
+    /**
+     * Blob header: the type and the size of the following blob.
+     */
+    public static final class BlobHeader {
+        private final String type;
+        private final int dataSize;
+
+        BlobHeader(String type, int dataSize) {
+            this.type = type;
+            this.dataSize = dataSize;
+        }
+
+        public String getType() {
+            return type;
+        }
+
+        public int getDataSize() {
+            return dataSize;
+        }
+    }
+
+    /**
+     * Elements of a primitive block.
+     */
+    public static final class Block {
+        private final List<NodeOSMElement> nodes = new ArrayList<NodeOSMElement>();
+        private final List<WayOSMElement> ways = new ArrayList<WayOSMElement>();
+        private final List<Relation> relations = new ArrayList<Relation>();
+
+        public List<NodeOSMElement> getNodes() {
+            return nodes;
+        }
+
+        public List<WayOSMElement> getWays() {
+            return ways;
+        }
+
+        public List<Relation> getRelations() {
+            return relations;
+        }
+    }
+
+    /**
+     * A relation and its members.
+     */
+    public static final class Relation extends OSMElement {
+        private final long[] memberIds;
+        private final int[] memberTypes;
+        private final String[] memberRoles;
+
+        Relation(int memberCount) {
+            memberIds = new long[memberCount];
+            memberTypes = new int[memberCount];
+            memberRoles = new String[memberCount];
+        }
+
+        public int getMemberCount() {
+            return memberIds.length;
+        }
+
+        public long getMemberId(int member) {
+            return memberIds[member];
+        }
+
+        /**
+         * @return {@link #MEMBER_NODE}, {@link #MEMBER_WAY} or {@link #MEMBER_RELATION}
+         */
+        public int getMemberType(int member) {
+            return memberTypes[member];
+        }
+
+        public String getMemberRole(int member) {
+            return memberRoles[member];
+        }
+    }
+
+    /**
+     * String table and coordinate encoding of a primitive block.
+     */
+    private static final class BlockContext {
+        private String[] strings;
+        private int granularity = 100;
+        private int dateGranularity = 1000;
+        private long latOffset = 0;
+        private long lonOffset = 0;
+
+        String getString(long index) throws IOException {
+            if (index < 0 || index >= strings.length) {
+                throw new IOException("Invalid string table index " + index);
+            }
+            return strings[(int) index];
+        }
+
+        /**
+         * @return The user name, null for the empty string of the index 0
+         */
+        String getUser(long index) throws IOException {
+            return index == 0 ? null : getString(index);
+        }
+
+        // Divide the exact number of nanodegrees, to get the closest double
+        double getLatitude(long lat) {
+            return (latOffset + granularity * lat) / COORDINATE_UNIT;
+        }
+
+        double getLongitude(long lon) {
+            return (lonOffset + granularity * lon) / COORDINATE_UNIT;
+        }
+    }
+}
@@ -0,0 +1,445 @@
+/**
+ * H2GIS is a library that brings spatial support to the H2 Database Engine
+ * <http://www.h2database.com>. H2GIS is developed by CNRS
+ * <http://www.cnrs.fr/>.
+ *
+ * This code is part of the H2GIS project. H2GIS is free software; 
+ * you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation;
+ * version 3.0 of the License.
+ *
+ * H2GIS is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details <http://www.gnu.org/licenses/>.
+ *
+ *
+ * For more information, please consult: <http://www.h2gis.org/>
+ * or contact directly: info_at_h2gis.org
+ */
+
+package org.h2gis.functions.io.osm;
+
+import com.vividsolutions.jts.geom.GeometryFactory;
+import com.vividsolutions.jts.geom.PrecisionModel;
+import org.h2.api.ErrorCode;
+import org.h2gis.api.ProgressVisitor;
+import org.h2gis.utilities.JDBCUtilities;
+import org.h2gis.utilities.TableLocation;
+import org.h2gis.utilities.TableUtilities;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Parse an OSM PBF file and store the elements into a database. The database
+ * model is the same as the one of {@link OSMParser}.
+ *
+ * The blobs of the file are read in sequence and decoded by a pool of
+ * threads, while the decoded blocks are inserted in the file order with
+ * batched statements.
+ */
+public class OSMPBFParser {
+
+    // Same batch size as OSMParser
+    private static final int BATCH_SIZE = 1000;
+    // Decoded blocks waiting for their insertion, for each decoding thread
+    private static final int PENDING_BLOCKS_PER_THREAD = 2;
+    private static final String TAG_DUPLICATE_EXCEPTION = String.valueOf(ErrorCode.DUPLICATE_KEY_1);
+    private final GeometryFactory gf = new GeometryFactory(new PrecisionModel(), 4326);
+    private final Set<String> insertedTagsKeys = new HashSet<String>();
+    private PreparedStatement tagPreparedStmt;
+    private Batch nodeBatch;
+    private Batch nodeTagBatch;
+    private Batch wayBatch;
+    private Batch wayTagBatch;
+    private Batch wayNodeBatch;
+    private Batch relationBatch;
+    private Batch relationTagBatch;
+    private Batch nodeMemberBatch;
+    private Batch wayMemberBatch;
+    private Batch relationMemberBatch;
+
+    public OSMPBFParser() {
+
+    }
+
+    /**
+     * Read the OSM PBF file and create its corresponding tables.
+     *
+     * @param connection
+     * @param tableName
+     * @param inputFile
+     * @param progress
+     * @return
+     * @throws SQLException
+     */
+    public boolean read(Connection connection, String tableName, File inputFile, ProgressVisitor progress) throws SQLException {
+        progress = progress.subProcess(100);
+        final boolean isH2 = JDBCUtilities.isH2DataBase(connection.getMetaData());
+        boolean success = false;
+        TableLocation requestedTable = TableLocation.parse(tableName, isH2);
+        String osmTableName = requestedTable.getTable();
+        checkOSMTables(connection, isH2, requestedTable, osmTableName);
+        final int threadCount = Runtime.getRuntime().availableProcessors();
+        ExecutorService executorService = null;
+        FileInputStream fs = null;
+        try {
+            createOSMDatabaseModel(connection, isH2, requestedTable, osmTableName);
+            fs = new FileInputStream(inputFile);
+            final long fileSize = fs.getChannel().size();
+            DataInputStream in = new DataInputStream(new BufferedInputStream(fs));
+            executorService = Executors.newFixedThreadPool(threadCount);
+            Deque<Future<OSMPBFDecoder.Block>> pendingBlocks = new ArrayDeque<Future<OSMPBFDecoder.Block>>();
+            byte[] headerBuffer = new byte[OSMPBFDecoder.MAX_HEADER_SIZE];
+            long position = 0;
+            int headerSize;
+            while ((headerSize = readHeaderSize(in)) != -1) {
+                if (progress.isCanceled()) {
+                    throw new SQLException("Canceled by user");
+                }
+                if (headerSize < 0 || headerSize > OSMPBFDecoder.MAX_HEADER_SIZE) {
+                    throw new IOException("Invalid blob header size : " + headerSize);
+                }
+                in.readFully(headerBuffer, 0, headerSize);
+                OSMPBFDecoder.BlobHeader header = OSMPBFDecoder.readBlobHeader(headerBuffer, headerSize);
+                final byte[] blob = new byte[header.getDataSize()];
+                in.readFully(blob);
+                position += 4 + headerSize + blob.length;
+                if (OSMPBFDecoder.HEADER_BLOCK.equals(header.getType())) {
+                    OSMPBFDecoder.checkHeaderBlock(OSMPBFDecoder.readBlob(blob, blob.length));
+                } else if (OSMPBFDecoder.DATA_BLOCK.equals(header.getType())) {
+                    pendingBlocks.add(executorService.submit(new BlockDecoder(blob)));
+                    if (pendingBlocks.size() >= threadCount * PENDING_BLOCKS_PER_THREAD) {
+                        insertBlock(pendingBlocks.poll());
+                    }
+                }
+                // Other blob types are skipped, as required by the format
+                progress.setStep((int) (((double) position / fileSize) * 100));
+            }
+            while (!pendingBlocks.isEmpty()) {
+                insertBlock(pendingBlocks.poll());
+            }
+            for (Batch batch : getBatches()) {
+                batch.execute();
+            }
+            success = true;
+        } catch (IOException ex) {
+            throw new SQLException("Cannot parse the file " + inputFile.getAbsolutePath(), ex);
+        } catch (InterruptedException ex) {
+            throw new SQLException(ex);
+        } finally {
+            if (executorService != null) {
+                executorService.shutdownNow();
+            }
+            // Every resource is closed, a close error is only reported if
+            // it does not hide the error that stopped the reading
+            SQLException closeError = null;
+            try {
+                if (fs != null) {
+                    fs.close();
+                }
+            } catch (IOException ex) {
+                closeError = new SQLException("Cannot close the file " + inputFile.getAbsolutePath(), ex);
+            }
+            for (Batch batch : getBatches()) {
+                if (batch != null) {
+                    try {
+                        batch.close();
+                    } catch (SQLException ex) {
+                        closeError = addCloseError(closeError, ex);
+                    }
+                }
+            }
+            if (tagPreparedStmt != null) {
+                try {
+                    tagPreparedStmt.close();
+                } catch (SQLException ex) {
+                    closeError = addCloseError(closeError, ex);
+                }
+            }
+            if (closeError != null && success) {
+                throw closeError;
+            }
+        }
+        return success;
+    }
+
+    /**
+     * @return The first close error, with the next ones as suppressed
+     * exceptions
+     */
+    private static SQLException addCloseError(SQLException closeError, SQLException ex) {
+        if (closeError == null) {
+            return ex;
+        }
+        closeError.addSuppressed(ex);
+        return closeError;
+    }
+
+    /**
+     * @return The size of the next blob header, -1 at the end of the file
+     */
+    private static int readHeaderSize(DataInputStream in) throws IOException {
+        int firstByte = in.read();
+        if (firstByte == -1) {
+            return -1;
+        }
+        return (firstByte << 24) | (in.readUnsignedByte() << 16) | in.readUnsignedShort();
+    }
+
+    /**
+     * Wait for the decoding of a block and insert its elements.
+     */
+    private void insertBlock(Future<OSMPBFDecoder.Block> pendingBlock) throws SQLException, IOException,
+            InterruptedException {
+        final OSMPBFDecoder.Block block;
+        try {
+            block = pendingBlock.get();
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof IOException) {
+                throw (IOException) ex.getCause();
+            }
+            if (ex.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) ex.getCause();
+            }
+            throw new SQLException(ex.getCause());
+        }
+        for (NodeOSMElement node : block.getNodes()) {
+            insertNode(node);
+        }
+        for (WayOSMElement way : block.getWays()) {
+            insertWay(way);
+        }
+        for (OSMPBFDecoder.Relation relation : block.getRelations()) {
+            insertRelation(relation);
+        }
+    }
+
+    private void insertNode(NodeOSMElement node) throws SQLException {
+        PreparedStatement st = nodeBatch.getStatement();
+        st.setObject(1, node.getID());
+        st.setObject(2, node.getPoint(gf));
+        st.setObject(3, node.getElevation());
+        st.setObject(4, node.getUser());
+        st.setObject(5, node.getUID());
+        st.setObject(6, node.getVisible());
+        st.setObject(7, node.getVersion());
+        st.setObject(8, node.getChangeSet());
+        st.setTimestamp(9, node.getTimeStamp());
+        st.setString(10, node.getName());
+        nodeBatch.add();
+        insertTags(nodeTagBatch, node);
+    }
+
+    private void insertWay(WayOSMElement way) throws SQLException {
+        PreparedStatement st = wayBatch.getStatement();
+        st.setObject(1, way.getID());
+        st.setObject(2, way.getUser());
+        st.setObject(3, way.getUID());
+        st.setObject(4, way.getVisible());
+        st.setObject(5, way.getVersion());
+        st.setObject(6, way.getChangeSet());
+        st.setTimestamp(7, way.getTimeStamp());
+        st.setString(8, way.getName());
+        wayBatch.add();
+        insertTags(wayTagBatch, way);
+        PreparedStatement wayNodeSt = wayNodeBatch.getStatement();
+        List<Long> refs = way.getNodesRef();
+        for (int i = 0; i < refs.size(); i++) {
+            wayNodeSt.setObject(1, way.getID());
+            wayNodeSt.setObject(2, refs.get(i));
+            wayNodeSt.setObject(3, i + 1);
+            wayNodeBatch.add();
+        }
+    }
+
+    private void insertRelation(OSMPBFDecoder.Relation relation) throws SQLException {
+        PreparedStatement st = relationBatch.getStatement();
+        st.setObject(1, relation.getID());
+        st.setObject(2, relation.getUser());
+        st.setObject(3, relation.getUID());
+        st.setObject(4, relation.getVisible());
+        st.setObject(5, relation.getVersion());
+        st.setObject(6, relation.getChangeSet());
+        st.setTimestamp(7, relation.getTimeStamp());
+        relationBatch.add();
+        insertTags(relationTagBatch, relation);
+        for (int i = 0; i < relation.getMemberCount(); i++) {
+            final Batch memberBatch;
+            switch (relation.getMemberType(i)) {
+                case OSMPBFDecoder.MEMBER_NODE:
+                    memberBatch = nodeMemberBatch;
+                    break;
+                case OSMPBFDecoder.MEMBER_WAY:
+                    memberBatch = wayMemberBatch;
+                    break;
+                case OSMPBFDecoder.MEMBER_RELATION:
+                    memberBatch = relationMemberBatch;
+                    break;
+                default:
+                    throw new SQLException("Unknown member type for the relation :  " + relation.getID());
+            }
+            PreparedStatement memberSt = memberBatch.getStatement();
+            memberSt.setObject(1, relation.getID());
+            memberSt.setObject(2, relation.getMemberId(i));
+            memberSt.setObject(3, relation.getMemberRole(i));
+            memberSt.setObject(4, i + 1);
+            memberBatch.add();
+        }
+    }
+
+    /**
+     * Insert the tags of an element, and their keys in the tag table.
+     */
+    private void insertTags(Batch tagBatch, OSMElement element) throws SQLException {
+        PreparedStatement st = tagBatch.getStatement();
+        for (Map.Entry<String, String> entry : element.getTags().entrySet()) {
+            String key = entry.getKey();
+            if (!insertedTagsKeys.contains(key)) {
+                try {
+                    tagPreparedStmt.setObject(1, key);
+                    tagPreparedStmt.execute();
+                } catch (SQLException ex) {
+                    if (ex.getErrorCode() != ErrorCode.DUPLICATE_KEY_1 && !TAG_DUPLICATE_EXCEPTION.equals(ex.getSQLState())) {
+                        throw new SQLException("Cannot insert the tag :  {" + key + " , " + entry.getValue() + "}", ex);
+                    }
+                }
+                insertedTagsKeys.add(key);
+            }
+            st.setObject(1, element.getID());
+            st.setObject(2, key);
+            st.setObject(3, entry.getValue());
+            tagBatch.add();
+        }
+    }
+
+    private Batch[] getBatches() {
+        return new Batch[]{nodeBatch, nodeTagBatch, wayBatch, wayTagBatch, wayNodeBatch, relationBatch,
+                relationTagBatch, nodeMemberBatch, wayMemberBatch, relationMemberBatch};
+    }
+
+    /**
+     * Check if one table already exists
+     *
+     * @param connection
+     * @param isH2
+     * @param requestedTable
+     * @param osmTableName
+     * @throws SQLException
+     */
+    private void checkOSMTables(Connection connection, boolean isH2, TableLocation requestedTable, String osmTableName) throws SQLException {
+        String[] omsTables = new String[]{OSMTablesFactory.TAG, OSMTablesFactory.NODE, OSMTablesFactory.NODE_TAG, OSMTablesFactory.WAY, OSMTablesFactory.WAY_NODE,
+            OSMTablesFactory.WAY_TAG, OSMTablesFactory.RELATION, OSMTablesFactory.RELATION_TAG, OSMTablesFactory.NODE_MEMBER, OSMTablesFactory.WAY_MEMBER, OSMTablesFactory.RELATION_MEMBER};
+        for (String omsTableSuffix : omsTables) {
+            String osmTable = TableUtilities.caseIdentifier(requestedTable, osmTableName + omsTableSuffix, isH2);
+            if (JDBCUtilities.tableExists(connection, osmTable)) {
+                throw new SQLException("The table " + osmTable + " already exists.");
+            }
+        }
+    }
+
+    /**
+     * Create the OMS data model to store the content of the file
+     *
+     * @param connection
+     * @param isH2
+     * @param requestedTable
+     * @param osmTableName
+     * @throws SQLException
+     */
+    private void createOSMDatabaseModel(Connection connection, boolean isH2, TableLocation requestedTable, String osmTableName) throws SQLException {
+        String tagTableName = TableUtilities.caseIdentifier(requestedTable, osmTableName + OSMTablesFactory.TAG, isH2);
+        tagPreparedStmt = OSMTablesFactory.createTagTable(connection, tagTableName);
+        String nodeTableName = TableUtilities.caseIdentifier(requestedTable, osmTableName + OSMTablesFactory.NODE, isH2);
+        nodeBatch = new Batch(OSMTablesFactory.createNodeTable(connection, nodeTableName, isH2));
+        String nodeTagTableName = TableUtilities.caseIdentifier(requestedTable, osmTableName + OSMTablesFactory.NODE_TAG, isH2);
+        nodeTagBatch = new Batch(OSMTablesFactory.createNodeTagTable(connection, nodeTagTableName, tagTableName));
+        String wayTableName = TableUtilities.caseIdentifier(requestedTable, osmTableName + OSMTablesFactory.WAY, isH2);
+        wayBatch = new Batch(OSMTablesFactory.createWayTable(connection, wayTableName, isH2));
+        String wayTagTableName = TableUtilities.caseIdentifier(requestedTable, osmTableName + OSMTablesFactory.WAY_TAG, isH2);
+        wayTagBatch = new Batch(OSMTablesFactory.createWayTagTable(connection, wayTagTableName, tagTableName));
+        String wayNodeTableName = TableUtilities.caseIdentifier(requestedTable, osmTableName + OSMTablesFactory.WAY_NODE, isH2);
+        wayNodeBatch = new Batch(OSMTablesFactory.createWayNodeTable(connection, wayNodeTableName));
+        String relationTableName = TableUtilities.caseIdentifier(requestedTable, osmTableName + OSMTablesFactory.RELATION, isH2);
+        relationBatch = new Batch(OSMTablesFactory.createRelationTable(connection, relationTableName));
+        String relationTagTableName = TableUtilities.caseIdentifier(requestedTable, osmTableName + OSMTablesFactory.RELATION_TAG, isH2);
+        relationTagBatch = new Batch(OSMTablesFactory.createRelationTagTable(connection, relationTagTableName, tagTableName));
+        String nodeMemberTableName = TableUtilities.caseIdentifier(requestedTable, osmTableName + OSMTablesFactory.NODE_MEMBER, isH2);
+        nodeMemberBatch = new Batch(OSMTablesFactory.createNodeMemberTable(connection, nodeMemberTableName));
+        String wayMemberTableName = TableUtilities.caseIdentifier(requestedTable, osmTableName + OSMTablesFactory.WAY_MEMBER, isH2);
+        wayMemberBatch = new Batch(OSMTablesFactory.createWayMemberTable(connection, wayMemberTableName));
+        String relationMemberTableName = TableUtilities.caseIdentifier(requestedTable, osmTableName + OSMTablesFactory.RELATION_MEMBER, isH2);
+        relationMemberBatch = new Batch(OSMTablesFactory.createRelationMemberTable(connection, relationMemberTableName));
+    }
+
+    /**
+     * Decode a data blob in a worker thread.
+     */
+    private static final class BlockDecoder implements Callable<OSMPBFDecoder.Block> {
+        private final byte[] blob;
+
+        BlockDecoder(byte[] blob) {
+            this.blob = blob;
+        }
+
+        @Override
+        public OSMPBFDecoder.Block call() throws IOException {
+            return OSMPBFDecoder.readPrimitiveBlock(OSMPBFDecoder.readBlob(blob, blob.length));
+        }
+    }
+
+    /**
+     * Prepared statement executed every {@link #BATCH_SIZE} rows.
+     */
+    private static final class Batch {
+        private final PreparedStatement statement;
+        private int size = 0;
+
+        Batch(PreparedStatement statement) {
+            this.statement = statement;
+        }
+
+        PreparedStatement getStatement() {
+            return statement;
+        }
+
+        /**
+         * Add the current parameters to the batch, and execute it when full.
+         */
+        void add() throws SQLException {
+            statement.addBatch();
+            if (++size >= BATCH_SIZE) {
+                execute();
+            }
+        }
+
+        void execute() throws SQLException {
+            if (size > 0) {
+                statement.executeBatch();
+                size = 0;
+            }
+        }
+
+        void close() throws SQLException {
+            statement.close();
+        }
+    }
+}
@@ -439,7 +439,7 @@ public class OSMParser extends DefaultHandler {
                     relationTagPreparedStmt.addBatch();
                     relationTagPreparedStmtBatchSize++;
                 }
-                idMemberOrder = 0;
+                idMemberOrder = 1;
             } catch (SQLException ex) {
                 throw new SAXException("Cannot insert the relation  :  " + relationOSMElement.getID(), ex);
             }
@@ -0,0 +1,195 @@
+/**
+ * H2GIS is a library that brings spatial support to the H2 Database Engine
+ * <http://www.h2database.com>. H2GIS is developed by CNRS
+ * <http://www.cnrs.fr/>.
+ *
+ * This code is part of the H2GIS project. H2GIS is free software; 
+ * you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation;
+ * version 3.0 of the License.
+ *
+ * H2GIS is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details <http://www.gnu.org/licenses/>.
+ *
+ *
+ * For more information, please consult: <http://www.h2gis.org/>
+ * or contact directly: info_at_h2gis.org
+ */
+
+package org.h2gis.functions.io.osm;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+
+/**
+ * Reads the fields of a protocol buffers message, as used in the OSM PBF
+ * format. Only the wire types of the OSM PBF messages are supported.
+ */
+final class ProtobufReader {
+
+    public static final int VARINT = 0;
+    public static final int FIXED64 = 1;
+    public static final int LENGTH_DELIMITED = 2;
+    public static final int FIXED32 = 5;
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final byte[] buffer;
+    private final int limit;
+    private int position;
+    private int tag;
+
+    /**
+     * @param buffer Message bytes
+     * @param offset Start of the message in the buffer
+     * @param length Length of the message
+     */
+    ProtobufReader(byte[] buffer, int offset, int length) {
+        this.buffer = buffer;
+        this.position = offset;
+        this.limit = offset + length;
+    }
+
+    /**
+     * Read the key of the next field.
+     *
+     * @return False at the end of the message
+     * @throws IOException If the key is not valid
+     */
+    boolean next() throws IOException {
+        if (position >= limit) {
+            return false;
+        }
+        tag = readInt32();
+        if ((tag >>> 3) == 0) {
+            throw new IOException("Invalid protocol buffers field number");
+        }
+        return true;
+    }
+
+    /**
+     * @return Field number of the current field
+     */
+    int getField() {
+        return tag >>> 3;
+    }
+
+    /**
+     * @return Wire type of the current field
+     */
+    int getWireType() {
+        return tag & 7;
+    }
+
+    long readVarint() throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            if (position >= limit) {
+                throw new IOException("Truncated protocol buffers message");
+            }
+            final byte b = buffer[position++];
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed protocol buffers varint");
+    }
+
+    int readInt32() throws IOException {
+        return (int) readVarint();
+    }
+
+    long readSInt64() throws IOException {
+        final long value = readVarint();
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    boolean readBool() throws IOException {
+        return readVarint() != 0;
+    }
+
+    /**
+     * Read a length delimited field as a message, or as packed values.
+     *
+     * @return Reader of the field content
+     */
+    ProtobufReader readMessage() throws IOException {
+        final int length = readLength();
+        final ProtobufReader message = new ProtobufReader(buffer, position, length);
+        position += length;
+        return message;
+    }
+
+    String readString() throws IOException {
+        final int length = readLength();
+        final String value = new String(buffer, position, length, UTF_8);
+        position += length;
+        return value;
+    }
+
+    /**
+     * @return Number of varints left, the values of a packed field
+     */
+    int countVarints() {
+        int count = 0;
+        for (int i = position; i < limit; i++) {
+            if (buffer[i] >= 0) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Skip the value of the current field.
+     */
+    void skip() throws IOException {
+        switch (getWireType()) {
+            case VARINT:
+                readVarint();
+                break;
+            case FIXED64:
+                skipBytes(8);
+                break;
+            case LENGTH_DELIMITED:
+                skipBytes(readLength());
+                break;
+            case FIXED32:
+                skipBytes(4);
+                break;
+            default:
+                throw new IOException("Unsupported protocol buffers wire type " + getWireType());
+        }
+    }
+
+    /**
+     * @return Position of the next byte in the buffer
+     */
+    int getPosition() {
+        return position;
+    }
+
+    /**
+     * @return Number of bytes left in the message
+     */
+    int getRemaining() {
+        return limit - position;
+    }
+
+    private int readLength() throws IOException {
+        final int length = readInt32();
+        if (length < 0 || length > limit - position) {
+            throw new IOException("Truncated protocol buffers message");
+        }
+        return length;
+    }
+
+    private void skipBytes(int length) throws IOException {
+        if (length > limit - position) {
+            throw new IOException("Truncated protocol buffers message");
+        }
+        position += length;
+    }
+}
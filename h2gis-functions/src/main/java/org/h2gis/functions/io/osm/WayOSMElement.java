@@ -45,6 +45,15 @@ public class WayOSMElement extends OSMElement {
         nodesRef.add(Long.valueOf(ref));
     }
 
+    /**
+     * Add in a list the ref of the node used to describe the way.
+     *
+     * @param ref
+     */
+    public void addRef(long ref) {
+        nodesRef.add(ref);
+    }
+
     /**
      * Return the list of nodes
      *
@@ -23,8 +23,17 @@ package org.h2gis.functions.io.shp;
 import java.io.File;
 import java.io.IOException;
 import java.sql.*;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import org.h2.table.Column;
 import org.h2gis.functions.io.dbf.DBFDriverFunction;
 import org.h2gis.functions.io.dbf.internal.DbaseFileHeader;
@@ -50,7 +59,27 @@ import org.h2gis.utilities.jts_utils.GeometryMetaData;
 public class SHPDriverFunction implements DriverFunction {
     public static String DESCRIPTION = "ESRI shapefile";
     private static final int BATCH_MAX_SIZE = 100;
-    
+    /** Number of rows decoded by a worker thread in a single task */
+    private static final int IMPORT_CHUNK_SIZE = 100;
+    private int importThreadCount = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * @param importThreadCount Number of threads that decode the shapefile rows on import. 1 to decode and insert the
+     *                          rows in the calling thread.
+     */
+    public void setImportThreadCount(int importThreadCount) {
+        if (importThreadCount < 1) {
+            throw new IllegalArgumentException("The thread count must be greater than 0");
+        }
+        this.importThreadCount = importThreadCount;
+    }
+
+    /**
+     * @return Number of threads that decode the shapefile rows on import
+     */
+    public int getImportThreadCount() {
+        return importThreadCount;
+    }
 
     @Override
     public void exportTable(Connection connection, String tableReference, File fileName, ProgressVisitor progress) throws SQLException, IOException {
@@ -225,24 +254,29 @@ public class SHPDriverFunction implements DriverFunction {
                                 DBFDriverFunction.getQuestionMark(dbfHeader.getNumFields() + 1));
                         PreparedStatement preparedStatement = connection.prepareStatement(lastSql);
                 try {
-                    long batchSize = 0;
-                    for (int rowId = 0; rowId < shpDriver.getRowCount(); rowId++) {
-                        Object[] values = shpDriver.getRow(rowId);
-                        for (int columnId = 0; columnId < values.length; columnId++) {
-                            preparedStatement.setObject(columnId + 1, values[columnId]);
+                    if (importThreadCount > 1 && shpDriver.getRowCount() > IMPORT_CHUNK_SIZE) {
+                        parallelCopy(fileName, forceEncoding, srid, shpDriver.getRowCount(), preparedStatement,
+                                copyProgress);
+                    } else {
+                        long batchSize = 0;
+                        for (int rowId = 0; rowId < shpDriver.getRowCount(); rowId++) {
+                            Object[] values = shpDriver.getRow(rowId);
+                            for (int columnId = 0; columnId < values.length; columnId++) {
+                                preparedStatement.setObject(columnId + 1, values[columnId]);
+                            }
+                            preparedStatement.addBatch();
+                            batchSize++;
+                            if (batchSize >= BATCH_MAX_SIZE) {
+                                preparedStatement.executeBatch();
+                                preparedStatement.clearBatch();
+                                batchSize = 0;
+                                copyProgress.endStep();
+                            }
                         }
-                        preparedStatement.addBatch();
-                        batchSize++;
-                        if (batchSize >= BATCH_MAX_SIZE) {
+                        if(batchSize > 0) {
                             preparedStatement.executeBatch();
-                            preparedStatement.clearBatch();
-                            batchSize = 0;
-                            copyProgress.endStep();
                         }
                     }
-                    if(batchSize > 0) {
-                        preparedStatement.executeBatch();
-                    }
                 } finally {
                     preparedStatement.close();
                 }
@@ -263,6 +297,121 @@ public class SHPDriverFunction implements DriverFunction {
         }
     }
 
+    /**
+     * Decode the rows with several threads and insert them in the file order. Each worker thread decodes a range of
+     * rows with its own driver, the calling thread inserts the decoded ranges.
+     * @param fileName Shape file
+     * @param forceEncoding If defined use this encoding instead of the one defined in dbf header.
+     * @param srid Geometry SRID
+     * @param rowCount Number of rows to copy
+     * @param preparedStatement Insert statement
+     * @param copyProgress Progress, one step per batch
+     * @throws SQLException Table write error
+     * @throws IOException File read error
+     */
+    private void parallelCopy(File fileName, String forceEncoding, int srid, long rowCount,
+                              PreparedStatement preparedStatement, ProgressVisitor copyProgress) throws SQLException, IOException {
+        List<SHPDriver> drivers = new ArrayList<SHPDriver>(importThreadCount);
+        BlockingQueue<SHPDriver> availableDrivers = new ArrayBlockingQueue<SHPDriver>(importThreadCount);
+        ExecutorService executor = Executors.newFixedThreadPool(importThreadCount);
+        try {
+            for (int i = 0; i < importThreadCount; i++) {
+                SHPDriver driver = new SHPDriver();
+                drivers.add(driver);
+                driver.setMemoryMapped(true);
+                driver.initDriverFromFile(fileName, forceEncoding);
+                driver.setSRID(srid);
+                availableDrivers.add(driver);
+            }
+            // Decoded ranges in the file order, the queue length limits the number of rows kept in memory
+            ArrayDeque<Future<Object[][]>> pendingRows = new ArrayDeque<Future<Object[][]>>();
+            final int maxPending = importThreadCount * 4;
+            long nextRowId = 0;
+            long batchSize = 0;
+            while (nextRowId < rowCount || !pendingRows.isEmpty()) {
+                while (nextRowId < rowCount && pendingRows.size() < maxPending) {
+                    long endRowId = Math.min(rowCount, nextRowId + IMPORT_CHUNK_SIZE);
+                    pendingRows.add(executor.submit(new RowRangeReader(availableDrivers, nextRowId, endRowId)));
+                    nextRowId = endRowId;
+                }
+                for (Object[] values : getRows(pendingRows.poll())) {
+                    for (int columnId = 0; columnId < values.length; columnId++) {
+                        preparedStatement.setObject(columnId + 1, values[columnId]);
+                    }
+                    preparedStatement.addBatch();
+                    batchSize++;
+                    if (batchSize >= BATCH_MAX_SIZE) {
+                        preparedStatement.executeBatch();
+                        preparedStatement.clearBatch();
+                        batchSize = 0;
+                        copyProgress.endStep();
+                    }
+                }
+            }
+            if (batchSize > 0) {
+                preparedStatement.executeBatch();
+            }
+        } finally {
+            executor.shutdownNow();
+            try {
+                executor.awaitTermination(1, TimeUnit.MINUTES);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+            for (SHPDriver driver : drivers) {
+                driver.close();
+            }
+        }
+    }
+
+    private static Object[][] getRows(Future<Object[][]> rows) throws IOException {
+        try {
+            return rows.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Shape file import has been interrupted", ex);
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof IOException) {
+                throw (IOException) ex.getCause();
+            }
+            throw new IOException(ex.getCause().getLocalizedMessage(), ex.getCause());
+        }
+    }
+
+    /**
+     * Decode a range of rows using one of the available drivers.
+     */
+    private static class RowRangeReader implements Callable<Object[][]> {
+        private final BlockingQueue<SHPDriver> availableDrivers;
+        private final long beginRowId;
+        private final long endRowId;
+
+        /**
+         * @param availableDrivers Drivers not used by other threads
+         * @param beginRowId First row, included
+         * @param endRowId Last row, excluded
+         */
+        private RowRangeReader(BlockingQueue<SHPDriver> availableDrivers, long beginRowId, long endRowId) {
+            this.availableDrivers = availableDrivers;
+            this.beginRowId = beginRowId;
+            this.endRowId = endRowId;
+        }
+
+        @Override
+        public Object[][] call() throws Exception {
+            SHPDriver driver = availableDrivers.take();
+            try {
+                Object[][] rows = new Object[(int) (endRowId - beginRowId)][];
+                for (int i = 0; i < rows.length; i++) {
+                    rows[i] = driver.getRow(beginRowId + i);
+                }
+                return rows;
+            } finally {
+                availableDrivers.put(driver);
+            }
+        }
+    }
+
     /**
      * Return the shape type supported by the shapefile format
      * @param meta
@@ -44,6 +44,8 @@ public class SHPEngine extends FileEngine<SHPDriver> {
     @Override
     protected SHPDriver createDriver(File filePath, List<String> args) throws IOException {
         SHPDriver driver = new SHPDriver();
+        // Linked tables are read randomly for the whole session, map the files instead of copying windows
+        driver.setMemoryMapped(true);
         driver.initDriverFromFile(filePath, args.size() > 1 ? args.get(1) : null);        
         int srid = PRJUtil.getSRID(driver.prjFile);
         driver.setSRID(srid);
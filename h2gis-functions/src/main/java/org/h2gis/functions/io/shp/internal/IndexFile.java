@@ -20,6 +20,7 @@
 
 package org.h2gis.functions.io.shp.internal;
 
+import org.h2gis.functions.io.utility.MappedReadBufferManager;
 import org.h2gis.functions.io.utility.ReadBufferManager;
 
 import java.io.IOException;
@@ -62,9 +63,28 @@ public class IndexFile {
 	 */
 	public IndexFile(FileChannel channel)
 			throws IOException {
+		this(channel, false);
+	}
+
+	/**
+	 * Load the index file from the given channel.
+	 *
+	 * @param channel
+	 *            The channel to read from.
+	 * @param memoryMapped
+	 *            True to read the file through memory mapped buffers
+	 * @throws java.io.IOException
+	 *             If an error occurs.
+	 */
+	public IndexFile(FileChannel channel, boolean memoryMapped)
+			throws IOException {
 		readHeader(channel);
 		this.channel = channel;
-		this.buf = new ReadBufferManager(channel, 8 * 128);
+		if (memoryMapped) {
+			this.buf = new MappedReadBufferManager(channel);
+		} else {
+			this.buf = new ReadBufferManager(channel, 8 * 128);
+		}
 	}
 
 	/**
@@ -87,7 +107,7 @@ public class IndexFile {
 	}
 
 	private void readRecord(int index) throws IOException {
-		int pos = 100 + index * 8;
+		long pos = 100 + index * 8L;
 		this.recOffset = buf.getInt(pos);
 		this.recLen = buf.getInt(pos + 4);
 		this.lastIndex = index;
@@ -114,19 +134,15 @@ public class IndexFile {
 	 *
 	 * @param index
 	 *            The index, from 0 to getRecordCount - 1
-	 * @return The offset in 16-bit words.
+	 * @return The offset in bytes.
 	 * @throws java.io.IOException
 	 */
-	public int getOffset(int index) throws IOException {
-		int ret = -1;
-
+	public long getOffset(int index) throws IOException {
 		if (this.lastIndex != index) {
 			this.readRecord(index);
 		}
-
-		ret = this.recOffset;
-
-		return 2 * ret;
+		// Offsets are stored as 16-bit words, read as unsigned to support files larger than 2 GB
+		return 2L * (this.recOffset & 0xFFFFFFFFL);
 	}
 
 	/**
@@ -137,7 +153,7 @@ public class IndexFile {
 	 * @return The offset in bytes.
 	 * @throws java.io.IOException
 	 */
-	public int getOffsetInBytes(int index) throws IOException {
+	public long getOffsetInBytes(int index) throws IOException {
 		return this.getOffset(index) * 2;
 	}
 
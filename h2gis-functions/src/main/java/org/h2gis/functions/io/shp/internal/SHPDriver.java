@@ -20,8 +20,10 @@
 
 package org.h2gis.functions.io.shp.internal;
 
+import com.vividsolutions.jts.geom.Envelope;
 import com.vividsolutions.jts.geom.Geometry;
-import org.h2gis.functions.io.FileDriver;
+import org.h2gis.functions.io.AbstractFileDriver;
+import org.h2gis.functions.io.SpatialFileDriver;
 import org.h2gis.functions.io.dbf.internal.DBFDriver;
 import org.h2gis.functions.io.dbf.internal.DbaseFileHeader;
 
@@ -47,7 +49,7 @@ import java.nio.file.Path;
  *
  * @author Nicolas Fortin
  */
-public class SHPDriver implements FileDriver {
+public class SHPDriver extends AbstractFileDriver implements SpatialFileDriver {
     private DBFDriver dbfDriver = new DBFDriver();
     private File shpFile;
     private File shxFile;
@@ -59,6 +61,23 @@ public class SHPDriver implements FileDriver {
     private ShapeType shapeType;
     public File prjFile;
     private int srid =0;
+    private boolean memoryMapped = false;
+
+    /**
+     * @param memoryMapped True to read the files through memory mapped buffers, must be set before
+     *                     {@link #initDriverFromFile(java.io.File, String)}
+     */
+    public void setMemoryMapped(boolean memoryMapped) {
+        this.memoryMapped = memoryMapped;
+        dbfDriver.setMemoryMapped(memoryMapped);
+    }
+
+    /**
+     * @return True if the files are read through memory mapped buffers
+     */
+    public boolean isMemoryMapped() {
+        return memoryMapped;
+    }
 
     /**
      * @param geometryFieldIndex The geometry field index in getRow() array.
@@ -99,6 +118,7 @@ public class SHPDriver implements FileDriver {
     /**
      * @return The geometry field index in getRow() array.
      */
+    @Override
     public int getGeometryFieldIndex() {
         return geometryFieldIndex;
     }
@@ -187,9 +207,9 @@ public class SHPDriver implements FileDriver {
             throw new IllegalArgumentException("SHX File not found");
         }
         FileInputStream shpFis = new FileInputStream(shpFile);
-        shapefileReader = new ShapefileReader(shpFis.getChannel());
+        shapefileReader = new ShapefileReader(shpFis.getChannel(), memoryMapped);
         FileInputStream shxFis = new FileInputStream(shxFile);
-        shxFileReader = new IndexFile(shxFis.getChannel());
+        shxFileReader = new IndexFile(shxFis.getChannel(), memoryMapped);
     }
 
     /**
@@ -250,6 +270,30 @@ public class SHPDriver implements FileDriver {
         return values;
     }
 
+    @Override
+    public Object getField(long rowId, int columnId) throws IOException {
+        if (columnId == geometryFieldIndex) {
+            Geometry geom = shapefileReader.geomAt(shxFileReader.getOffset((int) rowId));
+            if (geom != null) {
+                geom.setSRID(getSrid());
+            }
+            return geom;
+        } else {
+            // Dbf fields does not contain the geometry field
+            return dbfDriver.getField(rowId, columnId < geometryFieldIndex ? columnId : columnId - 1);
+        }
+    }
+
+    @Override
+    public Envelope getEnvelope(long rowId) throws IOException {
+        return shapefileReader.envelopeAt(shxFileReader.getOffset((int) rowId));
+    }
+
+    @Override
+    public File getFile() {
+        return shpFile;
+    }
+
     /**
      * Set a SRID code that will be used for geometries.
      * @param srid 
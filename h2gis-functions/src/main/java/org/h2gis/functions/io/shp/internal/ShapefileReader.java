@@ -20,7 +20,9 @@
 
 package org.h2gis.functions.io.shp.internal;
 
+import com.vividsolutions.jts.geom.Envelope;
 import com.vividsolutions.jts.geom.Geometry;
+import org.h2gis.functions.io.utility.MappedReadBufferManager;
 import org.h2gis.functions.io.utility.ReadBufferManager;
 
 import java.io.EOFException;
@@ -55,6 +57,7 @@ public class ShapefileReader {
         private FileChannel channel;
         private ReadBufferManager buffer;
         private ShapeType fileShapeType = ShapeType.UNDEFINED;
+        private final boolean memoryMapped;
 
         /**
          * Creates a new instance of ShapeFile.
@@ -67,8 +70,26 @@ public class ShapefileReader {
          *             If for some reason the file contains invalid records.
          */
         public ShapefileReader(FileChannel channel) throws IOException,
+                ShapefileException {
+                this(channel, false);
+        }
+
+        /**
+         * Creates a new instance of ShapeFile.
+         *
+         * @param channel
+         *            The ReadableByteChannel this reader will use.
+         * @param memoryMapped
+         *            True to read the file through memory mapped buffers
+         * @throws java.io.IOException
+         *             If problems arise.
+         * @throws ShapefileException
+         *             If for some reason the file contains invalid records.
+         */
+        public ShapefileReader(FileChannel channel, boolean memoryMapped) throws IOException,
                 ShapefileException {
                 this.channel = channel;
+                this.memoryMapped = memoryMapped;
                 init();
         }
 
@@ -104,7 +125,11 @@ public class ShapefileReader {
                 if (handler == null) {
                         throw new IOException("Unsuported shape type:" + fileShapeType);
                 }
-                buffer = new ReadBufferManager(channel);
+                if (memoryMapped) {
+                        buffer = new MappedReadBufferManager(channel);
+                } else {
+                        buffer = new ReadBufferManager(channel);
+                }
         }
 
         /**
@@ -130,6 +155,7 @@ public class ShapefileReader {
                 }
                 channel = null;
                 header = null;
+                buffer = null;
         }
 
         /**
@@ -139,7 +165,7 @@ public class ShapefileReader {
          * @throws java.io.IOException
          * @return The record instance associated with this reader.
          */
-        public Geometry geomAt(int offset) throws IOException {
+        public Geometry geomAt(long offset) throws IOException {
 
                 // need to update position
                 buffer.position(offset);
@@ -163,6 +189,36 @@ public class ShapefileReader {
                 return handler.read(buffer, recordType);
         }
 
+        /**
+         * Read the bounding box stored in the record content, without decoding the geometry.
+         *
+         * @param offset Record offset in bytes
+         * @return The envelope of the record or null if the record contains a null shape
+         * @throws java.io.IOException
+         */
+        public Envelope envelopeAt(long offset) throws IOException {
+                buffer.position(offset);
+                // record header
+                buffer.skip(8);
+                // shape record is all little endian
+                buffer.order(ByteOrder.LITTLE_ENDIAN);
+                ShapeType recordType = ShapeType.forID(buffer.getInt());
+                if (recordType == ShapeType.NULL) {
+                        return null;
+                }
+                if (recordType.isPointType()) {
+                        // Point records do not have a bounding box
+                        double x = buffer.getDouble();
+                        double y = buffer.getDouble();
+                        return new Envelope(x, x, y, y);
+                }
+                double minX = buffer.getDouble();
+                double minY = buffer.getDouble();
+                double maxX = buffer.getDouble();
+                double maxY = buffer.getDouble();
+                return new Envelope(minX, maxX, minY, maxY);
+        }
+
         /**
          * @param handler
          *            The handler to set.
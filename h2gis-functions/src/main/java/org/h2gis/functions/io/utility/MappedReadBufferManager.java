@@ -0,0 +1,129 @@
+/**
+ * H2GIS is a library that brings spatial support to the H2 Database Engine
+ * <http://www.h2database.com>. H2GIS is developed by CNRS
+ * <http://www.cnrs.fr/>.
+ *
+ * This code is part of the H2GIS project. H2GIS is free software;
+ * you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation;
+ * version 3.0 of the License.
+ *
+ * H2GIS is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details <http://www.gnu.org/licenses/>.
+ *
+ *
+ * For more information, please consult: <http://www.h2gis.org/>
+ * or contact directly: info_at_h2gis.org
+ */
+
+package org.h2gis.functions.io.utility;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * ReadBufferManager that reads the channel through memory mapped chunks instead of copying a window into the heap.
+ * A single mapping is limited to {@link Integer#MAX_VALUE} bytes, so the file is split into chunks that are mapped on
+ * demand. Consecutive chunks overlap in order to serve reads that cross a chunk boundary without copy. The channel
+ * has to stay read only while this buffer is in use.
+ */
+public class MappedReadBufferManager extends ReadBufferManager {
+        /** Default size of a mapped chunk (128 MB) */
+        public static final int DEFAULT_CHUNK_SIZE = 1 << 27;
+        /** Default overlap between two consecutive chunks (64 KB) */
+        public static final int DEFAULT_CHUNK_OVERLAP = 1 << 16;
+
+        private final long chunkSize;
+        private final int chunkOverlap;
+        private final long fileSize;
+        private final MappedByteBuffer[] chunks;
+
+        /**
+         * Instantiates a MappedReadBufferManager to read the specified channel
+         *
+         * @param channel
+         * @throws java.io.IOException
+         */
+        public MappedReadBufferManager(FileChannel channel) throws IOException {
+                this(channel, DEFAULT_CHUNK_SIZE, DEFAULT_CHUNK_OVERLAP);
+        }
+
+        /**
+         * Instantiates a MappedReadBufferManager to read the specified channel
+         *
+         * @param channel
+         * @param chunkSize Size of a mapped chunk in bytes
+         * @param chunkOverlap Number of bytes shared by two consecutive chunks, reads shorter than this value never
+         *                     require a dedicated mapping
+         * @throws java.io.IOException
+         */
+        public MappedReadBufferManager(FileChannel channel, int chunkSize, int chunkOverlap) throws IOException {
+                super(channel, ByteBuffer.allocate(0));
+                if (chunkSize <= 0 || chunkOverlap < 0 || (long) chunkSize + chunkOverlap > Integer.MAX_VALUE) {
+                        throw new IllegalArgumentException("Invalid chunk size " + chunkSize + " or overlap "
+                                + chunkOverlap);
+                }
+                this.chunkSize = chunkSize;
+                this.chunkOverlap = chunkOverlap;
+                this.fileSize = channel.size();
+                this.chunks = new MappedByteBuffer[(int) ((fileSize + chunkSize - 1) / chunkSize)];
+                if (chunks.length > 0) {
+                        setWindow(getChunk(0), 0);
+                }
+        }
+
+        private MappedByteBuffer getChunk(int chunkId) throws IOException {
+                MappedByteBuffer chunk = chunks[chunkId];
+                if (chunk == null) {
+                        long start = chunkId * chunkSize;
+                        long length = Math.min(fileSize - start, chunkSize + chunkOverlap);
+                        chunk = getChannel().map(FileChannel.MapMode.READ_ONLY, start, length);
+                        chunks[chunkId] = chunk;
+                }
+                return chunk;
+        }
+
+        @Override
+        protected int getWindowOffset(long bytePos, int length) throws IOException {
+                ByteBuffer window = getWindow();
+                long windowStart = getWindowStart();
+                if (bytePos >= windowStart && bytePos + length <= windowStart + window.capacity()) {
+                        return (int) (bytePos - windowStart);
+                }
+                if (bytePos < 0 || bytePos + length > fileSize) {
+                        throw new EOFException("Cannot read " + length + " bytes at position " + bytePos
+                                + ", the file size is " + fileSize);
+                }
+                int chunkId = (int) (bytePos / chunkSize);
+                long chunkStart = chunkId * chunkSize;
+                MappedByteBuffer chunk = getChunk(chunkId);
+                if (bytePos + length <= chunkStart + chunk.capacity()) {
+                        setWindow(chunk, chunkStart);
+                        return (int) (bytePos - chunkStart);
+                } else {
+                        // Read larger than the overlap, map a dedicated region
+                        setWindow(getChannel().map(FileChannel.MapMode.READ_ONLY, bytePos, length), bytePos);
+                        return 0;
+                }
+        }
+
+        @Override
+        public long getLength() throws IOException {
+                return fileSize;
+        }
+
+        @Override
+        public boolean isEOF() throws IOException {
+                return getPosition() >= fileSize;
+        }
+
+        @Override
+        public long remaining() throws IOException {
+                return Math.max(0, fileSize - getPosition());
+        }
+}
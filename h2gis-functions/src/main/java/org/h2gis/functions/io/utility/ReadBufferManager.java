@@ -25,11 +25,16 @@ import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.nio.channels.FileChannel;
 
-public final class ReadBufferManager {
+/**
+ * Random access reader on a file channel. A window of the channel is copied
+ * into a heap buffer and moved each time a read falls outside of it.
+ * @see MappedReadBufferManager
+ */
+public class ReadBufferManager {
 
         private int bufferSize;
         private ByteBuffer buffer;
-        private FileChannel channel;
+        private final FileChannel channel;
         private long windowStart;
         private long positionInFile;
 
@@ -60,14 +65,64 @@ public final class ReadBufferManager {
                 getWindowOffset(0, bufferSize);
         }
 
+        /**
+         * Instantiates a ReadBufferManager without reading the channel. The
+         * window content is provided later by the sub class through
+         * {@link #setWindow(java.nio.ByteBuffer, long)}.
+         *
+         * @param channel
+         * @param window Initial window, starting at the beginning of the channel
+         */
+        protected ReadBufferManager(FileChannel channel, ByteBuffer window) {
+                this.channel = channel;
+                this.buffer = window;
+                this.windowStart = 0;
+                this.bufferSize = window.capacity();
+        }
+
+        /**
+         * @return The channel read by this buffer
+         */
+        protected FileChannel getChannel() {
+                return channel;
+        }
+
+        /**
+         * @return The current window
+         */
+        protected ByteBuffer getWindow() {
+                return buffer;
+        }
+
+        /**
+         * @return The position of the first byte of the window in the channel
+         */
+        protected long getWindowStart() {
+                return windowStart;
+        }
+
+        /**
+         * Replace the current window, the byte order is kept.
+         *
+         * @param window New window content
+         * @param windowStart Position of the first byte of the window in the channel
+         */
+        protected void setWindow(ByteBuffer window, long windowStart) {
+                window.order(buffer.order());
+                this.buffer = window;
+                this.windowStart = windowStart;
+        }
+
         /**
          * Moves the window if necessary to contain the desired byte and returns the
          * position of the byte in the window
          *
          * @param bytePos
+         * @param length Number of bytes that have to be available in the window
+         * @return Offset of bytePos in the window
          * @throws java.io.IOException
          */
-        private int getWindowOffset(long bytePos, int length) throws IOException {
+        protected int getWindowOffset(long bytePos, int length) throws IOException {
                 long desiredMin = bytePos;
                 long desiredMax = desiredMin + length - 1;
                 if ((desiredMin >= windowStart)
@@ -232,6 +287,22 @@ public final class ReadBufferManager {
                 return this.buffer.get(buffer);
         }
 
+        /**
+         * Copy length bytes at the specified position into the provided array
+         *
+         * @param pos Position in the channel
+         * @param buffer Destination array
+         * @param offset Offset in the destination array
+         * @param length Number of bytes to copy
+         * @return
+         * @throws java.io.IOException
+         */
+        public ByteBuffer get(long pos, byte[] buffer, int offset, int length) throws IOException {
+                int windowOffset = getWindowOffset(pos, length);
+                this.buffer.position(windowOffset);
+                return this.buffer.get(buffer, offset, length);
+        }
+
         /**
          * Moves the current position to the specified one
          *
@@ -21,6 +21,10 @@
 package org.h2gis.functions.spatial.create;
 
 import com.vividsolutions.jts.geom.*;
+import com.vividsolutions.jts.geom.impl.PackedCoordinateSequence;
+import com.vividsolutions.jts.geom.prep.PreparedGeometry;
+import com.vividsolutions.jts.geom.prep.PreparedGeometryFactory;
+import com.vividsolutions.jts.index.strtree.STRtree;
 import org.h2.tools.SimpleResultSet;
 import org.h2.tools.SimpleRowSource;
 import org.h2gis.utilities.JDBCUtilities;
@@ -28,19 +32,24 @@ import org.h2gis.utilities.SFSUtilities;
 import org.h2gis.utilities.TableLocation;
 
 import java.sql.*;
+import java.util.BitSet;
 import java.util.List;
 
 /**
  * GridRowSet is used to populate a result set with all grid cells. A cell could
  * be represented as a polygon or its center point.
  *
+ * The generator state is held by the instance, so several grids can be read
+ * concurrently. Optionally only the cells that intersect the input geometries
+ * are returned, the input geometries are then kept in memory in a STRtree.
+ *
  * @author Erwan Bocher
  */
 public class GridRowSet implements SimpleRowSource {
 
     private static final GeometryFactory GF = new GeometryFactory();
-    private static int cellI = 0;
-    private static int cellJ = 0;
+    private int cellI = 0;
+    private int cellJ = 0;
     private int maxI, maxJ;
     private double deltaX, deltaY;
     private double minX, minY;
@@ -48,9 +57,17 @@ public class GridRowSet implements SimpleRowSource {
     private final Connection connection;
     private boolean firstRow = true;
     private Envelope envelope;
+    private Geometry geometry;
     private boolean isTable;
     private String tableName;
     private boolean isCenterCell = false;
+    private boolean onlyIntersectingCells = false;
+    // Input geometries, used when only the intersecting cells are returned
+    private STRtree filterIndex;
+    // Input geometries that intersect the current row of cells
+    private List rowCandidates;
+    // Columns of the current row covered by the envelope of a candidate
+    private BitSet rowColumns;
 
     /**
      * The grid will be computed according a table stored in the database
@@ -84,11 +101,27 @@ public class GridRowSet implements SimpleRowSource {
         this.isTable = false;
     }
 
+    /**
+     * The grid will be computed according a geometry
+     *
+     * @param connection
+     * @param deltaX
+     * @param deltaY
+     * @param geometry
+     */
+    public GridRowSet(Connection connection, double deltaX, double deltaY, Geometry geometry) {
+        this(connection, deltaX, deltaY, geometry.getEnvelopeInternal());
+        this.geometry = geometry;
+    }
+
     @Override
     public Object[] readRow() throws SQLException {
         if (firstRow) {
             reset();
         }
+        if (onlyIntersectingCells) {
+            return readIntersectingRow();
+        }
         if (cellI == maxI) {
             cellJ++;
             cellI = 0;
@@ -97,79 +130,182 @@ public class GridRowSet implements SimpleRowSource {
             cellJ = 0;
             return null;
         }
-        if (isCenterCell) {
-            return new Object[]{getCellPoint(), id++, cellI, cellJ + 1};
+        Geometry cell = isCenterCell ? getCellPoint(cellI, cellJ) : getCellPolygon(cellI, cellJ);
+        cellI++;
+        return new Object[]{cell, id++, cellI, cellJ + 1};
+    }
+
+    /**
+     * Read the next cell that intersects the input geometries
+     *
+     * @return The row values or null if there is no more cell
+     */
+    private Object[] readIntersectingRow() {
+        while (cellJ < maxJ) {
+            if (rowColumns == null) {
+                loadRowCandidates();
+            }
+            cellI = rowColumns.nextSetBit(cellI);
+            while (cellI >= 0) {
+                Polygon cell = getCellPolygon(cellI, cellJ);
+                if (intersectsInput(cell)) {
+                    Geometry value = isCenterCell ? getCellPoint(cellI, cellJ) : cell;
+                    cellI++;
+                    return new Object[]{value, id++, cellI, cellJ + 1};
+                }
+                cellI = rowColumns.nextSetBit(cellI + 1);
+            }
+            cellJ++;
+            cellI = 0;
+            rowColumns = null;
+        }
+        return null;
+    }
+
+    /**
+     * Find the input geometries that intersect the current row and the
+     * columns covered by their envelopes.
+     */
+    private void loadRowCandidates() {
+        double y1 = minY + cellJ * deltaY;
+        double y2 = minY + (cellJ + 1) * deltaY;
+        rowCandidates = filterIndex.query(new Envelope(minX, minX + maxI * deltaX, y1, y2));
+        rowColumns = new BitSet(maxI);
+        for (Object candidate : rowCandidates) {
+            Envelope env = ((PreparedGeometry) candidate).getGeometry().getEnvelopeInternal();
+            // One more column on each side: a cell touching the envelope on a
+            // column boundary intersects the geometry, and the division may
+            // round the boundary to either side. The exact test filters them.
+            int first = Math.max(0, (int) Math.floor((env.getMinX() - minX) / deltaX) - 1);
+            int last = Math.min(maxI - 1, (int) Math.floor((env.getMaxX() - minX) / deltaX) + 1);
+            if (first <= last) {
+                rowColumns.set(first, last + 1);
+            }
+        }
+    }
+
+    /**
+     * @param cell Cell polygon
+     * @return True if the cell intersects one of the input geometries of the current row
+     */
+    private boolean intersectsInput(Polygon cell) {
+        Envelope cellEnvelope = cell.getEnvelopeInternal();
+        for (Object candidate : rowCandidates) {
+            PreparedGeometry preparedGeometry = (PreparedGeometry) candidate;
+            if (preparedGeometry.getGeometry().getEnvelopeInternal().intersects(cellEnvelope)
+                    && preparedGeometry.intersects(cell)) {
+                return true;
+            }
         }
-        return new Object[]{getCellPolygon(), id++, cellI, cellJ + 1};
+        return false;
     }
 
     @Override
     public void close() {
+        filterIndex = null;
+        rowCandidates = null;
+        rowColumns = null;
     }
 
     @Override
     public void reset() throws SQLException {
         cellI = 0;
         cellJ = 0;
+        id = 0;
         firstRow = false;
+        rowColumns = null;
         //We compute the extend according the first input value
         if (isTable) {
+            String geometryField = getFirstGeometryField(tableName, connection);
             Statement statement = connection.createStatement();
-            ResultSet rs = statement.executeQuery("select ST_Extent(" + getFirstGeometryField(tableName, connection) + ")  from " + tableName);
             try {
-                rs.next();
-                Geometry geomExtend = (Geometry) rs.getObject(1);
-                if (geomExtend == null) {
-                    throw new SQLException("The envelope cannot be null.");
-                } else {
-                    envelope = geomExtend.getEnvelopeInternal();
-                    initParameters();
+                ResultSet rs = statement.executeQuery("select ST_Extent(" + geometryField + ")  from " + tableName);
+                try {
+                    rs.next();
+                    Geometry geomExtend = (Geometry) rs.getObject(1);
+                    if (geomExtend == null) {
+                        throw new SQLException("The envelope cannot be null.");
+                    } else {
+                        envelope = geomExtend.getEnvelopeInternal();
+                        initParameters();
+                    }
+                } finally {
+                    rs.close();
+                }
+                if (onlyIntersectingCells) {
+                    filterIndex = new STRtree();
+                    rs = statement.executeQuery("select " + geometryField + " from " + tableName);
+                    try {
+                        while (rs.next()) {
+                            addFilterGeometry((Geometry) rs.getObject(1));
+                        }
+                    } finally {
+                        rs.close();
+                    }
                 }
-
             } finally {
-                rs.close();
+                statement.close();
             }
         } else {
             if (envelope == null) {
                 throw new SQLException("The input geometry used to compute the grid cannot be null.");
             } else {
                 initParameters();
+                if (onlyIntersectingCells) {
+                    filterIndex = new STRtree();
+                    addFilterGeometry(geometry != null ? geometry : GF.toGeometry(envelope));
+                }
+            }
+        }
+    }
+
+    /**
+     * Add the geometry to the intersection filter, collections are split in
+     * their components.
+     *
+     * @param geom Input geometry
+     */
+    private void addFilterGeometry(Geometry geom) {
+        if (geom == null || geom.isEmpty()) {
+            return;
+        }
+        if (geom instanceof GeometryCollection) {
+            for (int i = 0; i < geom.getNumGeometries(); i++) {
+                addFilterGeometry(geom.getGeometryN(i));
             }
+        } else {
+            filterIndex.insert(geom.getEnvelopeInternal(), PreparedGeometryFactory.prepare(geom));
         }
     }
 
     /**
      * Compute the polygon corresponding to the cell
      *
+     * @param i Column of the cell
+     * @param j Row of the cell
      * @return Polygon of the cell
      */
-    private Polygon getCellPolygon() {
-        final Coordinate[] summits = new Coordinate[5];
-        double x1 = minX + cellI * deltaX;
-        double y1 = minY + cellJ * deltaY;
-        double x2 = minX + (cellI + 1) * deltaX;
-        double y2 = minY + (cellJ + 1) * deltaY;
-        summits[0] = new Coordinate(x1, y1);
-        summits[1] = new Coordinate(x2, y1);
-        summits[2] = new Coordinate(x2, y2);
-        summits[3] = new Coordinate(x1, y2);
-        summits[4] = new Coordinate(x1, y1);
-        final LinearRing g = GF.createLinearRing(summits);
-        final Polygon gg = GF.createPolygon(g, null);
-        cellI++;
-        return gg;
+    private Polygon getCellPolygon(int i, int j) {
+        double x1 = minX + i * deltaX;
+        double y1 = minY + j * deltaY;
+        double x2 = minX + (i + 1) * deltaX;
+        double y2 = minY + (j + 1) * deltaY;
+        CoordinateSequence summits = new PackedCoordinateSequence.Double(
+                new double[]{x1, y1, x2, y1, x2, y2, x1, y2, x1, y1}, 2);
+        return GF.createPolygon(GF.createLinearRing(summits), null);
     }
 
     /**
      * Compute the point of the cell
      *
+     * @param i Column of the cell
+     * @param j Row of the cell
      * @return Center point of the cell
      */
-    private Point getCellPoint() {
-        double x1 = (minX + cellI * deltaX) + (deltaX / 2d);
-        double y1 = (minY + cellJ * deltaY) + (deltaY / 2d);
-        cellI++;
-        return GF.createPoint(new Coordinate(x1, y1));
+    private Point getCellPoint(int i, int j) {
+        double x1 = (minX + i * deltaX) + (deltaX / 2d);
+        double y1 = (minY + j * deltaY) + (deltaY / 2d);
+        return GF.createPoint(new PackedCoordinateSequence.Double(new double[]{x1, y1}, 2));
     }
 
     /**
@@ -190,6 +326,27 @@ public class GridRowSet implements SimpleRowSource {
         this.isCenterCell = isCenterCell;
     }
 
+    /**
+     * Return true if only the cells that intersect the input geometries are
+     * returned, false if all the cells of the extent are returned
+     *
+     * @return
+     */
+    public boolean isOnlyIntersectingCells() {
+        return onlyIntersectingCells;
+    }
+
+    /**
+     * Set if only the cells that intersect the input geometries must be
+     * returned. The cell identifiers stay consecutive, the column and row
+     * identifiers are the ones of the full grid.
+     *
+     * @param onlyIntersectingCells
+     */
+    public void setOnlyIntersectingCells(boolean onlyIntersectingCells) {
+        this.onlyIntersectingCells = onlyIntersectingCells;
+    }
+
     /**
      * Return the first spatial geometry field name
      *
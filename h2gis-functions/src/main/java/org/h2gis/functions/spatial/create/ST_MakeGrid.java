@@ -46,7 +46,8 @@ public class ST_MakeGrid extends AbstractFunction implements ScalarFunction {
                 + "The first argument is either a geometry or a table.\n"
                 + "The delta X and Y cell grid are expressed in a cartesian plane."
                 + "Note :The geometry could be expressed using a subquery as\n"
-                + " (SELECT the_geom from myTable)");
+                + " (SELECT the_geom from myTable)\n"
+                + "The optional boolean argument keeps only the cells that intersect the input geometries.");
         addProperty(PROP_NOBUFFER, true);
     }
 
@@ -67,18 +68,36 @@ public class ST_MakeGrid extends AbstractFunction implements ScalarFunction {
      * @throws SQLException
      */
     public static ResultSet createGrid(Connection connection, Value value, double deltaX, double deltaY) throws SQLException {
+        return createGrid(connection, value, deltaX, deltaY, false);
+    }
+
+    /**
+     * Create a regular grid of cells using the first input argument to compute
+     * the full extent.
+     *
+     * @param connection
+     * @param value could be the name of a table or a geometry.
+     * @param deltaX the X cell size
+     * @param deltaY the Y cell size
+     * @param onlyIntersectingCells true to return only the cells that
+     * intersect the input geometries
+     * @return a resultset that contains the cells as a set of polygons
+     * @throws SQLException
+     */
+    public static ResultSet createGrid(Connection connection, Value value, double deltaX, double deltaY, boolean onlyIntersectingCells) throws SQLException {
         if(value == null){
             return null;
         }
+        GridRowSet gridRowSet;
         if (value instanceof ValueString) {
-            GridRowSet gridRowSet = new GridRowSet(connection, deltaX, deltaY, value.getString());
-            return gridRowSet.getResultSet();
+            gridRowSet = new GridRowSet(connection, deltaX, deltaY, value.getString());
         } else if (value instanceof ValueGeometry) {
             ValueGeometry geom = (ValueGeometry) value;
-            GridRowSet gridRowSet = new GridRowSet(connection, deltaX, deltaY, geom.getGeometry().getEnvelopeInternal());
-            return gridRowSet.getResultSet();
+            gridRowSet = new GridRowSet(connection, deltaX, deltaY, geom.getGeometry());
         } else {
             throw new SQLException("This function supports only table name or geometry as first argument.");
         }
+        gridRowSet.setOnlyIntersectingCells(onlyIntersectingCells);
+        return gridRowSet.getResultSet();
     }
 }
@@ -0,0 +1,280 @@
+/**
+ * H2GIS is a library that brings spatial support to the H2 Database Engine
+ * <http://www.h2database.com>. H2GIS is developed by CNRS
+ * <http://www.cnrs.fr/>.
+ *
+ * This code is part of the H2GIS project. H2GIS is free software; 
+ * you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation;
+ * version 3.0 of the License.
+ *
+ * H2GIS is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details <http://www.gnu.org/licenses/>.
+ *
+ *
+ * For more information, please consult: <http://www.h2gis.org/>
+ * or contact directly: info_at_h2gis.org
+ */
+
+package org.h2gis.functions.spatial.crs;
+
+import org.cts.CRSFactory;
+import org.cts.crs.CRSException;
+import org.cts.crs.CoordinateReferenceSystem;
+import org.cts.crs.GeodeticCRS;
+import org.cts.op.CoordinateOperation;
+import org.cts.op.CoordinateOperationFactory;
+import org.h2.engine.Database;
+import org.h2.engine.Session;
+import org.h2.engine.SessionInterface;
+import org.h2.jdbc.JdbcConnection;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded cache of the {@link CoordinateReferenceSystem} parsed from the spatial_ref_sys table and of the
+ * {@link CoordinateOperation} between two SRID. The cache can be read concurrently by several connections, the
+ * spatial_ref_sys table is only queried on a cache miss. When the cache is full, arbitrary entries are evicted.
+ *
+ * The entries are keyed by SRID, a cache must only be used with the connections of a single database because the
+ * spatial_ref_sys table can differ between databases. {@link #getInstance(Connection)} returns the cache of the
+ * database of a connection. {@link #clear()} has to be called if the definition of a SRID changes.
+ */
+public class CRSCache {
+    /** Default maximum number of coordinate operations */
+    public static final int DEFAULT_MAX_SIZE = 64;
+    /** Maximum number of caches kept for the databases that are not reached through an embedded connection */
+    private static final int MAX_URL_CACHES = 16;
+    // Cache of each H2 database, released once the database is closed and garbage collected
+    private static final Map<Database, CRSCache> DATABASE_CACHES = new WeakHashMap<Database, CRSCache>();
+    // Cache of the other databases by URL, the least recently used ones are dropped
+    private static final Map<String, CRSCache> URL_CACHES = new LinkedHashMap<String, CRSCache>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, CRSCache> eldest) {
+            return size() > MAX_URL_CACHES;
+        }
+    };
+    private final Map<Integer, CoordinateReferenceSystem> crsCache = new ConcurrentHashMap<Integer, CoordinateReferenceSystem>();
+    private final Map<EPSGTuple, CachedOperation> operationCache = new ConcurrentHashMap<EPSGTuple, CachedOperation>();
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+    private volatile int maxSize;
+    // The CRS factory and the registry are not thread safe, they are only used while holding the lock
+    private final Object lock = new Object();
+    private CRSFactory crsf;
+    private SpatialRefRegistry srr;
+
+    /**
+     * Create a cache with the default maximum size
+     */
+    public CRSCache() {
+        this(DEFAULT_MAX_SIZE);
+    }
+
+    /**
+     * @param maxSize Maximum number of coordinate operations, the number of CRS is limited to twice this value
+     */
+    public CRSCache(int maxSize) {
+        setMaxSize(maxSize);
+    }
+
+    /**
+     * Return the cache of the database of the connection, created with the default maximum size.
+     *
+     * @param connection Active connection
+     * @return The cache shared by the connections of the same database
+     * @throws SQLException
+     */
+    public static CRSCache getInstance(Connection connection) throws SQLException {
+        Database database = getDatabase(connection);
+        if (database != null) {
+            synchronized (DATABASE_CACHES) {
+                CRSCache cache = DATABASE_CACHES.get(database);
+                if (cache == null) {
+                    cache = new CRSCache();
+                    DATABASE_CACHES.put(database, cache);
+                }
+                return cache;
+            }
+        }
+        String url = connection.getMetaData().getURL();
+        synchronized (URL_CACHES) {
+            CRSCache cache = URL_CACHES.get(url);
+            if (cache == null) {
+                cache = new CRSCache();
+                URL_CACHES.put(url, cache);
+            }
+            return cache;
+        }
+    }
+
+    /**
+     * @param connection Active connection
+     * @return The H2 database of an embedded connection, null for the other connections
+     * @throws SQLException
+     */
+    private static Database getDatabase(Connection connection) throws SQLException {
+        if (connection.isWrapperFor(JdbcConnection.class)) {
+            SessionInterface session = connection.unwrap(JdbcConnection.class).getSession();
+            if (session instanceof Session) {
+                return ((Session) session).getDatabase();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return Maximum number of coordinate operations
+     */
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * @param maxSize Maximum number of coordinate operations, the number of CRS is limited to twice this value
+     */
+    public void setMaxSize(int maxSize) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("The cache size must be strictly positive");
+        }
+        this.maxSize = maxSize;
+        evict(operationCache, maxSize);
+        evict(crsCache, 2 * maxSize);
+    }
+
+    /**
+     * @return Number of coordinate operation requests served by the cache
+     */
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    /**
+     * @return Number of coordinate operation requests that required to read the spatial_ref_sys table
+     */
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    /**
+     * Remove all the entries and reset the counters
+     */
+    public void clear() {
+        operationCache.clear();
+        crsCache.clear();
+        hitCount.set(0);
+        missCount.set(0);
+    }
+
+    /**
+     * Return the coordinate operation that transforms coordinates from the source SRID to the target SRID.
+     *
+     * @param connection Active connection, used on a cache miss to read the spatial_ref_sys table
+     * @param sourceSRID Source SRID
+     * @param targetSRID Target SRID
+     * @return The coordinate operation or null if both SRID reference the same CRS
+     * @throws SQLException If a CRS cannot be created or if the transformation is not supported
+     */
+    public CoordinateOperation getCoordinateOperation(Connection connection, int sourceSRID, int targetSRID)
+            throws SQLException {
+        EPSGTuple key = new EPSGTuple(sourceSRID, targetSRID);
+        CachedOperation cached = operationCache.get(key);
+        if (cached != null) {
+            hitCount.incrementAndGet();
+            return cached.operation;
+        }
+        missCount.incrementAndGet();
+        CoordinateReferenceSystem inputCRS = getCRS(connection, sourceSRID);
+        CoordinateReferenceSystem targetCRS = getCRS(connection, targetSRID);
+        CoordinateOperation op = null;
+        if (!inputCRS.equals(targetCRS)) {
+            if (inputCRS instanceof GeodeticCRS && targetCRS instanceof GeodeticCRS) {
+                List<CoordinateOperation> ops = CoordinateOperationFactory
+                        .createCoordinateOperations((GeodeticCRS) inputCRS, (GeodeticCRS) targetCRS);
+                if (ops.isEmpty()) {
+                    throw new SQLException("Cannot find a coordinate operation from " + inputCRS + " to "
+                            + targetSRID + ".");
+                }
+                op = ops.get(0);
+            } else {
+                throw new SQLException("The transformation from "
+                        + inputCRS + " to " + targetSRID + " is not yet supported.");
+            }
+        }
+        operationCache.put(key, new CachedOperation(op));
+        evict(operationCache, maxSize);
+        return op;
+    }
+
+    /**
+     * Return the coordinate reference system of the SRID.
+     *
+     * @param connection Active connection, used on a cache miss to read the spatial_ref_sys table
+     * @param srid SRID
+     * @return The coordinate reference system
+     * @throws SQLException If the CRS cannot be created
+     */
+    public CoordinateReferenceSystem getCRS(Connection connection, int srid) throws SQLException {
+        CoordinateReferenceSystem crs = crsCache.get(srid);
+        if (crs == null) {
+            synchronized (lock) {
+                crs = crsCache.get(srid);
+                if (crs == null) {
+                    if (crsf == null) {
+                        crsf = new CRSFactory();
+                        srr = new SpatialRefRegistry();
+                        //Activate the CRSFactory and the internal H2 spatial_ref_sys registry to
+                        // manage Coordinate Reference Systems.
+                        crsf.getRegistryManager().addRegistry(srr);
+                    }
+                    srr.setConnection(connection);
+                    try {
+                        crs = crsf.getCRS(srr.getRegistryName() + ":" + String.valueOf(srid));
+                    } catch (CRSException ex) {
+                        throw new SQLException("Cannot create the CRS", ex);
+                    } finally {
+                        srr.setConnection(null);
+                    }
+                    if (crs == null) {
+                        throw new SQLException("Cannot find the CRS " + srid);
+                    }
+                    crsCache.put(srid, crs);
+                    evict(crsCache, 2 * maxSize);
+                }
+            }
+        }
+        return crs;
+    }
+
+    /**
+     * Remove entries until the map size is not greater than the limit.
+     */
+    private static void evict(Map<?, ?> map, int limit) {
+        Iterator<?> it = map.keySet().iterator();
+        while (map.size() > limit && it.hasNext()) {
+            it.next();
+            it.remove();
+        }
+    }
+
+    /**
+     * Cache entry, the operation is null when no transformation is required
+     */
+    private static final class CachedOperation {
+        private final CoordinateOperation operation;
+
+        private CachedOperation(CoordinateOperation operation) {
+            this.operation = operation;
+        }
+    }
+}
@@ -21,20 +21,14 @@
 package org.h2gis.functions.spatial.crs;
 
 import com.vividsolutions.jts.geom.*;
-import org.cts.CRSFactory;
 import org.cts.IllegalCoordinateException;
-import org.cts.crs.CRSException;
-import org.cts.crs.CoordinateReferenceSystem;
-import org.cts.crs.GeodeticCRS;
 import org.cts.op.CoordinateOperation;
-import org.cts.op.CoordinateOperationFactory;
 import org.h2gis.api.AbstractFunction;
 import org.h2gis.api.ScalarFunction;
 
 import java.sql.Connection;
 import java.sql.SQLException;
 import java.util.LinkedHashMap;
-import java.util.List;
 import java.util.Map;
 
 
@@ -48,10 +42,6 @@ import java.util.Map;
  */
 public class ST_Transform extends AbstractFunction implements ScalarFunction {
 
-    private static CRSFactory crsf;
-    private static SpatialRefRegistry srr = new SpatialRefRegistry();
-    private static Map<EPSGTuple, CoordinateOperation> copPool = new CopCache(5);
-
     /**
      * Constructor
      */
@@ -81,97 +71,121 @@ public class ST_Transform extends AbstractFunction implements ScalarFunction {
         if (codeEpsg == null) {
             throw new IllegalArgumentException("The SRID code cannot be null.");
         }
-        if (crsf == null) {
-            crsf = new CRSFactory();
-            //Activate the CRSFactory and the internal H2 spatial_ref_sys registry to
-            // manage Coordinate Reference Systems.
-            crsf.getRegistryManager().addRegistry(srr);
+        int inputSRID = geom.getSRID();
+        if (inputSRID == 0) {
+            throw new SQLException("Cannot find a CRS");
         }
-        srr.setConnection(connection);
-        try {
-            int inputSRID = geom.getSRID();
-            if (inputSRID == 0) {
-                throw new SQLException("Cannot find a CRS");
-            } else {
-                CoordinateReferenceSystem inputCRS = crsf.getCRS(srr.getRegistryName() + ":" + String.valueOf(inputSRID));
-                CoordinateReferenceSystem targetCRS = crsf.getCRS(srr.getRegistryName() + ":" + String.valueOf(codeEpsg));
-                if (inputCRS.equals(targetCRS)) {
-                    return geom;
-                }
-                EPSGTuple epsg = new EPSGTuple(inputSRID, codeEpsg);
-                CoordinateOperation op = copPool.get(epsg);
-                if (op != null) {
-                    Geometry outPutGeom = (Geometry) geom.clone();
-                    outPutGeom.apply(new CRSTransformFilter(op));
-                    outPutGeom.setSRID(codeEpsg);
-                    return outPutGeom;
-                } else {
-                    if (inputCRS instanceof GeodeticCRS && targetCRS instanceof GeodeticCRS) {
-                        List<CoordinateOperation> ops = CoordinateOperationFactory
-                                .createCoordinateOperations((GeodeticCRS) inputCRS, (GeodeticCRS) targetCRS);
-                        if (!ops.isEmpty()) {
-                            op = ops.get(0);
-                            Geometry outPutGeom = (Geometry) geom.clone();
-                            outPutGeom.apply(new CRSTransformFilter(op));
-                            copPool.put(epsg, op);
-                            outPutGeom.setSRID(codeEpsg);
-                            return outPutGeom;
-                        }
-                    } else {
-                        throw new SQLException("The transformation from "
-                                + inputCRS + " to " + codeEpsg + " is not yet supported.");
-                    }
-                }
+        if (inputSRID == codeEpsg) {
+            return geom;
+        }
+        return transform(geom, CRSCache.getInstance(connection).getCoordinateOperation(connection, inputSRID, codeEpsg), codeEpsg);
+    }
+
+    /**
+     * Returns a transformed copy of the geometry. This method does not access the database.
+     * @param geom Geometry
+     * @param op Coordinate operation, null if the geometry is already in the target CRS
+     * @param srid Target SRID
+     * @return The transformed geometry, with the target SRID
+     */
+    public static Geometry transform(Geometry geom, CoordinateOperation op, int srid) {
+        if (op == null) {
+            if (geom.getSRID() == srid) {
+                return geom;
             }
-        } catch (CRSException ex) {
-            throw new SQLException("Cannot create the CRS", ex);
-        } finally {
-            srr.setConnection(null);
+            // Two SRID may share the same CRS, only the SRID changes
+            Geometry outPutGeom = (Geometry) geom.clone();
+            outPutGeom.setSRID(srid);
+            return outPutGeom;
         }
-        return null;
+        Geometry outPutGeom = (Geometry) geom.clone();
+        outPutGeom.apply(new CRSTransformFilter(op));
+        outPutGeom.setSRID(srid);
+        return outPutGeom;
+    }
 
+    /**
+     * @param connection Active connection
+     * @return The cache of the CRS and coordinate operations shared by all the calls of this function on the
+     * database of the connection
+     * @throws SQLException
+     */
+    public static CRSCache getCRSCache(Connection connection) throws SQLException {
+        return CRSCache.getInstance(connection);
     }
 
   
     /**
      * This method is used to apply a {@link CoordinateOperation} to a geometry.
-     * The transformation loops on each coordinate. 
+     * Each coordinate sequence is transformed in place when its first coordinate is visited, the
+     * following calls on the same sequence are ignored. The coordinates are copied into a scratch
+     * buffer reused for the whole geometry. Sequences without Z ordinate are transformed without
+     * reading or writing the Z value.
      */
-    public static class CRSTransformFilter implements CoordinateFilter{
+    public static class CRSTransformFilter implements CoordinateSequenceFilter {
         private final CoordinateOperation coordinateOperation;
+        private final double[] xyz = new double[3];
 
-      
         public CRSTransformFilter(final CoordinateOperation coordinateOperation){
             this.coordinateOperation=coordinateOperation;            
         }
-       
+
         @Override
-        public void filter(Coordinate coord) {
+        public void filter(CoordinateSequence seq, int i) {
+            if (i == 0) {
+                transform(seq);
+            }
+        }
+
+        /**
+         * Transform all the coordinates of the sequence in place.
+         * @param seq Coordinate sequence
+         */
+        public void transform(CoordinateSequence seq) {
+            final int size = seq.size();
             try {
-                if (Double.isNaN(coord.z)) {
-                    coord.z = 0;
-                }
-                double[] xyz = coordinateOperation
-                        .transform(new double[]{coord.x, coord.y, coord.z});
-                coord.x = xyz[0];
-                coord.y = xyz[1];
-                if (xyz.length > 2) {
-                    coord.z = xyz[2];
+                if (seq.getDimension() < 3) {
+                    for (int i = 0; i < size; i++) {
+                        xyz[0] = seq.getX(i);
+                        xyz[1] = seq.getY(i);
+                        xyz[2] = 0;
+                        double[] res = coordinateOperation.transform(xyz);
+                        seq.setOrdinate(i, CoordinateSequence.X, res[0]);
+                        seq.setOrdinate(i, CoordinateSequence.Y, res[1]);
+                    }
                 } else {
-                    coord.z = Double.NaN;
+                    for (int i = 0; i < size; i++) {
+                        xyz[0] = seq.getX(i);
+                        xyz[1] = seq.getY(i);
+                        double z = seq.getOrdinate(i, CoordinateSequence.Z);
+                        xyz[2] = Double.isNaN(z) ? 0 : z;
+                        double[] res = coordinateOperation.transform(xyz);
+                        seq.setOrdinate(i, CoordinateSequence.X, res[0]);
+                        seq.setOrdinate(i, CoordinateSequence.Y, res[1]);
+                        seq.setOrdinate(i, CoordinateSequence.Z, res.length > 2 ? res[2] : Double.NaN);
+                    }
                 }
             } catch (IllegalCoordinateException ice) {
-                throw new RuntimeException("Cannot transform the coordinate" + coord.toString(), ice);
+                throw new RuntimeException("Cannot transform the coordinate" + new Coordinate(xyz[0], xyz[1]), ice);
             }
+        }
+
+        @Override
+        public boolean isDone() {
+            return false;
+        }
 
+        @Override
+        public boolean isGeometryChanged() {
+            return true;
         }
-        
-    
     }
 
     /**
      * A simple cache to manage {@link CoordinateOperation}
+     * @deprecated Not thread safe, replaced by {@link CRSCache}
      */
+    @Deprecated
     public static class CopCache extends LinkedHashMap<EPSGTuple, CoordinateOperation> {
 
         private final int limit;
@@ -0,0 +1,372 @@
+/**
+ * H2GIS is a library that brings spatial support to the H2 Database Engine
+ * <http://www.h2database.com>. H2GIS is developed by CNRS
+ * <http://www.cnrs.fr/>.
+ *
+ * This code is part of the H2GIS project. H2GIS is free software; 
+ * you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation;
+ * version 3.0 of the License.
+ *
+ * H2GIS is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details <http://www.gnu.org/licenses/>.
+ *
+ *
+ * For more information, please consult: <http://www.h2gis.org/>
+ * or contact directly: info_at_h2gis.org
+ */
+
+package org.h2gis.functions.spatial.crs;
+
+import com.vividsolutions.jts.geom.Geometry;
+import org.cts.op.CoordinateOperation;
+import org.h2gis.api.AbstractFunction;
+import org.h2gis.api.ScalarFunction;
+import org.h2gis.utilities.JDBCUtilities;
+import org.h2gis.utilities.SFSUtilities;
+import org.h2gis.utilities.TableLocation;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Copy a table into a new table with the geometries transformed to another CRS. The source table is read by pages
+ * of its integer primary key (or sequentially if it has none) through the calling connection, the coordinates are
+ * transformed by a pool of worker threads and the rows are written in the source order with batched inserts. The
+ * target table is dropped if the copy fails.
+ *
+ * @see ST_Transform
+ */
+public class ST_TransformTable extends AbstractFunction implements ScalarFunction {
+    private static final int BATCH_MAX_SIZE = 100;
+    /** Number of rows processed by a single task */
+    private static final int RANGE_SIZE = 1000;
+
+    /**
+     * Constructor
+     */
+    public ST_TransformTable() {
+        addProperty(PROP_REMARKS, "Copy a table into a new table with the geometries of the first geometry field " +
+                "transformed to the given SRID.\nST_TransformTable('src', 'dst', srid [, threads])\n" +
+                "The number of threads defaults to the number of available processors.");
+    }
+
+    @Override
+    public String getJavaStaticMethod() {
+        return "transformTable";
+    }
+
+    /**
+     * Copy the source table into the target table with the geometries transformed to the given SRID.
+     * @param connection Active connection
+     * @param sourceTable Source table name
+     * @param targetTable Target table name, must not exist
+     * @param srid Target SRID
+     * @throws SQLException
+     */
+    public static void transformTable(Connection connection, String sourceTable, String targetTable, int srid)
+            throws SQLException {
+        transformTable(connection, sourceTable, targetTable, srid, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Copy the source table into the target table with the geometries transformed to the given SRID.
+     * @param connection Active connection
+     * @param sourceTable Source table name
+     * @param targetTable Target table name, must not exist
+     * @param srid Target SRID
+     * @param threads Number of threads used to transform the geometries
+     * @throws SQLException
+     */
+    public static void transformTable(Connection connection, String sourceTable, String targetTable, int srid,
+                                      int threads) throws SQLException {
+        if (threads < 1) {
+            throw new IllegalArgumentException("The number of threads must be strictly positive.");
+        }
+        final boolean isH2 = JDBCUtilities.isH2DataBase(connection.getMetaData());
+        TableLocation source = TableLocation.parse(sourceTable, isH2);
+        TableLocation target = TableLocation.parse(targetTable, isH2);
+        if (JDBCUtilities.tableExists(connection, target.toString())) {
+            throw new SQLException("The table " + target + " already exists.");
+        }
+        List<String> geometryFields = SFSUtilities.getGeometryFields(connection, source);
+        if (geometryFields.isEmpty()) {
+            throw new SQLException("The table " + source + " does not contain a geometry field.");
+        }
+        String geometryField = TableLocation.quoteIdentifier(geometryFields.get(0), isH2);
+        int pkIndex = JDBCUtilities.getIntegerPrimaryKey(connection, source.toString());
+        String pkField = null;
+        if (pkIndex > 0) {
+            pkField = TableLocation.quoteIdentifier(JDBCUtilities.getFieldName(connection.getMetaData(),
+                    source.toString(), pkIndex), isH2);
+        }
+        Statement st = connection.createStatement();
+        try {
+            st.execute("CREATE TABLE " + target + " AS SELECT * FROM " + source + " WHERE 1=0");
+        } finally {
+            st.close();
+        }
+        List<String> fieldNames = JDBCUtilities.getFieldNames(connection.getMetaData(), target.toString());
+        int geometryIndex = fieldNames.indexOf(geometryFields.get(0));
+        int columnCount = fieldNames.size();
+        StringBuilder insert = new StringBuilder("INSERT INTO " + target + " VALUES (?");
+        for (int i = 1; i < columnCount; i++) {
+            insert.append(", ?");
+        }
+        insert.append(")");
+        try {
+            ExecutorService executorService = new ForkJoinPool(threads);
+            try {
+                PreparedStatement insertStatement = connection.prepareStatement(insert.toString());
+                try {
+                    TableCopy copy = new TableCopy(connection, executorService, insertStatement, columnCount,
+                            geometryIndex, srid, threads * 2);
+                    if (pkField != null) {
+                        copy.copyByKeys(source, pkField, pkIndex - 1);
+                    } else {
+                        copy.copySequentially(source);
+                    }
+                } finally {
+                    insertStatement.close();
+                }
+            } finally {
+                executorService.shutdownNow();
+                try {
+                    executorService.awaitTermination(1, TimeUnit.MINUTES);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            SFSUtilities.addTableSRIDConstraint(connection, target, geometryField, srid);
+            if (pkField != null) {
+                st = connection.createStatement();
+                try {
+                    st.execute("ALTER TABLE " + target + " ADD PRIMARY KEY (" + pkField + ")");
+                } finally {
+                    st.close();
+                }
+            }
+        } catch (SQLException | RuntimeException ex) {
+            // Do not leave a partially written table
+            try {
+                st = connection.createStatement();
+                try {
+                    st.execute("DROP TABLE IF EXISTS " + target);
+                } finally {
+                    st.close();
+                }
+            } catch (SQLException dropEx) {
+                ex.addSuppressed(dropEx);
+            }
+            throw ex;
+        }
+    }
+
+    /**
+     * Read the source rows, submit them to the executor and insert the transformed rows in the source order.
+     */
+    private static class TableCopy {
+        private final Connection connection;
+        private final ExecutorService executorService;
+        private final PreparedStatement insertStatement;
+        private final int columnCount;
+        private final int geometryIndex;
+        private final int srid;
+        private final int maxPendingTasks;
+        private final ArrayDeque<Future<List<Object[]>>> pendingTasks = new ArrayDeque<Future<List<Object[]>>>();
+        private int batchSize = 0;
+
+        private TableCopy(Connection connection, ExecutorService executorService, PreparedStatement insertStatement,
+                          int columnCount, int geometryIndex, int srid, int maxPendingTasks) {
+            this.connection = connection;
+            this.executorService = executorService;
+            this.insertStatement = insertStatement;
+            this.columnCount = columnCount;
+            this.geometryIndex = geometryIndex;
+            this.srid = srid;
+            this.maxPendingTasks = maxPendingTasks;
+        }
+
+        /**
+         * Read the source table by pages of RANGE_SIZE rows in the primary key order, each page starts after the
+         * last key of the previous page.
+         *
+         * @param source Source table
+         * @param pkField Quoted primary key field
+         * @param pkIndex Index of the primary key in a row
+         */
+        private void copyByKeys(TableLocation source, String pkField, int pkIndex) throws SQLException {
+            String query = "SELECT * FROM " + source;
+            String order = " ORDER BY " + pkField + " LIMIT " + RANGE_SIZE;
+            PreparedStatement firstPage = connection.prepareStatement(query + order);
+            PreparedStatement nextPage = null;
+            try {
+                List<Object[]> rows = readRows(firstPage.executeQuery());
+                while (!rows.isEmpty()) {
+                    long lastKey = ((Number) rows.get(rows.size() - 1)[pkIndex]).longValue();
+                    submit(rows);
+                    if (rows.size() < RANGE_SIZE) {
+                        break;
+                    }
+                    if (nextPage == null) {
+                        nextPage = connection.prepareStatement(query + " WHERE " + pkField + " > ?" + order);
+                    }
+                    nextPage.setLong(1, lastKey);
+                    rows = readRows(nextPage.executeQuery());
+                }
+            } finally {
+                firstPage.close();
+                if (nextPage != null) {
+                    nextPage.close();
+                }
+            }
+            flush();
+        }
+
+        private List<Object[]> readRows(ResultSet rs) throws SQLException {
+            List<Object[]> rows = new ArrayList<Object[]>(RANGE_SIZE);
+            try {
+                while (rs.next()) {
+                    rows.add(readRow(rs));
+                }
+            } finally {
+                rs.close();
+            }
+            return rows;
+        }
+
+        private void copySequentially(TableLocation source) throws SQLException {
+            Statement st = connection.createStatement();
+            try {
+                st.setFetchSize(RANGE_SIZE);
+                ResultSet rs = st.executeQuery("SELECT * FROM " + source);
+                try {
+                    List<Object[]> rows = new ArrayList<Object[]>(RANGE_SIZE);
+                    while (rs.next()) {
+                        rows.add(readRow(rs));
+                        if (rows.size() >= RANGE_SIZE) {
+                            submit(rows);
+                            rows = new ArrayList<Object[]>(RANGE_SIZE);
+                        }
+                    }
+                    if (!rows.isEmpty()) {
+                        submit(rows);
+                    }
+                } finally {
+                    rs.close();
+                }
+            } finally {
+                st.close();
+            }
+            flush();
+        }
+
+        private Object[] readRow(ResultSet rs) throws SQLException {
+            Object[] row = new Object[columnCount];
+            for (int i = 0; i < columnCount; i++) {
+                row[i] = rs.getObject(i + 1);
+            }
+            return row;
+        }
+
+        /**
+         * Resolve the coordinate operations with the connection then transform the rows in the executor.
+         */
+        private void submit(List<Object[]> rows) throws SQLException {
+            Map<Integer, CoordinateOperation> operations = new HashMap<Integer, CoordinateOperation>();
+            for (Object[] row : rows) {
+                Geometry geom = (Geometry) row[geometryIndex];
+                if (geom != null && !operations.containsKey(geom.getSRID())) {
+                    int inputSRID = geom.getSRID();
+                    if (inputSRID == 0) {
+                        throw new SQLException("Cannot find a CRS");
+                    }
+                    operations.put(inputSRID, inputSRID == srid ? null : ST_Transform.getCRSCache(connection)
+                            .getCoordinateOperation(connection, inputSRID, srid));
+                }
+            }
+            pendingTasks.add(executorService.submit(new TransformTask(rows, operations, geometryIndex, srid)));
+            while (pendingTasks.size() > maxPendingTasks) {
+                insert(pendingTasks.poll());
+            }
+        }
+
+        private void flush() throws SQLException {
+            while (!pendingTasks.isEmpty()) {
+                insert(pendingTasks.poll());
+            }
+            if (batchSize > 0) {
+                insertStatement.executeBatch();
+                batchSize = 0;
+            }
+        }
+
+        private void insert(Future<List<Object[]>> task) throws SQLException {
+            List<Object[]> rows;
+            try {
+                rows = task.get();
+            } catch (InterruptedException ex) {
+                throw new SQLException(ex);
+            } catch (ExecutionException ex) {
+                throw new SQLException(ex.getCause());
+            }
+            for (Object[] row : rows) {
+                for (int i = 0; i < columnCount; i++) {
+                    insertStatement.setObject(i + 1, row[i]);
+                }
+                insertStatement.addBatch();
+                batchSize++;
+                if (batchSize >= BATCH_MAX_SIZE) {
+                    insertStatement.executeBatch();
+                    insertStatement.clearBatch();
+                    batchSize = 0;
+                }
+            }
+        }
+    }
+
+    /**
+     * Transform the geometries of a list of rows in place. The database is not accessed.
+     */
+    private static class TransformTask implements Callable<List<Object[]>> {
+        private final List<Object[]> rows;
+        private final Map<Integer, CoordinateOperation> operations;
+        private final int geometryIndex;
+        private final int srid;
+
+        private TransformTask(List<Object[]> rows, Map<Integer, CoordinateOperation> operations, int geometryIndex,
+                              int srid) {
+            this.rows = rows;
+            this.operations = operations;
+            this.geometryIndex = geometryIndex;
+            this.srid = srid;
+        }
+
+        @Override
+        public List<Object[]> call() throws Exception {
+            for (Object[] row : rows) {
+                Geometry geom = (Geometry) row[geometryIndex];
+                if (geom != null) {
+                    row[geometryIndex] = ST_Transform.transform(geom, operations.get(geom.getSRID()), srid);
+                }
+            }
+            return rows;
+        }
+    }
+}
@@ -71,7 +71,20 @@ public class DelaunayData {
     private GeometryFactory gf;
     private Triangulatable convertedInput = null;
     // Precision
-    private MathContext mathContext = MathContext.DECIMAL64;
+    private static final MathContext MATH_CONTEXT = MathContext.DECIMAL64;
+    private static final int SIGNIFICANT_DIGITS = 16;
+    // Exact powers of ten that can be represented by a double
+    private static final double[] POWERS_OF_TEN = new double[23];
+    // 2^27 + 1, used to split a double in two halves of 26 bits
+    private static final double SPLITTER = 134217729.0;
+    private static final double MAX_EXACT_INTEGER = 9007199254740992.0;
+
+    static {
+        POWERS_OF_TEN[0] = 1;
+        for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+            POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+        }
+    }
 
     /**
      * Create a mesh data structure to collect points and edges that will be
@@ -81,8 +94,46 @@ public class DelaunayData {
     }
 
 
-    private double r(double v) {
-        return new BigDecimal(v).round(mathContext).doubleValue();
+    /**
+     * Round the value to 16 significant decimal digits, this snapping makes the triangulation robust to
+     * nearly equal coordinates. The result is the same as rounding the exact value with
+     * {@link MathContext#DECIMAL64}, but the common case is computed without allocation: the value is scaled by
+     * an exact power of ten, the rounding error of the product is recovered with Dekker's algorithm, and the rounded
+     * integer is divided by the same power of ten. Values out of range fall back to {@link BigDecimal}.
+     * @param v Value to round
+     * @return Rounded value
+     */
+    static double r(double v) {
+        if (v == 0 || Double.isNaN(v) || Double.isInfinite(v)) {
+            return v;
+        }
+        int scale = SIGNIFICANT_DIGITS - 1 - (int) Math.floor(Math.log10(Math.abs(v)));
+        if (scale >= 0 && scale < POWERS_OF_TEN.length) {
+            double power = POWERS_OF_TEN[scale];
+            // Exact product v * power = hi + lo
+            double hi = v * power;
+            double c = SPLITTER * v;
+            double vHi = c - (c - v);
+            double vLo = v - vHi;
+            c = SPLITTER * power;
+            double pHi = c - (c - power);
+            double pLo = power - pHi;
+            double lo = ((vHi * pHi - hi) + vHi * pLo + vLo * pHi) + vLo * pLo;
+            // Round half even the exact product
+            double n = Math.rint(hi);
+            double remainder = (hi - n) + lo;
+            if (remainder > 0.5 || (remainder == 0.5 && Math.rint(n / 2) * 2 != n)) {
+                n += 1;
+            } else if (remainder < -0.5 || (remainder == -0.5 && Math.rint(n / 2) * 2 != n)) {
+                n -= 1;
+            }
+            double absN = Math.abs(n);
+            // n must be an exact integer of 16 digits, the correctly rounded division then gives the nearest double
+            if (absN >= POWERS_OF_TEN[SIGNIFICANT_DIGITS - 1] && absN < MAX_EXACT_INTEGER) {
+                return n / power;
+            }
+        }
+        return new BigDecimal(v).round(MATH_CONTEXT).doubleValue();
     }
 
     private org.poly2tri.geometry.polygon.Polygon makePolygon(LineString lineString) {
@@ -309,8 +360,8 @@ public class DelaunayData {
             Map<TriangulationPoint, Integer> pts = new HashMap<TriangulationPoint, Integer>(geom.getNumPoints());
             List<Integer> segments = new ArrayList<Integer>(pts.size());
             AtomicInteger pointsCount = new AtomicInteger(0);
-            PointHandler pointHandler = new PointHandler(this, pts, pointsCount);
-            LineStringHandler lineStringHandler = new LineStringHandler(this, pts, pointsCount, segments);
+            PointHandler pointHandler = new PointHandler(pts, pointsCount);
+            LineStringHandler lineStringHandler = new LineStringHandler(pts, pointsCount, segments);
             for(int geomId = 0; geomId < geom.getNumGeometries(); geomId++) {
                 addSimpleGeometry(geom.getGeometryN(geomId), pointHandler, lineStringHandler);
             }
@@ -348,19 +399,17 @@ public class DelaunayData {
     }
 
     private static class PointHandler implements CoordinateFilter {
-        private DelaunayData delaunayData;
         private Map<TriangulationPoint, Integer> pts;
         private AtomicInteger maxIndex;
 
-        public PointHandler(DelaunayData delaunayData, Map<TriangulationPoint, Integer> pts, AtomicInteger maxIndex) {
-            this.delaunayData = delaunayData;
+        public PointHandler(Map<TriangulationPoint, Integer> pts, AtomicInteger maxIndex) {
             this.pts = pts;
             this.maxIndex = maxIndex;
         }
 
         protected int addPt(Coordinate coordinate) {
-            TPoint pt = new TPoint(delaunayData.r(coordinate.x), delaunayData.r(coordinate.y),
-                    Double.isNaN(coordinate.z) ? 0 : delaunayData.r(coordinate.z));
+            TPoint pt = new TPoint(r(coordinate.x), r(coordinate.y),
+                    Double.isNaN(coordinate.z) ? 0 : r(coordinate.z));
             Integer index = pts.get(pt);
             if(index == null) {
                 index = maxIndex.getAndAdd(1);
@@ -379,9 +428,9 @@ public class DelaunayData {
         private List<Integer> segments;
         private int firstPtIndex = -1;
 
-        public LineStringHandler(DelaunayData delaunayData, Map<TriangulationPoint, Integer> pts,
+        public LineStringHandler(Map<TriangulationPoint, Integer> pts,
                                  AtomicInteger maxIndex, List<Integer> segments) {
-            super(delaunayData, pts, maxIndex);
+            super(pts, maxIndex);
             this.segments = segments;
         }
 
@@ -0,0 +1,214 @@
+/**
+ * H2GIS is a library that brings spatial support to the H2 Database Engine
+ * <http://www.h2database.com>. H2GIS is developed by CNRS
+ * <http://www.cnrs.fr/>.
+ *
+ * This code is part of the H2GIS project. H2GIS is free software;
+ * you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation;
+ * version 3.0 of the License.
+ *
+ * H2GIS is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details <http://www.gnu.org/licenses/>.
+ *
+ *
+ * For more information, please consult: <http://www.h2gis.org/>
+ * or contact directly: info_at_h2gis.org
+ */
+
+package org.h2gis.functions.spatial.topology;
+
+import java.util.Arrays;
+
+/**
+ * Assigns node ids to the edge endpoints given to {@link #snap(double, double, double)}, in the order they are given.
+ * <p/>
+ * Each endpoint is surrounded by a square envelope that extends by the tolerance on each side. An endpoint becomes
+ * a new node if its envelope does not intersect the envelope of any endpoint given before it. Otherwise it is
+ * snapped to the first node whose envelope intersects its own, if any. Endpoints are stored in a grid hash whose
+ * cells are as large as an envelope, so that a lookup only visits the neighbouring cells. With a zero tolerance the
+ * endpoints are hashed on their exact x and y values.
+ */
+final class NodeSnapper {
+    /** Returned by {@link #snap(double, double, double)} when no node is close enough to the endpoint */
+    public static final int NO_NODE = 0;
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private final double tolerance;
+    private final double cellSize;
+    // Distinct endpoints, chained by cell
+    private double[] pointX = new double[INITIAL_CAPACITY];
+    private double[] pointY = new double[INITIAL_CAPACITY];
+    private int[] pointNode = new int[INITIAL_CAPACITY];
+    private int[] nextPoint = new int[INITIAL_CAPACITY];
+    private int pointCount = 0;
+    // Open addressing hash table of the cells, a head of 0 is an empty slot
+    private long[] cellX = new long[INITIAL_CAPACITY];
+    private long[] cellY = new long[INITIAL_CAPACITY];
+    private int[] cellHead = new int[INITIAL_CAPACITY];
+    private int cellCount = 0;
+    // Node z values, index 0 is unused
+    private double[] nodeZ = new double[INITIAL_CAPACITY];
+    private int nodeCount = 0;
+
+    /**
+     * @param tolerance Distance added on each side of an endpoint envelope, zero to merge identical endpoints only
+     */
+    NodeSnapper(double tolerance) {
+        if (tolerance < 0) {
+            throw new IllegalArgumentException("Only positive tolerances are allowed.");
+        }
+        this.tolerance = tolerance;
+        this.cellSize = 2 * tolerance;
+    }
+
+    /**
+     * Snap an endpoint.
+     *
+     * @param x Endpoint x
+     * @param y Endpoint y
+     * @param z Endpoint z, kept when the endpoint becomes a node
+     * @return The node id of the endpoint, starting from 1, or {@link #NO_NODE} if the endpoint is close to
+     * other endpoints but not to a node
+     */
+    int snap(double x, double y, double z) {
+        if (tolerance == 0) {
+            // Normalize -0.0 in order to hash it as 0.0
+            long keyX = Double.doubleToLongBits(x + 0.0);
+            long keyY = Double.doubleToLongBits(y + 0.0);
+            int head = cellHead[findCell(keyX, keyY)];
+            if (head != 0) {
+                return pointNode[head - 1];
+            }
+            int node = addNode(z);
+            addPoint(keyX, keyY, x, y, node);
+            return node;
+        }
+        // Look up every cell that may hold an intersecting envelope, with a small margin for rounding errors
+        double range = cellSize + 4 * Math.ulp(Math.max(Math.abs(x), Math.abs(y)) + cellSize);
+        long minCellX = cellIndex(x - range);
+        long maxCellX = cellIndex(x + range);
+        long minCellY = cellIndex(y - range);
+        long maxCellY = cellIndex(y + range);
+        boolean intersects = false;
+        boolean duplicate = false;
+        int node = NO_NODE;
+        for (long cx = minCellX; cx <= maxCellX; cx++) {
+            for (long cy = minCellY; cy <= maxCellY; cy++) {
+                for (int p = cellHead[findCell(cx, cy)]; p != 0; p = nextPoint[p - 1]) {
+                    double px = pointX[p - 1];
+                    double py = pointY[p - 1];
+                    if (intersects(px, py, x, y, tolerance)) {
+                        intersects = true;
+                        duplicate |= px == x && py == y;
+                        int pNode = pointNode[p - 1];
+                        if (pNode != NO_NODE && (node == NO_NODE || pNode < node)) {
+                            node = pNode;
+                        }
+                    }
+                }
+            }
+        }
+        if (!intersects) {
+            node = addNode(z);
+            addPoint(cellIndex(x), cellIndex(y), x, y, node);
+        } else if (!duplicate) {
+            // Later endpoints may intersect this one but not the nodes around it
+            addPoint(cellIndex(x), cellIndex(y), x, y, NO_NODE);
+        }
+        return node;
+    }
+
+    /**
+     * @return Number of nodes created so far, the last node id
+     */
+    int getNodeCount() {
+        return nodeCount;
+    }
+
+    /**
+     * @param nodeId Node id
+     * @return The z value of the endpoint that created this node
+     */
+    double getNodeZ(int nodeId) {
+        return nodeZ[nodeId];
+    }
+
+    /**
+     * @return True if the envelopes of both endpoints, expanded by the tolerance, intersect
+     */
+    static boolean intersects(double x1, double y1, double x2, double y2, double tolerance) {
+        return x1 - tolerance <= x2 + tolerance && x1 + tolerance >= x2 - tolerance
+                && y1 - tolerance <= y2 + tolerance && y1 + tolerance >= y2 - tolerance;
+    }
+
+    private long cellIndex(double value) {
+        return (long) Math.floor(value / cellSize);
+    }
+
+    private int addNode(double z) {
+        nodeCount++;
+        if (nodeCount == nodeZ.length) {
+            nodeZ = Arrays.copyOf(nodeZ, nodeZ.length * 2);
+        }
+        nodeZ[nodeCount] = z;
+        return nodeCount;
+    }
+
+    private void addPoint(long keyX, long keyY, double x, double y, int node) {
+        if (pointCount == pointX.length) {
+            int capacity = pointCount * 2;
+            pointX = Arrays.copyOf(pointX, capacity);
+            pointY = Arrays.copyOf(pointY, capacity);
+            pointNode = Arrays.copyOf(pointNode, capacity);
+            nextPoint = Arrays.copyOf(nextPoint, capacity);
+        }
+        int slot = findCell(keyX, keyY);
+        if (cellHead[slot] == 0) {
+            cellX[slot] = keyX;
+            cellY[slot] = keyY;
+            cellCount++;
+        }
+        pointX[pointCount] = x;
+        pointY[pointCount] = y;
+        pointNode[pointCount] = node;
+        nextPoint[pointCount] = cellHead[slot];
+        pointCount++;
+        cellHead[slot] = pointCount;
+        if (cellCount * 2 > cellHead.length) {
+            rehash();
+        }
+    }
+
+    /**
+     * @return The slot of the given cell, or the empty slot where it would be inserted
+     */
+    private int findCell(long keyX, long keyY) {
+        int mask = cellHead.length - 1;
+        long hash = keyX * 0x9E3779B97F4A7C15L + keyY;
+        int slot = (int) (hash ^ (hash >>> 32)) & mask;
+        while (cellHead[slot] != 0 && (cellX[slot] != keyX || cellY[slot] != keyY)) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void rehash() {
+        long[] oldX = cellX;
+        long[] oldY = cellY;
+        int[] oldHead = cellHead;
+        cellX = new long[oldHead.length * 2];
+        cellY = new long[oldHead.length * 2];
+        cellHead = new int[oldHead.length * 2];
+        for (int i = 0; i < oldHead.length; i++) {
+            if (oldHead[i] != 0) {
+                int slot = findCell(oldX[i], oldY[i]);
+                cellX[slot] = oldX[i];
+                cellY[slot] = oldY[i];
+                cellHead[slot] = oldHead[i];
+            }
+        }
+    }
+}
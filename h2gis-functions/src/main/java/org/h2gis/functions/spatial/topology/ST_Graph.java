@@ -20,7 +20,12 @@
 package org.h2gis.functions.spatial.topology;
 
 
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.GeometryFactory;
+import com.vividsolutions.jts.geom.PrecisionModel;
 import java.sql.*;
+import java.util.Arrays;
 import java.util.List;
 import org.h2gis.api.AbstractFunction;
 import org.h2gis.api.ScalarFunction;
@@ -73,6 +78,8 @@ public class ST_Graph extends AbstractFunction implements ScalarFunction {
     public static final String TYPE_ERROR = "Only LINESTRINGs " +
             "are accepted. Type code: ";
     public static final String ALREADY_RUN_ERROR = "ST_Graph has already been called on table ";
+    private static final int BATCH_MAX_SIZE = 100;
+    private static final int INITIAL_EDGE_CAPACITY = 1024;
     
     /**
      * Constructor
@@ -264,24 +271,23 @@ public class ST_Graph extends AbstractFunction implements ScalarFunction {
         spatialFieldName = (String) spatialFieldIndexAndName[0];
         checkGeometryType(connection, tableName, spatialFieldIndex);
         final String geomCol = JDBCUtilities.getFieldName(md, tableName.getTable(), spatialFieldIndex);
-        final Statement st = connection.createStatement();
+        final int srid = SFSUtilities.getSRID(connection, tableName, spatialFieldName);
         try {
-            firstFirstLastLast(st, tableName, pkColName, geomCol, tolerance);            
-            int srid = SFSUtilities.getSRID(connection, tableName, spatialFieldName);
-            makeEnvelopes(st, tolerance, isH2, srid);
-            nodesTable(st, nodesName, tolerance, isH2,srid);
-            edgesTable(st, nodesName, edgesName, tolerance, isH2);
-            checkForNullEdgeEndpoints(st, edgesName);
-            if (orientBySlope) {
-                orientBySlope(st, nodesName, edgesName);
+            buildGraph(connection, tableName, pkColName, geomCol, nodesName, edgesName, tolerance, orientBySlope,
+                    isH2, srid);
+        } catch (SQLException | RuntimeException ex) {
+            Statement st = connection.createStatement();
+            try {
+                st.execute("DROP TABLE IF EXISTS " + nodesName.toString(isH2) + ", " + edgesName.toString(isH2));
+            } finally {
+                st.close();
             }
-        } finally {
-            st.close();
+            throw ex;
         }
         return true;
     }
 
-    private static void checkGeometryType(Connection connection,
+    static void checkGeometryType(Connection connection,
             TableLocation tableName,
             int spatialFieldIndex) throws SQLException {
         final String fieldName
@@ -303,7 +309,7 @@ public class ST_Graph extends AbstractFunction implements ScalarFunction {
      * @return Spatial field index and its name
      * @throws SQLException
      */
-    private static Object[] getSpatialFieldIndexAndName(Connection connection,
+    static Object[] getSpatialFieldIndexAndName(Connection connection,
                                             TableLocation tableName,
                                             String spatialFieldName) throws SQLException {
         // Find the name of the first geometry column if not provided by the user.
@@ -334,249 +340,219 @@ public class ST_Graph extends AbstractFunction implements ScalarFunction {
         return new Object[]{spatialFieldName,spatialFieldIndex};
     }
 
-    private static String expand(String geom, double tol) {
-        return "ST_Expand(" + geom + ", " + tol + ")";
+    /**
+     * Stream the input table once, snap the first and last coordinates of each geometry in a grid hash and
+     * batch insert the nodes and edges tables. All the first coordinates are snapped before the last coordinates
+     * so that node ids follow the same order as the snapping.
+     */
+    private static void buildGraph(Connection connection,
+                                   TableLocation tableName,
+                                   String pkColName,
+                                   String geomCol,
+                                   TableLocation nodesName,
+                                   TableLocation edgesName,
+                                   double tolerance,
+                                   boolean orientBySlope,
+                                   boolean isH2,
+                                   int srid) throws SQLException {
+        final GeometryFactory factory = new GeometryFactory(new PrecisionModel(), srid);
+        final NodeSnapper snapper = new NodeSnapper(tolerance);
+        final PendingEdges edges = new PendingEdges();
+        final Statement st = connection.createStatement();
+        try {
+            LOGGER.info("Snapping the first coordinate of each geometry...");
+            ResultSet rs = st.executeQuery("SELECT " + TableLocation.quoteIdentifier(pkColName, isH2) + ", "
+                    + TableLocation.quoteIdentifier(geomCol, isH2) + " FROM " + tableName.toString(isH2));
+            try {
+                createTables(st, nodesName, edgesName, rs.getMetaData().getColumnType(1) == Types.BIGINT, isH2,
+                        srid);
+                PreparedStatement nodesInsert = connection.prepareStatement("INSERT INTO "
+                        + nodesName.toString(isH2) + " VALUES (?, ?)");
+                try {
+                    int batchSize = 0;
+                    while (rs.next()) {
+                        final Geometry geom = (Geometry) rs.getObject(2);
+                        final Coordinate start = getFirstCoordinate(geom);
+                        final Coordinate end = getLastCoordinate(geom);
+                        int startNode = NodeSnapper.NO_NODE;
+                        if (start != null) {
+                            int nodeCount = snapper.getNodeCount();
+                            startNode = snapper.snap(start.x, start.y, start.z);
+                            if (snapper.getNodeCount() > nodeCount) {
+                                batchSize = addNode(nodesInsert, batchSize, startNode, factory, start);
+                            }
+                        }
+                        edges.add(rs.getLong(1), startNode, end);
+                    }
+                    LOGGER.info("Snapping the last coordinate of each geometry...");
+                    for (int i = 0; i < edges.size; i++) {
+                        if (!Double.isNaN(edges.endX[i])) {
+                            int nodeCount = snapper.getNodeCount();
+                            Coordinate end = new Coordinate(edges.endX[i], edges.endY[i], edges.endZ[i]);
+                            edges.endNode[i] = snapper.snap(end.x, end.y, end.z);
+                            if (snapper.getNodeCount() > nodeCount) {
+                                batchSize = addNode(nodesInsert, batchSize, edges.endNode[i], factory, end);
+                            }
+                        }
+                    }
+                    if (batchSize > 0) {
+                        nodesInsert.executeBatch();
+                    }
+                } finally {
+                    nodesInsert.close();
+                }
+            } finally {
+                rs.close();
+            }
+        } finally {
+            st.close();
+        }
+        checkForNullEdgeEndpoints(edges);
+        LOGGER.info("Creating the edges table...");
+        PreparedStatement edgesInsert = connection.prepareStatement("INSERT INTO "
+                + edgesName.toString(isH2) + " VALUES (?, ?, ?)");
+        try {
+            int batchSize = 0;
+            for (int i = 0; i < edges.size; i++) {
+                int startNode = edges.startNode[i];
+                int endNode = edges.endNode[i];
+                // Orient edges by decreasing z, the comparison is false if a z value is missing
+                if (orientBySlope && snapper.getNodeZ(startNode) < snapper.getNodeZ(endNode)) {
+                    startNode = edges.endNode[i];
+                    endNode = edges.startNode[i];
+                }
+                edgesInsert.setLong(1, edges.edgeId[i]);
+                edgesInsert.setInt(2, startNode);
+                edgesInsert.setInt(3, endNode);
+                edgesInsert.addBatch();
+                batchSize++;
+                if (batchSize >= BATCH_MAX_SIZE) {
+                    edgesInsert.executeBatch();
+                    edgesInsert.clearBatch();
+                    batchSize = 0;
+                }
+            }
+            if (batchSize > 0) {
+                edgesInsert.executeBatch();
+            }
+        } finally {
+            edgesInsert.close();
+        }
     }
 
     /**
-     * Return the first and last coordinates table
-     * @param st
-     * @param tableName
-     * @param pkCol
-     * @param geomCol
-     * @param tolerance
-     * @throws SQLException 
+     * @param geom LINESTRING or MULTILINESTRING, may be null
+     * @return The first coordinate of the first geometry, null if there is none
      */
-    private static void firstFirstLastLast(Statement st,
-                                           TableLocation tableName,
-                                           String pkCol,
-                                           String geomCol,
-                                           double tolerance) throws SQLException {
-        LOGGER.info("Selecting the first coordinate of the first geometry and " +
-                "the last coordinate of the last geometry...");
-        final String numGeoms = "ST_NumGeometries(" + geomCol + ")";
-        final String firstGeom = "ST_GeometryN(" + geomCol + ", 1)";
-        final String firstPointFirstGeom = "ST_PointN(" + firstGeom + ", 1)";
-        final String lastGeom = "ST_GeometryN(" + geomCol + ", " + numGeoms + ")";
-        final String lastPointLastGeom = "ST_PointN(" + lastGeom + ", ST_NumPoints(" + lastGeom + "))";
-        st.execute("drop TABLE if exists COORDS");
-        if (tolerance > 0) {
-            st.execute("CREATE TEMPORARY TABLE COORDS AS "
-                    + "SELECT " + pkCol + " EDGE_ID, "
-                    + firstPointFirstGeom + " START_POINT, "
-                    + expand(firstPointFirstGeom, tolerance) + " START_POINT_EXP, "
-                    + lastPointLastGeom + " END_POINT, "
-                    + expand(lastPointLastGeom, tolerance) + " END_POINT_EXP "
-                    + "FROM " + tableName);
-        } else {
-            // If the tolerance is zero, there is no need to call ST_Expand.
-            st.execute("CREATE TEMPORARY TABLE COORDS AS "
-                    + "SELECT " + pkCol + " EDGE_ID, "
-                    + firstPointFirstGeom + " START_POINT, "
-                    + lastPointLastGeom + " END_POINT "
-                    + "FROM " + tableName);
+    static Coordinate getFirstCoordinate(Geometry geom) {
+        if (geom == null || geom.isEmpty()) {
+            return null;
         }
+        final Coordinate[] first = geom.getGeometryN(0).getCoordinates();
+        return first.length > 0 ? first[0] : null;
     }
 
     /**
-     * Make a big table of all points in the coords table with an envelope around each point.
-     * We will use this table to remove duplicate points.
+     * @param geom LINESTRING or MULTILINESTRING, may be null
+     * @return The last coordinate of the last geometry, null if there is none
      */
-    private static void makeEnvelopes(Statement st, double tolerance, boolean isH2, int srid) throws SQLException {
-        st.execute("DROP TABLE IF EXISTS PTS;");
-        if (tolerance > 0) {
-            LOGGER.info("Calculating envelopes around coordinates...");            
-            if (isH2) {
-                // Putting all points and their envelopes together...
-                st.execute("CREATE TEMPORARY TABLE PTS( "
-                        + "ID SERIAL PRIMARY KEY, "
-                        + "THE_GEOM POINT, "
-                        + "AREA POLYGON "
-                        + ") AS "
-                        + "SELECT NULL, START_POINT, START_POINT_EXP FROM COORDS "
-                        + "UNION ALL "
-                        + "SELECT NULL, END_POINT, END_POINT_EXP FROM COORDS;");
-                // Putting a spatial index on the envelopes...
-                st.execute("CREATE SPATIAL INDEX ON PTS(AREA);");
-            } else {
-                // Putting all points and their envelopes together...
-                st.execute("CREATE TEMPORARY TABLE PTS( ID SERIAL PRIMARY KEY, "
-                        + "THE_GEOM GEOMETRY(POINT,"+srid+"),"
-                        + "AREA GEOMETRY(POLYGON, "+srid+")"
-                        + ") ");
-                 st.execute("INSERT INTO PTS (SELECT (row_number() over())::int , a.THE_GEOM, A.AREA FROM  "
-                        + "(SELECT  START_POINT AS THE_GEOM, START_POINT_EXP as AREA FROM COORDS "
-                        + "UNION ALL "
-                        + "SELECT  END_POINT AS THE_GEOM, END_POINT_EXP as AREA FROM COORDS) as a);");
-                // Putting a spatial index on the envelopes...
-                st.execute("CREATE INDEX ON PTS USING GIST(AREA);");
-            }
-        } else {
-            LOGGER.info("Preparing temporary nodes table from coordinates...");
-            if (isH2) {
-                // If the tolerance is zero, we just put all points together
-                st.execute("CREATE TEMPORARY TABLE PTS( "
-                        + "ID SERIAL PRIMARY KEY, "
-                        + "THE_GEOM POINT"
-                        + ") AS "
-                        + "SELECT NULL, START_POINT FROM COORDS "
-                        + "UNION ALL "
-                        + "SELECT NULL, END_POINT FROM COORDS;");
-                // Putting a spatial index on the points themselves...
-                st.execute("CREATE SPATIAL INDEX ON PTS(THE_GEOM);");
-            } else {
-                // If the tolerance is zero, we just put all points together
-                st.execute("CREATE TEMPORARY TABLE PTS( "
-                        + "ID SERIAL PRIMARY KEY, "
-                        + "THE_GEOM GEOMETRY(POINT,"+srid+")"
-                        + ")");
-                st.execute("INSERT INTO PTS (SELECT (row_number() over())::int , a.the_geom FROM "
-                        + "(SELECT  START_POINT as THE_GEOM FROM COORDS "
-                        + "UNION ALL "
-                        + "SELECT  END_POINT as THE_GEOM FROM COORDS) as a);");
-                // Putting a spatial index on the points themselves...
-                st.execute("CREATE INDEX ON PTS USING GIST(THE_GEOM);");
-            }            
+    static Coordinate getLastCoordinate(Geometry geom) {
+        if (geom == null || geom.isEmpty()) {
+            return null;
         }
+        final Coordinate[] last = geom.getGeometryN(geom.getNumGeometries() - 1).getCoordinates();
+        return last.length > 0 ? last[last.length - 1] : null;
     }
 
     /**
-     * Create the nodes table.
+     * Create the empty nodes and edges tables.
      */
-    private static void nodesTable(Statement st,
-                                   TableLocation nodesName,
-                                   double tolerance, boolean isH2, int srid) throws SQLException {
+    private static void createTables(Statement st,
+                                     TableLocation nodesName,
+                                     TableLocation edgesName,
+                                     boolean bigintEdgeId,
+                                     boolean isH2,
+                                     int srid) throws SQLException {
         LOGGER.info("Creating the nodes table...");
-        // Creating nodes table by removing copies from the pts table.
-        if (tolerance > 0) {
-            if(isH2){
+        if (isH2) {
             st.execute("CREATE TABLE " + nodesName + "(" +
                     "NODE_ID SERIAL PRIMARY KEY, " +
-                    "THE_GEOM POINT, " +
-                    "EXP POLYGON" +
-                    ") AS " +
-                    "SELECT NULL, A.THE_GEOM, A.AREA FROM PTS A, PTS B " +
-                    "WHERE A.AREA && B.AREA " +
-                    "GROUP BY A.ID " +
-                    "HAVING A.ID=MIN(B.ID);");
-            }
-            else{
-               st.execute("CREATE TABLE " + nodesName + "(" +
-                    "NODE_ID SERIAL PRIMARY KEY, " +
-                    "THE_GEOM GEOMETRY(POINT, " + srid+"), "+
-                    "EXP GEOMETRY(POLYGON," +srid+")"+
-                    ") " );
-                st.execute( "INSERT INTO "+nodesName +" (SELECT (row_number() over())::int , c.the_geom, c.area FROM (SELECT  A.THE_GEOM, A.AREA FROM PTS A, PTS B " +
-                    "WHERE A.AREA && B.AREA " +
-                    "GROUP BY A.ID " +
-                    "HAVING A.ID=MIN(B.ID)) as c);"); 
-            }
+                    "THE_GEOM POINT)");
         } else {
-            
-            if(isH2){
-               // If the tolerance is zero, we can create the NODES table
-            // by using = rather than &&.
             st.execute("CREATE TABLE " + nodesName + "(" +
                     "NODE_ID SERIAL PRIMARY KEY, " +
-                    "THE_GEOM POINT" +
-                    ") AS " +
-                    "SELECT NULL, A.THE_GEOM FROM PTS A, PTS B " +
-                    "WHERE A.THE_GEOM && B.THE_GEOM AND A.THE_GEOM=B.THE_GEOM " +
-                    "GROUP BY A.ID " +
-                    "HAVING A.ID=MIN(B.ID);"); 
-            }
-            else{
-            // If the tolerance is zero, we can create the NODES table
-            // by using = rather than &&.
-            st.execute("CREATE TABLE " + nodesName + "(" +
-                    "NODE_ID SERIAL PRIMARY KEY, " +
-                    "THE_GEOM GEOMETRY(POINT, "+srid+")" +
-                    ") " );            
-            st.execute("INSERT INTO "+nodesName +" (SELECT (row_number() over())::int , c.the_geom FROM (SELECT A.THE_GEOM FROM PTS A, PTS B " +
-                    "WHERE A.THE_GEOM && B.THE_GEOM AND A.THE_GEOM=B.THE_GEOM " +
-                    "GROUP BY A.ID " +
-                    "HAVING A.ID=MIN(B.ID)) as c);");
-            }
+                    "THE_GEOM GEOMETRY(POINT, " + srid + "))");
         }
+        st.execute("CREATE TABLE " + edgesName + "(" +
+                "EDGE_ID " + (bigintEdgeId ? "BIGINT" : "INT") + ", " +
+                "START_NODE INT, " +
+                "END_NODE INT)");
     }
 
-    /**
-     * Create the edges table.
-     */
-    private static void edgesTable(Statement st,
-                                   TableLocation nodesName,
-                                   TableLocation edgesName,
-                                   double tolerance, boolean isH2) throws SQLException {
-        LOGGER.info("Creating the edges table...");
-        if (tolerance > 0) {
-            if (isH2) {
-                st.execute("CREATE SPATIAL INDEX ON " + nodesName + "(EXP);");
-                st.execute("CREATE SPATIAL INDEX ON COORDS(START_POINT_EXP);");
-                st.execute("CREATE SPATIAL INDEX ON COORDS(END_POINT_EXP);");
-            } else {
-                st.execute("CREATE  INDEX ON " + nodesName + " USING GIST(EXP);");
-                st.execute("CREATE  INDEX ON COORDS USING GIST(START_POINT_EXP);");
-                st.execute("CREATE  INDEX ON COORDS USING GIST(END_POINT_EXP);");
-            }
-            st.execute("CREATE TABLE " + edgesName + " AS " +
-                    "SELECT EDGE_ID, " +
-                    "(SELECT NODE_ID FROM " + nodesName +
-                    " WHERE " + nodesName + ".EXP && COORDS.START_POINT_EXP LIMIT 1) START_NODE, " +
-                    "(SELECT NODE_ID FROM " + nodesName +
-                    " WHERE " + nodesName + ".EXP && COORDS.END_POINT_EXP LIMIT 1) END_NODE " +
-                    "FROM COORDS;");
-            st.execute("ALTER TABLE " + nodesName + " DROP COLUMN EXP;");
-        } else {
-            if (isH2) {
-                st.execute("CREATE SPATIAL INDEX ON " + nodesName + "(THE_GEOM);");
-                st.execute("CREATE SPATIAL INDEX ON COORDS(START_POINT);");
-                st.execute("CREATE SPATIAL INDEX ON COORDS(END_POINT);");
-            } else {
-                st.execute("CREATE INDEX ON " + nodesName + " USING GIST(THE_GEOM);");
-                st.execute("CREATE INDEX ON COORDS USING GIST(START_POINT);");
-                st.execute("CREATE INDEX ON COORDS USING GIST(END_POINT);");
-            }
-            // If the tolerance is zero, then we can use = on the geometries
-            // instead of && on the envelopes.
-            st.execute("CREATE TABLE " + edgesName + " AS " +
-                    "SELECT EDGE_ID, " +
-                    "(SELECT NODE_ID FROM " + nodesName +
-                    " WHERE " + nodesName + ".THE_GEOM && COORDS.START_POINT " +
-                    "AND " + nodesName + ".THE_GEOM=COORDS.START_POINT LIMIT 1) START_NODE, " +
-                    "(SELECT NODE_ID FROM " + nodesName +
-                    " WHERE " + nodesName + ".THE_GEOM && COORDS.END_POINT " +
-                    "AND " + nodesName + ".THE_GEOM=COORDS.END_POINT LIMIT 1) END_NODE " +
-                    "FROM COORDS;");
+    private static int addNode(PreparedStatement nodesInsert,
+                               int batchSize,
+                               int nodeId,
+                               GeometryFactory factory,
+                               Coordinate coordinate) throws SQLException {
+        nodesInsert.setInt(1, nodeId);
+        nodesInsert.setObject(2, factory.createPoint(new Coordinate(coordinate)));
+        nodesInsert.addBatch();
+        batchSize++;
+        if (batchSize >= BATCH_MAX_SIZE) {
+            nodesInsert.executeBatch();
+            nodesInsert.clearBatch();
+            batchSize = 0;
         }
+        return batchSize;
     }
 
-    private static void orientBySlope(Statement st,
-                                      TableLocation nodesName,
-                                      TableLocation edgesName) throws SQLException {
-        LOGGER.info("Orienting edges by slope...");
-        st.execute("UPDATE " + edgesName + " c " +
-                    "SET START_NODE=END_NODE, " +
-                    "    END_NODE=START_NODE " +
-                    "WHERE (SELECT ST_Z(A.THE_GEOM) < ST_Z(B.THE_GEOM) " +
-                            "FROM " + nodesName + " A, " + nodesName + " B " +
-                            "WHERE C.START_NODE=A.NODE_ID AND C.END_NODE=B.NODE_ID);");
+    private static void checkForNullEdgeEndpoints(PendingEdges edges) {
+        LOGGER.info("Checking for null edge endpoints...");
+        int n = 0;
+        for (int i = 0; i < edges.size; i++) {
+            if (edges.startNode[i] == NodeSnapper.NO_NODE || edges.endNode[i] == NodeSnapper.NO_NODE) {
+                n++;
+            }
+        }
+        if (n > 0) {
+            String msg = "There " + (n == 1 ? "is one edge " : "are " + n + " edges ");
+            throw new IllegalStateException(msg + "with a null start node or end node. " +
+                    "Try using a slightly smaller tolerance.");
+        }
     }
 
-    private static void checkForNullEdgeEndpoints(Statement st,
-                                                  TableLocation edgesName) throws SQLException {
-        LOGGER.info("Checking for null edge endpoints...");
-        final ResultSet nullEdges = st.executeQuery("SELECT COUNT(*) FROM " + edgesName + " WHERE " +
-                "START_NODE IS NULL OR END_NODE IS NULL;");
-        try {
-            nullEdges.next();
-            final int n = nullEdges.getInt(1);
-            if (n > 0) {
-                String msg = "There " + (n == 1 ? "is one edge " : "are " + n + " edges ");
-                throw new IllegalStateException(msg + "with a null start node or end node. " +
-                        "Try using a slightly smaller tolerance.");
+    /**
+     * Edges read from the input table, kept until their last coordinate is snapped.
+     */
+    private static class PendingEdges {
+        private long[] edgeId = new long[INITIAL_EDGE_CAPACITY];
+        private int[] startNode = new int[INITIAL_EDGE_CAPACITY];
+        private int[] endNode = new int[INITIAL_EDGE_CAPACITY];
+        private double[] endX = new double[INITIAL_EDGE_CAPACITY];
+        private double[] endY = new double[INITIAL_EDGE_CAPACITY];
+        private double[] endZ = new double[INITIAL_EDGE_CAPACITY];
+        private int size = 0;
+
+        /**
+         * @param end Last coordinate, null if the geometry is null or empty
+         */
+        private void add(long id, int start, Coordinate end) {
+            if (size == edgeId.length) {
+                int capacity = size * 2;
+                edgeId = Arrays.copyOf(edgeId, capacity);
+                startNode = Arrays.copyOf(startNode, capacity);
+                endNode = Arrays.copyOf(endNode, capacity);
+                endX = Arrays.copyOf(endX, capacity);
+                endY = Arrays.copyOf(endY, capacity);
+                endZ = Arrays.copyOf(endZ, capacity);
             }
-        } finally {
-            nullEdges.close();
+            edgeId[size] = id;
+            startNode[size] = start;
+            endNode[size] = NodeSnapper.NO_NODE;
+            endX[size] = end == null ? Double.NaN : end.x;
+            endY[size] = end == null ? Double.NaN : end.y;
+            endZ[size] = end == null ? Double.NaN : end.z;
+            size++;
         }
     }
 }
@@ -0,0 +1,516 @@
+/**
+ * H2GIS is a library that brings spatial support to the H2 Database Engine
+ * <http://www.h2database.com>. H2GIS is developed by CNRS
+ * <http://www.cnrs.fr/>.
+ *
+ * This code is part of the H2GIS project. H2GIS is free software;
+ * you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation;
+ * version 3.0 of the License.
+ *
+ * H2GIS is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details <http://www.gnu.org/licenses/>.
+ *
+ *
+ * For more information, please consult: <http://www.h2gis.org/>
+ * or contact directly: info_at_h2gis.org
+ */
+
+package org.h2gis.functions.spatial.topology;
+
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.Envelope;
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.GeometryFactory;
+import com.vividsolutions.jts.geom.PrecisionModel;
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import org.h2gis.api.AbstractFunction;
+import org.h2gis.api.ScalarFunction;
+import org.h2gis.utilities.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Updates in place the nodes and edges tables produced by {@link ST_Graph}
+ * after rows have been inserted into or deleted from the input table.
+ * <p/>
+ * The edge ids are the primary keys of the input table, so unchanged edges
+ * keep their ids as well as their nodes. Rows whose geometry has been
+ * modified can be listed in a changes table.
+ */
+public class ST_GraphUpdate extends AbstractFunction implements ScalarFunction {
+
+    public static final String REMARKS =
+            "ST_GraphUpdate updates the nodes and edges tables produced by ST_Graph on an\n" +
+            "input table after rows have been inserted into or deleted from this table,\n" +
+            "instead of computing the whole graph again. Edges whose id is no longer in the\n" +
+            "input table are removed and rows of the input table that have no edge are\n" +
+            "added. The first and last coordinates of the added rows are snapped to the\n" +
+            "existing node with the smallest `node_id` within the given tolerance, or\n" +
+            "become new nodes with new ids. Existing nodes and edges keep their ids, and the\n" +
+            "nodes that are no longer used by an edge are removed. The tolerance and\n" +
+            "orientation should be the ones given to ST_Graph.\n" +
+            "\n" +
+            "A changes table may be given. Its first column contains the ids of rows whose\n" +
+            "geometry has been modified, their edges are computed again. The changes table\n" +
+            "is emptied once the update is done.\n";
+
+    public static final String NOT_RUN_ERROR = "ST_Graph has not been called on table ";
+    private static final Logger LOGGER = LoggerFactory.getLogger("gui." + ST_GraphUpdate.class);
+    private static final int BATCH_MAX_SIZE = 100;
+    private static final String INDEX_SUFFIX = "_IDX";
+
+    /**
+     * Constructor
+     */
+    public ST_GraphUpdate() {
+        addProperty(PROP_REMARKS, REMARKS);
+    }
+
+    @Override
+    public String getJavaStaticMethod() {
+        return "updateGraph";
+    }
+
+    /**
+     * Update the nodes and edges tables of the input table, using the first
+     * geometry column and a zero tolerance.
+     *
+     * @param connection Connection
+     * @param tableName  Input table containing LINESTRINGs
+     * @return true if the tables were updated
+     * @throws SQLException
+     */
+    public static boolean updateGraph(Connection connection,
+                                      String tableName) throws SQLException {
+        return updateGraph(connection, tableName, null);
+    }
+
+    /**
+     * Update the nodes and edges tables of the input table using a zero
+     * tolerance.
+     *
+     * @param connection       Connection
+     * @param tableName        Input table
+     * @param spatialFieldName Name of column containing LINESTRINGs
+     * @return true if the tables were updated
+     * @throws SQLException
+     */
+    public static boolean updateGraph(Connection connection,
+                                      String tableName,
+                                      String spatialFieldName) throws SQLException {
+        return updateGraph(connection, tableName, spatialFieldName, 0.0);
+    }
+
+    /**
+     * Update the nodes and edges tables of the input table using the given
+     * tolerance.
+     *
+     * @param connection       Connection
+     * @param tableName        Input table
+     * @param spatialFieldName Name of column containing LINESTRINGs
+     * @param tolerance        Tolerance given to ST_Graph
+     * @return true if the tables were updated
+     * @throws SQLException
+     */
+    public static boolean updateGraph(Connection connection,
+                                      String tableName,
+                                      String spatialFieldName,
+                                      double tolerance) throws SQLException {
+        return updateGraph(connection, tableName, spatialFieldName, tolerance, false);
+    }
+
+    /**
+     * Update the nodes and edges tables of the input table using the given
+     * tolerance, and potentially orienting the added edges by slope.
+     *
+     * @param connection       Connection
+     * @param tableName        Input table
+     * @param spatialFieldName Name of column containing LINESTRINGs
+     * @param tolerance        Tolerance given to ST_Graph
+     * @param orientBySlope    True if edges should be oriented by the z-value of
+     *                         their first and last coordinates (decreasing)
+     * @return true if the tables were updated
+     * @throws SQLException
+     */
+    public static boolean updateGraph(Connection connection,
+                                      String tableName,
+                                      String spatialFieldName,
+                                      double tolerance,
+                                      boolean orientBySlope) throws SQLException {
+        return updateGraph(connection, tableName, spatialFieldName, tolerance, orientBySlope, null);
+    }
+
+    /**
+     * Update the nodes and edges tables of the input table using the given
+     * tolerance, and potentially orienting the added edges by slope.
+     * <p/>
+     * The edges of the rows listed in the first column of the changes table
+     * are computed again, then the changes table is emptied.
+     *
+     * @param connection       Connection
+     * @param inputTable       Input table
+     * @param spatialFieldName Name of column containing LINESTRINGs
+     * @param tolerance        Tolerance given to ST_Graph
+     * @param orientBySlope    True if edges should be oriented by the z-value of
+     *                         their first and last coordinates (decreasing)
+     * @param changesTable     Table of modified row ids, may be null
+     * @return true if the tables were updated
+     * @throws SQLException
+     */
+    public static boolean updateGraph(Connection connection,
+                                      String inputTable,
+                                      String spatialFieldName,
+                                      double tolerance,
+                                      boolean orientBySlope,
+                                      String changesTable) throws SQLException {
+        if (tolerance < 0) {
+            throw new IllegalArgumentException("Only positive tolerances are allowed.");
+        }
+        final TableLocation tableName = TableUtilities.parseInputTable(connection, inputTable);
+        final TableLocation nodesName = TableUtilities.suffixTableLocation(tableName, ST_Graph.NODES_SUFFIX);
+        final TableLocation edgesName = TableUtilities.suffixTableLocation(tableName, ST_Graph.EDGES_SUFFIX);
+        final TableLocation changesName = changesTable == null ? null
+                : TableUtilities.parseInputTable(connection, changesTable);
+        final boolean isH2 = JDBCUtilities.isH2DataBase(connection.getMetaData());
+        if (!JDBCUtilities.tableExists(connection, nodesName.getTable()) ||
+                !JDBCUtilities.tableExists(connection, edgesName.getTable())) {
+            throw new IllegalArgumentException(NOT_RUN_ERROR + tableName.getTable());
+        }
+        final int pkIndex = JDBCUtilities.getIntegerPrimaryKey(connection, tableName.getTable());
+        if (pkIndex == 0) {
+            throw new IllegalStateException("Table " + tableName.getTable()
+                    + " must contain a single integer primary key.");
+        }
+        final DatabaseMetaData md = connection.getMetaData();
+        final String pkColName = JDBCUtilities.getFieldName(md, tableName.getTable(), pkIndex);
+        final Object[] spatialFieldIndexAndName =
+                ST_Graph.getSpatialFieldIndexAndName(connection, tableName, spatialFieldName);
+        final int spatialFieldIndex = (int) spatialFieldIndexAndName[1];
+        spatialFieldName = (String) spatialFieldIndexAndName[0];
+        ST_Graph.checkGeometryType(connection, tableName, spatialFieldIndex);
+        final String geomCol = JDBCUtilities.getFieldName(md, tableName.getTable(), spatialFieldIndex);
+        final int srid = SFSUtilities.getSRID(connection, tableName, spatialFieldName);
+        createIndexes(connection, nodesName, edgesName, isH2);
+        final boolean previousAutoCommit = connection.getAutoCommit();
+        connection.setAutoCommit(false);
+        try {
+            final Set<Integer> removedNodes = deleteEdges(connection, tableName, edgesName, changesName,
+                    TableLocation.quoteIdentifier(pkColName, isH2), isH2);
+            insertEdges(connection, tableName, nodesName, edgesName,
+                    TableLocation.quoteIdentifier(pkColName, isH2), TableLocation.quoteIdentifier(geomCol, isH2),
+                    tolerance, orientBySlope, isH2, srid);
+            deleteUnusedNodes(connection, nodesName, edgesName, removedNodes, isH2);
+            if (changesName != null) {
+                Statement st = connection.createStatement();
+                try {
+                    st.execute("DELETE FROM " + changesName.toString(isH2));
+                } finally {
+                    st.close();
+                }
+            }
+            connection.commit();
+        } catch (SQLException | RuntimeException ex) {
+            connection.rollback();
+            throw ex;
+        } finally {
+            connection.setAutoCommit(previousAutoCommit);
+        }
+        return true;
+    }
+
+    /**
+     * Index the node geometries and the edge ids and endpoints, unless they already are.
+     */
+    private static void createIndexes(Connection connection,
+                                      TableLocation nodesName,
+                                      TableLocation edgesName,
+                                      boolean isH2) throws SQLException {
+        Statement st = connection.createStatement();
+        try {
+            if (isH2) {
+                st.execute("CREATE SPATIAL INDEX IF NOT EXISTS " + indexName(nodesName, "THE_GEOM", isH2)
+                        + " ON " + nodesName.toString(isH2) + "(THE_GEOM)");
+            } else {
+                st.execute("CREATE INDEX IF NOT EXISTS " + indexName(nodesName, "THE_GEOM", isH2)
+                        + " ON " + nodesName.toString(isH2) + " USING GIST(THE_GEOM)");
+            }
+            for (String column : new String[]{"EDGE_ID", "START_NODE", "END_NODE"}) {
+                st.execute("CREATE INDEX IF NOT EXISTS " + indexName(edgesName, column, isH2)
+                        + " ON " + edgesName.toString(isH2) + "(" + column + ")");
+            }
+        } finally {
+            st.close();
+        }
+    }
+
+    private static String indexName(TableLocation table, String column, boolean isH2) {
+        final String name = table.getTable() + "_" + column + INDEX_SUFFIX;
+        // PostgreSQL creates indexes in the schema of their table
+        return isH2 ? new TableLocation(table.getSchema(), name).toString(isH2)
+                : TableLocation.quoteIdentifier(name, isH2);
+    }
+
+    /**
+     * Delete the edges that are no longer in the input table or that are
+     * listed in the changes table.
+     *
+     * @return The endpoints of the deleted edges
+     */
+    private static Set<Integer> deleteEdges(Connection connection,
+                                            TableLocation tableName,
+                                            TableLocation edgesName,
+                                            TableLocation changesName,
+                                            String pkCol,
+                                            boolean isH2) throws SQLException {
+        LOGGER.info("Deleting the edges of deleted or modified rows...");
+        final Set<Integer> endpoints = new HashSet<Integer>();
+        final List<Long> edgeIds = new ArrayList<Long>();
+        Statement st = connection.createStatement();
+        try {
+            ResultSet rs = st.executeQuery("SELECT EDGE_ID, START_NODE, END_NODE FROM "
+                    + edgesName.toString(isH2) + " E WHERE NOT EXISTS (SELECT 1 FROM "
+                    + tableName.toString(isH2) + " I WHERE I." + pkCol + " = E.EDGE_ID)"
+                    + (changesName == null ? "" : " OR EDGE_ID IN (SELECT " + TableLocation.quoteIdentifier(
+                    JDBCUtilities.getFieldName(connection.getMetaData(), changesName.getTable(), 1), isH2)
+                    + " FROM " + changesName.toString(isH2) + ")"));
+            try {
+                while (rs.next()) {
+                    edgeIds.add(rs.getLong(1));
+                    endpoints.add(rs.getInt(2));
+                    endpoints.add(rs.getInt(3));
+                }
+            } finally {
+                rs.close();
+            }
+        } finally {
+            st.close();
+        }
+        PreparedStatement deleteSt = connection.prepareStatement("DELETE FROM " + edgesName.toString(isH2)
+                + " WHERE EDGE_ID = ?");
+        try {
+            int batchSize = 0;
+            for (Long edgeId : edgeIds) {
+                deleteSt.setLong(1, edgeId);
+                deleteSt.addBatch();
+                batchSize++;
+                if (batchSize >= BATCH_MAX_SIZE) {
+                    deleteSt.executeBatch();
+                    deleteSt.clearBatch();
+                    batchSize = 0;
+                }
+            }
+            if (batchSize > 0) {
+                deleteSt.executeBatch();
+            }
+        } finally {
+            deleteSt.close();
+        }
+        return endpoints;
+    }
+
+    /**
+     * Add an edge for each row of the input table that has none.
+     */
+    private static void insertEdges(Connection connection,
+                                    TableLocation tableName,
+                                    TableLocation nodesName,
+                                    TableLocation edgesName,
+                                    String pkCol,
+                                    String geomCol,
+                                    double tolerance,
+                                    boolean orientBySlope,
+                                    boolean isH2,
+                                    int srid) throws SQLException {
+        LOGGER.info("Adding the edges of inserted or modified rows...");
+        // Read the added rows before modifying the edges table
+        final List<Long> edgeIds = new ArrayList<Long>();
+        final List<Coordinate> endpoints = new ArrayList<Coordinate>();
+        Statement st = connection.createStatement();
+        try {
+            ResultSet rs = st.executeQuery("SELECT I." + pkCol + ", I." + geomCol + " FROM "
+                    + tableName.toString(isH2) + " I WHERE NOT EXISTS (SELECT 1 FROM "
+                    + edgesName.toString(isH2) + " E WHERE E.EDGE_ID = I." + pkCol + ")");
+            try {
+                while (rs.next()) {
+                    final Geometry geom = (Geometry) rs.getObject(2);
+                    edgeIds.add(rs.getLong(1));
+                    endpoints.add(ST_Graph.getFirstCoordinate(geom));
+                    endpoints.add(ST_Graph.getLastCoordinate(geom));
+                }
+            } finally {
+                rs.close();
+            }
+        } finally {
+            st.close();
+        }
+        if (edgeIds.isEmpty()) {
+            return;
+        }
+        if (endpoints.contains(null)) {
+            throw new IllegalStateException("The geometry of an inserted row has no first or last coordinate.");
+        }
+        final NodeFinder nodeFinder = new NodeFinder(connection, nodesName, tolerance, isH2, srid);
+        PreparedStatement insertSt = connection.prepareStatement("INSERT INTO " + edgesName.toString(isH2)
+                + " VALUES (?, ?, ?)");
+        try {
+            int batchSize = 0;
+            for (int i = 0; i < edgeIds.size(); i++) {
+                final Coordinate start = endpoints.get(2 * i);
+                final Coordinate end = endpoints.get(2 * i + 1);
+                int startNode = nodeFinder.snap(start);
+                double startZ = nodeFinder.getLastNodeZ();
+                int endNode = nodeFinder.snap(end);
+                double endZ = nodeFinder.getLastNodeZ();
+                // Orient edges by decreasing z, the comparison is false if a z value is missing
+                if (orientBySlope && startZ < endZ) {
+                    int tmp = startNode;
+                    startNode = endNode;
+                    endNode = tmp;
+                }
+                insertSt.setLong(1, edgeIds.get(i));
+                insertSt.setInt(2, startNode);
+                insertSt.setInt(3, endNode);
+                insertSt.addBatch();
+                batchSize++;
+                if (batchSize >= BATCH_MAX_SIZE) {
+                    insertSt.executeBatch();
+                    insertSt.clearBatch();
+                    batchSize = 0;
+                }
+            }
+            if (batchSize > 0) {
+                insertSt.executeBatch();
+            }
+        } finally {
+            insertSt.close();
+            nodeFinder.close();
+        }
+    }
+
+    /**
+     * Delete the given nodes if no edge starts or ends on them anymore.
+     */
+    private static void deleteUnusedNodes(Connection connection,
+                                          TableLocation nodesName,
+                                          TableLocation edgesName,
+                                          Set<Integer> nodes,
+                                          boolean isH2) throws SQLException {
+        LOGGER.info("Deleting unused nodes...");
+        final String edges = edgesName.toString(isH2);
+        PreparedStatement deleteSt = connection.prepareStatement("DELETE FROM " + nodesName.toString(isH2)
+                + " WHERE NODE_ID = ? AND NOT EXISTS (SELECT 1 FROM " + edges + " WHERE START_NODE = ?)"
+                + " AND NOT EXISTS (SELECT 1 FROM " + edges + " WHERE END_NODE = ?)");
+        try {
+            int batchSize = 0;
+            for (Integer node : nodes) {
+                deleteSt.setInt(1, node);
+                deleteSt.setInt(2, node);
+                deleteSt.setInt(3, node);
+                deleteSt.addBatch();
+                batchSize++;
+                if (batchSize >= BATCH_MAX_SIZE) {
+                    deleteSt.executeBatch();
+                    deleteSt.clearBatch();
+                    batchSize = 0;
+                }
+            }
+            if (batchSize > 0) {
+                deleteSt.executeBatch();
+            }
+        } finally {
+            deleteSt.close();
+        }
+    }
+
+    /**
+     * Snaps endpoints to the nodes table through its spatial index. New nodes are inserted right away so that the
+     * following endpoints can be snapped to them.
+     */
+    private static class NodeFinder {
+        private final double tolerance;
+        private final GeometryFactory factory;
+        private final PreparedStatement selectSt;
+        private final PreparedStatement insertSt;
+        private int lastNodeId;
+        private double lastNodeZ;
+
+        NodeFinder(Connection connection, TableLocation nodesName, double tolerance, boolean isH2, int srid)
+                throws SQLException {
+            this.tolerance = tolerance;
+            this.factory = new GeometryFactory(new PrecisionModel(), srid);
+            Statement st = connection.createStatement();
+            try {
+                ResultSet rs = st.executeQuery("SELECT MAX(NODE_ID) FROM " + nodesName.toString(isH2));
+                try {
+                    rs.next();
+                    lastNodeId = rs.getInt(1);
+                } finally {
+                    rs.close();
+                }
+            } finally {
+                st.close();
+            }
+            selectSt = connection.prepareStatement("SELECT NODE_ID, THE_GEOM FROM " + nodesName.toString(isH2)
+                    + " WHERE THE_GEOM && ?");
+            insertSt = connection.prepareStatement("INSERT INTO " + nodesName.toString(isH2) + " VALUES (?, ?)");
+        }
+
+        /**
+         * @return The id of the node with the smallest id whose envelope intersects the endpoint envelope, or of a
+         * new node at this endpoint
+         */
+        int snap(Coordinate endpoint) throws SQLException {
+            final Envelope envelope = new Envelope(endpoint);
+            // Nodes within the tolerance are at most twice the tolerance away, plus a margin for rounding errors
+            envelope.expandBy(2 * tolerance
+                    + 4 * Math.ulp(Math.max(Math.abs(endpoint.x), Math.abs(endpoint.y)) + 2 * tolerance));
+            selectSt.setObject(1, factory.toGeometry(envelope));
+            int node = NodeSnapper.NO_NODE;
+            double nodeZ = Double.NaN;
+            ResultSet rs = selectSt.executeQuery();
+            try {
+                while (rs.next()) {
+                    final int nodeId = rs.getInt(1);
+                    final Coordinate coordinate = ((Geometry) rs.getObject(2)).getCoordinate();
+                    final boolean snapped = tolerance == 0
+                            ? coordinate.x == endpoint.x && coordinate.y == endpoint.y
+                            : NodeSnapper.intersects(coordinate.x, coordinate.y, endpoint.x, endpoint.y, tolerance);
+                    if (snapped && (node == NodeSnapper.NO_NODE || nodeId < node)) {
+                        node = nodeId;
+                        nodeZ = coordinate.z;
+                    }
+                }
+            } finally {
+                rs.close();
+            }
+            if (node == NodeSnapper.NO_NODE) {
+                node = ++lastNodeId;
+                nodeZ = endpoint.z;
+                insertSt.setInt(1, node);
+                insertSt.setObject(2, factory.createPoint(new Coordinate(endpoint)));
+                insertSt.execute();
+            }
+            lastNodeZ = nodeZ;
+            return node;
+        }
+
+        /**
+         * @return The z value of the last snapped node
+         */
+        double getLastNodeZ() {
+            return lastNodeZ;
+        }
+
+        void close() throws SQLException {
+            selectSt.close();
+            insertSt.close();
+        }
+    }
+}
@@ -99,6 +99,20 @@ public class  DBFEngineTest {
         st.execute("drop table dbftable");
     }
 
+    @Test
+    public void readDBFProjectionsTest() throws SQLException {
+        Statement st = connection.createStatement();
+        st.execute("drop table if exists dbftable, dbfimport");
+        st.execute("CALL FILE_TABLE("+StringUtils.quoteStringSQL(SHPEngineTest.class.getResource("waternetwork.dbf").getPath())+", 'DBFTABLE');");
+        // The imported table is read with full rows
+        st.execute("CALL DBFRead("+StringUtils.quoteStringSQL(SHPEngineTest.class.getResource("waternetwork.dbf").getPath())+", 'DBFIMPORT');");
+        SHPEngineTest.checkSameRows(st, "DBFTABLE", "DBFIMPORT", "SELECT TYPE_AXE FROM %s");
+        SHPEngineTest.checkSameRows(st, "DBFTABLE", "DBFIMPORT", "SELECT LENGTH FROM %s");
+        SHPEngineTest.checkSameRows(st, "DBFTABLE", "DBFIMPORT", "SELECT GID FROM %s WHERE TYPE_AXE = 'ditch'");
+        SHPEngineTest.checkSameRows(st, "DBFTABLE", "DBFIMPORT", "SELECT TYPE_AXE, GID FROM %s WHERE LENGTH > 50");
+        st.execute("drop table dbftable, dbfimport");
+    }
+
     @Test
     public void testRowIdHiddenColumn() throws SQLException {
         Statement st = connection.createStatement();
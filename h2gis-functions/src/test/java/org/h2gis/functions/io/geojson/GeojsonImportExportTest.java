@@ -23,11 +23,14 @@ package org.h2gis.functions.io.geojson;
 import com.vividsolutions.jts.geom.Geometry;
 import com.vividsolutions.jts.io.WKTReader;
 
+import java.io.File;
+import java.io.FileWriter;
 import java.sql.Connection;
 import java.sql.ResultSet;
 import java.sql.Statement;
 
 import org.h2.util.StringUtils;
+import org.h2gis.api.EmptyProgressVisitor;
 import org.h2gis.functions.factory.H2GISDBFactory;
 import org.h2gis.functions.factory.H2GISFunctions;
 import org.junit.AfterClass;
@@ -55,6 +58,8 @@ public class GeojsonImportExportTest {
         H2GISFunctions.registerFunction(connection.createStatement(), new GeoJsonWrite(), "");
         H2GISFunctions.registerFunction(connection.createStatement(), new GeoJsonRead(), "");
         H2GISFunctions.registerFunction(connection.createStatement(), new ST_GeomFromGeoJSON(), "");
+        H2GISFunctions.registerFunction(connection.createStatement(), new GeoJsonSeqRead(), "");
+        H2GISFunctions.registerFunction(connection.createStatement(), new GeoJsonSeqWrite(), "");
         
     }
 
@@ -695,4 +700,132 @@ public class GeojsonImportExportTest {
     }
 
         
+    @Test
+    public void testReadPropertiesSinglePass() throws Exception {
+        Statement stat = connection.createStatement();
+        stat.execute("DROP TABLE IF EXISTS TABLE_PROPERTIES_READ, TABLE_PROPERTIES_SINGLE_READ;");
+        String path = StringUtils.quoteStringSQL(GeojsonImportExportTest.class.getResource("data.geojson").getPath());
+        stat.execute("CALL GeoJsonRead(" + path + ", 'TABLE_PROPERTIES_READ');");
+        stat.execute("CALL GeoJsonRead(" + path + ", 'TABLE_PROPERTIES_SINGLE_READ', true);");
+        ResultSet res = stat.executeQuery("SELECT * FROM TABLE_PROPERTIES_READ;");
+        ResultSet resSingle = stat.executeQuery("SELECT * FROM TABLE_PROPERTIES_SINGLE_READ;");
+        assertEquals(res.getMetaData().getColumnCount(), resSingle.getMetaData().getColumnCount());
+        while (res.next()) {
+            assertTrue(resSingle.next());
+            assertTrue(((Geometry) res.getObject(1)).equals((Geometry) resSingle.getObject(1)));
+            for (int i = 2; i <= res.getMetaData().getColumnCount(); i++) {
+                assertEquals(res.getMetaData().getColumnName(i), resSingle.getMetaData().getColumnName(i));
+                assertEquals(res.getString(i), resSingle.getString(i));
+            }
+        }
+        assertFalse(resSingle.next());
+        res.close();
+        resSingle.close();
+        stat.execute("DROP TABLE IF EXISTS TABLE_PROPERTIES_READ, TABLE_PROPERTIES_SINGLE_READ;");
+        stat.close();
+    }
+
+    @Test
+    public void testReadSinglePassSchemaChange() throws Exception {
+        Statement stat = connection.createStatement();
+        stat.execute("DROP TABLE IF EXISTS TABLE_SCHEMA_CHANGE_READ;");
+        File file = new File("target/schema_change.geojson");
+        try (FileWriter writer = new FileWriter(file)) {
+            writer.write("{\"type\":\"FeatureCollection\",\"features\":["
+                    + "{\"type\":\"Feature\",\"geometry\":{\"type\":\"Point\",\"coordinates\":[1,2]},\"properties\":{\"id\":1}},"
+                    + "{\"type\":\"Feature\",\"geometry\":{\"type\":\"Point\",\"coordinates\":[3,4]},\"properties\":{\"id\":2.5,\"name\":\"b\"}},"
+                    + "{\"type\":\"Feature\",\"properties\":{\"id\":3},\"geometry\":{\"type\":\"Point\",\"coordinates\":[5,6]}}]}");
+        }
+        GeoJsonReaderDriver driver = new GeoJsonReaderDriver(connection, file);
+        driver.setSchemaSampleSize(1);
+        driver.read(new EmptyProgressVisitor(), "TABLE_SCHEMA_CHANGE_READ");
+        ResultSet res = stat.executeQuery("SELECT * FROM TABLE_SCHEMA_CHANGE_READ;");
+        assertEquals(3, res.getMetaData().getColumnCount());
+        assertEquals("NAME", res.getMetaData().getColumnName(3));
+        res.next();
+        assertTrue(((Geometry) res.getObject(1)).equals(WKTREADER.read("POINT(1 2)")));
+        assertEquals(1, res.getDouble(2), 0);
+        assertNull(res.getObject(3));
+        res.next();
+        assertTrue(((Geometry) res.getObject(1)).equals(WKTREADER.read("POINT(3 4)")));
+        assertEquals(2.5, res.getDouble(2), 0);
+        assertEquals("b", res.getString(3));
+        res.next();
+        assertTrue(((Geometry) res.getObject(1)).equals(WKTREADER.read("POINT(5 6)")));
+        assertEquals(3, res.getDouble(2), 0);
+        assertNull(res.getObject(3));
+        assertFalse(res.next());
+        res.close();
+        stat.execute("DROP TABLE IF EXISTS TABLE_SCHEMA_CHANGE_READ;");
+        stat.close();
+    }
+
+    @Test
+    public void testWriteReadGeojsonSeq() throws Exception {
+        Statement stat = connection.createStatement();
+        stat.execute("DROP TABLE IF EXISTS TABLE_SEQ, TABLE_SEQ_READ");
+        stat.execute("create table TABLE_SEQ(the_geom GEOMETRY, id INT, climat VARCHAR)");
+        stat.execute("insert into TABLE_SEQ values( 'POINT(1 2)', 1, 'bad')");
+        stat.execute("insert into TABLE_SEQ values( 'LINESTRING(15 20, 0 0)', 2, 'good')");
+        stat.execute("insert into TABLE_SEQ values( null, 3, null)");
+        stat.execute("insert into TABLE_SEQ values( 'POLYGON((0 0, 10 0, 10 10, 0 0),(1 1, 2 1, 2 2, 1 1))', 4, 'hot')");
+        stat.execute("CALL GeoJsonSeqWrite('target/features.geojsonl', 'TABLE_SEQ');");
+        stat.execute("CALL GeoJsonSeqRead('target/features.geojsonl', 'TABLE_SEQ_READ');");
+        ResultSet res = stat.executeQuery("SELECT * FROM TABLE_SEQ_READ;");
+        res.next();
+        assertTrue(((Geometry) res.getObject(1)).equals(WKTREADER.read("POINT(1 2)")));
+        assertEquals(1, res.getInt(2));
+        assertEquals("bad", res.getString(3));
+        res.next();
+        assertTrue(((Geometry) res.getObject(1)).equals(WKTREADER.read("LINESTRING(15 20, 0 0)")));
+        assertEquals(2, res.getInt(2));
+        res.next();
+        assertNull(res.getObject(1));
+        assertEquals(3, res.getInt(2));
+        // As with GeoJsonRead, a null property is imported as the "null" string
+        assertEquals("null", res.getString(3));
+        res.next();
+        assertTrue(((Geometry) res.getObject(1)).equals(WKTREADER.read("POLYGON((0 0, 10 0, 10 10, 0 0),(1 1, 2 1, 2 2, 1 1))")));
+        assertEquals("hot", res.getString(3));
+        assertFalse(res.next());
+        res.close();
+        stat.execute("DROP TABLE IF EXISTS TABLE_SEQ, TABLE_SEQ_READ");
+        stat.close();
+    }
+
+    @Test
+    public void testReadGeojsonSeqChunks() throws Exception {
+        Statement stat = connection.createStatement();
+        stat.execute("DROP TABLE IF EXISTS TABLE_SEQ_CHUNKS_READ");
+        File file = new File("target/chunks.ndjson");
+        int featureCount = 500;
+        try (FileWriter writer = new FileWriter(file)) {
+            for (int i = 0; i < featureCount; i++) {
+                writer.write("\u001e{\"type\":\"Feature\",\"properties\":{\"id\":" + i
+                        + (i == 300 ? ",\"name\":\"late\"" : "") + "},\"geometry\":{\"type\":\"Point\","
+                        + "\"coordinates\":[" + i + ",2]}}\n");
+            }
+        }
+        GeoJsonSeqReaderDriver driver = new GeoJsonSeqReaderDriver(connection, file);
+        driver.setThreadCount(4);
+        driver.setChunkSize(256);
+        driver.read(new EmptyProgressVisitor(), "TABLE_SEQ_CHUNKS_READ");
+        ResultSet res = stat.executeQuery("SELECT * FROM TABLE_SEQ_CHUNKS_READ;");
+        assertEquals(3, res.getMetaData().getColumnCount());
+        int i = 0;
+        while (res.next()) {
+            assertEquals(i, ((Geometry) res.getObject(1)).getCoordinate().x, 0);
+            assertEquals(i, res.getInt(2));
+            if (i == 300) {
+                assertEquals("late", res.getString(3));
+            } else {
+                assertNull(res.getObject(3));
+            }
+            i++;
+        }
+        assertEquals(featureCount, i);
+        res.close();
+        stat.execute("DROP TABLE IF EXISTS TABLE_SEQ_CHUNKS_READ");
+        stat.close();
+    }
 }
@@ -256,6 +256,82 @@ public class OSMImportTest {
         rs.close();
     }
     
+    @Test
+    public void importPBFOSMFile() throws SQLException {
+        st.execute("DROP TABLE IF EXISTS OSM_TAG, OSM_NODE, OSM_NODE_TAG, OSM_WAY,OSM_WAY_TAG, OSM_WAY_NODE, OSM_RELATION, OSM_RELATION_TAG, OSM_NODE_MEMBER, OSM_WAY_MEMBER, OSM_RELATION_MEMBER;");
+        st.execute("CALL OSMRead(" + StringUtils.quoteStringSQL(OSMImportTest.class.getResource("saint_jean.osm.pbf").getPath()) + ", 'OSM');");
+        ResultSet rs = st.executeQuery("SELECT count(TABLE_NAME) FROM INFORMATION_SCHEMA.TABLES where TABLE_NAME LIKE 'OSM%'");
+        rs.next();
+        assertTrue(rs.getInt(1) == 11);
+        rs.close();
+        // Check number
+        rs = st.executeQuery("SELECT count(ID_NODE) FROM OSM_NODE");
+        rs.next();
+        assertEquals(3243, rs.getInt(1));
+        rs.close();
+        // Check content
+
+        //NODE
+        rs = st.executeQuery("SELECT THE_GEOM FROM OSM_NODE WHERE ID_NODE=462020579");
+        assertTrue(rs.next());
+        assertEquals("POINT (-2.1213541 47.6347657)", rs.getString("the_geom"));
+        rs.close();
+
+        rs = st.executeQuery("SELECT * FROM OSM_NODE WHERE ID_NODE=670177172");
+        assertTrue(rs.next());
+        // NODE Z extraction
+        assertEquals(91.9,rs.getDouble("ELE"),0.1);
+        assertFalse(rs.wasNull());
+        assertEquals(4326,((Point)rs.getObject("THE_GEOM")).getSRID());
+        // Node SRID extraction
+        rs.close();
+
+        rs = st.executeQuery("SELECT THE_GEOM FROM OSM_NODE WHERE ID_NODE=3003052969");
+        assertTrue(rs.next());
+        assertEquals("POINT (-2.121123 47.635276)", rs.getString("the_geom"));
+        rs.close();
+
+        rs = st.executeQuery("SELECT count(ID_RELATION) FROM OSM_RELATION");
+        assertTrue(rs.next());
+        assertEquals(3, rs.getInt(1));
+        rs.close();
+    }
+
+    @Test
+    public void importPBFSameAsOSMFile() throws SQLException {
+        st.execute("DROP TABLE IF EXISTS OSM_TAG, OSM_NODE, OSM_NODE_TAG, OSM_WAY,OSM_WAY_TAG, OSM_WAY_NODE, OSM_RELATION, OSM_RELATION_TAG, OSM_NODE_MEMBER, OSM_WAY_MEMBER, OSM_RELATION_MEMBER;");
+        st.execute("CALL OSMRead(" + StringUtils.quoteStringSQL(OSMImportTest.class.getResource("saint_jean.osm").getPath()) + ", 'OSM');");
+        st.execute("CALL OSMPBFRead(" + StringUtils.quoteStringSQL(OSMImportTest.class.getResource("saint_jean.osm.pbf").getPath()) + ", 'PBF', true);");
+        // The time zone of the timestamps is not compared
+        checkSameRows("SELECT ID_NODE, THE_GEOM, ELE, USER_NAME, UID, VISIBLE, VERSION, CHANGESET, NAME FROM %s_NODE");
+        checkSameRows("SELECT ID_WAY, USER_NAME, UID, VISIBLE, VERSION, CHANGESET, NAME FROM %s_WAY");
+        checkSameRows("SELECT ID_RELATION, USER_NAME, UID, VISIBLE, VERSION, CHANGESET FROM %s_RELATION");
+        checkSameRows("SELECT * FROM %s_WAY_NODE");
+        checkSameRows("SELECT * FROM %s_NODE_MEMBER");
+        checkSameRows("SELECT * FROM %s_WAY_MEMBER");
+        checkSameRows("SELECT * FROM %s_RELATION_MEMBER");
+        // The tag ids depend on the insertion order
+        checkSameRows("SELECT ID_NODE, TAG_KEY, TAG_VALUE FROM %1$s_NODE_TAG NT, %1$s_TAG T WHERE NT.ID_TAG = T.ID_TAG");
+        checkSameRows("SELECT ID_WAY, TAG_KEY, VALUE FROM %1$s_WAY_TAG WT, %1$s_TAG T WHERE WT.ID_TAG = T.ID_TAG");
+        checkSameRows("SELECT ID_RELATION, TAG_KEY, TAG_VALUE FROM %1$s_RELATION_TAG RT, %1$s_TAG T WHERE RT.ID_TAG = T.ID_TAG");
+        st.execute("DROP TABLE IF EXISTS PBF_TAG, PBF_NODE, PBF_NODE_TAG, PBF_WAY,PBF_WAY_TAG, PBF_WAY_NODE, PBF_RELATION, PBF_RELATION_TAG, PBF_NODE_MEMBER, PBF_WAY_MEMBER, PBF_RELATION_MEMBER;");
+    }
+
+    /**
+     * Check that a query returns the same rows on the OSM and the PBF tables.
+     */
+    private void checkSameRows(String query) throws SQLException {
+        String osm = String.format(query, "OSM");
+        String pbf = String.format(query, "PBF");
+        ResultSet rs = st.executeQuery("SELECT (SELECT COUNT(*) FROM (" + osm + ")), (SELECT COUNT(*) FROM (" + osm
+                + " EXCEPT " + pbf + ")), (SELECT COUNT(*) FROM (" + pbf + " EXCEPT " + osm + "))");
+        assertTrue(rs.next());
+        assertTrue(rs.getInt(1) > 0);
+        assertEquals(0, rs.getInt(2));
+        assertEquals(0, rs.getInt(3));
+        rs.close();
+    }
+
     //Disable this @Test to avoid internet connection error
     //@Test
     public void downloadOSMFile() throws SQLException, IOException {
@@ -25,6 +25,7 @@ import org.apache.commons.io.FileUtils;
 import org.h2.util.StringUtils;
 import org.h2gis.functions.io.DriverManager;
 import org.h2gis.functions.io.file_table.H2TableIndex;
+import org.h2gis.functions.io.file_table.H2TableSpatialIndex;
 import org.h2gis.functions.factory.H2GISFunctions;
 import org.h2gis.functions.factory.H2GISDBFactory;
 import org.h2gis.utilities.GeometryTypeCodes;
@@ -294,7 +295,7 @@ public class SHPEngineTest {
         rs = st.executeQuery("select * from INFORMATION_SCHEMA.INDEXES WHERE TABLE_NAME = 'SHPTABLE' and COLUMN_NAME='THE_GEOM'");
         try {
             assertTrue(rs.next());
-            assertEquals("org.h2.index.SpatialTreeIndex", rs.getString("INDEX_CLASS"));
+            assertEquals(H2TableSpatialIndex.class.getName(), rs.getString("INDEX_CLASS"));
         } finally {
             rs.close();
         }
@@ -308,6 +309,72 @@ public class SHPEngineTest {
         }
     }
 
+    @Test
+    public void testEnvelopeFilterWithoutIndex() throws SQLException {
+        Statement st = connection.createStatement();
+        st.execute("DROP TABLE IF EXISTS shptable");
+        st.execute("CALL FILE_TABLE("+ StringUtils.quoteStringSQL(SHPEngineTest.class.getResource("waternetwork.shp").getPath()) + ", 'shptable');");
+        ResultSet rs = st.executeQuery("EXPLAIN SELECT * FROM SHPTABLE WHERE THE_GEOM && ST_BUFFER('POINT(183541 2426015)', 15)");
+        try{
+            assertTrue(rs.next());
+            assertTrue(rs.getString(1).contains("_ENVELOPE_"));
+        } finally {
+            rs.close();
+        }
+        rs = st.executeQuery("SELECT PK FROM SHPTABLE WHERE THE_GEOM && ST_BUFFER('POINT(183541 2426015)', 15) ORDER BY PK");
+        try{
+            assertTrue(rs.next());
+            assertEquals(128, rs.getLong(1));
+            assertTrue(rs.next());
+            assertEquals(326, rs.getLong(1));
+            assertFalse(rs.next());
+        } finally {
+            rs.close();
+        }
+        rs = st.executeQuery("SELECT COUNT(*) FROM SHPTABLE WHERE THE_GEOM && 'POINT EMPTY'::geometry");
+        try{
+            assertTrue(rs.next());
+            assertEquals(0, rs.getLong(1));
+        } finally {
+            rs.close();
+        }
+        st.execute("DROP TABLE IF EXISTS shptable");
+    }
+
+    @Test
+    public void testSpatialIndexSidecarReuse() throws Exception {
+        // Copy file in target
+        File src = new File(SHPEngineTest.class.getResource("waternetwork.shp").getPath());
+        File srcDbf = new File(SHPEngineTest.class.getResource("waternetwork.dbf").getPath());
+        File srcShx = new File(SHPEngineTest.class.getResource("waternetwork.shx").getPath());
+        File tmpFile = File.createTempFile("waternetwork","");
+        File dst = new File(tmpFile + ".shp");
+        FileUtils.copyFile(src, dst);
+        FileUtils.copyFile(srcDbf, new File(tmpFile + ".dbf"));
+        FileUtils.copyFile(srcShx, new File(tmpFile + ".shx"));
+        File sidecar = H2TableSpatialIndex.getSidecarFile(dst);
+        Statement st = connection.createStatement();
+        st.execute("DROP TABLE IF EXISTS shptable");
+        st.execute("CALL FILE_TABLE('" + dst + "', 'SHPTABLE');");
+        st.execute("CREATE SPATIAL INDEX ON shptable(the_geom)");
+        assertTrue(sidecar.exists());
+        connection.close();
+        Thread.sleep(1000);
+        connection = H2GISDBFactory.openSpatialDataBase(DB_NAME);
+        st = connection.createStatement();
+        ResultSet rs = st.executeQuery("SELECT PK FROM SHPTABLE WHERE THE_GEOM && ST_BUFFER('POINT(183541 2426015)', 15) ORDER BY PK");
+        try{
+            assertTrue(rs.next());
+            assertEquals(128, rs.getLong(1));
+            assertTrue(rs.next());
+            assertEquals(326, rs.getLong(1));
+            assertFalse(rs.next());
+        } finally {
+            rs.close();
+        }
+        st.execute("DROP TABLE IF EXISTS shptable");
+    }
+
     /**
      * Check the call of special case {@link H2TableIndex#find(org.h2.engine.Session, org.h2.result.SearchRow, org.h2.result.SearchRow)} with null at first and last
      * @throws SQLException
@@ -368,4 +435,45 @@ public class SHPEngineTest {
         rs.close();
         st.execute("drop table shptable");
     }
+
+    @Test
+    public void readSHPProjectionsTest() throws SQLException {
+        Statement st = connection.createStatement();
+        st.execute("drop table if exists shptable, shpimport");
+        st.execute("CALL FILE_TABLE('"+SHPEngineTest.class.getResource("waternetwork.shp").getPath()+"', 'SHPTABLE');");
+        // The imported table is read with full rows
+        st.execute("CALL SHPRead('"+SHPEngineTest.class.getResource("waternetwork.shp").getPath()+"', 'SHPIMPORT');");
+        // Linked tables decode only the fields of the query
+        checkSameRows(st, "SHPTABLE", "SHPIMPORT", "SELECT THE_GEOM FROM %s");
+        checkSameRows(st, "SHPTABLE", "SHPIMPORT", "SELECT TYPE_AXE FROM %s");
+        checkSameRows(st, "SHPTABLE", "SHPIMPORT", "SELECT GID, LENGTH FROM %s");
+        checkSameRows(st, "SHPTABLE", "SHPIMPORT", "SELECT GID FROM %s WHERE TYPE_AXE = 'river'");
+        checkSameRows(st, "SHPTABLE", "SHPIMPORT", "SELECT THE_GEOM FROM %s WHERE LENGTH > 50");
+        checkSameRows(st, "SHPTABLE", "SHPIMPORT", "SELECT TYPE_AXE FROM %s WHERE ST_Length(THE_GEOM) > 50");
+        checkSameRows(st, "SHPTABLE", "SHPIMPORT", "SELECT GID FROM %s WHERE THE_GEOM && 'POLYGON ((183000 2425000, 183000 2426000, " +
+                "184000 2426000, 184000 2425000, 183000 2425000))'::GEOMETRY");
+        st.execute("drop table shptable, shpimport");
+    }
+
+    /**
+     * Check that a query gives the same rows on the linked and the imported tables.
+     * @param st Statement
+     * @param linkedTable Table linked with FILE_TABLE
+     * @param importedTable Table imported from the same file
+     * @param query Query with a %s in place of the table name
+     */
+    public static void checkSameRows(Statement st, String linkedTable, String importedTable, String query)
+            throws SQLException {
+        String linked = String.format(query, linkedTable);
+        String imported = String.format(query, importedTable);
+        ResultSet rs = st.executeQuery("SELECT (SELECT COUNT(*) FROM (" + linked + ")), (SELECT COUNT(*) FROM ("
+                + imported + ")), (SELECT COUNT(*) FROM (" + linked + " EXCEPT " + imported + ")), " +
+                "(SELECT COUNT(*) FROM (" + imported + " EXCEPT " + linked + "))");
+        assertTrue(rs.next());
+        assertTrue(rs.getInt(1) > 0);
+        assertEquals(rs.getInt(2), rs.getInt(1));
+        assertEquals(0, rs.getInt(3));
+        assertEquals(0, rs.getInt(4));
+        rs.close();
+    }
 }
@@ -640,4 +640,25 @@ public class SHPImportExportTest {
         assertTrue(res.getInt(1)==4326);
         res.close();        
     }
+
+    @Test
+    public void importParallelTest() throws SQLException, IOException {
+        Statement stat = connection.createStatement();
+        File shpFile = new File(SHPImportExportTest.class.getResource("waternetwork.shp").getPath());
+        stat.execute("DROP TABLE IF EXISTS WATERNETWORK_SEQ, WATERNETWORK_PAR");
+        SHPDriverFunction driverFunction = new SHPDriverFunction();
+        driverFunction.setImportThreadCount(1);
+        driverFunction.importFile(connection, "WATERNETWORK_SEQ", shpFile, new EmptyProgressVisitor());
+        driverFunction.setImportThreadCount(4);
+        driverFunction.importFile(connection, "WATERNETWORK_PAR", shpFile, new EmptyProgressVisitor());
+        ResultSet rs = stat.executeQuery("SELECT COUNT(*) FROM WATERNETWORK_SEQ S, WATERNETWORK_PAR P WHERE S.PK = P.PK" +
+                " AND S.GID = P.GID AND ST_EQUALS(S.THE_GEOM, P.THE_GEOM)");
+        try {
+            assertTrue(rs.next());
+            assertEquals(382, rs.getInt(1));
+        } finally {
+            rs.close();
+        }
+        stat.execute("DROP TABLE WATERNETWORK_SEQ, WATERNETWORK_PAR");
+    }
 }
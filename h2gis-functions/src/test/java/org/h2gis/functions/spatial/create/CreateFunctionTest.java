@@ -31,6 +31,9 @@ import java.sql.Connection;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 import static org.h2gis.unitTest.GeometryAsserts.assertGeometryBarelyEquals;
 import static org.h2gis.unitTest.GeometryAsserts.assertGeometryEquals;
@@ -846,4 +849,81 @@ public class CreateFunctionTest {
         rs.close();
     }
 
+    @Test
+    public void test_ST_MakeGridIntersectingCells() throws Exception {
+        st.execute("DROP TABLE IF EXISTS input_table,grid;"
+                + "CREATE TABLE input_table(the_geom Geometry);"
+                + "INSERT INTO input_table VALUES"
+                + "(ST_GeomFromText('LINESTRING(0.5 0.5, 0.6 0.6)')),"
+                + "(ST_GeomFromText('POINT(3.5 3.5)'));");
+        st.execute("CREATE TABLE grid AS SELECT * FROM st_makegrid('input_table', 1, 1, true);");
+        ResultSet rs = st.executeQuery("select * from grid order by id;");
+        assertTrue(rs.next());
+        assertTrue(((Geometry) rs.getObject(1)).equals(WKT_READER.read("POLYGON((0.5 0.5, 1.5 0.5, 1.5 1.5, 0.5 1.5, 0.5 0.5))")));
+        assertEquals(0, rs.getInt("ID"));
+        assertEquals(1, rs.getInt("ID_COL"));
+        assertEquals(1, rs.getInt("ID_ROW"));
+        assertTrue(rs.next());
+        assertTrue(((Geometry) rs.getObject(1)).equals(WKT_READER.read("POLYGON((2.5 2.5, 3.5 2.5, 3.5 3.5, 2.5 3.5, 2.5 2.5))")));
+        assertEquals(1, rs.getInt("ID"));
+        assertEquals(3, rs.getInt("ID_COL"));
+        assertEquals(3, rs.getInt("ID_ROW"));
+        assertFalse(rs.next());
+        rs.close();
+        rs = st.executeQuery("select count(*) from st_makegridpoints('POLYGON((0 0, 4 0, 0 4, 0 0))'::GEOMETRY, 1, 1, true);");
+        rs.next();
+        assertEquals(13, rs.getInt(1));
+        rs.close();
+        st.execute("DROP TABLE input_table, grid;");
+    }
+
+    @Test
+    public void test_ST_MakeGridIntersectingCellsOnGridLine() throws Exception {
+        st.execute("DROP TABLE IF EXISTS input_table,grid;"
+                + "CREATE TABLE input_table(the_geom Geometry);"
+                + "INSERT INTO input_table VALUES"
+                + "(ST_GeomFromText('POINT(0 0)')),"
+                + "(ST_GeomFromText('POINT(3 3)')),"
+                + "(ST_GeomFromText('LINESTRING(1 1.2, 1 1.8)'));");
+        st.execute("CREATE TABLE grid AS SELECT * FROM st_makegrid('input_table', 1, 1, true);");
+        ResultSet rs = st.executeQuery("select count(*) from grid;");
+        rs.next();
+        assertEquals(4, rs.getInt(1));
+        rs.close();
+        // The line lies on the boundary of the first two columns, both cells touch it
+        rs = st.executeQuery("select id_col from grid where id_row = 2 order by id_col;");
+        assertTrue(rs.next());
+        assertEquals(1, rs.getInt(1));
+        assertTrue(rs.next());
+        assertEquals(2, rs.getInt(1));
+        assertFalse(rs.next());
+        rs.close();
+        st.execute("DROP TABLE input_table, grid;");
+    }
+
+    @Test
+    public void testGridRowSetInterleaved() throws Exception {
+        GridRowSet first = new GridRowSet(connection, 1, 1, new Envelope(0, 3, 0, 3));
+        GridRowSet second = new GridRowSet(connection, 1, 1, new Envelope(0, 2, 0, 2));
+        List<Object[]> firstRows = new ArrayList<Object[]>();
+        List<Object[]> secondRows = new ArrayList<Object[]>();
+        Object[] firstRow = first.readRow();
+        Object[] secondRow = second.readRow();
+        while (firstRow != null || secondRow != null) {
+            if (firstRow != null) {
+                firstRows.add(firstRow);
+                firstRow = first.readRow();
+            }
+            if (secondRow != null) {
+                secondRows.add(secondRow);
+                secondRow = second.readRow();
+            }
+        }
+        assertEquals(9, firstRows.size());
+        assertEquals(4, secondRows.size());
+        assertArrayEquals(new Object[]{2, 3, 1}, Arrays.copyOfRange(firstRows.get(2), 1, 4));
+        assertArrayEquals(new Object[]{3, 2, 2}, Arrays.copyOfRange(secondRows.get(3), 1, 4));
+        assertTrue(((Geometry) secondRows.get(3)[0]).equals(WKT_READER.read("POLYGON((1 1, 2 1, 2 2, 1 2, 1 1))")));
+    }
+
 }
@@ -20,8 +20,18 @@
 
 package org.h2gis.functions.spatial.crs;
 
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.Envelope;
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.GeometryFactory;
+import com.vividsolutions.jts.geom.LineString;
+import com.vividsolutions.jts.geom.PrecisionModel;
+import com.vividsolutions.jts.geom.impl.PackedCoordinateSequence;
+import org.cts.op.CoordinateOperation;
 import org.h2gis.functions.factory.H2GISDBFactory;
+import org.h2gis.utilities.JDBCUtilities;
 import org.h2gis.utilities.SFSUtilities;
+import org.h2gis.utilities.TableLocation;
 import org.junit.*;
 
 import java.sql.Connection;
@@ -32,8 +42,11 @@ import org.h2.jdbc.JdbcSQLException;
 
 import static org.h2gis.unitTest.GeometryAsserts.assertGeometryBarelyEquals;
 import static org.h2gis.unitTest.GeometryAsserts.assertGeometryEquals;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 /**
  *
@@ -171,6 +184,146 @@ public class CRSFunctionTest {
             throw e.getOriginalCause();
         }
     }
+
+
+    @Test
+    public void testCRSCache() throws Exception {
+        CRSCache cache = new CRSCache(2);
+        assertNotNull(cache.getCoordinateOperation(connection, 4326, 2154));
+        assertEquals(0, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+        assertNotNull(cache.getCoordinateOperation(connection, 4326, 2154));
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+        assertNotNull(cache.getCoordinateOperation(connection, 2154, 4326));
+        assertNotNull(cache.getCoordinateOperation(connection, 27572, 4326));
+        assertEquals(3, cache.getMissCount());
+        // Only two operations are kept
+        int misses = 0;
+        for (int[] srids : new int[][]{{4326, 2154}, {2154, 4326}, {27572, 4326}}) {
+            long before = cache.getMissCount();
+            cache.getCoordinateOperation(connection, srids[0], srids[1]);
+            misses += cache.getMissCount() - before;
+        }
+        assertTrue(misses >= 1);
+        cache.clear();
+        assertEquals(0, cache.getHitCount());
+        assertEquals(0, cache.getMissCount());
+    }
+
+    @Test
+    public void testCRSCachePerDatabase() throws Exception {
+        Connection other = SFSUtilities.wrapConnection(H2GISDBFactory.createSpatialDataBase(DB_NAME + "_OTHER"));
+        try {
+            // The other database defines the SRID 2154 as the Lambert zone II projection
+            try (Statement otherSt = other.createStatement()) {
+                otherSt.execute("UPDATE SPATIAL_REF_SYS SET PROJ4TEXT = "
+                        + "(SELECT PROJ4TEXT FROM SPATIAL_REF_SYS WHERE SRID = 27572) WHERE SRID = 2154");
+            }
+            assertTrue(ST_Transform.getCRSCache(connection) == ST_Transform.getCRSCache(connection));
+            assertFalse(ST_Transform.getCRSCache(connection) == ST_Transform.getCRSCache(other));
+            Geometry point = new GeometryFactory(new PrecisionModel(), 4326).createPoint(new Coordinate(2.1, 50.3));
+            Geometry lambert93 = ST_Transform.ST_Transform(connection, point, 2154);
+            Geometry lambert2 = ST_Transform.ST_Transform(connection, point, 27572);
+            Geometry otherLambert = ST_Transform.ST_Transform(other, point, 2154);
+            assertEquals(lambert2.getCoordinate().x, otherLambert.getCoordinate().x, 1e-6);
+            assertEquals(lambert2.getCoordinate().y, otherLambert.getCoordinate().y, 1e-6);
+            assertTrue(Math.abs(lambert93.getCoordinate().x - otherLambert.getCoordinate().x) > 1);
+        } finally {
+            other.close();
+        }
+    }
+
+
+    @Test
+    public void testTransformSameCRS() throws Exception {
+        // Two SRID referencing the same CRS have no coordinate operation
+        Geometry point = new GeometryFactory(new PrecisionModel(), 4326).createPoint(new Coordinate(2.1, 50.3));
+        Geometry copy = ST_Transform.transform(point, null, 940326);
+        assertEquals(940326, copy.getSRID());
+        assertTrue(copy.equalsExact(point));
+        assertEquals(4326, point.getSRID());
+        assertTrue(point == ST_Transform.transform(point, null, 4326));
+    }
+
+    @Test
+    public void testCRSTransformFilterSequences() throws Exception {
+        CoordinateOperation op = ST_Transform.getCRSCache(connection).getCoordinateOperation(connection, 4326, 2154);
+        double[] xy = new double[]{2.1, 50.3, 2.2, 50.35, 2.3, 50.4};
+        GeometryFactory factory = new GeometryFactory(new PrecisionModel(), 4326);
+        LineString line3D = factory.createLineString(new Coordinate[]{new Coordinate(2.1, 50.3),
+                new Coordinate(2.2, 50.35), new Coordinate(2.3, 50.4)});
+        LineString line2D = factory.createLineString(new PackedCoordinateSequence.Double(xy, 2));
+        Envelope envelope = line2D.getEnvelopeInternal();
+        line3D.apply(new ST_Transform.CRSTransformFilter(op));
+        line2D.apply(new ST_Transform.CRSTransformFilter(op));
+        assertEquals(2, line2D.getCoordinateSequence().getDimension());
+        assertFalse(envelope.equals(line2D.getEnvelopeInternal()));
+        for (int i = 0; i < 3; i++) {
+            Geometry point = ST_Transform.ST_Transform(connection,
+                    factory.createPoint(new Coordinate(xy[2 * i], xy[2 * i + 1])), 2154);
+            assertEquals(point.getCoordinate().x, line3D.getCoordinateN(i).x, 1e-6);
+            assertEquals(point.getCoordinate().y, line3D.getCoordinateN(i).y, 1e-6);
+            assertEquals(point.getCoordinate().x, line2D.getCoordinateN(i).x, 1e-6);
+            assertEquals(point.getCoordinate().y, line2D.getCoordinateN(i).y, 1e-6);
+        }
+    }
+
+
+    @Test
+    public void testST_TransformTable() throws Exception {
+        st.execute("DROP TABLE IF EXISTS SRC_PK, SRC_NOPK, DST_PK, DST_NOPK");
+        st.execute("CREATE TABLE SRC_PK(ID INTEGER PRIMARY KEY, THE_GEOM GEOMETRY, NAME VARCHAR) AS SELECT X * 3, " +
+                "ST_SETSRID(ST_MAKEPOINT(2 + X / 10000.0, 50 - X / 10000.0), 4326), 'P' || X FROM SYSTEM_RANGE(1, 2500)");
+        st.execute("INSERT INTO SRC_PK VALUES (1, NULL, 'EMPTY')");
+        st.execute("CREATE TABLE SRC_NOPK AS SELECT THE_GEOM, NAME FROM SRC_PK");
+        st.execute("CALL ST_TransformTable('src_pk', 'dst_pk', 2154, 3)");
+        st.execute("CALL ST_TransformTable('src_nopk', 'dst_nopk', 2154)");
+        ResultSet rs = st.executeQuery("SELECT COUNT(*) FROM DST_PK D, SRC_PK S WHERE D.ID = S.ID AND " +
+                "D.NAME = S.NAME AND ST_EQUALS(D.THE_GEOM, ST_TRANSFORM(S.THE_GEOM, 2154))");
+        try {
+            assertTrue(rs.next());
+            assertEquals(2500, rs.getInt(1));
+        } finally {
+            rs.close();
+        }
+        rs = st.executeQuery("SELECT COUNT(*), COUNT(THE_GEOM) FROM DST_NOPK");
+        try {
+            assertTrue(rs.next());
+            assertEquals(2501, rs.getInt(1));
+            assertEquals(2500, rs.getInt(2));
+        } finally {
+            rs.close();
+        }
+        assertEquals(2154, SFSUtilities.getSRID(connection, TableLocation.parse("DST_PK")));
+        assertEquals(1, JDBCUtilities.getIntegerPrimaryKey(connection, "DST_PK"));
+        st.execute("DROP TABLE SRC_PK, SRC_NOPK, DST_PK, DST_NOPK");
+    }
+
+    @Test
+    public void testST_TransformTableSparseKeys() throws Exception {
+        st.execute("DROP TABLE IF EXISTS SRC_SPARSE, DST_SPARSE");
+        st.execute("CREATE TABLE SRC_SPARSE(ID BIGINT PRIMARY KEY, THE_GEOM GEOMETRY) AS SELECT X * 1000000000, " +
+                "ST_SETSRID(ST_MAKEPOINT(2 + X / 10000.0, 50), 4326) FROM SYSTEM_RANGE(-1200, 1200)");
+        st.execute("CALL ST_TransformTable('src_sparse', 'dst_sparse', 2154)");
+        ResultSet rs = st.executeQuery("SELECT COUNT(*) FROM DST_SPARSE D, SRC_SPARSE S WHERE D.ID = S.ID AND " +
+                "ST_EQUALS(D.THE_GEOM, ST_TRANSFORM(S.THE_GEOM, 2154))");
+        try {
+            assertTrue(rs.next());
+            assertEquals(2401, rs.getInt(1));
+        } finally {
+            rs.close();
+        }
+        st.execute("DROP TABLE DST_SPARSE");
+        // The target table is dropped when the copy fails
+        try {
+            st.execute("CALL ST_TransformTable('src_sparse', 'dst_sparse', 999999)");
+            fail();
+        } catch (SQLException ex) {
+            assertFalse(JDBCUtilities.tableExists(connection, "DST_SPARSE"));
+        }
+        st.execute("DROP TABLE SRC_SPARSE");
+    }
     
         
     private void checkProjectedGeom(String inputGeom, int inProj, int outProj, String expectedGeom) throws SQLException {
@@ -27,10 +27,13 @@ import org.junit.Before;
 import org.junit.BeforeClass;
 import org.junit.Test;
 
+import java.math.BigDecimal;
+import java.math.MathContext;
 import java.sql.Connection;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.Random;
 
 import static org.h2gis.unitTest.GeometryAsserts.assertGeometryEquals;
 import static org.junit.Assert.assertEquals;
@@ -320,4 +323,18 @@ public class MeshFunctionTest {
             rs.close();
         }
     }
+
+    @Test
+    public void testCoordinateRoundingMatchesDecimal64() throws Exception {
+        Random random = new Random(42);
+        double[] values = new double[]{0, -0., 0.1, 1 / 3., 999.9999999999999, 1000, 1e-7, 9.999999999999999e-8,
+                123456789.123456789, 9007199254740993., 1e22, -2.5e-300, Double.MAX_VALUE, Double.MIN_VALUE};
+        for (double v : values) {
+            assertEquals(new BigDecimal(v).round(MathContext.DECIMAL64).doubleValue(), DelaunayData.r(v), 0);
+        }
+        for (int i = 0; i < 100000; i++) {
+            double v = (random.nextDouble() - 0.5) * Math.pow(10, random.nextInt(30) - 10);
+            assertEquals(new BigDecimal(v).round(MathContext.DECIMAL64).doubleValue(), DelaunayData.r(v), 0);
+        }
+    }
 }
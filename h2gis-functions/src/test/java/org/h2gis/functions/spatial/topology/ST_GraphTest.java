@@ -279,6 +279,34 @@ public class ST_GraphTest {
         rs.close();
     }
 
+    @Test
+    public void test_ST_Graph_ToleranceChain() throws Exception {
+        // A chain of 1000 segments whose odd starts are shifted within the tolerance
+        st.execute("DROP TABLE IF EXISTS TEST; DROP TABLE IF EXISTS TEST_NODES; DROP TABLE IF EXISTS TEST_EDGES");
+        st.execute("CREATE TABLE test(road LINESTRING, id INT PRIMARY KEY);" +
+                "INSERT INTO test SELECT ST_MakeLine(ST_MakePoint(X, MOD(X, 2) * 0.001), ST_MakePoint(X + 1, 0)), " +
+                "X + 1 FROM SYSTEM_RANGE(0, 999);");
+        ResultSet rs = st.executeQuery("SELECT ST_Graph('TEST', 'road', 0.01)");
+        assertTrue(rs.next());
+        assertTrue(rs.getBoolean(1));
+        rs.close();
+        ResultSet nodesResult = st.executeQuery("SELECT COUNT(*), MAX(NODE_ID) FROM TEST_NODES");
+        assertTrue(nodesResult.next());
+        assertEquals(1001, nodesResult.getInt(1));
+        assertEquals(1001, nodesResult.getInt(2));
+        nodesResult.close();
+        nodesResult = st.executeQuery("SELECT * FROM TEST_NODES WHERE NODE_ID IN (2, 1001) ORDER BY NODE_ID");
+        checkNode(nodesResult, 2, "POINT (1 0.001)");
+        checkNode(nodesResult, 1001, "POINT (1000 0)");
+        nodesResult.close();
+        ResultSet edgesResult = st.executeQuery("SELECT * FROM TEST_EDGES ORDER BY EDGE_ID");
+        for (int i = 1; i <= 1000; i++) {
+            checkEdge(edgesResult, i, i, i + 1);
+        }
+        assertFalse(edgesResult.next());
+        edgesResult.close();
+    }
+
     @Test
     public void test_ST_Graph_BigTolerance() throws Exception {
         // This test shows that the results from using a large tolerance value
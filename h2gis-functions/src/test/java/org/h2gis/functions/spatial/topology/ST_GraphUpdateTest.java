@@ -0,0 +1,185 @@
+/**
+ * H2GIS is a library that brings spatial support to the H2 Database Engine
+ * <http://www.h2database.com>. H2GIS is developed by CNRS
+ * <http://www.cnrs.fr/>.
+ *
+ * This code is part of the H2GIS project. H2GIS is free software;
+ * you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation;
+ * version 3.0 of the License.
+ *
+ * H2GIS is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details <http://www.gnu.org/licenses/>.
+ *
+ *
+ * For more information, please consult: <http://www.h2gis.org/>
+ * or contact directly: info_at_h2gis.org
+ */
+
+package org.h2gis.functions.spatial.topology;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import org.h2.jdbc.JdbcSQLException;
+import org.h2gis.functions.factory.H2GISDBFactory;
+import org.junit.*;
+
+import static org.h2gis.unitTest.GeometryAsserts.assertGeometryEquals;
+import static org.junit.Assert.*;
+
+public class ST_GraphUpdateTest {
+
+    private static Connection connection;
+    private static Statement st;
+    private static final String DB_NAME = "ST_GraphUpdateTest";
+
+    @BeforeClass
+    public static void tearUp() throws Exception {
+        // Keep a connection alive to not close the DataBase on each unit test
+        connection = H2GISDBFactory.createSpatialDataBase(DB_NAME, true);
+    }
+
+    @Before
+    public void setUpStatement() throws Exception {
+        st = connection.createStatement();
+    }
+
+    @After
+    public void tearDownStatement() throws Exception {
+        st.close();
+    }
+
+    @AfterClass
+    public static void tearDown() throws Exception {
+        connection.close();
+    }
+
+    private void checkNode(ResultSet nodesResult, int nodeID, String nodeGeom) throws SQLException {
+        assertTrue(nodesResult.next());
+        assertEquals(nodeID, nodesResult.getInt("NODE_ID"));
+        assertGeometryEquals(nodeGeom, nodesResult.getBytes("THE_GEOM"));
+    }
+
+    private void checkEdge(ResultSet edgesResult, int gid, int startNode, int endNode) throws SQLException {
+        assertTrue(edgesResult.next());
+        assertEquals(gid, edgesResult.getInt("EDGE_ID"));
+        assertEquals(startNode, edgesResult.getInt("START_NODE"));
+        assertEquals(endNode, edgesResult.getInt("END_NODE"));
+    }
+
+    private void prepareGraph() throws SQLException {
+        st.execute("DROP TABLE IF EXISTS TEST, TEST_NODES, TEST_EDGES, CHANGES");
+        st.execute("CREATE TABLE test(road LINESTRING, description VARCHAR, id INT AUTO_INCREMENT PRIMARY KEY);" +
+                "INSERT INTO test VALUES "
+                + "('LINESTRING (0 0, 1 2)', 'road1', DEFAULT),"
+                + "('LINESTRING (1 2, 2 3, 4 3)', 'road2', DEFAULT),"
+                + "('LINESTRING (4 3, 4 4, 1 4, 1 2)', 'road3', DEFAULT),"
+                + "('LINESTRING (4 3, 5 2)', 'road4', DEFAULT),"
+                + "('LINESTRING (4.05 4.1, 7 5)', 'road5', DEFAULT),"
+                + "('LINESTRING (7.1 5, 8 4)', 'road6', DEFAULT);");
+        st.execute("CALL ST_Graph('TEST', 'road', 0.1, false)");
+    }
+
+    @Test
+    public void testInsertDelete() throws Exception {
+        prepareGraph();
+        st.execute("DELETE FROM test WHERE id IN (1, 4)");
+        st.execute("INSERT INTO test VALUES ('LINESTRING (8 4, 9 4.05)', 'road7', 7), " +
+                "('LINESTRING (5.05 2, 6 1)', 'road8', 8)");
+        ResultSet rs = st.executeQuery("SELECT ST_GraphUpdate('TEST', 'road', 0.1)");
+        assertTrue(rs.next());
+        assertTrue(rs.getBoolean(1));
+        rs.close();
+        // The node of the first road is removed, the node of the fourth road is used by the eighth
+        ResultSet nodesResult = st.executeQuery("SELECT * FROM TEST_NODES ORDER BY NODE_ID");
+        checkNode(nodesResult, 2, "POINT (1 2)");
+        checkNode(nodesResult, 3, "POINT (4 3)");
+        checkNode(nodesResult, 4, "POINT (4.05 4.1)");
+        checkNode(nodesResult, 5, "POINT (7.1 5)");
+        checkNode(nodesResult, 6, "POINT (5 2)");
+        checkNode(nodesResult, 7, "POINT (8 4)");
+        checkNode(nodesResult, 8, "POINT (9 4.05)");
+        checkNode(nodesResult, 9, "POINT (6 1)");
+        assertFalse(nodesResult.next());
+        nodesResult.close();
+        ResultSet edgesResult = st.executeQuery("SELECT * FROM TEST_EDGES ORDER BY EDGE_ID");
+        checkEdge(edgesResult, 2, 2, 3);
+        checkEdge(edgesResult, 3, 3, 2);
+        checkEdge(edgesResult, 5, 4, 5);
+        checkEdge(edgesResult, 6, 5, 7);
+        checkEdge(edgesResult, 7, 7, 8);
+        checkEdge(edgesResult, 8, 6, 9);
+        assertFalse(edgesResult.next());
+        edgesResult.close();
+    }
+
+    @Test
+    public void testChangesTable() throws Exception {
+        prepareGraph();
+        st.execute("UPDATE test SET road = 'LINESTRING (1 2, 2 3)' WHERE id = 2");
+        st.execute("CREATE TABLE changes(id INT);INSERT INTO changes VALUES (2)");
+        st.execute("CALL ST_GraphUpdate('TEST', 'road', 0.1, false, 'CHANGES')");
+        ResultSet nodesResult = st.executeQuery("SELECT * FROM TEST_NODES WHERE NODE_ID > 6 ORDER BY NODE_ID");
+        checkNode(nodesResult, 7, "POINT (8 4)");
+        checkNode(nodesResult, 8, "POINT (2 3)");
+        assertFalse(nodesResult.next());
+        nodesResult.close();
+        ResultSet edgesResult = st.executeQuery("SELECT * FROM TEST_EDGES ORDER BY EDGE_ID");
+        checkEdge(edgesResult, 1, 1, 2);
+        checkEdge(edgesResult, 2, 2, 8);
+        checkEdge(edgesResult, 3, 3, 2);
+        checkEdge(edgesResult, 4, 3, 6);
+        checkEdge(edgesResult, 5, 4, 5);
+        checkEdge(edgesResult, 6, 5, 7);
+        assertFalse(edgesResult.next());
+        edgesResult.close();
+        ResultSet rs = st.executeQuery("SELECT COUNT(*) FROM changes");
+        assertTrue(rs.next());
+        assertEquals(0, rs.getInt(1));
+        rs.close();
+    }
+
+    @Test
+    public void testSameAsRebuild() throws Exception {
+        // Adding rows gives the same graph as ST_Graph, up to the tolerance on the node positions
+        st.execute("DROP TABLE IF EXISTS TEST, TEST_NODES, TEST_EDGES, ROADS, ROADS_NODES, ROADS_EDGES");
+        st.execute("CREATE TABLE test(road LINESTRING, id INT PRIMARY KEY);" +
+                "INSERT INTO test SELECT ST_MakeLine(ST_MakePoint(X, MOD(X, 2) * 0.001), ST_MakePoint(X + 1, 0)), " +
+                "X + 1 FROM SYSTEM_RANGE(0, 99);");
+        st.execute("CREATE TABLE roads(road LINESTRING, id INT PRIMARY KEY);INSERT INTO roads SELECT * FROM test");
+        st.execute("CALL ST_Graph('ROADS', 'road', 0.01)");
+        st.execute("DELETE FROM test WHERE id > 50");
+        st.execute("CALL ST_Graph('TEST', 'road', 0.01)");
+        st.execute("INSERT INTO test SELECT * FROM roads WHERE id > 50");
+        st.execute("CALL ST_GraphUpdate('TEST', 'road', 0.01)");
+        ResultSet rs = st.executeQuery("SELECT COUNT(*) FROM TEST_EDGES A, ROADS_EDGES B WHERE A.EDGE_ID = B.EDGE_ID" +
+                " AND (SELECT ST_Distance(N.THE_GEOM, M.THE_GEOM) < 0.02 FROM TEST_NODES N, ROADS_NODES M" +
+                " WHERE N.NODE_ID = A.START_NODE AND M.NODE_ID = B.START_NODE)" +
+                " AND (SELECT ST_Distance(N.THE_GEOM, M.THE_GEOM) < 0.02 FROM TEST_NODES N, ROADS_NODES M" +
+                " WHERE N.NODE_ID = A.END_NODE AND M.NODE_ID = B.END_NODE)");
+        assertTrue(rs.next());
+        assertEquals(100, rs.getInt(1));
+        rs.close();
+        rs = st.executeQuery("SELECT COUNT(*) FROM TEST_NODES");
+        assertTrue(rs.next());
+        assertEquals(101, rs.getInt(1));
+        rs.close();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNotRun() throws Throwable {
+        st.execute("DROP TABLE IF EXISTS TEST, TEST_NODES, TEST_EDGES");
+        st.execute("CREATE TABLE test(road LINESTRING, id INT AUTO_INCREMENT PRIMARY KEY)");
+        try {
+            st.execute("CALL ST_GraphUpdate('TEST')");
+        } catch (JdbcSQLException e) {
+            final Throwable originalCause = e.getOriginalCause();
+            assertEquals(ST_GraphUpdate.NOT_RUN_ERROR + "TEST", originalCause.getMessage());
+            throw originalCause;
+        }
+    }
+}
@@ -0,0 +1,224 @@
+/**
+ * H2GIS is a library that brings spatial support to the H2 Database Engine
+ * <http://www.h2database.com>. H2GIS is developed by CNRS
+ * <http://www.cnrs.fr/>.
+ *
+ * This code is part of the H2GIS project. H2GIS is free software; 
+ * you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation;
+ * version 3.0 of the License.
+ *
+ * H2GIS is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details <http://www.gnu.org/licenses/>.
+ *
+ *
+ * For more information, please consult: <http://www.h2gis.org/>
+ * or contact directly: info_at_h2gis.org
+ */
+
+package org.h2gis.network.functions;
+
+import java.util.Arrays;
+
+/**
+ * A* search guided by the distance between the vertex coordinates.
+ * <p>
+ * The edge weights do not have to be lengths: the distance to the target is
+ * scaled by the smallest ratio between the weight of an arc and the distance
+ * between its end vertices. By the triangle inequality the estimate never
+ * exceeds the remaining weight and is consistent, so the first time the
+ * target is settled its distance is final.
+ */
+public class AStarSearch extends PointToPointSearch {
+
+    /** Mean earth radius in meters */
+    public static final double EARTH_RADIUS = 6371008.8;
+
+    private final CSRGraph graph;
+    private final Coordinates coordinates;
+    private final double scale;
+    private final double[] distance;
+    private final int[] reachedStamp;
+    private final int[] settledStamp;
+    private final int[] parentVertex;
+    private final int[] parentArc;
+    private final VertexHeap heap = new VertexHeap();
+    private int stamp = 0;
+
+    /**
+     * @param graph       Graph, shared with other searches
+     * @param x           X coordinate (or longitude) of each vertex index
+     * @param y           Y coordinate (or latitude) of each vertex index
+     * @param greatCircle True if the coordinates are longitudes and latitudes
+     *                    in degrees
+     */
+    public AStarSearch(CSRGraph graph, double[] x, double[] y, boolean greatCircle) {
+        this(graph, new Coordinates(graph, x, y, greatCircle));
+    }
+
+    /**
+     * @param graph       Graph, shared with other searches
+     * @param coordinates Vertex coordinates of the graph, shared with other
+     *                    searches
+     */
+    public AStarSearch(CSRGraph graph, Coordinates coordinates) {
+        if (coordinates.x.length != graph.getVertexCount()) {
+            throw new IllegalArgumentException("The coordinates do not match the vertices of the graph");
+        }
+        this.graph = graph;
+        this.coordinates = coordinates;
+        this.scale = coordinates.scale;
+        final int vertexCount = graph.getVertexCount();
+        distance = new double[vertexCount];
+        reachedStamp = new int[vertexCount];
+        settledStamp = new int[vertexCount];
+        parentVertex = new int[vertexCount];
+        parentArc = new int[vertexCount];
+    }
+
+    /**
+     * @return The factor applied to the distance between two vertices to
+     * obtain a lower bound of the weight of a path joining them
+     */
+    public double getScale() {
+        return scale;
+    }
+
+    /**
+     * @return The vertex coordinates
+     */
+    public Coordinates getCoordinates() {
+        return coordinates;
+    }
+
+    /**
+     * @return The searched graph
+     */
+    public CSRGraph getGraph() {
+        return graph;
+    }
+
+    @Override
+    public int getVertexIndex(int vertexId) {
+        return graph.getVertexIndex(vertexId);
+    }
+
+    @Override
+    public int getVertexId(int vertex) {
+        return graph.getVertexId(vertex);
+    }
+
+    @Override
+    public double search(int source, int target) {
+        stamp++;
+        if (stamp == Integer.MAX_VALUE) {
+            Arrays.fill(reachedStamp, 0);
+            Arrays.fill(settledStamp, 0);
+            stamp = 1;
+        }
+        clearPath();
+        heap.clear();
+        reachedStamp[source] = stamp;
+        distance[source] = 0;
+        heap.push(source, scale * coordinates.distance(source, target));
+        while (!heap.isEmpty()) {
+            final int u = heap.peekVertex();
+            heap.pop();
+            if (settledStamp[u] == stamp) {
+                continue;
+            }
+            settledStamp[u] = stamp;
+            if (u == target) {
+                break;
+            }
+            final double d = distance[u];
+            final int end = graph.getFirstArc(u + 1);
+            for (int arc = graph.getFirstArc(u); arc < end; arc++) {
+                final int v = graph.getArcTarget(arc);
+                final double newDistance = d + graph.getArcWeight(arc);
+                if (settledStamp[v] != stamp && (reachedStamp[v] != stamp || newDistance < distance[v])) {
+                    reachedStamp[v] = stamp;
+                    distance[v] = newDistance;
+                    parentVertex[v] = u;
+                    parentArc[v] = arc;
+                    heap.push(v, newDistance + scale * coordinates.distance(v, target));
+                }
+            }
+        }
+        if (settledStamp[target] != stamp || Double.isInfinite(distance[target])) {
+            return Double.POSITIVE_INFINITY;
+        }
+        for (int v = target; v != source; v = parentVertex[v]) {
+            final int arc = parentArc[v];
+            addPathArc(graph.getArcEdgeId(arc), parentVertex[v], v, graph.getArcWeight(arc));
+        }
+        reversePath(0);
+        return distance[target];
+    }
+
+    /**
+     * Vertex coordinates of a graph, and the scale of the distance estimate
+     * computed once from every arc. They do not change between searches and
+     * can be shared by several searches on the same graph.
+     */
+    public static class Coordinates {
+        private final double[] x;
+        private final double[] y;
+        private final boolean greatCircle;
+        private final double scale;
+
+        /**
+         * @param graph       Graph, used to compute the scale
+         * @param x           X coordinate (or longitude) of each vertex index
+         * @param y           Y coordinate (or latitude) of each vertex index
+         * @param greatCircle True if the coordinates are longitudes and
+         *                    latitudes in degrees
+         */
+        public Coordinates(CSRGraph graph, double[] x, double[] y, boolean greatCircle) {
+            this.x = x;
+            this.y = y;
+            this.greatCircle = greatCircle;
+            this.scale = computeScale(graph);
+        }
+
+        /**
+         * @return The smallest ratio between the weight of an arc and the
+         * distance between its end vertices
+         */
+        private double computeScale(CSRGraph graph) {
+            double minRatio = Double.POSITIVE_INFINITY;
+            for (int u = 0; u < graph.getVertexCount(); u++) {
+                for (int arc = graph.getFirstArc(u); arc < graph.getFirstArc(u + 1); arc++) {
+                    final double length = distance(u, graph.getArcTarget(arc));
+                    if (length > 0) {
+                        minRatio = Math.min(minRatio, graph.getArcWeight(arc) / length);
+                    }
+                }
+            }
+            // Without any arc of positive length the search falls back to Dijkstra
+            return Double.isInfinite(minRatio) ? 0 : minRatio;
+        }
+
+        private double distance(int u, int v) {
+            if (greatCircle) {
+                final double lat1 = Math.toRadians(y[u]);
+                final double lat2 = Math.toRadians(y[v]);
+                final double sinLat = Math.sin((lat2 - lat1) / 2);
+                final double sinLon = Math.sin(Math.toRadians(x[v] - x[u]) / 2);
+                final double a = sinLat * sinLat + Math.cos(lat1) * Math.cos(lat2) * sinLon * sinLon;
+                return 2 * EARTH_RADIUS * Math.asin(Math.min(1, Math.sqrt(a)));
+            } else {
+                return Math.hypot(x[v] - x[u], y[v] - y[u]);
+            }
+        }
+
+        /**
+         * @return Estimated memory usage in bytes
+         */
+        public long getMemoryUsage() {
+            return 16L * x.length;
+        }
+    }
+}
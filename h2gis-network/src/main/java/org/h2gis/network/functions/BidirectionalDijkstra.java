@@ -0,0 +1,192 @@
+/**
+ * H2GIS is a library that brings spatial support to the H2 Database Engine
+ * <http://www.h2database.com>. H2GIS is developed by CNRS
+ * <http://www.cnrs.fr/>.
+ *
+ * This code is part of the H2GIS project. H2GIS is free software; 
+ * you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation;
+ * version 3.0 of the License.
+ *
+ * H2GIS is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details <http://www.gnu.org/licenses/>.
+ *
+ *
+ * For more information, please consult: <http://www.h2gis.org/>
+ * or contact directly: info_at_h2gis.org
+ */
+
+package org.h2gis.network.functions;
+
+import java.util.Arrays;
+
+/**
+ * Bidirectional Dijkstra: a forward search from the source on the graph and a
+ * backward search from the target on the reversed graph are alternated until
+ * the sum of their smallest keys exceeds the best path found where they meet.
+ */
+public class BidirectionalDijkstra extends PointToPointSearch {
+
+    private final CSRGraph graph;
+    private final CSRGraph reversed;
+    private final Side forward;
+    private final Side backward;
+    private int stamp = 0;
+    private double bestDistance;
+    private int meetingVertex;
+
+    /**
+     * @param graph Graph, shared with other searches
+     */
+    public BidirectionalDijkstra(CSRGraph graph) {
+        this(graph, graph.reverse());
+    }
+
+    /**
+     * @param graph    Graph, shared with other searches
+     * @param reversed The reversed graph, see {@link CSRGraph#reverse()}
+     */
+    public BidirectionalDijkstra(CSRGraph graph, CSRGraph reversed) {
+        this.graph = graph;
+        this.reversed = reversed;
+        forward = new Side(graph);
+        backward = new Side(reversed);
+    }
+
+    /**
+     * @return The searched graph
+     */
+    public CSRGraph getGraph() {
+        return graph;
+    }
+
+    @Override
+    public int getVertexIndex(int vertexId) {
+        return graph.getVertexIndex(vertexId);
+    }
+
+    @Override
+    public int getVertexId(int vertex) {
+        return graph.getVertexId(vertex);
+    }
+
+    @Override
+    public double search(int source, int target) {
+        nextStamp();
+        clearPath();
+        bestDistance = Double.POSITIVE_INFINITY;
+        meetingVertex = -1;
+        forward.start(source);
+        backward.start(target);
+        if (source == target) {
+            return 0;
+        }
+        // The smallest key of a heap may be an outdated entry, it is then
+        // lower than the real one and the stop condition stays conservative.
+        while (forward.heap.peekKey() + backward.heap.peekKey() < bestDistance) {
+            if (forward.heap.peekKey() <= backward.heap.peekKey()) {
+                forward.step(backward);
+            } else {
+                backward.step(forward);
+            }
+        }
+        if (meetingVertex == -1) {
+            return Double.POSITIVE_INFINITY;
+        }
+        // Forward part, collected from the meeting vertex back to the source
+        for (int v = meetingVertex; v != source; v = forward.parentVertex[v]) {
+            final int arc = forward.parentArc[v];
+            addPathArc(graph.getArcEdgeId(arc), forward.parentVertex[v], v, graph.getArcWeight(arc));
+        }
+        reversePath(0);
+        // Backward part, the arcs of the reversed graph are followed upstream
+        for (int v = meetingVertex; v != target; v = backward.parentVertex[v]) {
+            final int arc = backward.parentArc[v];
+            addPathArc(reversed.getArcEdgeId(arc), v, backward.parentVertex[v], reversed.getArcWeight(arc));
+        }
+        return bestDistance;
+    }
+
+    private void nextStamp() {
+        stamp++;
+        if (stamp == Integer.MAX_VALUE) {
+            forward.resetStamps();
+            backward.resetStamps();
+            stamp = 1;
+        }
+    }
+
+    /**
+     * State of one direction of the search.
+     */
+    private final class Side {
+        private final CSRGraph sideGraph;
+        private final double[] distance;
+        private final int[] reachedStamp;
+        private final int[] settledStamp;
+        private final int[] parentVertex;
+        private final int[] parentArc;
+        private final VertexHeap heap = new VertexHeap();
+
+        private Side(CSRGraph sideGraph) {
+            this.sideGraph = sideGraph;
+            final int vertexCount = sideGraph.getVertexCount();
+            distance = new double[vertexCount];
+            reachedStamp = new int[vertexCount];
+            settledStamp = new int[vertexCount];
+            parentVertex = new int[vertexCount];
+            parentArc = new int[vertexCount];
+        }
+
+        private void resetStamps() {
+            Arrays.fill(reachedStamp, 0);
+            Arrays.fill(settledStamp, 0);
+        }
+
+        private void start(int vertex) {
+            heap.clear();
+            reachedStamp[vertex] = stamp;
+            distance[vertex] = 0;
+            parentVertex[vertex] = -1;
+            parentArc[vertex] = -1;
+            heap.push(vertex, 0);
+        }
+
+        private boolean isReached(int vertex) {
+            return reachedStamp[vertex] == stamp;
+        }
+
+        /**
+         * Settle the vertex with the smallest key and relax its arcs.
+         *
+         * @param other The search in the other direction
+         */
+        private void step(Side other) {
+            final int u = heap.peekVertex();
+            final double d = heap.peekKey();
+            heap.pop();
+            if (settledStamp[u] == stamp || d > distance[u]) {
+                return;
+            }
+            settledStamp[u] = stamp;
+            final int end = sideGraph.getFirstArc(u + 1);
+            for (int arc = sideGraph.getFirstArc(u); arc < end; arc++) {
+                final int v = sideGraph.getArcTarget(arc);
+                final double newDistance = d + sideGraph.getArcWeight(arc);
+                if (!isReached(v) || newDistance < distance[v]) {
+                    reachedStamp[v] = stamp;
+                    distance[v] = newDistance;
+                    parentVertex[v] = u;
+                    parentArc[v] = arc;
+                    heap.push(v, newDistance);
+                    if (other.isReached(v) && newDistance + other.distance[v] < bestDistance) {
+                        bestDistance = newDistance + other.distance[v];
+                        meetingVertex = v;
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,247 @@
+/**
+ * H2GIS is a library that brings spatial support to the H2 Database Engine
+ * <http://www.h2database.com>. H2GIS is developed by CNRS
+ * <http://www.cnrs.fr/>.
+ *
+ * This code is part of the H2GIS project. H2GIS is free software; 
+ * you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation;
+ * version 3.0 of the License.
+ *
+ * H2GIS is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details <http://www.gnu.org/licenses/>.
+ *
+ *
+ * For more information, please consult: <http://www.h2gis.org/>
+ * or contact directly: info_at_h2gis.org
+ */
+
+package org.h2gis.network.functions;
+
+import java.util.Arrays;
+
+/**
+ * Read-only graph stored in compressed sparse row arrays. Vertices are
+ * addressed by an index in [0, vertexCount), ordered by node id. The arcs
+ * leaving the vertex v are stored in [getFirstArc(v), getFirstArc(v + 1)).
+ *
+ * An undirected edge is stored as two arcs with the same edge id. In a
+ * directed graph, an edge with both orientations is stored as two arcs
+ * with opposite edge ids, as in {@link GraphCreator}.
+ *
+ * The graph is never modified once built, so it can be traversed by
+ * several threads at the same time.
+ */
+public class CSRGraph {
+
+    private final int[] vertexIds;
+    private final int[] firstArc;
+    private final int[] arcTarget;
+    private final int[] arcEdgeId;
+    private final double[] arcWeight;
+
+    private CSRGraph(int[] vertexIds, int[] firstArc, int[] arcTarget, int[] arcEdgeId, double[] arcWeight) {
+        this.vertexIds = vertexIds;
+        this.firstArc = firstArc;
+        this.arcTarget = arcTarget;
+        this.arcEdgeId = arcEdgeId;
+        this.arcWeight = arcWeight;
+    }
+
+    /**
+     * @return Number of vertices
+     */
+    public int getVertexCount() {
+        return vertexIds.length;
+    }
+
+    /**
+     * @return Number of arcs
+     */
+    public int getArcCount() {
+        return arcTarget.length;
+    }
+
+    /**
+     * @param vertexId Node id
+     * @return Vertex index or -1 if the graph does not contain this node
+     */
+    public int getVertexIndex(int vertexId) {
+        int index = Arrays.binarySearch(vertexIds, vertexId);
+        return index >= 0 ? index : -1;
+    }
+
+    /**
+     * @param vertex Vertex index
+     * @return Node id
+     */
+    public int getVertexId(int vertex) {
+        return vertexIds[vertex];
+    }
+
+    /**
+     * @param vertex Vertex index, vertexCount is accepted and returns the arc count
+     * @return Index of the first arc leaving this vertex
+     */
+    public int getFirstArc(int vertex) {
+        return firstArc[vertex];
+    }
+
+    /**
+     * @param arc Arc index
+     * @return Index of the target vertex
+     */
+    public int getArcTarget(int arc) {
+        return arcTarget[arc];
+    }
+
+    /**
+     * @param arc Arc index
+     * @return Edge id, negative for the reversed arc of a bidirectional edge in a directed graph
+     */
+    public int getArcEdgeId(int arc) {
+        return arcEdgeId[arc];
+    }
+
+    /**
+     * @param arc Arc index
+     * @return Arc weight
+     */
+    public double getArcWeight(int arc) {
+        return arcWeight[arc];
+    }
+
+    /**
+     * @return Estimated size of the arrays of this graph in bytes
+     */
+    public long getMemoryUsage() {
+        return 4L * (vertexIds.length + firstArc.length)
+                + (4L + 4L + 8L) * arcTarget.length;
+    }
+
+    /**
+     * @return A graph with the same vertices and every arc reversed, the arcs
+     * keep their edge id and weight
+     */
+    public CSRGraph reverse() {
+        final int vertexCount = getVertexCount();
+        final int arcCount = getArcCount();
+        int[] reversedFirstArc = new int[vertexCount + 1];
+        for (int arc = 0; arc < arcCount; arc++) {
+            reversedFirstArc[arcTarget[arc] + 1]++;
+        }
+        for (int v = 0; v < vertexCount; v++) {
+            reversedFirstArc[v + 1] += reversedFirstArc[v];
+        }
+        int[] next = Arrays.copyOf(reversedFirstArc, vertexCount);
+        int[] reversedTarget = new int[arcCount];
+        int[] reversedEdgeId = new int[arcCount];
+        double[] reversedWeight = new double[arcCount];
+        for (int v = 0; v < vertexCount; v++) {
+            for (int arc = firstArc[v]; arc < firstArc[v + 1]; arc++) {
+                int reversedArc = next[arcTarget[arc]]++;
+                reversedTarget[reversedArc] = v;
+                reversedEdgeId[reversedArc] = arcEdgeId[arc];
+                reversedWeight[reversedArc] = arcWeight[arc];
+            }
+        }
+        return new CSRGraph(vertexIds, reversedFirstArc, reversedTarget, reversedEdgeId, reversedWeight);
+    }
+
+    /**
+     * Collects arcs in growable primitive arrays and builds the graph.
+     */
+    public static class Builder {
+        private int size = 0;
+        private int[] sources;
+        private int[] targets;
+        private int[] edgeIds;
+        private double[] weights;
+
+        /**
+         * @param expectedArcCount Initial capacity
+         */
+        public Builder(int expectedArcCount) {
+            int capacity = Math.max(16, expectedArcCount);
+            sources = new int[capacity];
+            targets = new int[capacity];
+            edgeIds = new int[capacity];
+            weights = new double[capacity];
+        }
+
+        /**
+         * Add an arc
+         * @param source Source node id
+         * @param target Target node id
+         * @param edgeId Edge id
+         * @param weight Weight
+         */
+        public void addArc(int source, int target, int edgeId, double weight) {
+            if (size == sources.length) {
+                int capacity = size + (size >> 1);
+                sources = Arrays.copyOf(sources, capacity);
+                targets = Arrays.copyOf(targets, capacity);
+                edgeIds = Arrays.copyOf(edgeIds, capacity);
+                weights = Arrays.copyOf(weights, capacity);
+            }
+            sources[size] = source;
+            targets[size] = target;
+            edgeIds[size] = edgeId;
+            weights[size] = weight;
+            size++;
+        }
+
+        /**
+         * Add an undirected edge, as an arc in each direction.
+         * @param start Start node id
+         * @param end End node id
+         * @param edgeId Edge id
+         * @param weight Weight
+         */
+        public void addEdge(int start, int end, int edgeId, double weight) {
+            addArc(start, end, edgeId, weight);
+            addArc(end, start, edgeId, weight);
+        }
+
+        /**
+         * @return The graph, arcs leaving a vertex keep their insertion order
+         */
+        public CSRGraph build() {
+            // Sorted distinct node ids
+            int[] ids = new int[size * 2];
+            System.arraycopy(sources, 0, ids, 0, size);
+            System.arraycopy(targets, 0, ids, size, size);
+            Arrays.sort(ids);
+            int vertexCount = 0;
+            for (int i = 0; i < ids.length; i++) {
+                if (i == 0 || ids[i] != ids[i - 1]) {
+                    ids[vertexCount++] = ids[i];
+                }
+            }
+            ids = Arrays.copyOf(ids, vertexCount);
+            // Counting sort of the arcs by source vertex
+            int[] firstArc = new int[vertexCount + 1];
+            int[] sourceIndex = new int[size];
+            for (int i = 0; i < size; i++) {
+                sourceIndex[i] = Arrays.binarySearch(ids, sources[i]);
+                firstArc[sourceIndex[i] + 1]++;
+            }
+            for (int v = 0; v < vertexCount; v++) {
+                firstArc[v + 1] += firstArc[v];
+            }
+            int[] next = Arrays.copyOf(firstArc, vertexCount);
+            int[] arcTarget = new int[size];
+            int[] arcEdgeId = new int[size];
+            double[] arcWeight = new double[size];
+            for (int i = 0; i < size; i++) {
+                int arc = next[sourceIndex[i]]++;
+                arcTarget[arc] = Arrays.binarySearch(ids, targets[i]);
+                arcEdgeId[arc] = edgeIds[i];
+                arcWeight[arc] = weights[i];
+            }
+            return new CSRGraph(ids, firstArc, arcTarget, arcEdgeId, arcWeight);
+        }
+    }
+}
@@ -0,0 +1,778 @@
+/**
+ * H2GIS is a library that brings spatial support to the H2 Database Engine
+ * <http://www.h2database.com>. H2GIS is developed by CNRS
+ * <http://www.cnrs.fr/>.
+ *
+ * This code is part of the H2GIS project. H2GIS is free software; 
+ * you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation;
+ * version 3.0 of the License.
+ *
+ * H2GIS is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details <http://www.gnu.org/licenses/>.
+ *
+ *
+ * For more information, please consult: <http://www.h2gis.org/>
+ * or contact directly: info_at_h2gis.org
+ */
+
+package org.h2gis.network.functions;
+
+import java.util.Arrays;
+
+/**
+ * Contraction hierarchy of a {@link CSRGraph}.
+ * <p>
+ * The vertices are contracted one after the other, least important first.
+ * Contracting a vertex adds a shortcut arc between two of its remaining
+ * neighbours whenever the path through the vertex is the only shortest path
+ * between them. Every arc of the hierarchy, original or shortcut, then goes
+ * either upward or downward in the contraction order, and a shortest path is
+ * found by two searches that only follow upward arcs: one from the source and
+ * one backward from the target. A shortcut keeps the two arcs it replaces, so
+ * the path can be unpacked into original arcs.
+ */
+public class ContractionHierarchy {
+
+    private final int[] vertexIds;
+    private final int[] rank;
+    private final int[] arcSource;
+    private final int[] arcTarget;
+    private final double[] arcWeight;
+    private final int[] arcEdgeId;
+    private final int[] arcFirst;
+    private final int[] arcSecond;
+    // Arcs leaving each vertex towards a higher rank
+    private final int[] upFirstArc;
+    private final int[] upArcs;
+    // Arcs entering each vertex from a higher rank
+    private final int[] downFirstArc;
+    private final int[] downArcs;
+
+    /**
+     * @param vertexIds Sorted node ids
+     * @param rank      Contraction order of each vertex index
+     * @param arcSource Source vertex index of each arc
+     * @param arcTarget Target vertex index of each arc
+     * @param arcWeight Weight of each arc
+     * @param arcEdgeId Edge id of each original arc
+     * @param arcFirst  First replaced arc of each shortcut, -1 for original arcs
+     * @param arcSecond Second replaced arc of each shortcut, -1 for original arcs
+     */
+    public ContractionHierarchy(int[] vertexIds, int[] rank,
+                                int[] arcSource, int[] arcTarget, double[] arcWeight,
+                                int[] arcEdgeId, int[] arcFirst, int[] arcSecond) {
+        this.vertexIds = vertexIds;
+        this.rank = rank;
+        this.arcSource = arcSource;
+        this.arcTarget = arcTarget;
+        this.arcWeight = arcWeight;
+        this.arcEdgeId = arcEdgeId;
+        this.arcFirst = arcFirst;
+        this.arcSecond = arcSecond;
+        final int vertexCount = vertexIds.length;
+        upFirstArc = new int[vertexCount + 1];
+        downFirstArc = new int[vertexCount + 1];
+        for (int arc = 0; arc < arcSource.length; arc++) {
+            if (isUpward(arc)) {
+                upFirstArc[arcSource[arc] + 1]++;
+            } else {
+                downFirstArc[arcTarget[arc] + 1]++;
+            }
+        }
+        for (int v = 0; v < vertexCount; v++) {
+            upFirstArc[v + 1] += upFirstArc[v];
+            downFirstArc[v + 1] += downFirstArc[v];
+        }
+        upArcs = new int[upFirstArc[vertexCount]];
+        downArcs = new int[downFirstArc[vertexCount]];
+        final int[] nextUp = Arrays.copyOf(upFirstArc, vertexCount);
+        final int[] nextDown = Arrays.copyOf(downFirstArc, vertexCount);
+        for (int arc = 0; arc < arcSource.length; arc++) {
+            if (isUpward(arc)) {
+                upArcs[nextUp[arcSource[arc]]++] = arc;
+            } else {
+                downArcs[nextDown[arcTarget[arc]]++] = arc;
+            }
+        }
+    }
+
+    private boolean isUpward(int arc) {
+        return rank[arcSource[arc]] < rank[arcTarget[arc]];
+    }
+
+    /**
+     * Build the contraction hierarchy of a graph. Self-loops and arcs of
+     * infinite weight never belong to a shortest path and are dropped.
+     *
+     * @param graph Graph
+     * @return The contraction hierarchy
+     */
+    public static ContractionHierarchy contract(CSRGraph graph) {
+        return new Contractor(graph).contract();
+    }
+
+    /**
+     * @return Number of vertices
+     */
+    public int getVertexCount() {
+        return vertexIds.length;
+    }
+
+    /**
+     * @param vertexId Node id
+     * @return Vertex index or -1 if the hierarchy does not contain this node
+     */
+    public int getVertexIndex(int vertexId) {
+        int index = Arrays.binarySearch(vertexIds, vertexId);
+        return index >= 0 ? index : -1;
+    }
+
+    /**
+     * @param vertex Vertex index
+     * @return Node id
+     */
+    public int getVertexId(int vertex) {
+        return vertexIds[vertex];
+    }
+
+    /**
+     * @param vertex Vertex index
+     * @return Contraction order of the vertex, starting from 0
+     */
+    public int getRank(int vertex) {
+        return rank[vertex];
+    }
+
+    /**
+     * @return Number of arcs, shortcuts included
+     */
+    public int getArcCount() {
+        return arcSource.length;
+    }
+
+    /**
+     * @param arc Arc index
+     * @return Source vertex index
+     */
+    public int getArcSource(int arc) {
+        return arcSource[arc];
+    }
+
+    /**
+     * @param arc Arc index
+     * @return Target vertex index
+     */
+    public int getArcTarget(int arc) {
+        return arcTarget[arc];
+    }
+
+    /**
+     * @param arc Arc index
+     * @return Arc weight
+     */
+    public double getArcWeight(int arc) {
+        return arcWeight[arc];
+    }
+
+    /**
+     * @param arc Arc index
+     * @return Edge id of an original arc
+     */
+    public int getArcEdgeId(int arc) {
+        return arcEdgeId[arc];
+    }
+
+    /**
+     * @param arc Arc index
+     * @return True if the arc is a shortcut
+     */
+    public boolean isShortcut(int arc) {
+        return arcFirst[arc] != -1;
+    }
+
+    /**
+     * @param arc Arc index
+     * @return First arc replaced by a shortcut, -1 for original arcs
+     */
+    public int getArcFirst(int arc) {
+        return arcFirst[arc];
+    }
+
+    /**
+     * @param arc Arc index
+     * @return Second arc replaced by a shortcut, -1 for original arcs
+     */
+    public int getArcSecond(int arc) {
+        return arcSecond[arc];
+    }
+
+    /**
+     * @return Estimated size of the arrays of this hierarchy in bytes
+     */
+    public long getMemoryUsage() {
+        return 4L * (2 * vertexIds.length + upFirstArc.length + downFirstArc.length)
+                + (4L * 7 + 8L) * arcSource.length;
+    }
+
+    /**
+     * Point-to-point and many-to-many queries on a contraction hierarchy.
+     * Any number of searches can share the same hierarchy.
+     */
+    public static class Search extends PointToPointSearch {
+        private final ContractionHierarchy ch;
+        private final Side forward;
+        private final Side backward;
+        private int stamp = 0;
+        // Buckets of the many-to-many queries, one linked list per vertex
+        private final int[] bucketHead;
+        private final int[] bucketStamp;
+        private int[] bucketNext = new int[64];
+        private int[] bucketTarget = new int[64];
+        private double[] bucketDistance = new double[64];
+        private int bucketSize = 0;
+        private int[] packedPath = new int[16];
+        private int[] unpackStack = new int[16];
+
+        /**
+         * @param ch Contraction hierarchy, shared with other searches
+         */
+        public Search(ContractionHierarchy ch) {
+            this.ch = ch;
+            forward = new Side(ch.upFirstArc, ch.upArcs, ch.arcTarget);
+            backward = new Side(ch.downFirstArc, ch.downArcs, ch.arcSource);
+            bucketHead = new int[ch.getVertexCount()];
+            bucketStamp = new int[ch.getVertexCount()];
+        }
+
+        /**
+         * @return The searched hierarchy
+         */
+        public ContractionHierarchy getContractionHierarchy() {
+            return ch;
+        }
+
+        @Override
+        public int getVertexIndex(int vertexId) {
+            return ch.getVertexIndex(vertexId);
+        }
+
+        @Override
+        public int getVertexId(int vertex) {
+            return ch.getVertexId(vertex);
+        }
+
+        @Override
+        public double search(int source, int target) {
+            nextStamp();
+            clearPath();
+            forward.start(source);
+            backward.start(target);
+            double best = Double.POSITIVE_INFINITY;
+            int meetingVertex = -1;
+            while (true) {
+                final double forwardKey = forward.heap.peekKey();
+                final double backwardKey = backward.heap.peekKey();
+                if (Math.min(forwardKey, backwardKey) >= best) {
+                    break;
+                }
+                final Side side = forwardKey <= backwardKey ? forward : backward;
+                final Side other = side == forward ? backward : forward;
+                final int u = side.step();
+                if (u != -1 && other.isReached(u) && side.distance[u] + other.distance[u] < best) {
+                    best = side.distance[u] + other.distance[u];
+                    meetingVertex = u;
+                }
+            }
+            if (meetingVertex == -1 || Double.isInfinite(best)) {
+                return Double.POSITIVE_INFINITY;
+            }
+            // Arcs of the hierarchy from the source to the target
+            int packedLength = 0;
+            for (int v = meetingVertex; v != source; v = ch.arcSource[forward.parentArc[v]]) {
+                packedLength = addPackedArc(packedLength, forward.parentArc[v]);
+            }
+            for (int i = 0, j = packedLength - 1; i < j; i++, j--) {
+                final int arc = packedPath[i];
+                packedPath[i] = packedPath[j];
+                packedPath[j] = arc;
+            }
+            for (int v = meetingVertex; v != target; v = ch.arcTarget[backward.parentArc[v]]) {
+                packedLength = addPackedArc(packedLength, backward.parentArc[v]);
+            }
+            for (int i = 0; i < packedLength; i++) {
+                unpack(packedPath[i]);
+            }
+            return best;
+        }
+
+        private int addPackedArc(int packedLength, int arc) {
+            if (packedLength == packedPath.length) {
+                packedPath = Arrays.copyOf(packedPath, packedLength * 2);
+            }
+            packedPath[packedLength] = arc;
+            return packedLength + 1;
+        }
+
+        /**
+         * Add the original arcs replaced by an arc of the hierarchy to the
+         * path, in order.
+         */
+        private void unpack(int arc) {
+            int depth = 0;
+            unpackStack[depth++] = arc;
+            while (depth > 0) {
+                final int top = unpackStack[--depth];
+                if (ch.isShortcut(top)) {
+                    if (depth + 2 > unpackStack.length) {
+                        unpackStack = Arrays.copyOf(unpackStack, unpackStack.length * 2);
+                    }
+                    unpackStack[depth++] = ch.arcSecond[top];
+                    unpackStack[depth++] = ch.arcFirst[top];
+                } else {
+                    addPathArc(ch.arcEdgeId[top], ch.arcSource[top], ch.arcTarget[top], ch.arcWeight[top]);
+                }
+            }
+        }
+
+        /**
+         * Compute the distance from every source to every target.
+         *
+         * @param sources Source vertex indices
+         * @param targets Target vertex indices
+         * @return distances[i][j], distance from sources[i] to targets[j]
+         */
+        public double[][] distances(int[] sources, int[] targets) {
+            // The backward search space of each target is stored in buckets
+            nextStamp();
+            bucketSize = 0;
+            for (int j = 0; j < targets.length; j++) {
+                backward.start(targets[j]);
+                while (!backward.heap.isEmpty()) {
+                    final int u = backward.step();
+                    if (u != -1 && !Double.isInfinite(backward.distance[u])) {
+                        addBucketEntry(u, j, backward.distance[u]);
+                    }
+                }
+                backward.nextSearch();
+            }
+            // Each forward search scans the buckets of its search space
+            final double[][] distances = new double[sources.length][targets.length];
+            for (int i = 0; i < sources.length; i++) {
+                final double[] sourceDistances = distances[i];
+                Arrays.fill(sourceDistances, Double.POSITIVE_INFINITY);
+                forward.start(sources[i]);
+                while (!forward.heap.isEmpty()) {
+                    final int u = forward.step();
+                    if (u == -1 || bucketStamp[u] != stamp) {
+                        continue;
+                    }
+                    final double d = forward.distance[u];
+                    for (int e = bucketHead[u]; e != -1; e = bucketNext[e]) {
+                        final double candidate = d + bucketDistance[e];
+                        if (candidate < sourceDistances[bucketTarget[e]]) {
+                            sourceDistances[bucketTarget[e]] = candidate;
+                        }
+                    }
+                }
+                forward.nextSearch();
+            }
+            return distances;
+        }
+
+        private void addBucketEntry(int vertex, int target, double distance) {
+            if (bucketSize == bucketNext.length) {
+                final int capacity = bucketSize * 2;
+                bucketNext = Arrays.copyOf(bucketNext, capacity);
+                bucketTarget = Arrays.copyOf(bucketTarget, capacity);
+                bucketDistance = Arrays.copyOf(bucketDistance, capacity);
+            }
+            if (bucketStamp[vertex] != stamp) {
+                bucketStamp[vertex] = stamp;
+                bucketHead[vertex] = -1;
+            }
+            bucketNext[bucketSize] = bucketHead[vertex];
+            bucketTarget[bucketSize] = target;
+            bucketDistance[bucketSize] = distance;
+            bucketHead[vertex] = bucketSize++;
+        }
+
+        private void nextStamp() {
+            stamp++;
+            if (stamp == Integer.MAX_VALUE) {
+                Arrays.fill(bucketStamp, 0);
+                stamp = 1;
+            }
+            forward.nextSearch();
+            backward.nextSearch();
+        }
+
+        /**
+         * Upward search in one direction.
+         */
+        private final class Side {
+            private final int[] firstArc;
+            private final int[] arcs;
+            // Vertex reached through an arc: its target going forward, its
+            // source going backward
+            private final int[] arcEnd;
+            private final double[] distance;
+            private final int[] reachedStamp;
+            private final int[] parentArc;
+            private final VertexHeap heap = new VertexHeap();
+            private int sideStamp = 0;
+
+            private Side(int[] firstArc, int[] arcs, int[] arcEnd) {
+                this.firstArc = firstArc;
+                this.arcs = arcs;
+                this.arcEnd = arcEnd;
+                final int vertexCount = firstArc.length - 1;
+                distance = new double[vertexCount];
+                reachedStamp = new int[vertexCount];
+                parentArc = new int[vertexCount];
+            }
+
+            private void nextSearch() {
+                sideStamp++;
+                if (sideStamp == Integer.MAX_VALUE) {
+                    Arrays.fill(reachedStamp, 0);
+                    sideStamp = 1;
+                }
+            }
+
+            private void start(int vertex) {
+                heap.clear();
+                reachedStamp[vertex] = sideStamp;
+                distance[vertex] = 0;
+                parentArc[vertex] = -1;
+                heap.push(vertex, 0);
+            }
+
+            private boolean isReached(int vertex) {
+                return reachedStamp[vertex] == sideStamp;
+            }
+
+            /**
+             * Settle the vertex with the smallest key and relax its arcs.
+             *
+             * @return The settled vertex, -1 if the key was outdated
+             */
+            private int step() {
+                final int u = heap.peekVertex();
+                final double d = heap.peekKey();
+                heap.pop();
+                if (d > distance[u]) {
+                    return -1;
+                }
+                for (int i = firstArc[u]; i < firstArc[u + 1]; i++) {
+                    final int arc = arcs[i];
+                    final int v = arcEnd[arc];
+                    final double newDistance = d + ch.arcWeight[arc];
+                    if (!isReached(v) || newDistance < distance[v]) {
+                        reachedStamp[v] = sideStamp;
+                        distance[v] = newDistance;
+                        parentArc[v] = arc;
+                        heap.push(v, newDistance);
+                    }
+                }
+                return u;
+            }
+        }
+    }
+
+    /**
+     * Contracts the vertices of a graph by increasing edge difference: the
+     * number of shortcuts its contraction would add minus the number of arcs
+     * it would remove, plus the number of its already contracted neighbours
+     * to spread the contraction uniformly.
+     */
+    private static final class Contractor {
+        // Settled vertices after which a witness search gives up, the
+        // shortcut is then added even if it may not be needed. Estimating a
+        // priority tolerates a smaller limit than the contraction itself.
+        private static final int MAX_SETTLED = 500;
+        private static final int MAX_SETTLED_ESTIMATE = 50;
+
+        private final CSRGraph graph;
+        private final int vertexCount;
+        private int arcCount = 0;
+        private int[] arcSource;
+        private int[] arcTarget;
+        private double[] arcWeight;
+        private int[] arcEdgeId;
+        private int[] arcFirst;
+        private int[] arcSecond;
+        // Arcs leaving and entering each vertex, including the arcs to
+        // contracted vertices which are skipped
+        private final int[][] out;
+        private final int[] outSize;
+        private final int[][] in;
+        private final int[] inSize;
+        private final boolean[] contracted;
+        private final int[] contractedNeighbours;
+        private final double[] priority;
+        private final int[] rank;
+        private final VertexHeap queue = new VertexHeap();
+        // Witness search
+        private final double[] distance;
+        private final int[] reachedStamp;
+        private final int[] settledStamp;
+        private final int[] targetStamp;
+        private int stamp = 0;
+        private final VertexHeap heap = new VertexHeap();
+
+        private Contractor(CSRGraph graph) {
+            this.graph = graph;
+            vertexCount = graph.getVertexCount();
+            final int capacity = Math.max(16, 2 * graph.getArcCount());
+            arcSource = new int[capacity];
+            arcTarget = new int[capacity];
+            arcWeight = new double[capacity];
+            arcEdgeId = new int[capacity];
+            arcFirst = new int[capacity];
+            arcSecond = new int[capacity];
+            out = new int[vertexCount][];
+            outSize = new int[vertexCount];
+            in = new int[vertexCount][];
+            inSize = new int[vertexCount];
+            contracted = new boolean[vertexCount];
+            contractedNeighbours = new int[vertexCount];
+            priority = new double[vertexCount];
+            rank = new int[vertexCount];
+            distance = new double[vertexCount];
+            reachedStamp = new int[vertexCount];
+            settledStamp = new int[vertexCount];
+            targetStamp = new int[vertexCount];
+            for (int u = 0; u < vertexCount; u++) {
+                for (int arc = graph.getFirstArc(u); arc < graph.getFirstArc(u + 1); arc++) {
+                    final int v = graph.getArcTarget(arc);
+                    final double weight = graph.getArcWeight(arc);
+                    if (u != v && weight < Double.POSITIVE_INFINITY) {
+                        addArc(u, v, weight, graph.getArcEdgeId(arc), -1, -1);
+                    }
+                }
+            }
+        }
+
+        private ContractionHierarchy contract() {
+            for (int v = 0; v < vertexCount; v++) {
+                priority[v] = computePriority(v);
+                queue.push(v, priority[v]);
+            }
+            final int[] neighbourStamp = new int[vertexCount];
+            int order = 0;
+            while (!queue.isEmpty()) {
+                final int v = queue.peekVertex();
+                final double key = queue.peekKey();
+                queue.pop();
+                if (contracted[v] || key != priority[v]) {
+                    continue;
+                }
+                // Lazy update: the priority may have changed since it was pushed
+                final double newPriority = computePriority(v);
+                if (newPriority > queue.peekKey()) {
+                    priority[v] = newPriority;
+                    queue.push(v, newPriority);
+                    continue;
+                }
+                addShortcuts(v, true);
+                contracted[v] = true;
+                rank[v] = order++;
+                for (int i = 0; i < inSize[v]; i++) {
+                    updateNeighbour(arcSource[in[v][i]], neighbourStamp, order);
+                }
+                for (int i = 0; i < outSize[v]; i++) {
+                    updateNeighbour(arcTarget[out[v][i]], neighbourStamp, order);
+                }
+            }
+            final int[] vertexIds = new int[vertexCount];
+            for (int v = 0; v < vertexCount; v++) {
+                vertexIds[v] = graph.getVertexId(v);
+            }
+            return new ContractionHierarchy(vertexIds, rank,
+                    Arrays.copyOf(arcSource, arcCount), Arrays.copyOf(arcTarget, arcCount),
+                    Arrays.copyOf(arcWeight, arcCount), Arrays.copyOf(arcEdgeId, arcCount),
+                    Arrays.copyOf(arcFirst, arcCount), Arrays.copyOf(arcSecond, arcCount));
+        }
+
+        private void updateNeighbour(int neighbour, int[] neighbourStamp, int order) {
+            if (!contracted[neighbour] && neighbourStamp[neighbour] != order) {
+                neighbourStamp[neighbour] = order;
+                removeContractedArcs(neighbour);
+                contractedNeighbours[neighbour]++;
+                priority[neighbour] = computePriority(neighbour);
+                queue.push(neighbour, priority[neighbour]);
+            }
+        }
+
+        /**
+         * Remove the arcs joining the vertex to contracted vertices from its
+         * lists, the arcs stay in the hierarchy.
+         */
+        private void removeContractedArcs(int vertex) {
+            int size = 0;
+            for (int i = 0; i < outSize[vertex]; i++) {
+                if (!contracted[arcTarget[out[vertex][i]]]) {
+                    out[vertex][size++] = out[vertex][i];
+                }
+            }
+            outSize[vertex] = size;
+            size = 0;
+            for (int i = 0; i < inSize[vertex]; i++) {
+                if (!contracted[arcSource[in[vertex][i]]]) {
+                    in[vertex][size++] = in[vertex][i];
+                }
+            }
+            inSize[vertex] = size;
+        }
+
+        private double computePriority(int v) {
+            int removedArcs = 0;
+            for (int i = 0; i < inSize[v]; i++) {
+                if (!contracted[arcSource[in[v][i]]]) {
+                    removedArcs++;
+                }
+            }
+            for (int i = 0; i < outSize[v]; i++) {
+                if (!contracted[arcTarget[out[v][i]]]) {
+                    removedArcs++;
+                }
+            }
+            return addShortcuts(v, false) - removedArcs + contractedNeighbours[v];
+        }
+
+        /**
+         * @param v     Vertex to contract
+         * @param apply False to only count the shortcuts
+         * @return Number of shortcuts required by the contraction of v
+         */
+        private int addShortcuts(int v, boolean apply) {
+            int shortcutCount = 0;
+            for (int i = 0; i < inSize[v]; i++) {
+                final int inArc = in[v][i];
+                final int u = arcSource[inArc];
+                if (contracted[u]) {
+                    continue;
+                }
+                nextStamp();
+                double maxWeight = -1;
+                int targetCount = 0;
+                for (int j = 0; j < outSize[v]; j++) {
+                    final int w = arcTarget[out[v][j]];
+                    if (!contracted[w] && w != u) {
+                        maxWeight = Math.max(maxWeight, arcWeight[inArc] + arcWeight[out[v][j]]);
+                        if (targetStamp[w] != stamp) {
+                            targetStamp[w] = stamp;
+                            targetCount++;
+                        }
+                    }
+                }
+                if (maxWeight < 0) {
+                    continue;
+                }
+                witnessSearch(u, v, maxWeight, targetCount, apply ? MAX_SETTLED : MAX_SETTLED_ESTIMATE);
+                for (int j = 0; j < outSize[v]; j++) {
+                    final int outArc = out[v][j];
+                    final int w = arcTarget[outArc];
+                    if (contracted[w] || w == u) {
+                        continue;
+                    }
+                    final double shortcutWeight = arcWeight[inArc] + arcWeight[outArc];
+                    if (reachedStamp[w] == stamp && distance[w] <= shortcutWeight) {
+                        continue;
+                    }
+                    shortcutCount++;
+                    if (apply) {
+                        addArc(u, w, shortcutWeight, 0, inArc, outArc);
+                    }
+                }
+            }
+            return shortcutCount;
+        }
+
+        private void nextStamp() {
+            stamp++;
+            if (stamp == Integer.MAX_VALUE) {
+                Arrays.fill(reachedStamp, 0);
+                Arrays.fill(settledStamp, 0);
+                Arrays.fill(targetStamp, 0);
+                stamp = 1;
+            }
+        }
+
+        /**
+         * Dijkstra search from u among the remaining vertices, avoiding v. It
+         * stops once the targets marked with the current stamp are settled.
+         */
+        private void witnessSearch(int u, int v, double maxWeight, int targetCount, int maxSettled) {
+            heap.clear();
+            reachedStamp[u] = stamp;
+            distance[u] = 0;
+            heap.push(u, 0);
+            int settled = 0;
+            while (!heap.isEmpty()) {
+                final int x = heap.peekVertex();
+                final double d = heap.peekKey();
+                heap.pop();
+                if (settledStamp[x] == stamp || d > distance[x]) {
+                    continue;
+                }
+                if (d > maxWeight || ++settled > maxSettled) {
+                    break;
+                }
+                settledStamp[x] = stamp;
+                if (targetStamp[x] == stamp && --targetCount == 0) {
+                    break;
+                }
+                for (int i = 0; i < outSize[x]; i++) {
+                    final int arc = out[x][i];
+                    final int y = arcTarget[arc];
+                    if (y == v || contracted[y]) {
+                        continue;
+                    }
+                    final double newDistance = d + arcWeight[arc];
+                    if (reachedStamp[y] != stamp || newDistance < distance[y]) {
+                        reachedStamp[y] = stamp;
+                        distance[y] = newDistance;
+                        heap.push(y, newDistance);
+                    }
+                }
+            }
+        }
+
+        private void addArc(int source, int target, double weight, int edgeId, int first, int second) {
+            if (arcCount == arcSource.length) {
+                final int capacity = arcCount + (arcCount >> 1);
+                arcSource = Arrays.copyOf(arcSource, capacity);
+                arcTarget = Arrays.copyOf(arcTarget, capacity);
+                arcWeight = Arrays.copyOf(arcWeight, capacity);
+                arcEdgeId = Arrays.copyOf(arcEdgeId, capacity);
+                arcFirst = Arrays.copyOf(arcFirst, capacity);
+                arcSecond = Arrays.copyOf(arcSecond, capacity);
+            }
+            arcSource[arcCount] = source;
+            arcTarget[arcCount] = target;
+            arcWeight[arcCount] = weight;
+            arcEdgeId[arcCount] = edgeId;
+            arcFirst[arcCount] = first;
+            arcSecond[arcCount] = second;
+            append(out, outSize, source, arcCount);
+            append(in, inSize, target, arcCount);
+            arcCount++;
+        }
+
+        private static void append(int[][] lists, int[] sizes, int vertex, int arc) {
+            int[] list = lists[vertex];
+            if (list == null) {
+                list = new int[4];
+                lists[vertex] = list;
+            } else if (sizes[vertex] == list.length) {
+                list = Arrays.copyOf(list, list.length * 2);
+                lists[vertex] = list;
+            }
+            list[sizes[vertex]++] = arc;
+        }
+    }
+}
@@ -0,0 +1,146 @@
+/**
+ * H2GIS is a library that brings spatial support to the H2 Database Engine
+ * <http://www.h2database.com>. H2GIS is developed by CNRS
+ * <http://www.cnrs.fr/>.
+ *
+ * This code is part of the H2GIS project. H2GIS is free software; 
+ * you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation;
+ * version 3.0 of the License.
+ *
+ * H2GIS is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details <http://www.gnu.org/licenses/>.
+ *
+ *
+ * For more information, please consult: <http://www.h2gis.org/>
+ * or contact directly: info_at_h2gis.org
+ */
+
+package org.h2gis.network.functions;
+
+import java.util.Arrays;
+
+/**
+ * Dijkstra search on a {@link CSRGraph}. The distances are kept in arrays
+ * owned by this object and reused from one search to the next, so a search
+ * instance must be used by a single thread, while any number of instances
+ * can share the same graph.
+ */
+public class DijkstraSearch {
+
+    private final CSRGraph graph;
+    private final double[] distance;
+    // A vertex distance is valid if its stamp equals the current search stamp
+    private final int[] reachedStamp;
+    private final int[] settledStamp;
+    private final int[] targetStamp;
+    private int stamp = 0;
+    private final VertexHeap heap = new VertexHeap();
+
+    /**
+     * @param graph Graph, shared with other searches
+     */
+    public DijkstraSearch(CSRGraph graph) {
+        this.graph = graph;
+        final int vertexCount = graph.getVertexCount();
+        distance = new double[vertexCount];
+        reachedStamp = new int[vertexCount];
+        settledStamp = new int[vertexCount];
+        targetStamp = new int[vertexCount];
+    }
+
+    /**
+     * @return The searched graph
+     */
+    public CSRGraph getGraph() {
+        return graph;
+    }
+
+    /**
+     * Compute the distances from the source to all the vertices.
+     *
+     * @param source Source vertex index
+     */
+    public void searchAll(int source) {
+        search(source, null, Double.POSITIVE_INFINITY);
+    }
+
+    /**
+     * Compute the distances from the source, the search stops when all the
+     * targets are settled or when the distance exceeds the limit.
+     *
+     * @param source  Source vertex index
+     * @param targets Target vertex indices, null to settle all the vertices
+     * @param limit   Maximum distance
+     */
+    public void search(int source, int[] targets, double limit) {
+        nextStamp();
+        int remaining = 0;
+        if (targets != null) {
+            for (int target : targets) {
+                if (targetStamp[target] != stamp) {
+                    targetStamp[target] = stamp;
+                    remaining++;
+                }
+            }
+        }
+        heap.clear();
+        relax(source, 0);
+        while (!heap.isEmpty()) {
+            final int u = heap.peekVertex();
+            final double d = heap.peekKey();
+            heap.pop();
+            if (settledStamp[u] == stamp || d > distance[u]) {
+                continue;
+            }
+            if (d > limit) {
+                break;
+            }
+            settledStamp[u] = stamp;
+            if (targetStamp[u] == stamp && --remaining == 0) {
+                break;
+            }
+            final int end = graph.getFirstArc(u + 1);
+            for (int arc = graph.getFirstArc(u); arc < end; arc++) {
+                relax(graph.getArcTarget(arc), d + graph.getArcWeight(arc));
+            }
+        }
+    }
+
+    /**
+     * @param vertex Vertex index
+     * @return Distance from the source of the last search, infinity if the
+     * vertex has not been reached
+     */
+    public double getDistance(int vertex) {
+        return reachedStamp[vertex] == stamp ? distance[vertex] : Double.POSITIVE_INFINITY;
+    }
+
+    /**
+     * @param vertex Vertex index
+     * @return True if the distance of the vertex is final
+     */
+    public boolean isSettled(int vertex) {
+        return settledStamp[vertex] == stamp;
+    }
+
+    private void nextStamp() {
+        stamp++;
+        if (stamp == Integer.MAX_VALUE) {
+            Arrays.fill(reachedStamp, 0);
+            Arrays.fill(settledStamp, 0);
+            Arrays.fill(targetStamp, 0);
+            stamp = 1;
+        }
+    }
+
+    private void relax(int vertex, double newDistance) {
+        if (reachedStamp[vertex] != stamp || newDistance < distance[vertex]) {
+            reachedStamp[vertex] = stamp;
+            distance[vertex] = newDistance;
+            heap.push(vertex, newDistance);
+        }
+    }
+}
@@ -0,0 +1,153 @@
+/**
+ * H2GIS is a library that brings spatial support to the H2 Database Engine
+ * <http://www.h2database.com>. H2GIS is developed by CNRS
+ * <http://www.cnrs.fr/>.
+ *
+ * This code is part of the H2GIS project. H2GIS is free software; 
+ * you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation;
+ * version 3.0 of the License.
+ *
+ * H2GIS is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details <http://www.gnu.org/licenses/>.
+ *
+ *
+ * For more information, please consult: <http://www.h2gis.org/>
+ * or contact directly: info_at_h2gis.org
+ */
+
+package org.h2gis.network.functions;
+
+import java.util.Arrays;
+
+/**
+ * Disjoint sets of node ids, merged with union by rank and path halving.
+ * Node ids are added on the fly, so the edges can be streamed without
+ * knowing the nodes in advance.
+ */
+final class DisjointSets {
+    private static final int INITIAL_CAPACITY = 1024;
+
+    // Element of each node id, open addressing hash table where 0 is an empty slot
+    private int[] slotId = new int[INITIAL_CAPACITY * 2];
+    private int[] slotElement = new int[INITIAL_CAPACITY * 2];
+    // Node id, parent and rank of each element
+    private int[] nodeIds = new int[INITIAL_CAPACITY];
+    private int[] parent = new int[INITIAL_CAPACITY];
+    private byte[] rank = new byte[INITIAL_CAPACITY];
+    private int count = 0;
+
+    /**
+     * Merge the sets of both nodes, adding the nodes if needed.
+     *
+     * @param nodeIdA Node id
+     * @param nodeIdB Node id
+     */
+    void union(int nodeIdA, int nodeIdB) {
+        int rootA = find(add(nodeIdA));
+        int rootB = find(add(nodeIdB));
+        if (rootA == rootB) {
+            return;
+        }
+        if (rank[rootA] < rank[rootB]) {
+            parent[rootA] = rootB;
+        } else {
+            parent[rootB] = rootA;
+            if (rank[rootA] == rank[rootB]) {
+                rank[rootA]++;
+            }
+        }
+    }
+
+    /**
+     * @return Number of distinct node ids
+     */
+    int getNodeCount() {
+        return count;
+    }
+
+    /**
+     * @return The node ids in increasing order
+     */
+    int[] getSortedNodeIds() {
+        int[] sorted = Arrays.copyOf(nodeIds, count);
+        Arrays.sort(sorted);
+        return sorted;
+    }
+
+    /**
+     * @param sortedNodeIds The node ids in increasing order, as given by {@link #getSortedNodeIds()}
+     * @return The set number [1-n] of each node id, sets being numbered by their smallest node id
+     */
+    int[] getSetNumbers(int[] sortedNodeIds) {
+        final int[] setNumbers = new int[sortedNodeIds.length];
+        final int[] rootNumber = new int[count];
+        int setCount = 0;
+        for (int i = 0; i < sortedNodeIds.length; i++) {
+            final int root = find(slotElement[findSlot(sortedNodeIds[i])] - 1);
+            if (rootNumber[root] == 0) {
+                rootNumber[root] = ++setCount;
+            }
+            setNumbers[i] = rootNumber[root];
+        }
+        return setNumbers;
+    }
+
+    private int find(int element) {
+        while (parent[element] != element) {
+            parent[element] = parent[parent[element]];
+            element = parent[element];
+        }
+        return element;
+    }
+
+    /**
+     * @return The element of the node id, added as a singleton set if needed
+     */
+    private int add(int nodeId) {
+        int slot = findSlot(nodeId);
+        if (slotElement[slot] != 0) {
+            return slotElement[slot] - 1;
+        }
+        if (count == nodeIds.length) {
+            int capacity = count * 2;
+            nodeIds = Arrays.copyOf(nodeIds, capacity);
+            parent = Arrays.copyOf(parent, capacity);
+            rank = Arrays.copyOf(rank, capacity);
+        }
+        nodeIds[count] = nodeId;
+        parent[count] = count;
+        count++;
+        slotId[slot] = nodeId;
+        slotElement[slot] = count;
+        if (count * 2 > slotElement.length) {
+            rehash();
+        }
+        return count - 1;
+    }
+
+    /**
+     * @return The slot of the node id, or the empty slot where it would be inserted
+     */
+    private int findSlot(int nodeId) {
+        int mask = slotElement.length - 1;
+        int hash = nodeId * 0x9E3779B9;
+        int slot = (hash ^ (hash >>> 16)) & mask;
+        while (slotElement[slot] != 0 && slotId[slot] != nodeId) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void rehash() {
+        slotId = new int[slotElement.length * 2];
+        slotElement = new int[slotElement.length * 2];
+        for (int element = 0; element < count; element++) {
+            int slot = findSlot(nodeIds[element]);
+            slotId[slot] = nodeIds[element];
+            slotElement[slot] = element + 1;
+        }
+    }
+}
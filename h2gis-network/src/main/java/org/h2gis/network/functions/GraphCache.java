@@ -0,0 +1,490 @@
+/**
+ * H2GIS is a library that brings spatial support to the H2 Database Engine
+ * <http://www.h2database.com>. H2GIS is developed by CNRS
+ * <http://www.cnrs.fr/>.
+ *
+ * This code is part of the H2GIS project. H2GIS is free software; 
+ * you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation;
+ * version 3.0 of the License.
+ *
+ * H2GIS is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details <http://www.gnu.org/licenses/>.
+ *
+ *
+ * For more information, please consult: <http://www.h2gis.org/>
+ * or contact directly: info_at_h2gis.org
+ */
+
+package org.h2gis.network.functions;
+
+import org.h2.engine.Constants;
+import org.h2.engine.Database;
+import org.h2.engine.Session;
+import org.h2.engine.SessionInterface;
+import org.h2.jdbc.JdbcConnection;
+import org.h2.schema.Schema;
+import org.h2.table.Table;
+import org.h2gis.utilities.TableLocation;
+import org.h2gis.utilities.TableUtilities;
+
+import java.lang.ref.WeakReference;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import static org.h2gis.network.functions.GraphConstants.CH_ARCS_SUFFIX;
+
+/**
+ * Keeps the read-only graphs loaded by the network functions between calls,
+ * as well as the contraction hierarchies read from the tables of
+ * ST_GraphPreprocess. The reversed graph and the A* vertex coordinates of a
+ * graph are kept next to it and are only reused with the same graph
+ * instance.
+ * <p>
+ * Each database has its own cache, returned by
+ * {@link #getInstance(Connection)} and released with the database. A graph
+ * is identified by its edges table, its orientation and its weight column.
+ * It is reused as long as the data modification id of the edges table is
+ * unchanged; any insert, update or delete on the table, as well as dropping
+ * and recreating it, makes the next call reload the graph. Tables without a
+ * reliable modification id (linked tables, remote connections) are never
+ * cached.
+ * <p>
+ * The changes of a transaction are only seen by its session until the
+ * commit, while they already update the modification id. The cache is
+ * therefore bypassed as long as a session may hold uncommitted changes on the
+ * edges table, so that no session is served a graph built from another view
+ * of the table.
+ * <p>
+ * The least recently used graphs are evicted once the estimated memory used
+ * by the cache exceeds {@link #getMaxMemory()}.
+ */
+public class GraphCache {
+
+    /** Default memory bound, a quarter of the maximum heap size. */
+    public static final long DEFAULT_MAX_MEMORY = Runtime.getRuntime().maxMemory() / 4;
+
+    // Cache of each H2 database, released once the database is closed and garbage collected
+    private static final Map<Database, GraphCache> DATABASE_CACHES = new WeakHashMap<Database, GraphCache>();
+
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<String, Entry>(16, 0.75f, true);
+    private long maxMemory;
+    private long usedMemory = 0;
+    private long hitCount = 0;
+    private long missCount = 0;
+
+    /**
+     * @param maxMemory Memory bound in bytes
+     */
+    public GraphCache(long maxMemory) {
+        setMaxMemory(maxMemory);
+    }
+
+    /**
+     * Return the cache of the database of the connection, created with the
+     * default memory bound. The graphs are only cached for embedded H2
+     * connections, the other connections get a new cache that stays empty.
+     *
+     * @param connection Connection
+     * @return The cache shared by the network functions on this database
+     * @throws SQLException
+     */
+    public static GraphCache getInstance(Connection connection) throws SQLException {
+        Session session = getSession(connection);
+        if (session == null) {
+            return new GraphCache(DEFAULT_MAX_MEMORY);
+        }
+        Database database = session.getDatabase();
+        synchronized (DATABASE_CACHES) {
+            GraphCache cache = DATABASE_CACHES.get(database);
+            if (cache == null) {
+                cache = new GraphCache(DEFAULT_MAX_MEMORY);
+                DATABASE_CACHES.put(database, cache);
+            }
+            return cache;
+        }
+    }
+
+    /**
+     * Return the graph of the given edges table, loading it if the cache does
+     * not hold an up to date copy.
+     *
+     * @param connection        Connection
+     * @param inputTable        Input table name
+     * @param globalOrientation Global orientation
+     * @param edgeOrientation   Edge orientation column name
+     * @param weightColumn      Weight column name, null for unweighted graphs
+     * @return Graph
+     * @throws SQLException
+     */
+    public CSRGraph getGraph(final Connection connection,
+                             final String inputTable,
+                             final GraphFunctionParser.Orientation globalOrientation,
+                             final String edgeOrientation,
+                             final String weightColumn) throws SQLException {
+        return get(connection, new TableLocation[]{TableUtilities.parseInputTable(connection, inputTable)},
+                globalOrientation + "\n" + edgeOrientation + "\n" + weightColumn, null,
+                new Loader<CSRGraph>() {
+                    @Override
+                    CSRGraph load() throws SQLException {
+                        return new GraphCreator(connection, inputTable,
+                                globalOrientation, edgeOrientation, weightColumn).prepareCSRGraph();
+                    }
+
+                    @Override
+                    long getMemoryUsage(CSRGraph graph) {
+                        return graph.getMemoryUsage();
+                    }
+                });
+    }
+
+    /**
+     * Return the reversed graph of a graph returned by
+     * {@link #getGraph(Connection, String, GraphFunctionParser.Orientation, String, String)},
+     * reversing it if the cache does not hold the reversed graph of this
+     * graph instance.
+     *
+     * @param connection        Connection
+     * @param inputTable        Input table name
+     * @param graph             Graph of the edges table
+     * @param globalOrientation Global orientation
+     * @param edgeOrientation   Edge orientation column name
+     * @param weightColumn      Weight column name, null for unweighted graphs
+     * @return Reversed graph, see {@link CSRGraph#reverse()}
+     * @throws SQLException
+     */
+    public CSRGraph getReversedGraph(Connection connection,
+                                     String inputTable,
+                                     final CSRGraph graph,
+                                     GraphFunctionParser.Orientation globalOrientation,
+                                     String edgeOrientation,
+                                     String weightColumn) throws SQLException {
+        return get(connection, new TableLocation[]{TableUtilities.parseInputTable(connection, inputTable)},
+                globalOrientation + "\n" + edgeOrientation + "\n" + weightColumn + "\nreversed", graph,
+                new Loader<CSRGraph>() {
+                    @Override
+                    CSRGraph load() {
+                        return graph.reverse();
+                    }
+
+                    @Override
+                    long getMemoryUsage(CSRGraph reversed) {
+                        return reversed.getMemoryUsage();
+                    }
+                });
+    }
+
+    /**
+     * Return the vertex coordinates used by the A* search on a graph returned
+     * by {@link #getGraph(Connection, String, GraphFunctionParser.Orientation, String, String)},
+     * reading them if the cache does not hold the coordinates of this graph
+     * instance. The coordinates are also reloaded when the nodes table changes.
+     *
+     * @param connection        Connection
+     * @param inputTable        Input table name
+     * @param graph             Graph of the edges table
+     * @param globalOrientation Global orientation
+     * @param edgeOrientation   Edge orientation column name
+     * @param weightColumn      Weight column name, null for unweighted graphs
+     * @return Vertex coordinates
+     * @throws SQLException
+     */
+    public AStarSearch.Coordinates getVertexCoordinates(final Connection connection,
+                                                       String inputTable,
+                                                       final CSRGraph graph,
+                                                       GraphFunctionParser.Orientation globalOrientation,
+                                                       String edgeOrientation,
+                                                       String weightColumn) throws SQLException {
+        final TableLocation edges = TableUtilities.parseInputTable(connection, inputTable);
+        final TableLocation nodes = GraphFunction.getNodesTable(connection, edges);
+        return get(connection, nodes == null ? new TableLocation[]{edges} : new TableLocation[]{edges, nodes},
+                globalOrientation + "\n" + edgeOrientation + "\n" + weightColumn + "\ncoordinates", graph,
+                new Loader<AStarSearch.Coordinates>() {
+                    @Override
+                    AStarSearch.Coordinates load() throws SQLException {
+                        return GraphFunction.readAStarCoordinates(connection, edges, graph);
+                    }
+
+                    @Override
+                    long getMemoryUsage(AStarSearch.Coordinates coordinates) {
+                        return coordinates.getMemoryUsage();
+                    }
+                });
+    }
+
+    /**
+     * Return the contraction hierarchy stored by ST_GraphPreprocess for the
+     * given edges table, loading it if the cache does not hold an up to date
+     * copy. The hierarchy is tracked through its arcs table.
+     *
+     * @param connection        Connection
+     * @param inputTable        Input table name
+     * @param globalOrientation Global orientation
+     * @param edgeOrientation   Edge orientation column name
+     * @param weightColumn      Weight column name, null for unweighted graphs
+     * @return Contraction hierarchy
+     * @throws SQLException
+     */
+    public ContractionHierarchy getContractionHierarchy(final Connection connection,
+                                                        final String inputTable,
+                                                        final GraphFunctionParser.Orientation globalOrientation,
+                                                        final String edgeOrientation,
+                                                        final String weightColumn) throws SQLException {
+        final TableLocation edges = TableUtilities.parseInputTable(connection, inputTable);
+        return get(connection, new TableLocation[]{TableUtilities.suffixTableLocation(edges, CH_ARCS_SUFFIX)},
+                globalOrientation + "\n" + edgeOrientation + "\n" + weightColumn, null,
+                new Loader<ContractionHierarchy>() {
+                    @Override
+                    ContractionHierarchy load() throws SQLException {
+                        return ST_GraphPreprocess.readContractionHierarchy(connection, edges,
+                                globalOrientation, edgeOrientation, weightColumn);
+                    }
+
+                    @Override
+                    long getMemoryUsage(ContractionHierarchy ch) {
+                        return ch.getMemoryUsage();
+                    }
+                });
+    }
+
+    /**
+     * @param connection Connection
+     * @param locations  Tables the value is read from, the entry is named
+     *                   after the first one
+     * @param variant    Identifies the value among the entries of the first
+     *                   table
+     * @param source     Cached value the value is derived from, null if it is
+     *                   only read from the tables
+     * @param loader     Loader of the value
+     * @return The cached value, or the loaded value
+     * @throws SQLException
+     */
+    @SuppressWarnings("unchecked")
+    private <T> T get(Connection connection, TableLocation[] locations, String variant, Object source,
+                      Loader<T> loader) throws SQLException {
+        final Session session = getSession(connection);
+        final Table[] tables = new Table[locations.length];
+        // Read the modification ids before loading, a concurrent change makes
+        // the stored entry stale instead of hiding the change.
+        final long[] modificationIds = new long[locations.length];
+        boolean cacheable = session != null;
+        for (int i = 0; cacheable && i < locations.length; i++) {
+            tables[i] = findTable(session, locations[i]);
+            modificationIds[i] = getModificationId(tables[i]);
+            cacheable = modificationIds[i] != -1 && !hasUncommittedChanges(session, tables[i]);
+        }
+        String key = null;
+        if (cacheable) {
+            key = tables[0].getSchema().getName() + '\n' + tables[0].getName() + '\n' + variant;
+            synchronized (this) {
+                Entry entry = entries.get(key);
+                if (entry != null && entry.isValid(tables, modificationIds, source)) {
+                    hitCount++;
+                    return (T) entry.value;
+                }
+                missCount++;
+            }
+        }
+        T value = loader.load();
+        if (key != null) {
+            put(key, new Entry(tables, modificationIds, source, value, loader.getMemoryUsage(value)));
+        }
+        return value;
+    }
+
+    private synchronized void put(String key, Entry entry) {
+        Entry old = entries.remove(key);
+        if (old != null) {
+            usedMemory -= old.memoryUsage;
+        }
+        if (entry.memoryUsage > maxMemory) {
+            return;
+        }
+        entries.put(key, entry);
+        usedMemory += entry.memoryUsage;
+        evict();
+    }
+
+    private void evict() {
+        Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+        while (usedMemory > maxMemory && it.hasNext()) {
+            usedMemory -= it.next().getValue().memoryUsage;
+            it.remove();
+        }
+    }
+
+    /**
+     * @param connection Connection
+     * @return The H2 session, or null if the connection is not an embedded H2
+     * connection
+     * @throws SQLException
+     */
+    private static Session getSession(Connection connection) throws SQLException {
+        if (!connection.isWrapperFor(JdbcConnection.class)) {
+            return null;
+        }
+        SessionInterface session = connection.unwrap(JdbcConnection.class).getSession();
+        return session instanceof Session ? (Session) session : null;
+    }
+
+    /**
+     * @param session  H2 session
+     * @param location Table location
+     * @return The H2 table, or null if it does not exist
+     */
+    private static Table findTable(Session session, TableLocation location) {
+        Schema schema = session.getDatabase().findSchema(location.getSchema(session.getCurrentSchemaName()));
+        return schema == null ? null : schema.findTableOrView(session, location.getTable());
+    }
+
+    /**
+     * @param session Calling session
+     * @param table   H2 table
+     * @return True if a session may hold uncommitted changes on the table
+     */
+    private static boolean hasUncommittedChanges(Session session, Table table) {
+        Database database = session.getDatabase();
+        if (database.getLockMode() != Constants.LOCK_MODE_OFF) {
+            // Insert, update and delete lock the table until the end of the
+            // transaction, only with a shared lock when using MVCC
+            boolean multiVersion = database.isMultiVersion();
+            for (Session other : database.getSessions(false)) {
+                for (Table locked : other.getLocks()) {
+                    if (locked == table && (multiVersion || table.isLockedExclusivelyBy(other))) {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }
+        // Without locks, any open transaction may have changed the table. The
+        // transaction of the calling session in auto-commit mode only holds
+        // the statement that calls the network function.
+        for (Session other : database.getSessions(false)) {
+            if (other.containsUncommitted() && (other != session || !session.getAutoCommit())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @param table H2 table, may be null
+     * @return The data modification id of the table, or -1 if it cannot be
+     * trusted to detect changes
+     */
+    private static long getModificationId(Table table) {
+        if (table == null) {
+            return -1;
+        }
+        long modificationId = table.getMaxDataModificationId();
+        // Linked and external tables report Long.MAX_VALUE, they are always modified
+        return modificationId == Long.MAX_VALUE ? -1 : modificationId;
+    }
+
+    /**
+     * @return Memory bound in bytes
+     */
+    public synchronized long getMaxMemory() {
+        return maxMemory;
+    }
+
+    /**
+     * @param maxMemory Memory bound in bytes, graphs larger than this value
+     *                  are not cached
+     */
+    public synchronized void setMaxMemory(long maxMemory) {
+        if (maxMemory < 0) {
+            throw new IllegalArgumentException("The memory bound must be positive");
+        }
+        this.maxMemory = maxMemory;
+        evict();
+    }
+
+    /**
+     * @return Estimated memory used by the cached graphs in bytes
+     */
+    public synchronized long getUsedMemory() {
+        return usedMemory;
+    }
+
+    /**
+     * @return Number of cached graphs
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * @return Number of calls answered by a cached graph
+     */
+    public synchronized long getHitCount() {
+        return hitCount;
+    }
+
+    /**
+     * @return Number of calls that had to load the graph
+     */
+    public synchronized long getMissCount() {
+        return missCount;
+    }
+
+    /**
+     * Remove every graph and reset the counters.
+     */
+    public synchronized void clear() {
+        entries.clear();
+        usedMemory = 0;
+        hitCount = 0;
+        missCount = 0;
+    }
+
+    private abstract static class Loader<T> {
+        abstract T load() throws SQLException;
+
+        abstract long getMemoryUsage(T value);
+    }
+
+    private static class Entry {
+        // A dropped and recreated table, or a reopened database, may reuse
+        // the modification id: the table instances have to match too.
+        private final List<WeakReference<Table>> tables = new ArrayList<WeakReference<Table>>();
+        private final long[] modificationIds;
+        // Derived values are only valid for the instance they were built from
+        private final WeakReference<Object> source;
+        private final Object value;
+        private final long memoryUsage;
+
+        private Entry(Table[] tables, long[] modificationIds, Object source, Object value, long memoryUsage) {
+            for (Table table : tables) {
+                this.tables.add(new WeakReference<Table>(table));
+            }
+            this.modificationIds = modificationIds;
+            this.source = source == null ? null : new WeakReference<Object>(source);
+            this.value = value;
+            this.memoryUsage = memoryUsage;
+        }
+
+        private boolean isValid(Table[] tables, long[] modificationIds, Object source) {
+            if (!Arrays.equals(this.modificationIds, modificationIds)
+                    || (this.source == null ? source != null : this.source.get() != source)) {
+                return false;
+            }
+            for (int i = 0; i < tables.length; i++) {
+                if (this.tables.get(i).get() != tables[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
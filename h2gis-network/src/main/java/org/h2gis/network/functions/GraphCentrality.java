@@ -0,0 +1,460 @@
+/**
+ * H2GIS is a library that brings spatial support to the H2 Database Engine
+ * <http://www.h2database.com>. H2GIS is developed by CNRS
+ * <http://www.cnrs.fr/>.
+ *
+ * This code is part of the H2GIS project. H2GIS is free software; 
+ * you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation;
+ * version 3.0 of the License.
+ *
+ * H2GIS is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details <http://www.gnu.org/licenses/>.
+ *
+ *
+ * For more information, please consult: <http://www.h2gis.org/>
+ * or contact directly: info_at_h2gis.org
+ */
+
+package org.h2gis.network.functions;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.h2gis.api.ProgressVisitor;
+
+/**
+ * Betweenness and closeness centrality of the vertices of a {@link CSRGraph}
+ * and betweenness centrality of its edges, by Brandes' algorithm.
+ * <p>
+ * The single-source searches are distributed among worker threads sharing
+ * the graph, each worker accumulating the dependencies in its own arrays
+ * which are summed at the end. The searches may start from every vertex
+ * (exact centrality) or from a random sample of pivots (approximate
+ * centrality, Brandes and Pich 2007). In the latter case the closeness of a
+ * vertex is estimated from its distance to the pivots (Eppstein and Wang
+ * 2004).
+ * <p>
+ * Betweenness values are normalized to [0, 1] by their minimum and maximum.
+ * The closeness of a vertex is (n-1) divided by the sum of its distances to
+ * the other vertices, zero if one of them cannot be reached. Arcs of infinite
+ * weight are ignored. Shortest paths are counted once per parallel arc.
+ */
+public class GraphCentrality {
+
+    /** Seed of the pivot sample, so that repeated runs give the same values. */
+    public static final long PIVOT_SEED = 1;
+
+    private final CSRGraph graph;
+    private final CSRGraph reversed;
+    private final boolean weighted;
+    private final boolean symmetric;
+    // Distinct edge ids, and the index of the edge of each reversed arc
+    private final int[] edgeIds;
+    private final int[] reversedArcEdge;
+    private double[] nodeBetweenness;
+    private double[] closeness;
+    private double[] edgeBetweenness;
+
+    /**
+     * @param graph     Graph, shared with other computations
+     * @param weighted  False if every arc weighs 1, the searches are then
+     *                  breadth-first searches
+     * @param symmetric True if each arc has a reverse arc of the same weight
+     *                  (undirected graphs)
+     */
+    public GraphCentrality(CSRGraph graph, boolean weighted, boolean symmetric) {
+        this(graph, graph.reverse(), weighted, symmetric);
+    }
+
+    /**
+     * @param graph     Graph, shared with other computations
+     * @param reversed  The reversed graph, see {@link CSRGraph#reverse()}
+     * @param weighted  False if every arc weighs 1, the searches are then
+     *                  breadth-first searches
+     * @param symmetric True if each arc has a reverse arc of the same weight
+     *                  (undirected graphs)
+     */
+    public GraphCentrality(CSRGraph graph, CSRGraph reversed, boolean weighted, boolean symmetric) {
+        this.graph = graph;
+        this.reversed = reversed;
+        this.weighted = weighted;
+        this.symmetric = symmetric;
+        final int arcCount = graph.getArcCount();
+        final int[] ids = new int[arcCount];
+        for (int arc = 0; arc < arcCount; arc++) {
+            ids[arc] = graph.getArcEdgeId(arc);
+        }
+        Arrays.sort(ids);
+        int edgeCount = 0;
+        for (int i = 0; i < arcCount; i++) {
+            if (i == 0 || ids[i] != ids[i - 1]) {
+                ids[edgeCount++] = ids[i];
+            }
+        }
+        edgeIds = Arrays.copyOf(ids, edgeCount);
+        reversedArcEdge = new int[arcCount];
+        for (int arc = 0; arc < arcCount; arc++) {
+            reversedArcEdge[arc] = Arrays.binarySearch(edgeIds, reversed.getArcEdgeId(arc));
+        }
+    }
+
+    /**
+     * Compute the centrality indices.
+     *
+     * @param pivotCount  Number of source vertices of the approximation, 0 or
+     *                    at least the vertex count for the exact computation
+     * @param threadCount Number of worker threads
+     * @param progress    Progress, one step per source vertex
+     * @throws SQLException If the computation has been interrupted
+     */
+    public void compute(int pivotCount, int threadCount, ProgressVisitor progress) throws SQLException {
+        final int vertexCount = graph.getVertexCount();
+        final boolean sampled = pivotCount > 0 && pivotCount < vertexCount;
+        final int[] sources = sampled ? samplePivots(vertexCount, pivotCount, PIVOT_SEED) : null;
+        final int sourceCount = sampled ? pivotCount : vertexCount;
+        nodeBetweenness = new double[vertexCount];
+        closeness = new double[vertexCount];
+        edgeBetweenness = new double[edgeIds.length];
+        final ProgressVisitor sourceProgress = progress.subProcess(sourceCount);
+        final AtomicInteger nextSource = new AtomicInteger();
+        final int workerCount = Math.max(1, Math.min(threadCount, sourceCount));
+        final List<Worker> workers = new ArrayList<Worker>(workerCount);
+        for (int i = 0; i < workerCount; i++) {
+            workers.add(new Worker(sources, sourceCount, nextSource, sourceProgress));
+        }
+        if (workerCount == 1) {
+            workers.get(0).run();
+        } else {
+            ExecutorService executorService = Executors.newFixedThreadPool(workerCount);
+            try {
+                List<Future<?>> futures = new ArrayList<Future<?>>(workerCount);
+                for (Worker worker : workers) {
+                    futures.add(executorService.submit(worker));
+                }
+                for (Future<?> future : futures) {
+                    future.get();
+                }
+            } catch (InterruptedException ex) {
+                throw new SQLException(ex);
+            } catch (ExecutionException ex) {
+                if (ex.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) ex.getCause();
+                }
+                throw new SQLException(ex.getCause());
+            } finally {
+                executorService.shutdownNow();
+            }
+        }
+        // Merge the accumulators of the workers
+        final double[] distanceSum = new double[vertexCount];
+        final int[] reachedPivots = new int[vertexCount];
+        for (Worker worker : workers) {
+            add(nodeBetweenness, worker.nodeBetweenness);
+            add(edgeBetweenness, worker.edgeBetweenness);
+            if (sampled) {
+                add(distanceSum, worker.distanceSum);
+                for (int v = 0; v < vertexCount; v++) {
+                    reachedPivots[v] += worker.reachedPivots[v];
+                }
+            } else {
+                add(closeness, worker.closeness);
+            }
+        }
+        if (sampled) {
+            final boolean[] isPivot = new boolean[vertexCount];
+            for (int pivot : sources) {
+                isPivot[pivot] = true;
+            }
+            for (int v = 0; v < vertexCount; v++) {
+                final int otherPivots = isPivot[v] ? pivotCount - 1 : pivotCount;
+                closeness[v] = reachedPivots[v] == otherPivots && distanceSum[v] > 0
+                        ? otherPivots / distanceSum[v] : 0;
+            }
+        }
+        normalize(nodeBetweenness);
+        normalize(edgeBetweenness);
+        sourceProgress.endOfProgress();
+    }
+
+    /**
+     * @return The analyzed graph
+     */
+    public CSRGraph getGraph() {
+        return graph;
+    }
+
+    /**
+     * @return Normalized betweenness of each vertex index
+     */
+    public double[] getNodeBetweenness() {
+        return nodeBetweenness;
+    }
+
+    /**
+     * @return Closeness of each vertex index
+     */
+    public double[] getCloseness() {
+        return closeness;
+    }
+
+    /**
+     * @return Edge ids in increasing order, negative ids stand for the
+     * reversed arc of a bidirectional edge in a directed graph
+     */
+    public int[] getEdgeIds() {
+        return edgeIds;
+    }
+
+    /**
+     * @return Normalized betweenness of each edge of {@link #getEdgeIds()}
+     */
+    public double[] getEdgeBetweenness() {
+        return edgeBetweenness;
+    }
+
+    /**
+     * Draw distinct vertex indices uniformly.
+     *
+     * @param vertexCount Vertex count
+     * @param pivotCount  Number of pivots, at most the vertex count
+     * @param seed        Random seed
+     * @return Pivot vertex indices
+     */
+    static int[] samplePivots(int vertexCount, int pivotCount, long seed) {
+        final int[] vertices = new int[vertexCount];
+        for (int v = 0; v < vertexCount; v++) {
+            vertices[v] = v;
+        }
+        final Random random = new Random(seed);
+        for (int i = 0; i < pivotCount; i++) {
+            final int j = i + random.nextInt(vertexCount - i);
+            final int swap = vertices[i];
+            vertices[i] = vertices[j];
+            vertices[j] = swap;
+        }
+        return Arrays.copyOf(vertices, pivotCount);
+    }
+
+    private static void add(double[] sum, double[] values) {
+        for (int i = 0; i < sum.length; i++) {
+            sum[i] += values[i];
+        }
+    }
+
+    private static void normalize(double[] values) {
+        double min = Double.POSITIVE_INFINITY;
+        double max = Double.NEGATIVE_INFINITY;
+        for (double value : values) {
+            min = Math.min(min, value);
+            max = Math.max(max, value);
+        }
+        final double range = max - min;
+        for (int i = 0; i < values.length; i++) {
+            values[i] = range > 0 ? (values[i] - min) / range : 0;
+        }
+    }
+
+    /**
+     * Takes the next source until all the sources have been processed.
+     */
+    private final class Worker implements Runnable {
+        private final int[] sources;
+        private final int sourceCount;
+        private final AtomicInteger nextSource;
+        private final ProgressVisitor progress;
+        // Single-source search state, reset after each source
+        private final double[] distance;
+        private final double[] pathCount;
+        private final double[] dependency;
+        private final double[] edgeDependency;
+        private final int[] lastSuccessor;
+        private final int[] position;
+        private final int[] order;
+        private int orderSize;
+        private final VertexHeap heap = new VertexHeap();
+        // Accumulators
+        final double[] nodeBetweenness;
+        final double[] edgeBetweenness;
+        final double[] closeness;
+        final double[] distanceSum;
+        final int[] reachedPivots;
+
+        Worker(int[] sources, int sourceCount, AtomicInteger nextSource, ProgressVisitor progress) {
+            this.sources = sources;
+            this.sourceCount = sourceCount;
+            this.nextSource = nextSource;
+            this.progress = progress;
+            final int vertexCount = graph.getVertexCount();
+            distance = new double[vertexCount];
+            pathCount = new double[vertexCount];
+            dependency = new double[vertexCount];
+            edgeDependency = new double[vertexCount];
+            lastSuccessor = new int[vertexCount];
+            position = new int[vertexCount];
+            order = new int[vertexCount];
+            Arrays.fill(distance, Double.POSITIVE_INFINITY);
+            Arrays.fill(position, -1);
+            Arrays.fill(lastSuccessor, -1);
+            nodeBetweenness = new double[vertexCount];
+            edgeBetweenness = new double[edgeIds.length];
+            if (sources == null) {
+                closeness = new double[vertexCount];
+                distanceSum = null;
+                reachedPivots = null;
+            } else {
+                closeness = null;
+                distanceSum = new double[vertexCount];
+                reachedPivots = new int[vertexCount];
+            }
+        }
+
+        @Override
+        public void run() {
+            for (int i = nextSource.getAndIncrement(); i < sourceCount && !progress.isCanceled()
+                    && !Thread.currentThread().isInterrupted(); i = nextSource.getAndIncrement()) {
+                final int source = sources == null ? i : sources[i];
+                search(graph, source);
+                accumulate();
+                if (sources == null) {
+                    double sum = 0;
+                    for (int j = 1; j < orderSize; j++) {
+                        sum += distance[order[j]];
+                    }
+                    closeness[source] = orderSize == graph.getVertexCount() && sum > 0
+                            ? (orderSize - 1) / sum : 0;
+                } else {
+                    if (!symmetric) {
+                        // Distances to the pivot rather than from it
+                        reset();
+                        search(reversed, source);
+                    }
+                    for (int j = 1; j < orderSize; j++) {
+                        distanceSum[order[j]] += distance[order[j]];
+                        reachedPivots[order[j]]++;
+                    }
+                }
+                reset();
+                synchronized (progress) {
+                    progress.endStep();
+                }
+            }
+        }
+
+        /**
+         * Settle the vertices in increasing distance from the source, counting
+         * the shortest paths. Arcs of infinite weight are ignored.
+         */
+        private void search(CSRGraph g, int source) {
+            distance[source] = 0;
+            pathCount[source] = 1;
+            if (!weighted) {
+                position[source] = 0;
+                order[orderSize++] = source;
+                for (int head = 0; head < orderSize; head++) {
+                    final int u = order[head];
+                    final double d = distance[u] + 1;
+                    final int end = g.getFirstArc(u + 1);
+                    for (int arc = g.getFirstArc(u); arc < end; arc++) {
+                        if (Double.isInfinite(g.getArcWeight(arc))) {
+                            continue;
+                        }
+                        final int w = g.getArcTarget(arc);
+                        if (position[w] == -1) {
+                            position[w] = orderSize;
+                            order[orderSize++] = w;
+                            distance[w] = d;
+                            pathCount[w] = pathCount[u];
+                        } else if (distance[w] == d) {
+                            pathCount[w] += pathCount[u];
+                        }
+                    }
+                }
+                return;
+            }
+            heap.clear();
+            heap.push(source, 0);
+            while (!heap.isEmpty()) {
+                final int u = heap.peekVertex();
+                final double d = heap.peekKey();
+                heap.pop();
+                if (position[u] != -1 || d > distance[u]) {
+                    continue;
+                }
+                position[u] = orderSize;
+                order[orderSize++] = u;
+                final int end = g.getFirstArc(u + 1);
+                for (int arc = g.getFirstArc(u); arc < end; arc++) {
+                    final double weight = g.getArcWeight(arc);
+                    if (Double.isInfinite(weight)) {
+                        continue;
+                    }
+                    final int w = g.getArcTarget(arc);
+                    final double newDistance = d + weight;
+                    if (newDistance < distance[w]) {
+                        distance[w] = newDistance;
+                        pathCount[w] = pathCount[u];
+                        heap.push(w, newDistance);
+                    } else if (newDistance == distance[w] && position[w] == -1) {
+                        pathCount[w] += pathCount[u];
+                    }
+                }
+            }
+        }
+
+        /**
+         * Accumulate the dependencies of the source in decreasing distance,
+         * the predecessors being found through the reversed arcs. The vertex
+         * dependencies count a predecessor once whatever the number of
+         * parallel arcs, the edge dependencies count every arc.
+         */
+        private void accumulate() {
+            for (int i = orderSize - 1; i > 0; i--) {
+                final int w = order[i];
+                final double coefficient = (1 + dependency[w]) / pathCount[w];
+                final double edgeCoefficient = (1 + edgeDependency[w]) / pathCount[w];
+                final int end = reversed.getFirstArc(w + 1);
+                for (int arc = reversed.getFirstArc(w); arc < end; arc++) {
+                    final double weight = reversed.getArcWeight(arc);
+                    if (Double.isInfinite(weight)) {
+                        continue;
+                    }
+                    final int v = reversed.getArcTarget(arc);
+                    if (position[v] != -1 && position[v] < position[w]
+                            && distance[v] + (weighted ? weight : 1) == distance[w]) {
+                        if (lastSuccessor[v] != w) {
+                            lastSuccessor[v] = w;
+                            dependency[v] += pathCount[v] * coefficient;
+                        }
+                        final double share = pathCount[v] * edgeCoefficient;
+                        edgeDependency[v] += share;
+                        edgeBetweenness[reversedArcEdge[arc]] += share;
+                    }
+                }
+                nodeBetweenness[w] += dependency[w];
+            }
+        }
+
+        private void reset() {
+            for (int i = 0; i < orderSize; i++) {
+                final int v = order[i];
+                distance[v] = Double.POSITIVE_INFINITY;
+                pathCount[v] = 0;
+                dependency[v] = 0;
+                edgeDependency[v] = 0;
+                lastSuccessor[v] = -1;
+                position[v] = -1;
+            }
+            orderSize = 0;
+        }
+    }
+}
@@ -45,4 +45,11 @@ public interface GraphConstants {
     public static final String PATH_EDGE_ID = "PATH_EDGE_ID";
     public static final String TREE_ID = "TREE_ID";
     public static final String WEIGHT = "WEIGHT";
+    public static final String CH_NODES_SUFFIX = "_CH_NODES";
+    public static final String CH_ARCS_SUFFIX = "_CH_ARCS";
+    public static final String CH_RANK = "CH_RANK";
+    public static final String ARC_ID = "ARC_ID";
+    public static final String FIRST_ARC = "FIRST_ARC";
+    public static final String SECOND_ARC = "SECOND_ARC";
+    public static final String CUTOFF = "CUTOFF";
 }
@@ -21,11 +21,15 @@ package org.h2gis.network.functions;
 
 
 import java.sql.*;
+import java.util.ArrayList;
+import java.util.List;
 
 import static org.h2gis.network.functions.GraphConstants.EDGE_ID;
 import static org.h2gis.network.functions.GraphConstants.END_NODE;
 import static org.h2gis.network.functions.GraphConstants.START_NODE;
 import static org.h2gis.network.functions.GraphFunction.logTime;
+import org.h2gis.utilities.JDBCUtilities;
+import org.h2gis.utilities.TableLocation;
 import org.h2gis.utilities.TableUtilities;
 import org.javanetworkanalyzer.data.VId;
 import org.javanetworkanalyzer.model.*;
@@ -64,6 +68,7 @@ public class GraphCreator<V extends VId, E extends Edge> {
     public static final int UNDIRECTED_EDGE = DIRECTED_EDGE + REVERSED_EDGE;
 
     private static final Logger LOGGER = LoggerFactory.getLogger("gui." + GraphCreator.class);
+    private static final int FETCH_SIZE = 10000;
 
     /**
      * Constructor.
@@ -92,6 +97,24 @@ public class GraphCreator<V extends VId, E extends Edge> {
         this.edgeClass = edgeClass;
     }
 
+    /**
+     * Constructor for {@link #prepareCSRGraph()}, which does not need vertex
+     * and edge classes.
+     *
+     * @param connection                Connection
+     * @param inputTable                Name of edges table from {@link org.h2gis.functions.spatial.topology.ST_Graph}.
+     * @param globalOrientation         Global orientation
+     * @param edgeOrientationColumnName Edge orientation
+     * @param weightColumn              Weight column name
+     */
+    public GraphCreator(Connection connection,
+                        String inputTable,
+                        GraphFunctionParser.Orientation globalOrientation,
+                        String edgeOrientationColumnName,
+                        String weightColumn) {
+        this(connection, inputTable, globalOrientation, edgeOrientationColumnName, weightColumn, null, null);
+    }
+
     /**
      * Prepares a graph.
      *
@@ -118,11 +141,8 @@ public class GraphCreator<V extends VId, E extends Edge> {
                 graph = new PseudoG<V, E>(vertexClass, edgeClass);
             }
         }
-        final Statement st = connection.createStatement();
-        final ResultSet edges = st.executeQuery("SELECT * FROM " +
-                TableUtilities.parseInputTable(connection, inputTable));
-        // Initialize the indices.
-        initIndices(edges);
+        final Statement st = connection.createStatement(ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+        final ResultSet edges = selectEdges(st, TableUtilities.parseInputTable(connection, inputTable));
         try {
             // Add the edges.
             while (edges.next()) {
@@ -139,10 +159,98 @@ public class GraphCreator<V extends VId, E extends Edge> {
         }
     }
 
+    /**
+     * Prepares a read-only graph stored in primitive arrays.
+     *
+     * @return The newly prepared graph
+     *
+     * @throws java.sql.SQLException
+     */
+    protected CSRGraph prepareCSRGraph() throws SQLException {
+        LOGGER.info("Loading graph into memory...");
+        final long start = System.currentTimeMillis();
+        final TableLocation tableName = TableUtilities.parseInputTable(connection, inputTable);
+        // Undirected edges and edges going both ways are stored as two arcs
+        final long rowCount = JDBCUtilities.getRowCount(connection, tableName.toString());
+        final CSRGraph.Builder builder = new CSRGraph.Builder((int) Math.min(Integer.MAX_VALUE - 8,
+                globalOrientation.equals(GraphFunctionParser.Orientation.UNDIRECTED) ? 2 * rowCount : rowCount));
+        final Statement st = connection.createStatement(ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+        try {
+            final ResultSet edges = selectEdges(st, tableName);
+            try {
+                while (edges.next()) {
+                    loadArcs(builder, edges);
+                }
+            } finally {
+                edges.close();
+            }
+        } finally {
+            st.close();
+        }
+        final CSRGraph graph = builder.build();
+        logTime(LOGGER, start);
+        return graph;
+    }
+
+    /**
+     * Select the columns used to build the graph, so that the geometry and
+     * the other columns of the edges table are not read. The rows are
+     * fetched by blocks through a forward-only cursor.
+     *
+     * @param st        Forward-only statement
+     * @param tableName Edges table
+     * @return Edges result set, the indices refer to its columns
+     * @throws SQLException
+     */
+    private ResultSet selectEdges(Statement st, TableLocation tableName) throws SQLException {
+        final List<String> columns = new ArrayList<String>(5);
+        final ResultSet header = st.executeQuery("SELECT * FROM " + tableName + " LIMIT 0");
+        try {
+            initIndices(header);
+            final ResultSetMetaData metaData = header.getMetaData();
+            startNodeIndex = selectColumn(columns, metaData, startNodeIndex);
+            endNodeIndex = selectColumn(columns, metaData, endNodeIndex);
+            edgeIDIndex = selectColumn(columns, metaData, edgeIDIndex);
+            if (edgeOrientationIndex != -1) {
+                edgeOrientationIndex = selectColumn(columns, metaData, edgeOrientationIndex);
+            }
+            if (weightColumnIndex != -1) {
+                weightColumnIndex = selectColumn(columns, metaData, weightColumnIndex);
+            }
+        } finally {
+            header.close();
+        }
+        st.setFetchSize(FETCH_SIZE);
+        final StringBuilder query = new StringBuilder("SELECT ");
+        for (int i = 0; i < columns.size(); i++) {
+            if (i > 0) {
+                query.append(", ");
+            }
+            query.append(columns.get(i));
+        }
+        return st.executeQuery(query.append(" FROM ").append(tableName).toString());
+    }
+
+    /**
+     * Append a column to the select list.
+     *
+     * @return The index of the column in the select list
+     */
+    private static int selectColumn(List<String> columns, ResultSetMetaData metaData, int index)
+            throws SQLException {
+        columns.add(TableLocation.quoteIdentifier(metaData.getColumnName(index)));
+        return columns.size();
+    }
+
     /**
      * Recovers the indices from the metadata.
      */
     private void initIndices(ResultSet edges) {
+        startNodeIndex = -1;
+        endNodeIndex = -1;
+        edgeIDIndex = -1;
+        weightColumnIndex = -1;
+        edgeOrientationIndex = -1;
         try {
             ResultSetMetaData metaData = edges.getMetaData();
             for (int i = 1; i <= metaData.getColumnCount(); i++) {
@@ -191,10 +299,7 @@ public class GraphCreator<V extends VId, E extends Edge> {
         final int startNode = edges.getInt(startNodeIndex);
         final int endNode = edges.getInt(endNodeIndex);
         final int edgeID = edges.getInt(edgeIDIndex);
-        double weight = WeightedGraph.DEFAULT_EDGE_WEIGHT;
-        if (weightColumnIndex != -1) {
-            weight = edges.getDouble(weightColumnIndex);
-        }
+        final double weight = getWeight(edges);
         E edge;
         // Undirected graphs are either pseudographs or weighted pseudographs,
         // so there is no need to add edges in both directions.
@@ -202,47 +307,95 @@ public class GraphCreator<V extends VId, E extends Edge> {
             edge = graph.addEdge(endNode, startNode, edgeID);
         } else {
             // Directed graphs are either directed pseudographs or directed
-            // weighted pseudographs and must specify an orientation for each
-            // individual edge. If no orientations are specified, every edge
-            // is considered to be directed with orientation given by the
-            // geometry.
-            int edgeOrientation = (edgeOrientationIndex == -1)
-                    ? DIRECTED_EDGE
-                    : edges.getInt(edgeOrientationIndex);
-            if (edges.wasNull()) {
-                throw new IllegalArgumentException("Invalid edge orientation: NULL.");
-            }
-            if (edgeOrientation == UNDIRECTED_EDGE) {
+            // weighted pseudographs.
+            final int direction = getEdgeDirection(edges);
+            if (direction == UNDIRECTED_EDGE) {
                 if (globalOrientation.equals(GraphFunctionParser.Orientation.DIRECTED)) {
                     edge = loadDoubleEdge(graph, startNode, endNode, edgeID, weight);
                 } // globalOrientation == Orientation.REVERSED
                 else {
                     edge = loadDoubleEdge(graph, endNode, startNode, edgeID, weight);
                 }
-            } else if (edgeOrientation == DIRECTED_EDGE) {
-                // Reverse a directed edge (global).
-                if (globalOrientation.equals(GraphFunctionParser.Orientation.REVERSED)) {
-                    edge = graph.addEdge(endNode, startNode, edgeID);
-                } // No reversal.
-                else {
-                    edge = graph.addEdge(startNode, endNode, edgeID);
-                }
-            } else if (edgeOrientation == REVERSED_EDGE) {
-                // Reversing twice is the same as no reversal.
-                if (globalOrientation.equals(GraphFunctionParser.Orientation.REVERSED)) {
-                    edge = graph.addEdge(startNode, endNode, edgeID);
-                } // Otherwise reverse just once (local).
-                else {
-                    edge = graph.addEdge(endNode, startNode, edgeID);
-                }
+            } else if (direction == DIRECTED_EDGE) {
+                edge = graph.addEdge(startNode, endNode, edgeID);
             } else {
-                throw new IllegalArgumentException("Invalid edge orientation: " + edgeOrientation);
+                edge = graph.addEdge(endNode, startNode, edgeID);
             }
         }
         setEdgeWeight(edge, weight);
         return edge;
     }
 
+    /**
+     * Loads the arcs of the current row into the builder, following the same
+     * rules as {@link #loadEdge}.
+     *
+     * @param builder CSR graph builder
+     * @param edges   Edges result set
+     */
+    private void loadArcs(CSRGraph.Builder builder, ResultSet edges) throws SQLException {
+        final int startNode = edges.getInt(startNodeIndex);
+        final int endNode = edges.getInt(endNodeIndex);
+        final int edgeID = edges.getInt(edgeIDIndex);
+        final double weight = getWeight(edges);
+        if (globalOrientation.equals(GraphFunctionParser.Orientation.UNDIRECTED)) {
+            builder.addEdge(startNode, endNode, edgeID, weight);
+        } else {
+            final int direction = getEdgeDirection(edges);
+            if (direction == UNDIRECTED_EDGE) {
+                if (globalOrientation.equals(GraphFunctionParser.Orientation.DIRECTED)) {
+                    builder.addArc(startNode, endNode, edgeID, weight);
+                    builder.addArc(endNode, startNode, -edgeID, weight);
+                } else {
+                    builder.addArc(endNode, startNode, edgeID, weight);
+                    builder.addArc(startNode, endNode, -edgeID, weight);
+                }
+            } else if (direction == DIRECTED_EDGE) {
+                builder.addArc(startNode, endNode, edgeID, weight);
+            } else {
+                builder.addArc(endNode, startNode, edgeID, weight);
+            }
+        }
+    }
+
+    /**
+     * @return The weight of the current row, or the default edge weight for
+     * unweighted graphs
+     */
+    private double getWeight(ResultSet edges) throws SQLException {
+        if (weightColumnIndex != -1) {
+            return edges.getDouble(weightColumnIndex);
+        }
+        return WeightedGraph.DEFAULT_EDGE_WEIGHT;
+    }
+
+    /**
+     * Combines the edge orientation of the current row with the global
+     * orientation of a directed graph. If no orientations are specified, every
+     * edge is considered to be directed with orientation given by the geometry.
+     *
+     * @return {@link #DIRECTED_EDGE} if the edge goes from the start node to
+     * the end node, {@link #REVERSED_EDGE} if it goes from the end node to the
+     * start node, {@link #UNDIRECTED_EDGE} if it goes both ways
+     */
+    private int getEdgeDirection(ResultSet edges) throws SQLException {
+        int edgeOrientation = (edgeOrientationIndex == -1)
+                ? DIRECTED_EDGE
+                : edges.getInt(edgeOrientationIndex);
+        if (edges.wasNull()) {
+            throw new IllegalArgumentException("Invalid edge orientation: NULL.");
+        }
+        if (edgeOrientation != UNDIRECTED_EDGE && edgeOrientation != DIRECTED_EDGE
+                && edgeOrientation != REVERSED_EDGE) {
+            throw new IllegalArgumentException("Invalid edge orientation: " + edgeOrientation);
+        }
+        // Reversing twice is the same as no reversal.
+        if (globalOrientation.equals(GraphFunctionParser.Orientation.REVERSED)) {
+            return -edgeOrientation;
+        }
+        return edgeOrientation;
+    }
+
     /**
      * In directed graphs, undirected edges are represented by directed edges
      * in both directions. The edges are assigned ids with opposite signs.
@@ -19,12 +19,25 @@
  */
 package org.h2gis.network.functions;
 
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.Geometry;
 import org.h2gis.api.AbstractFunction;
+import org.h2gis.utilities.JDBCUtilities;
+import org.h2gis.utilities.TableLocation;
 import org.javanetworkanalyzer.model.KeyedGraph;
 import org.slf4j.Logger;
 
 import java.sql.Connection;
+import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+
+import static org.h2gis.functions.spatial.topology.ST_Graph.EDGES_SUFFIX;
+import static org.h2gis.functions.spatial.topology.ST_Graph.NODES_SUFFIX;
+import static org.h2gis.network.functions.GraphConstants.END_NODE;
+import static org.h2gis.network.functions.GraphConstants.NODE_ID;
+import static org.h2gis.network.functions.GraphConstants.START_NODE;
 
 /**
  * Helper class for Graph Functions.
@@ -34,6 +47,8 @@ import java.sql.SQLException;
 public class GraphFunction extends AbstractFunction {
 
     public static final String ARG_ERROR  = "Unrecognized argument: ";
+    /** Returned by {@link #readVertexCoordinates} when no coordinates can be found */
+    protected static final int NO_COORDINATES = -1;
 
     /**
      * Return a JGraphT graph from the input edges table.
@@ -63,6 +78,291 @@ public class GraphFunction extends AbstractFunction {
                 edgeClass).prepareGraph();
     }
 
+    /**
+     * Return a read-only graph stored in primitive arrays from the input
+     * edges table. The graph is shared through the {@link GraphCache} and
+     * must not be modified.
+     *
+     * @param connection  Connection
+     * @param inputTable  Input table name
+     * @param orientation Orientation string
+     * @param weight      Weight column name, null for unweighted graphs
+     * @return Graph
+     * @throws java.sql.SQLException
+     */
+    protected static CSRGraph prepareCSRGraph(Connection connection,
+                                              String inputTable,
+                                              String orientation,
+                                              String weight) throws SQLException {
+        GraphFunctionParser parser = new GraphFunctionParser();
+        parser.parseWeightAndOrientation(orientation, weight);
+
+        return GraphCache.getInstance(connection).getGraph(connection,
+                inputTable,
+                parser.getGlobalOrientation(), parser.getEdgeOrientation(), parser.getWeightColumn());
+    }
+
+    /**
+     * Return the reversed graph of a graph returned by
+     * {@link #prepareCSRGraph(Connection, String, String, String)}. The
+     * reversed graph is shared through the {@link GraphCache} and must not be
+     * modified.
+     *
+     * @param connection  Connection
+     * @param inputTable  Input table name
+     * @param orientation Orientation string
+     * @param weight      Weight column name, null for unweighted graphs
+     * @param graph       Graph of the edges table
+     * @return Reversed graph
+     * @throws java.sql.SQLException
+     */
+    protected static CSRGraph prepareReversedGraph(Connection connection,
+                                                   String inputTable,
+                                                   String orientation,
+                                                   String weight,
+                                                   CSRGraph graph) throws SQLException {
+        GraphFunctionParser parser = new GraphFunctionParser();
+        parser.parseWeightAndOrientation(orientation, weight);
+
+        return GraphCache.getInstance(connection).getReversedGraph(connection,
+                inputTable, graph,
+                parser.getGlobalOrientation(), parser.getEdgeOrientation(), parser.getWeightColumn());
+    }
+
+    /**
+     * Return the contraction hierarchy stored by ST_GraphPreprocess for the
+     * input edges table. The hierarchy is shared through the
+     * {@link GraphCache} and must not be modified.
+     *
+     * @param connection  Connection
+     * @param inputTable  Input table name
+     * @param orientation Orientation string
+     * @param weight      Weight column name, null for unweighted graphs
+     * @return Contraction hierarchy
+     * @throws java.sql.SQLException
+     */
+    protected static ContractionHierarchy prepareContractionHierarchy(Connection connection,
+                                                                      String inputTable,
+                                                                      String orientation,
+                                                                      String weight) throws SQLException {
+        GraphFunctionParser parser = new GraphFunctionParser();
+        parser.parseWeightAndOrientation(orientation, weight);
+
+        return GraphCache.getInstance(connection).getContractionHierarchy(connection,
+                inputTable,
+                parser.getGlobalOrientation(), parser.getEdgeOrientation(), parser.getWeightColumn());
+    }
+
+    /**
+     * Return a point-to-point search on the input edges table.
+     *
+     * @param connection  Connection
+     * @param inputTable  Edges table produced by ST_Graph
+     * @param orientation Orientation string
+     * @param weight      Weight column name, null for unweighted graphs
+     * @param method      {@link GraphFunctionParser.SearchMethod#BIDIRECTIONAL},
+     *                    {@link GraphFunctionParser.SearchMethod#ASTAR} or
+     *                    {@link GraphFunctionParser.SearchMethod#CONTRACTION_HIERARCHY}
+     * @return Point-to-point search
+     * @throws SQLException
+     */
+    protected static PointToPointSearch preparePointToPointSearch(Connection connection,
+                                                                  String inputTable,
+                                                                  String orientation,
+                                                                  String weight,
+                                                                  GraphFunctionParser.SearchMethod method)
+            throws SQLException {
+        switch (method) {
+            case BIDIRECTIONAL:
+                final CSRGraph graph = prepareCSRGraph(connection, inputTable, orientation, weight);
+                return new BidirectionalDijkstra(graph,
+                        prepareReversedGraph(connection, inputTable, orientation, weight, graph));
+            case ASTAR:
+                return prepareAStarSearch(connection, inputTable, orientation, weight);
+            case CONTRACTION_HIERARCHY:
+                return new ContractionHierarchy.Search(
+                        prepareContractionHierarchy(connection, inputTable, orientation, weight));
+            default:
+                throw new IllegalArgumentException(GraphFunctionParser.SEARCH_METHOD_ERROR);
+        }
+    }
+
+    /**
+     * Return an A* search on the input edges table. The graph and its vertex
+     * coordinates are shared through the {@link GraphCache}.
+     *
+     * @param connection  Connection
+     * @param inputTable  Edges table produced by ST_Graph
+     * @param orientation Orientation string
+     * @param weight      Weight column name, null for unweighted graphs
+     * @return A* search
+     * @throws SQLException
+     */
+    protected static AStarSearch prepareAStarSearch(Connection connection,
+                                                   String inputTable,
+                                                   String orientation,
+                                                   String weight) throws SQLException {
+        GraphFunctionParser parser = new GraphFunctionParser();
+        parser.parseWeightAndOrientation(orientation, weight);
+        final GraphCache cache = GraphCache.getInstance(connection);
+        final CSRGraph graph = cache.getGraph(connection, inputTable,
+                parser.getGlobalOrientation(), parser.getEdgeOrientation(), parser.getWeightColumn());
+        return new AStarSearch(graph, cache.getVertexCoordinates(connection, inputTable, graph,
+                parser.getGlobalOrientation(), parser.getEdgeOrientation(), parser.getWeightColumn()));
+    }
+
+    /**
+     * Read the vertex coordinates of the A* search. They are read from the
+     * nodes table produced by ST_Graph next to the edges table
+     * (<code>input_NODES</code> for <code>input_EDGES</code>), or else from the
+     * end points of the edge geometries. Coordinates in SRID 4326 are compared
+     * with the great-circle distance.
+     *
+     * @param connection Connection
+     * @param edges      Edges table produced by ST_Graph
+     * @param graph      Graph of the edges table
+     * @return Vertex coordinates
+     * @throws SQLException
+     */
+    protected static AStarSearch.Coordinates readAStarCoordinates(Connection connection,
+                                                                  TableLocation edges,
+                                                                  CSRGraph graph) throws SQLException {
+        final int vertexCount = graph.getVertexCount();
+        final double[] x = new double[vertexCount];
+        final double[] y = new double[vertexCount];
+        final int srid = readVertexCoordinates(connection, edges, graph, x, y);
+        if (srid == NO_COORDINATES) {
+            throw new IllegalArgumentException("The A* search requires the node coordinates, "
+                    + edges + " has no geometry field and no nodes table has been found.");
+        }
+        for (int v = 0; v < vertexCount; v++) {
+            if (Double.isNaN(x[v])) {
+                throw new IllegalArgumentException("The A* search requires the coordinates of every node, "
+                        + "node " + graph.getVertexId(v) + " has none.");
+            }
+        }
+        return new AStarSearch.Coordinates(graph, x, y, srid == 4326);
+    }
+
+    /**
+     * @param connection Connection
+     * @param edges      Edges table produced by ST_Graph
+     * @return The nodes table produced by ST_Graph next to the edges table
+     * (<code>input_NODES</code> for <code>input_EDGES</code>), or null if it
+     * does not exist
+     * @throws SQLException
+     */
+    protected static TableLocation getNodesTable(Connection connection, TableLocation edges) throws SQLException {
+        final String edgesName = edges.getTable();
+        if (!edgesName.toUpperCase().endsWith(EDGES_SUFFIX)) {
+            return null;
+        }
+        final TableLocation nodes = new TableLocation(edges.getCatalog(), edges.getSchema(),
+                edgesName.substring(0, edgesName.length() - EDGES_SUFFIX.length()) + NODES_SUFFIX);
+        return JDBCUtilities.tableExists(connection, nodes.toString()) ? nodes : null;
+    }
+
+    /**
+     * Read the vertex coordinates from the nodes table produced by ST_Graph
+     * next to the edges table (<code>input_NODES</code> for
+     * <code>input_EDGES</code>), or else from the end points of the edge
+     * geometries. The coordinates of the vertices that are not found are NaN.
+     *
+     * @param connection Connection
+     * @param edges      Edges table produced by ST_Graph
+     * @param graph      Graph of the edges table
+     * @param x          Vertex x, by vertex index
+     * @param y          Vertex y, by vertex index
+     * @return The SRID of the coordinates, or {@link #NO_COORDINATES} if the
+     * edges table has no geometry field and no nodes table has been found
+     * @throws SQLException
+     */
+    protected static int readVertexCoordinates(Connection connection,
+                                               TableLocation edges,
+                                               CSRGraph graph,
+                                               double[] x,
+                                               double[] y) throws SQLException {
+        Arrays.fill(x, Double.NaN);
+        Arrays.fill(y, Double.NaN);
+        int srid = 0;
+        final TableLocation nodes = getNodesTable(connection, edges);
+        final Statement st = connection.createStatement();
+        try {
+            final String nodesGeometry = nodes != null
+                    ? ST_ShortestPath.getFirstGeometryField(connection, nodes) : null;
+            if (nodesGeometry != null) {
+                final ResultSet rs = st.executeQuery("SELECT " + NODE_ID + ", " + nodesGeometry + " FROM " + nodes);
+                try {
+                    while (rs.next()) {
+                        srid = setCoordinate(graph, rs.getInt(1), (Geometry) rs.getObject(2), true, x, y, srid);
+                    }
+                } finally {
+                    rs.close();
+                }
+            } else {
+                final String edgesGeometry = ST_ShortestPath.getFirstGeometryField(connection, edges);
+                if (edgesGeometry == null) {
+                    return NO_COORDINATES;
+                }
+                final ResultSet rs = st.executeQuery("SELECT " + START_NODE + ", " + END_NODE + ", "
+                        + edgesGeometry + " FROM " + edges);
+                try {
+                    while (rs.next()) {
+                        final Geometry geometry = (Geometry) rs.getObject(3);
+                        srid = setCoordinate(graph, rs.getInt(1), geometry, true, x, y, srid);
+                        srid = setCoordinate(graph, rs.getInt(2), geometry, false, x, y, srid);
+                    }
+                } finally {
+                    rs.close();
+                }
+            }
+        } finally {
+            st.close();
+        }
+        return srid;
+    }
+
+    private static int setCoordinate(CSRGraph graph, int vertexID, Geometry geometry, boolean first,
+                                     double[] x, double[] y, int srid) {
+        final int v = graph.getVertexIndex(vertexID);
+        if (v == -1 || geometry == null || geometry.isEmpty()) {
+            return srid;
+        }
+        final Coordinate[] coordinates = geometry.getCoordinates();
+        final Coordinate coordinate = first ? coordinates[0] : coordinates[coordinates.length - 1];
+        x[v] = coordinate.x;
+        y[v] = coordinate.y;
+        return srid == 0 ? geometry.getSRID() : srid;
+    }
+
+    /**
+     * @param graph    Graph
+     * @param vertexID Node id
+     * @return The vertex index
+     * @throws IllegalArgumentException If the graph does not contain the vertex
+     */
+    protected static int getVertexIndex(CSRGraph graph, int vertexID) {
+        final int index = graph.getVertexIndex(vertexID);
+        if (index == -1) {
+            throw new IllegalArgumentException("The graph does not contain vertex " + vertexID);
+        }
+        return index;
+    }
+
+    /**
+     * @param search   Point-to-point search
+     * @param vertexID Node id
+     * @return The vertex index
+     * @throws IllegalArgumentException If the graph does not contain the vertex
+     */
+    protected static int getVertexIndex(PointToPointSearch search, int vertexID) {
+        final int index = search.getVertexIndex(vertexID);
+        if (index == -1) {
+            throw new IllegalArgumentException("The graph does not contain vertex " + vertexID);
+        }
+        return index;
+    }
+
     /**
      * Log the time elapsed from startTime until now.
      *
@@ -47,6 +47,19 @@ public class GraphFunctionParser {
     public static final String ORIENTATION_ERROR =
             "Bad orientation format. Enter " + POSSIBLE_ORIENTATIONS + ".";
 
+    public static final String DIJKSTRA = "dijkstra";
+    public static final String BIDIRECTIONAL = "bidirectional";
+    public static final String ASTAR = "astar";
+    public static final String CONTRACTION_HIERARCHY = "ch";
+
+    public enum SearchMethod {
+        DIJKSTRA, BIDIRECTIONAL, ASTAR, CONTRACTION_HIERARCHY
+    }
+
+    public static final String SEARCH_METHOD_ERROR =
+            "Unknown search method. Enter '" + DIJKSTRA + "' | '" + BIDIRECTIONAL + "' | '" + ASTAR
+                    + "' | '" + CONTRACTION_HIERARCHY + "'.";
+
     /**
      * Recovers the weight column name from a string.
      *
@@ -178,6 +191,29 @@ public class GraphFunctionParser {
         }
     }
 
+    /**
+     * Recovers the point-to-point search method from a string.
+     *
+     * @param method Method name, null for the default Dijkstra search
+     * @return The search method
+     */
+    public static SearchMethod parseSearchMethod(String method) {
+        if (method == null) {
+            return SearchMethod.DIJKSTRA;
+        }
+        final String m = method.trim().toLowerCase();
+        if (m.equals(DIJKSTRA)) {
+            return SearchMethod.DIJKSTRA;
+        } else if (m.equals(BIDIRECTIONAL)) {
+            return SearchMethod.BIDIRECTIONAL;
+        } else if (m.equals(ASTAR)) {
+            return SearchMethod.ASTAR;
+        } else if (m.equals(CONTRACTION_HIERARCHY)) {
+            return SearchMethod.CONTRACTION_HIERARCHY;
+        }
+        throw new IllegalArgumentException(SEARCH_METHOD_ERROR);
+    }
+
     /**
      * Get the weight column name.
      *
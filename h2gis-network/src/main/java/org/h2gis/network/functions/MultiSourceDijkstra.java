@@ -0,0 +1,245 @@
+/**
+ * H2GIS is a library that brings spatial support to the H2 Database Engine
+ * <http://www.h2database.com>. H2GIS is developed by CNRS
+ * <http://www.cnrs.fr/>.
+ *
+ * This code is part of the H2GIS project. H2GIS is free software;
+ * you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation;
+ * version 3.0 of the License.
+ *
+ * H2GIS is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details <http://www.gnu.org/licenses/>.
+ *
+ *
+ * For more information, please consult: <http://www.h2gis.org/>
+ * or contact directly: info_at_h2gis.org
+ */
+
+package org.h2gis.network.functions;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Dijkstra search started from several sources at once on a
+ * {@link CSRGraph}. All the sources are seeded at distance 0, so a single
+ * traversal labels every vertex with its closest source and the distance to
+ * it. Ties are won by the source given first.
+ * <p/>
+ * The sources may be split into partitions searched by parallel threads.
+ * The partitions share the best distance found so far for each vertex and
+ * do not expand a vertex that another partition reaches strictly closer, so
+ * that together they visit about as many vertices as a single search.
+ */
+public class MultiSourceDijkstra {
+
+    /** Closest source of the vertices that no source reaches */
+    public static final int UNREACHED = -1;
+
+    private final CSRGraph graph;
+    private double[] distance;
+    private int[] closestSource;
+
+    /**
+     * @param graph Graph, shared with other searches
+     */
+    public MultiSourceDijkstra(CSRGraph graph) {
+        this.graph = graph;
+    }
+
+    /**
+     * @return The searched graph
+     */
+    public CSRGraph getGraph() {
+        return graph;
+    }
+
+    /**
+     * Label all the vertices with their closest source in a single thread.
+     *
+     * @param sources Source vertex indices, by decreasing priority for ties
+     */
+    public void search(int[] sources) {
+        Partition partition = new Partition(graph, sources, 0, 1, null);
+        partition.run();
+        distance = partition.distance;
+        closestSource = partition.rank;
+    }
+
+    /**
+     * Label all the vertices with their closest source, the sources being
+     * split into partitions searched in parallel.
+     *
+     * @param sources     Source vertex indices, by decreasing priority for ties
+     * @param threadCount Number of partitions and worker threads
+     * @throws SQLException If the computation has been interrupted
+     */
+    public void search(int[] sources, int threadCount) throws SQLException {
+        final int partitionCount = Math.min(threadCount, sources.length);
+        if (partitionCount <= 1) {
+            search(sources);
+            return;
+        }
+        final int vertexCount = graph.getVertexCount();
+        final AtomicLongArray best = new AtomicLongArray(vertexCount);
+        final long infinity = Double.doubleToLongBits(Double.POSITIVE_INFINITY);
+        for (int v = 0; v < vertexCount; v++) {
+            best.set(v, infinity);
+        }
+        final List<Partition> partitions = new ArrayList<Partition>(partitionCount);
+        for (int i = 0; i < partitionCount; i++) {
+            partitions.add(new Partition(graph, sources, i, partitionCount, best));
+        }
+        ExecutorService executorService = Executors.newFixedThreadPool(partitionCount);
+        try {
+            List<Future<?>> futures = new ArrayList<Future<?>>(partitionCount);
+            for (Partition partition : partitions) {
+                futures.add(executorService.submit(partition));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException ex) {
+            throw new SQLException(ex);
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) ex.getCause();
+            }
+            throw new SQLException(ex.getCause());
+        } finally {
+            executorService.shutdownNow();
+        }
+        // Keep the closest source of each vertex over all the partitions
+        distance = partitions.get(0).distance;
+        closestSource = partitions.get(0).rank;
+        for (int i = 1; i < partitionCount; i++) {
+            final Partition partition = partitions.get(i);
+            for (int v = 0; v < vertexCount; v++) {
+                final double d = partition.distance[v];
+                if (d < distance[v] || (d == distance[v] && partition.rank[v] < closestSource[v])) {
+                    distance[v] = d;
+                    closestSource[v] = partition.rank[v];
+                }
+            }
+        }
+    }
+
+    /**
+     * @param vertex Vertex index
+     * @return Distance to the closest source, infinity if no source reaches
+     * the vertex
+     */
+    public double getDistance(int vertex) {
+        return distance[vertex];
+    }
+
+    /**
+     * @param vertex Vertex index
+     * @return Position of the closest source in the sources array, or
+     * {@link #UNREACHED}
+     */
+    public int getClosestSource(int vertex) {
+        return closestSource[vertex] == Integer.MAX_VALUE ? UNREACHED : closestSource[vertex];
+    }
+
+    /**
+     * Search from the sources whose position modulo the partition count is
+     * the partition index. The rank of a vertex is the position of its
+     * closest source in the sources array.
+     */
+    private static class Partition implements Runnable {
+        private final CSRGraph graph;
+        private final int[] sources;
+        private final int index;
+        private final int partitionCount;
+        // Best distances of all the partitions, as long bits, null for a single partition
+        private final AtomicLongArray best;
+        private final double[] distance;
+        private final int[] rank;
+        // Rank of a vertex when its arcs were last relaxed
+        private final int[] expandedRank;
+        private final VertexHeap heap = new VertexHeap();
+
+        Partition(CSRGraph graph, int[] sources, int index, int partitionCount, AtomicLongArray best) {
+            this.graph = graph;
+            this.sources = sources;
+            this.index = index;
+            this.partitionCount = partitionCount;
+            this.best = best;
+            final int vertexCount = graph.getVertexCount();
+            distance = new double[vertexCount];
+            rank = new int[vertexCount];
+            expandedRank = new int[vertexCount];
+            Arrays.fill(distance, Double.POSITIVE_INFINITY);
+            Arrays.fill(rank, Integer.MAX_VALUE);
+            Arrays.fill(expandedRank, Integer.MAX_VALUE);
+        }
+
+        @Override
+        public void run() {
+            for (int i = index; i < sources.length; i += partitionCount) {
+                relax(sources[i], 0, i);
+            }
+            while (!heap.isEmpty() && !Thread.currentThread().isInterrupted()) {
+                final int u = heap.peekVertex();
+                final double d = heap.peekKey();
+                heap.pop();
+                final int r = rank[u];
+                // A vertex is expanded again only if it got a closer source at the same distance
+                if (d > distance[u] || expandedRank[u] <= r) {
+                    continue;
+                }
+                if (best != null && !updateBest(u, d)) {
+                    continue;
+                }
+                expandedRank[u] = r;
+                final int end = graph.getFirstArc(u + 1);
+                for (int arc = graph.getFirstArc(u); arc < end; arc++) {
+                    relax(graph.getArcTarget(arc), d + graph.getArcWeight(arc), r);
+                }
+            }
+        }
+
+        private void relax(int vertex, double newDistance, int newRank) {
+            if (newDistance == Double.POSITIVE_INFINITY) {
+                // Arcs of infinite weight do not reach their target
+                return;
+            }
+            if (newDistance < distance[vertex] || (newDistance == distance[vertex] && newRank < rank[vertex])) {
+                if (best != null && newDistance > Double.longBitsToDouble(best.get(vertex))) {
+                    return;
+                }
+                distance[vertex] = newDistance;
+                rank[vertex] = newRank;
+                heap.push(vertex, newDistance);
+            }
+        }
+
+        /**
+         * @return False if another partition reaches the vertex strictly closer
+         */
+        private boolean updateBest(int vertex, double d) {
+            // Non negative doubles have the same order as their long bits
+            final long bits = Double.doubleToLongBits(d);
+            while (true) {
+                final long current = best.get(vertex);
+                if (bits > current) {
+                    return false;
+                }
+                if (bits == current || best.compareAndSet(vertex, current, bits)) {
+                    return true;
+                }
+            }
+        }
+    }
+}
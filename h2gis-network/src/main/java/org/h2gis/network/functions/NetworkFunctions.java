@@ -47,6 +47,8 @@ public class NetworkFunctions {
             new ST_Accessibility(),
             new ST_ConnectedComponents(),
             new ST_GraphAnalysis(),
+            new ST_GraphPreprocess(),
+            new ST_Isochrone(),
             new ST_ShortestPathLength(),
             new ST_ShortestPathTree(),
             new ST_ShortestPath()
@@ -0,0 +1,140 @@
+/**
+ * H2GIS is a library that brings spatial support to the H2 Database Engine
+ * <http://www.h2database.com>. H2GIS is developed by CNRS
+ * <http://www.cnrs.fr/>.
+ *
+ * This code is part of the H2GIS project. H2GIS is free software; 
+ * you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation;
+ * version 3.0 of the License.
+ *
+ * H2GIS is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details <http://www.gnu.org/licenses/>.
+ *
+ *
+ * For more information, please consult: <http://www.h2gis.org/>
+ * or contact directly: info_at_h2gis.org
+ */
+
+package org.h2gis.network.functions;
+
+import java.util.Arrays;
+
+/**
+ * Shortest path search between one source and one target. The arrays of a
+ * search are reused from one call to the next, so an instance must be used by
+ * a single thread.
+ */
+public abstract class PointToPointSearch {
+
+    // Path from the source to the target, one entry per arc
+    private int[] pathEdgeIds = new int[16];
+    private int[] pathStarts = new int[16];
+    private int[] pathEnds = new int[16];
+    private double[] pathWeights = new double[16];
+    private int pathLength = 0;
+
+    /**
+     * @param vertexId Node id
+     * @return Vertex index or -1 if the searched graph does not contain this node
+     */
+    public abstract int getVertexIndex(int vertexId);
+
+    /**
+     * @param vertex Vertex index
+     * @return Node id
+     */
+    public abstract int getVertexId(int vertex);
+
+    /**
+     * Compute a shortest path between the source and the target.
+     *
+     * @param source Source vertex index
+     * @param target Target vertex index
+     * @return The distance, infinity if the target cannot be reached
+     */
+    public abstract double search(int source, int target);
+
+    /**
+     * @return Number of arcs of the path found by the last search
+     */
+    public int getPathLength() {
+        return pathLength;
+    }
+
+    /**
+     * @param i Position of the arc in the path, starting from the source
+     * @return Edge id of the arc
+     */
+    public int getPathEdgeId(int i) {
+        return pathEdgeIds[i];
+    }
+
+    /**
+     * @param i Position of the arc in the path, starting from the source
+     * @return Index of the vertex the arc leaves
+     */
+    public int getPathStart(int i) {
+        return pathStarts[i];
+    }
+
+    /**
+     * @param i Position of the arc in the path, starting from the source
+     * @return Index of the vertex the arc enters
+     */
+    public int getPathEnd(int i) {
+        return pathEnds[i];
+    }
+
+    /**
+     * @param i Position of the arc in the path, starting from the source
+     * @return Weight of the arc
+     */
+    public double getPathWeight(int i) {
+        return pathWeights[i];
+    }
+
+    protected void clearPath() {
+        pathLength = 0;
+    }
+
+    protected void addPathArc(int edgeId, int start, int end, double weight) {
+        if (pathLength == pathEdgeIds.length) {
+            final int capacity = pathLength * 2;
+            pathEdgeIds = Arrays.copyOf(pathEdgeIds, capacity);
+            pathStarts = Arrays.copyOf(pathStarts, capacity);
+            pathEnds = Arrays.copyOf(pathEnds, capacity);
+            pathWeights = Arrays.copyOf(pathWeights, capacity);
+        }
+        pathEdgeIds[pathLength] = edgeId;
+        pathStarts[pathLength] = start;
+        pathEnds[pathLength] = end;
+        pathWeights[pathLength] = weight;
+        pathLength++;
+    }
+
+    /**
+     * Reverse the order of the arcs added since the given position, used when
+     * a part of the path has been collected from its end.
+     *
+     * @param from Position of the first arc to reverse
+     */
+    protected void reversePath(int from) {
+        for (int i = from, j = pathLength - 1; i < j; i++, j--) {
+            swap(pathEdgeIds, i, j);
+            swap(pathStarts, i, j);
+            swap(pathEnds, i, j);
+            final double weight = pathWeights[i];
+            pathWeights[i] = pathWeights[j];
+            pathWeights[j] = weight;
+        }
+    }
+
+    private static void swap(int[] array, int i, int j) {
+        final int value = array[i];
+        array[i] = array[j];
+        array[j] = value;
+    }
+}
@@ -21,7 +21,7 @@ package org.h2gis.network.functions;
 
 
 import java.sql.*;
-import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.Set;
 import org.h2.tools.SimpleResultSet;
 import org.h2gis.api.ScalarFunction;
@@ -32,10 +32,6 @@ import static org.h2gis.network.functions.GraphConstants.SOURCE;
 import static org.h2gis.utilities.TableUtilities.isColumnListConnection;
 import org.h2gis.utilities.TableLocation;
 import org.h2gis.utilities.TableUtilities;
-import org.javanetworkanalyzer.analyzers.AccessibilityAnalyzer;
-import org.javanetworkanalyzer.data.VAccess;
-import org.javanetworkanalyzer.model.Edge;
-import org.javanetworkanalyzer.model.KeyedGraph;
 
 /**
  * Calculates, for each vertex, the closest destination among several possible
@@ -110,46 +106,58 @@ public class ST_Accessibility extends GraphFunction implements ScalarFunction {
         if (isColumnListConnection(connection)) {
             return prepareResultSet();
         }
-        final KeyedGraph<VAccess, Edge> graph =
-                prepareGraph(connection, inputTable, orientation, weight, VAccess.class, Edge.class);
+        final CSRGraph graph = prepareCSRGraph(connection, inputTable, orientation, weight);
+        // The distances to the destinations are computed from all the
+        // destinations at once on the reversed graph.
+        final CSRGraph reversed = prepareReversedGraph(connection, inputTable, orientation, weight, graph);
         // Decide whether this is a destination string or a table string.
         if (GraphFunctionParser.isDestinationsString(arg4)) {
-            return compute(graph, prepareDestSet(graph, GraphFunctionParser.parseDestinationsString(arg4)));
+            return compute(graph, reversed, prepareDestSet(graph, GraphFunctionParser.parseDestinationsString(arg4)));
         } else {
             // arg4 is a destination table.
-            return compute(graph, prepareDestSet(connection, graph, arg4));
+            return compute(graph, reversed, prepareDestSet(connection, graph, arg4));
         }
     }
 
-    private static ResultSet compute(KeyedGraph<VAccess, Edge> graph,
-                                     Set<VAccess> destinations) throws SQLException {
+    private static ResultSet compute(CSRGraph graph,
+                                     CSRGraph reversed,
+                                     Set<Integer> destinations) throws SQLException {
         SimpleResultSet output = prepareResultSet();
-        new AccessibilityAnalyzer(graph, destinations).compute();
-        for (VAccess v : graph.vertexSet()) {
-            output.addRow(v.getID(), v.getClosestDestinationId(), v.getDistanceToClosestDestination());
+        final int[] sources = new int[destinations.size()];
+        int i = 0;
+        for (int destination : destinations) {
+            sources[i++] = destination;
+        }
+        final MultiSourceDijkstra search = new MultiSourceDijkstra(reversed);
+        search.search(sources, Runtime.getRuntime().availableProcessors());
+        for (int v = 0; v < graph.getVertexCount(); v++) {
+            final int closest = search.getClosestSource(v);
+            output.addRow(graph.getVertexId(v),
+                    closest == MultiSourceDijkstra.UNREACHED ? -1 : graph.getVertexId(sources[closest]),
+                    search.getDistance(v));
         }
         return output;
     }
 
-    private static Set<VAccess> prepareDestSet(KeyedGraph<VAccess, Edge> graph, int[] dests) {
-        Set<VAccess> destinations = new HashSet<VAccess>();
+    private static Set<Integer> prepareDestSet(CSRGraph graph, int[] dests) {
+        Set<Integer> destinations = new LinkedHashSet<Integer>();
         for (int i = 0; i < dests.length; i++) {
-            destinations.add(graph.getVertex(dests[i]));
+            destinations.add(getVertexIndex(graph, dests[i]));
         }
         return destinations;
     }
 
-    private static Set<VAccess> prepareDestSet(Connection connection,
-                                               KeyedGraph<VAccess, Edge> graph,
+    private static Set<Integer> prepareDestSet(Connection connection,
+                                               CSRGraph graph,
                                                String destTable) throws SQLException {
         final Statement st = connection.createStatement();
-        Set<VAccess> destinations = new HashSet<VAccess>();
+        Set<Integer> destinations = new LinkedHashSet<Integer>();
         try {
             final TableLocation destinationTable = TableUtilities.parseInputTable(connection, destTable);
             final ResultSet rs = st.executeQuery(
                     "SELECT " + DESTINATION + " FROM " + destinationTable);
             while (rs.next()) {
-                destinations.add(graph.getVertex(rs.getInt(1)));
+                destinations.add(getVertexIndex(graph, rs.getInt(1)));
             }
         } finally {
             st.close();
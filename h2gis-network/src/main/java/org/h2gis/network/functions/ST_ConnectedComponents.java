@@ -21,10 +21,9 @@ package org.h2gis.network.functions;
 
 import java.sql.Connection;
 import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
-import java.util.List;
-import java.util.Set;
 import org.h2gis.api.ScalarFunction;
 import static org.h2gis.network.functions.GraphConstants.CONNECTED_COMPONENT;
 import static org.h2gis.network.functions.GraphConstants.EDGE_COMP_SUFFIX;
@@ -33,18 +32,9 @@ import static org.h2gis.network.functions.GraphConstants.END_NODE;
 import static org.h2gis.network.functions.GraphConstants.NODE_COMP_SUFFIX;
 import static org.h2gis.network.functions.GraphConstants.NODE_ID;
 import static org.h2gis.network.functions.GraphConstants.START_NODE;
-import static org.h2gis.network.functions.GraphFunctionParser.*;
 import static org.h2gis.network.functions.GraphFunctionParser.Orientation.UNDIRECTED;
 import org.h2gis.utilities.TableLocation;
 import org.h2gis.utilities.TableUtilities;
-import org.javanetworkanalyzer.data.VUCent;
-import org.javanetworkanalyzer.model.Edge;
-import org.javanetworkanalyzer.model.KeyedGraph;
-import org.jgrapht.DirectedGraph;
-import org.jgrapht.Graph;
-import org.jgrapht.UndirectedGraph;
-import org.jgrapht.alg.ConnectivityInspector;
-import org.jgrapht.alg.StrongConnectivityInspector;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -57,6 +47,7 @@ import org.slf4j.LoggerFactory;
 public class ST_ConnectedComponents  extends GraphFunction implements ScalarFunction {
 
     protected static final int BATCH_SIZE = 100;
+    private static final int FETCH_SIZE = 10000;
     public static final int NULL_CONNECTED_COMPONENT_NUMBER = -1;
     private static final Logger LOGGER = LoggerFactory.getLogger("gui." + ST_ConnectedComponents.class);
     public static final String REMARKS =
@@ -95,18 +86,32 @@ public class ST_ConnectedComponents  extends GraphFunction implements ScalarFunc
     public static boolean getConnectedComponents(Connection connection,
                                                  String inputTable,
                                                  String orientation) throws SQLException {
-        KeyedGraph graph = prepareGraph(connection, inputTable, orientation, null,
-                VUCent.class, Edge.class);
-        if (graph == null) {
-            return false;
-        }
-        final List<Set<VUCent>> componentsList = getConnectedComponents(graph, orientation);
-
+        final GraphFunctionParser parser = new GraphFunctionParser();
+        parser.parseWeightAndOrientation(orientation, null);
         final TableLocation tableName = TableUtilities.parseInputTable(connection, inputTable);
         final TableLocation nodesName = TableUtilities.suffixTableLocation(tableName, NODE_COMP_SUFFIX);
         final TableLocation edgesName = TableUtilities.suffixTableLocation(tableName, EDGE_COMP_SUFFIX);
 
-        if (storeNodeConnectedComponents(connection, nodesName, edgesName, componentsList)) {
+        final int[] nodeIds;
+        final int[] components;
+        LOGGER.info("Calculating connected components... ");
+        final long start = System.currentTimeMillis();
+        if (parser.getGlobalOrientation().equals(UNDIRECTED)) {
+            // The edges are read once, the graph is not loaded
+            final DisjointSets sets = getConnectedComponents(connection, tableName);
+            nodeIds = sets.getSortedNodeIds();
+            components = sets.getSetNumbers(nodeIds);
+        } else {
+            final CSRGraph graph = prepareCSRGraph(connection, inputTable, orientation, null);
+            nodeIds = new int[graph.getVertexCount()];
+            for (int v = 0; v < nodeIds.length; v++) {
+                nodeIds[v] = graph.getVertexId(v);
+            }
+            components = getStronglyConnectedComponents(graph);
+        }
+        logTime(LOGGER, start);
+
+        if (storeNodeConnectedComponents(connection, nodesName, edgesName, nodeIds, components)) {
             if (storeEdgeConnectedComponents(connection, tableName, nodesName, edgesName)) {
                 return true;
             }
@@ -130,26 +135,100 @@ public class ST_ConnectedComponents  extends GraphFunction implements ScalarFunc
         }
     }
 
-    private static List<Set<VUCent>> getConnectedComponents(Graph<VUCent, Edge> graph,
-                                                            String orientation) {
-        LOGGER.info("Calculating connected components... ");
-        final long start = System.currentTimeMillis();
-        List<Set<VUCent>> sets;
-        if (parseGlobalOrientation(orientation).equals(UNDIRECTED)) {
-            sets = new ConnectivityInspector<VUCent, Edge>(
-                    (UndirectedGraph<VUCent, Edge>) graph).connectedSets();
-        } else {
-            sets = new StrongConnectivityInspector<VUCent, Edge>(
-                    (DirectedGraph) graph).stronglyConnectedSets();
+    /**
+     * Connected components of an undirected graph, by merging the end nodes
+     * of each edge streamed from the edges table.
+     */
+    private static DisjointSets getConnectedComponents(Connection connection,
+                                                       TableLocation tableName) throws SQLException {
+        final DisjointSets sets = new DisjointSets();
+        final Statement st = connection.createStatement();
+        try {
+            st.setFetchSize(FETCH_SIZE);
+            final ResultSet edges = st.executeQuery(
+                    "SELECT " + START_NODE + ", " + END_NODE + " FROM " + tableName);
+            try {
+                while (edges.next()) {
+                    sets.union(edges.getInt(1), edges.getInt(2));
+                }
+            } finally {
+                edges.close();
+            }
+        } finally {
+            st.close();
         }
-        logTime(LOGGER, start);
         return sets;
     }
 
+    /**
+     * Strongly connected components of a directed graph (Tarjan). The
+     * depth-first search uses an explicit stack, so long chains do not
+     * overflow the thread stack.
+     *
+     * @return The strongly connected component number [1-n] of each vertex index
+     */
+    private static int[] getStronglyConnectedComponents(CSRGraph graph) {
+        final int vertexCount = graph.getVertexCount();
+        final int[] components = new int[vertexCount];
+        // Discovery order starting from 1, 0 for unvisited vertices
+        final int[] order = new int[vertexCount];
+        final int[] lowLink = new int[vertexCount];
+        final int[] nextArc = new int[vertexCount];
+        // Depth-first search path
+        final int[] path = new int[vertexCount];
+        // Visited vertices not yet assigned to a component
+        final int[] stack = new int[vertexCount];
+        int visitedCount = 0;
+        int componentNumber = 0;
+        for (int root = 0; root < vertexCount; root++) {
+            if (order[root] != 0) {
+                continue;
+            }
+            int depth = 0;
+            int stackSize = 0;
+            path[depth++] = root;
+            order[root] = lowLink[root] = ++visitedCount;
+            nextArc[root] = graph.getFirstArc(root);
+            stack[stackSize++] = root;
+            while (depth > 0) {
+                final int u = path[depth - 1];
+                if (nextArc[u] < graph.getFirstArc(u + 1)) {
+                    final int v = graph.getArcTarget(nextArc[u]++);
+                    if (order[v] == 0) {
+                        order[v] = lowLink[v] = ++visitedCount;
+                        nextArc[v] = graph.getFirstArc(v);
+                        stack[stackSize++] = v;
+                        path[depth++] = v;
+                    } else if (components[v] == 0) {
+                        // v is on the stack
+                        lowLink[u] = Math.min(lowLink[u], order[v]);
+                    }
+                } else {
+                    depth--;
+                    if (depth > 0) {
+                        final int parent = path[depth - 1];
+                        lowLink[parent] = Math.min(lowLink[parent], lowLink[u]);
+                    }
+                    if (lowLink[u] == order[u]) {
+                        // u is the root of a component made of the vertices above it on the stack
+                        componentNumber++;
+                        int w;
+                        do {
+                            w = stack[--stackSize];
+                            components[w] = componentNumber;
+                        } while (w != u);
+                    }
+                }
+            }
+        }
+        return components;
+    }
+
     private static boolean storeNodeConnectedComponents(Connection connection,
                                                         TableLocation nodesName,
                                                         TableLocation edgesName,
-                                                        List<Set<VUCent>> componentsList)
+                                                        int[] nodeIds,
+                                                        int[] components)
             throws SQLException {
         LOGGER.info("Storing node connected components... ");
         final long start = System.currentTimeMillis();
@@ -159,27 +238,23 @@ public class ST_ConnectedComponents  extends GraphFunction implements ScalarFunc
         try {
             final boolean previousAutoCommit = connection.getAutoCommit();
             connection.setAutoCommit(false);
-            int componentNumber = 0;
-            for (Set<VUCent> component : componentsList) {
-                componentNumber++;
-                int count = 0;
-                for (VUCent v : component) {
-                    nodeSt.setInt(1, v.getID());
-                    nodeSt.setInt(2, componentNumber);
-                    nodeSt.addBatch();
-                    count++;
-                    if (count >= BATCH_SIZE) {
-                        nodeSt.executeBatch();
-                        nodeSt.clearBatch();
-                        count = 0;
-                    }
-                }
-                if (count > 0) {
+            int count = 0;
+            for (int v = 0; v < components.length; v++) {
+                nodeSt.setInt(1, nodeIds[v]);
+                nodeSt.setInt(2, components[v]);
+                nodeSt.addBatch();
+                count++;
+                if (count >= BATCH_SIZE) {
                     nodeSt.executeBatch();
                     nodeSt.clearBatch();
+                    count = 0;
                 }
-                connection.commit();
             }
+            if (count > 0) {
+                nodeSt.executeBatch();
+                nodeSt.clearBatch();
+            }
+            connection.commit();
             connection.setAutoCommit(previousAutoCommit);
         } catch (SQLException e) {
             cancel(connection, nodesName, edgesName, e, "Could not store node connected components.");
@@ -19,12 +19,12 @@
  */
 package org.h2gis.network.functions;
 
-import java.lang.reflect.InvocationTargetException;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
 import java.sql.Statement;
-import java.util.Set;
+import org.h2gis.api.EmptyProgressVisitor;
+import org.h2gis.api.ProgressVisitor;
 import org.h2gis.api.ScalarFunction;
 import static org.h2gis.network.functions.GraphConstants.BETWEENNESS;
 import static org.h2gis.network.functions.GraphConstants.CLOSENESS;
@@ -32,24 +32,16 @@ import static org.h2gis.network.functions.GraphConstants.EDGE_CENT_SUFFIX;
 import static org.h2gis.network.functions.GraphConstants.EDGE_ID;
 import static org.h2gis.network.functions.GraphConstants.NODE_CENT_SUFFIX;
 import static org.h2gis.network.functions.GraphConstants.NODE_ID;
+import static org.h2gis.network.functions.GraphFunctionParser.Orientation.UNDIRECTED;
 import org.h2gis.utilities.TableLocation;
 import org.h2gis.utilities.TableUtilities;
-import org.javanetworkanalyzer.analyzers.GraphAnalyzer;
-import org.javanetworkanalyzer.analyzers.UnweightedGraphAnalyzer;
-import org.javanetworkanalyzer.analyzers.WeightedGraphAnalyzer;
-import org.javanetworkanalyzer.data.VCent;
-import org.javanetworkanalyzer.data.VUCent;
-import org.javanetworkanalyzer.data.VWCent;
-import org.javanetworkanalyzer.model.EdgeCent;
-import org.javanetworkanalyzer.model.KeyedGraph;
-import org.javanetworkanalyzer.progress.DefaultProgressMonitor;
-import org.jgrapht.WeightedGraph;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
  * Calculates closeness and betweenness centrality for nodes, as well as
- * betweenness centrality for edges.
+ * betweenness centrality for edges. The computation is distributed among
+ * worker threads, see {@link GraphCentrality}.
  *
  * @author Adam Gouge
  */
@@ -63,13 +55,18 @@ public class ST_GraphAnalysis extends GraphFunction implements ScalarFunction {
             "as well as betweenness centrality for edges. Possible signatures:\n" +
             "* `ST_GraphAnalysis('input_edges', 'o[ - eo]')`\n" +
             "* `ST_GraphAnalysis('input_edges', 'o[ - eo]', 'w')`\n" +
+            "* `ST_GraphAnalysis('input_edges', 'o[ - eo]', 'w', p)`\n" +
             "\n" +
             "where\n" +
             "* `input_edges` = Edges table produced by `ST_Graph` from table `input`\n" +
             "* `o` = Global orientation (directed, reversed or undirected)\n" +
             "* `eo` = Edge orientation (1 = directed, -1 = reversed, 0 = undirected).\n" +
             "  Required if global orientation is directed or reversed.\n" +
-            "* `w` = Name of column containing edge weights as doubles\n" +
+            "* `w` = Name of column containing edge weights as doubles, may be NULL\n" +
+            "* `p` = Number of pivots. The centrality is approximated from shortest\n" +
+            "  paths starting at `p` randomly chosen nodes instead of every node (0\n" +
+            "  for the exact computation). The closeness of a node is then estimated\n" +
+            "  from its distance to the pivots.\n" +
             "\n" +
             "**WARNING**: If ST_GraphAnalysis is called on a graph with more than one\n" +
             "(strongly) connected component, all closeness centrality scores will be zero.\n" +
@@ -96,16 +93,10 @@ public class ST_GraphAnalysis extends GraphFunction implements ScalarFunction {
      * @param orientation Global orientation
      * @return True if the calculation was successful
      * @throws SQLException
-     * @throws NoSuchMethodException
-     * @throws InstantiationException
-     * @throws IllegalAccessException
-     * @throws InvocationTargetException
      */
     public static boolean doGraphAnalysis(Connection connection,
                                           String inputTable,
-                                          String orientation)
-            throws SQLException, NoSuchMethodException, InstantiationException,
-            IllegalAccessException, InvocationTargetException {
+                                          String orientation) throws SQLException {
         return doGraphAnalysis(connection, inputTable, orientation, null);
     }
 
@@ -119,28 +110,70 @@ public class ST_GraphAnalysis extends GraphFunction implements ScalarFunction {
      * @param weight      Edge weight column name
      * @return True if the calculation was successful
      * @throws SQLException
-     * @throws InvocationTargetException
-     * @throws NoSuchMethodException
-     * @throws InstantiationException
-     * @throws IllegalAccessException
      */
     public static boolean doGraphAnalysis(Connection connection,
                                           String inputTable,
                                           String orientation,
-                                          String weight)
-            throws SQLException, InvocationTargetException, NoSuchMethodException,
-            InstantiationException, IllegalAccessException {
+                                          String weight) throws SQLException {
+        return doGraphAnalysis(connection, inputTable, orientation, weight, 0);
+    }
+
+    /**
+     * Calculate centrality indices on the nodes and edges of a graph
+     * constructed from the input table.
+     *
+     * @param connection  Connection
+     * @param inputTable  Input table
+     * @param orientation Global orientation
+     * @param weight      Edge weight column name, null for unweighted graphs
+     * @param pivotCount  Number of pivots of the approximation, 0 for the
+     *                    exact computation
+     * @return True if the calculation was successful
+     * @throws SQLException
+     */
+    public static boolean doGraphAnalysis(Connection connection,
+                                          String inputTable,
+                                          String orientation,
+                                          String weight,
+                                          int pivotCount) throws SQLException {
+        return analyze(connection, inputTable, orientation, weight, pivotCount, new EmptyProgressVisitor());
+    }
+
+    /**
+     * Calculate centrality indices on the nodes and edges of a graph
+     * constructed from the input table, reporting the progress of the
+     * computation.
+     *
+     * @param connection  Connection
+     * @param inputTable  Input table
+     * @param orientation Global orientation
+     * @param weight      Edge weight column name, null for unweighted graphs
+     * @param pivotCount  Number of pivots of the approximation, 0 for the
+     *                    exact computation
+     * @param progress    Progress, one step per source node
+     * @return True if the calculation was successful
+     * @throws SQLException If the computation has been canceled
+     */
+    public static boolean analyze(Connection connection,
+                                  String inputTable,
+                                  String orientation,
+                                  String weight,
+                                  int pivotCount,
+                                  ProgressVisitor progress) throws SQLException {
+        if (pivotCount < 0) {
+            throw new IllegalArgumentException("The number of pivots must be positive or zero.");
+        }
         final TableLocation tableName = TableUtilities.parseInputTable(connection, inputTable);
         final TableLocation nodesName = TableUtilities.suffixTableLocation(tableName, NODE_CENT_SUFFIX);
         final TableLocation edgesName = TableUtilities.suffixTableLocation(tableName, EDGE_CENT_SUFFIX);
+        final GraphCentrality centrality =
+                doAnalysis(connection, inputTable, orientation, weight, pivotCount, progress);
         try {
             createTables(connection, nodesName, edgesName);
-            final KeyedGraph graph =
-                    doAnalysisAndReturnGraph(connection, inputTable, orientation, weight);
             final boolean previousAutoCommit = connection.getAutoCommit();
             connection.setAutoCommit(false);
-            storeNodeCentrality(connection, nodesName, graph);
-            storeEdgeCentrality(connection, edgesName, graph);
+            storeNodeCentrality(connection, nodesName, centrality);
+            storeEdgeCentrality(connection, edgesName, centrality);
             connection.setAutoCommit(previousAutoCommit);
         } catch (SQLException e) {
             LOGGER.error("Problem creating centrality tables.");
@@ -156,20 +189,24 @@ public class ST_GraphAnalysis extends GraphFunction implements ScalarFunction {
         return true;
     }
 
-    private static KeyedGraph doAnalysisAndReturnGraph(Connection connection,
-                                                       String inputTable,
-                                                       String orientation,
-                                                       String weight)
-            throws SQLException, NoSuchMethodException, InstantiationException,
-            IllegalAccessException, InvocationTargetException {
-        final KeyedGraph graph = prepareGraph(connection, inputTable, orientation, weight,
-                (weight == null) ? VUCent.class : VWCent.class, EdgeCent.class);
-        final DefaultProgressMonitor pm = new DefaultProgressMonitor();
-        GraphAnalyzer analyzer = (weight == null) ?
-                new UnweightedGraphAnalyzer(graph, pm) :
-                new WeightedGraphAnalyzer((WeightedGraph) graph, pm);
-        analyzer.computeAll();
-        return graph;
+    private static GraphCentrality doAnalysis(Connection connection,
+                                              String inputTable,
+                                              String orientation,
+                                              String weight,
+                                              int pivotCount,
+                                              ProgressVisitor progress) throws SQLException {
+        final CSRGraph graph = prepareCSRGraph(connection, inputTable, orientation, weight);
+        LOGGER.info("Calculating centrality indices... ");
+        final long start = System.currentTimeMillis();
+        final GraphCentrality centrality = new GraphCentrality(graph,
+                prepareReversedGraph(connection, inputTable, orientation, weight, graph), weight != null,
+                GraphFunctionParser.parseGlobalOrientation(orientation) == UNDIRECTED);
+        centrality.compute(pivotCount, Runtime.getRuntime().availableProcessors(), progress);
+        if (progress.isCanceled()) {
+            throw new SQLException("Canceled by user");
+        }
+        logTime(LOGGER, start);
+        return centrality;
     }
 
     private static void createTables(Connection connection,
@@ -191,15 +228,18 @@ public class ST_GraphAnalysis extends GraphFunction implements ScalarFunction {
 
     private static void storeNodeCentrality(Connection connection,
                                             TableLocation nodesName,
-                                            KeyedGraph graph) throws SQLException {
+                                            GraphCentrality centrality) throws SQLException {
+        final CSRGraph graph = centrality.getGraph();
+        final double[] betweenness = centrality.getNodeBetweenness();
+        final double[] closeness = centrality.getCloseness();
         final PreparedStatement nodeSt =
                 connection.prepareStatement("INSERT INTO " + nodesName + " VALUES(?,?,?)");
         try {
             int count = 0;
-            for (VCent v : (Set<VCent>) graph.vertexSet()) {
-                nodeSt.setInt(1, v.getID());
-                nodeSt.setDouble(2, v.getBetweenness());
-                nodeSt.setDouble(3, v.getCloseness());
+            for (int v = 0; v < graph.getVertexCount(); v++) {
+                nodeSt.setInt(1, graph.getVertexId(v));
+                nodeSt.setDouble(2, betweenness[v]);
+                nodeSt.setDouble(3, closeness[v]);
                 nodeSt.addBatch();
                 count++;
                 if (count >= BATCH_SIZE) {
@@ -220,14 +260,16 @@ public class ST_GraphAnalysis extends GraphFunction implements ScalarFunction {
 
     private static void storeEdgeCentrality(Connection connection,
                                             TableLocation edgesName,
-                                            KeyedGraph graph) throws SQLException {
+                                            GraphCentrality centrality) throws SQLException {
+        final int[] edgeIds = centrality.getEdgeIds();
+        final double[] betweenness = centrality.getEdgeBetweenness();
         final PreparedStatement edgeSt =
                 connection.prepareStatement("INSERT INTO " + edgesName + " VALUES(?,?)");
         try {
             int count = 0;
-            for (EdgeCent e : (Set<EdgeCent>) graph.edgeSet()) {
-                edgeSt.setInt(1, e.getID());
-                edgeSt.setDouble(2, e.getBetweenness());
+            for (int i = 0; i < edgeIds.length; i++) {
+                edgeSt.setInt(1, edgeIds[i]);
+                edgeSt.setDouble(2, betweenness[i]);
                 edgeSt.addBatch();
                 count++;
                 if (count >= BATCH_SIZE) {
@@ -0,0 +1,389 @@
+/**
+ * H2GIS is a library that brings spatial support to the H2 Database Engine
+ * <http://www.h2database.com>. H2GIS is developed by CNRS
+ * <http://www.cnrs.fr/>.
+ *
+ * This code is part of the H2GIS project. H2GIS is free software; 
+ * you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation;
+ * version 3.0 of the License.
+ *
+ * H2GIS is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details <http://www.gnu.org/licenses/>.
+ *
+ *
+ * For more information, please consult: <http://www.h2gis.org/>
+ * or contact directly: info_at_h2gis.org
+ */
+
+package org.h2gis.network.functions;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.Arrays;
+import org.h2gis.api.ScalarFunction;
+import org.h2gis.utilities.JDBCUtilities;
+import org.h2gis.utilities.TableLocation;
+import org.h2gis.utilities.TableUtilities;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static org.h2gis.network.functions.GraphConstants.ARC_ID;
+import static org.h2gis.network.functions.GraphConstants.CH_ARCS_SUFFIX;
+import static org.h2gis.network.functions.GraphConstants.CH_NODES_SUFFIX;
+import static org.h2gis.network.functions.GraphConstants.CH_RANK;
+import static org.h2gis.network.functions.GraphConstants.EDGE_ID;
+import static org.h2gis.network.functions.GraphConstants.END_NODE;
+import static org.h2gis.network.functions.GraphConstants.FIRST_ARC;
+import static org.h2gis.network.functions.GraphConstants.NODE_ID;
+import static org.h2gis.network.functions.GraphConstants.SECOND_ARC;
+import static org.h2gis.network.functions.GraphConstants.START_NODE;
+import static org.h2gis.network.functions.GraphConstants.WEIGHT;
+
+/**
+ * Builds the contraction hierarchy of a graph and stores it next to the edges
+ * table, so that ST_ShortestPathLength and ST_ShortestPath can answer queries
+ * with the 'ch' search method.
+ */
+public class ST_GraphPreprocess extends GraphFunction implements ScalarFunction {
+
+    private static final int BATCH_SIZE = 100;
+    private static final Logger LOGGER = LoggerFactory.getLogger("gui." + ST_GraphPreprocess.class);
+    public static final String REMARKS =
+            "`ST_GraphPreprocess` builds the contraction hierarchy of a graph, used by\n" +
+            "`ST_ShortestPathLength` and `ST_ShortestPath` with the 'ch' search method.\n" +
+            "It produces two tables: `input_edges" + CH_NODES_SUFFIX + "` (node id and\n" +
+            "contraction rank) and `input_edges" + CH_ARCS_SUFFIX + "` (original arcs and\n" +
+            "shortcuts). The hierarchy is not updated with the edges table: drop both\n" +
+            "tables and call `ST_GraphPreprocess` again after a change. Possible signatures:\n" +
+            "* `ST_GraphPreprocess('input_edges', 'o[ - eo]')`\n" +
+            "* `ST_GraphPreprocess('input_edges', 'o[ - eo]', 'w')`\n" +
+            "\n" +
+            "where\n" +
+            "* `input_edges` = Edges table produced by `ST_Graph` from table `input`\n" +
+            "* `o` = Global orientation (directed, reversed or undirected)\n" +
+            "* `eo` = Edge orientation (1 = directed, -1 = reversed, 0 = undirected).\n" +
+            "  Required if global orientation is directed or reversed.\n" +
+            "* `w` = Name of column containing edge weights as doubles\n";
+
+    /**
+     * Constructor
+     */
+    public ST_GraphPreprocess() {
+        addProperty(PROP_REMARKS, REMARKS);
+    }
+
+    @Override
+    public String getJavaStaticMethod() {
+        return "preprocess";
+    }
+
+    /**
+     * Build the contraction hierarchy of an unweighted graph.
+     *
+     * @param connection  Connection
+     * @param inputTable  Edges table produced by ST_Graph
+     * @param orientation Orientation string
+     * @return True if the hierarchy has been stored
+     * @throws SQLException
+     */
+    public static boolean preprocess(Connection connection,
+                                     String inputTable,
+                                     String orientation) throws SQLException {
+        return preprocess(connection, inputTable, orientation, null);
+    }
+
+    /**
+     * Build the contraction hierarchy of a graph.
+     *
+     * @param connection  Connection
+     * @param inputTable  Edges table produced by ST_Graph
+     * @param orientation Orientation string
+     * @param weight      Weight column name, null for unweighted graphs
+     * @return True if the hierarchy has been stored
+     * @throws SQLException If the hierarchy cannot be stored, its tables are
+     *                      then dropped
+     */
+    public static boolean preprocess(Connection connection,
+                                     String inputTable,
+                                     String orientation,
+                                     String weight) throws SQLException {
+        final GraphFunctionParser parser = new GraphFunctionParser();
+        parser.parseWeightAndOrientation(orientation, weight);
+        final CSRGraph graph = prepareCSRGraph(connection, inputTable, orientation, weight);
+
+        LOGGER.info("Contracting graph... ");
+        final long start = System.currentTimeMillis();
+        final ContractionHierarchy ch = ContractionHierarchy.contract(graph);
+        logTime(LOGGER, start);
+
+        final TableLocation tableName = TableUtilities.parseInputTable(connection, inputTable);
+        final TableLocation nodesName = TableUtilities.suffixTableLocation(tableName, CH_NODES_SUFFIX);
+        final TableLocation arcsName = TableUtilities.suffixTableLocation(tableName, CH_ARCS_SUFFIX);
+        return store(connection, nodesName, arcsName, ch, describe(parser.getGlobalOrientation(),
+                parser.getEdgeOrientation(), parser.getWeightColumn()));
+    }
+
+    /**
+     * The orientation and weight a hierarchy has been built for, kept as the
+     * comment of the arcs table.
+     */
+    private static String describe(GraphFunctionParser.Orientation globalOrientation,
+                                   String edgeOrientation,
+                                   String weightColumn) {
+        return globalOrientation
+                + ";" + (edgeOrientation == null ? "" : edgeOrientation.toUpperCase())
+                + ";" + (weightColumn == null ? "" : weightColumn.toUpperCase());
+    }
+
+    /**
+     * Roll back the rows stored so far and drop the tables of a hierarchy
+     * that could not be stored. The errors raised meanwhile are attached to
+     * the original error.
+     *
+     * @param nodesName Nodes table to drop, null if it has not been created
+     * @param arcsName  Arcs table to drop, null if it has not been created
+     */
+    private static void cancel(Connection connection,
+                               TableLocation nodesName,
+                               TableLocation arcsName,
+                               SQLException e) {
+        try {
+            connection.rollback();
+            final Statement statement = connection.createStatement();
+            try {
+                if (nodesName != null) {
+                    statement.execute("DROP TABLE IF EXISTS " + nodesName);
+                }
+                if (arcsName != null) {
+                    statement.execute("DROP TABLE IF EXISTS " + arcsName);
+                }
+            } finally {
+                statement.close();
+            }
+        } catch (SQLException ex) {
+            e.addSuppressed(ex);
+        }
+    }
+
+    private static boolean store(Connection connection,
+                                 TableLocation nodesName,
+                                 TableLocation arcsName,
+                                 ContractionHierarchy ch,
+                                 String description) throws SQLException {
+        LOGGER.info("Storing contraction hierarchy... ");
+        final long start = System.currentTimeMillis();
+        final boolean previousAutoCommit = connection.getAutoCommit();
+        // Only the tables created here are dropped on failure
+        TableLocation createdNodes = null;
+        TableLocation createdArcs = null;
+        try {
+            final Statement st = connection.createStatement();
+            try {
+                st.execute("CREATE TABLE " + nodesName + "(" +
+                        NODE_ID + " INTEGER PRIMARY KEY, " +
+                        CH_RANK + " INTEGER);");
+                createdNodes = nodesName;
+                st.execute("CREATE TABLE " + arcsName + "(" +
+                        ARC_ID + " INTEGER PRIMARY KEY, " +
+                        START_NODE + " INTEGER, " +
+                        END_NODE + " INTEGER, " +
+                        WEIGHT + " DOUBLE, " +
+                        EDGE_ID + " INTEGER, " +
+                        FIRST_ARC + " INTEGER, " +
+                        SECOND_ARC + " INTEGER);");
+                createdArcs = arcsName;
+            } finally {
+                st.close();
+            }
+            // COMMENT ON commits like any DDL statement, it has to run before
+            // the rows are inserted
+            final PreparedStatement commentSt =
+                    connection.prepareStatement("COMMENT ON TABLE " + arcsName + " IS ?");
+            try {
+                commentSt.setString(1, description);
+                commentSt.execute();
+            } finally {
+                commentSt.close();
+            }
+            connection.setAutoCommit(false);
+            insertRows(connection, nodesName, arcsName, ch);
+            connection.commit();
+        } catch (SQLException e) {
+            cancel(connection, createdNodes, createdArcs, e);
+            throw e;
+        } finally {
+            connection.setAutoCommit(previousAutoCommit);
+        }
+        logTime(LOGGER, start);
+        return true;
+    }
+
+    private static void insertRows(Connection connection,
+                                   TableLocation nodesName,
+                                   TableLocation arcsName,
+                                   ContractionHierarchy ch) throws SQLException {
+        final PreparedStatement nodeSt =
+                connection.prepareStatement("INSERT INTO " + nodesName + " VALUES(?,?)");
+        try {
+            final PreparedStatement arcSt =
+                    connection.prepareStatement("INSERT INTO " + arcsName + " VALUES(?,?,?,?,?,?,?)");
+            try {
+                int count = 0;
+                for (int v = 0; v < ch.getVertexCount(); v++) {
+                    nodeSt.setInt(1, ch.getVertexId(v));
+                    nodeSt.setInt(2, ch.getRank(v));
+                    nodeSt.addBatch();
+                    count++;
+                    if (count >= BATCH_SIZE) {
+                        nodeSt.executeBatch();
+                        nodeSt.clearBatch();
+                        count = 0;
+                    }
+                }
+                if (count > 0) {
+                    nodeSt.executeBatch();
+                    nodeSt.clearBatch();
+                }
+                count = 0;
+                for (int arc = 0; arc < ch.getArcCount(); arc++) {
+                    arcSt.setInt(1, arc + 1);
+                    arcSt.setInt(2, ch.getVertexId(ch.getArcSource(arc)));
+                    arcSt.setInt(3, ch.getVertexId(ch.getArcTarget(arc)));
+                    arcSt.setDouble(4, ch.getArcWeight(arc));
+                    if (ch.isShortcut(arc)) {
+                        arcSt.setNull(5, Types.INTEGER);
+                        arcSt.setInt(6, ch.getArcFirst(arc) + 1);
+                        arcSt.setInt(7, ch.getArcSecond(arc) + 1);
+                    } else {
+                        arcSt.setInt(5, ch.getArcEdgeId(arc));
+                        arcSt.setNull(6, Types.INTEGER);
+                        arcSt.setNull(7, Types.INTEGER);
+                    }
+                    arcSt.addBatch();
+                    count++;
+                    if (count >= BATCH_SIZE) {
+                        arcSt.executeBatch();
+                        arcSt.clearBatch();
+                        count = 0;
+                    }
+                }
+                if (count > 0) {
+                    arcSt.executeBatch();
+                    arcSt.clearBatch();
+                }
+            } finally {
+                arcSt.close();
+            }
+        } finally {
+            nodeSt.close();
+        }
+    }
+
+    /**
+     * Read the contraction hierarchy stored by ST_GraphPreprocess for the
+     * given edges table.
+     *
+     * @param connection        Connection
+     * @param edges             Edges table produced by ST_Graph
+     * @param globalOrientation Global orientation
+     * @param edgeOrientation   Edge orientation column name
+     * @param weightColumn      Weight column name, null for unweighted graphs
+     * @return Contraction hierarchy
+     * @throws SQLException
+     * @throws IllegalArgumentException If no hierarchy has been built for
+     *                                  this orientation and weight
+     */
+    static ContractionHierarchy readContractionHierarchy(Connection connection,
+                                                         TableLocation edges,
+                                                         GraphFunctionParser.Orientation globalOrientation,
+                                                         String edgeOrientation,
+                                                         String weightColumn) throws SQLException {
+        final TableLocation nodesName = TableUtilities.suffixTableLocation(edges, CH_NODES_SUFFIX);
+        final TableLocation arcsName = TableUtilities.suffixTableLocation(edges, CH_ARCS_SUFFIX);
+        final String description = getRemarks(connection, arcsName);
+        if (description == null || !JDBCUtilities.tableExists(connection, nodesName.toString())) {
+            throw new IllegalArgumentException("No contraction hierarchy has been found for " + edges
+                    + ", call ST_GraphPreprocess first.");
+        }
+        final String expected = describe(globalOrientation, edgeOrientation, weightColumn);
+        if (!expected.equals(description)) {
+            throw new IllegalArgumentException("The contraction hierarchy of " + edges + " has been built for '"
+                    + description + "' and cannot be used for '" + expected + "'.");
+        }
+        final Statement st = connection.createStatement();
+        try {
+            final int vertexCount = JDBCUtilities.getRowCount(connection, nodesName.toString());
+            final int[] vertexIds = new int[vertexCount];
+            final int[] rank = new int[vertexCount];
+            ResultSet rs = st.executeQuery("SELECT " + NODE_ID + ", " + CH_RANK + " FROM " + nodesName
+                    + " ORDER BY " + NODE_ID);
+            try {
+                int v = 0;
+                while (rs.next()) {
+                    vertexIds[v] = rs.getInt(1);
+                    rank[v] = rs.getInt(2);
+                    v++;
+                }
+            } finally {
+                rs.close();
+            }
+            final int arcCount = JDBCUtilities.getRowCount(connection, arcsName.toString());
+            final int[] arcSource = new int[arcCount];
+            final int[] arcTarget = new int[arcCount];
+            final double[] arcWeight = new double[arcCount];
+            final int[] arcEdgeId = new int[arcCount];
+            final int[] arcFirst = new int[arcCount];
+            final int[] arcSecond = new int[arcCount];
+            rs = st.executeQuery("SELECT " + START_NODE + ", " + END_NODE + ", " + WEIGHT + ", " + EDGE_ID + ", "
+                    + FIRST_ARC + ", " + SECOND_ARC + " FROM " + arcsName + " ORDER BY " + ARC_ID);
+            try {
+                int arc = 0;
+                while (rs.next()) {
+                    arcSource[arc] = Arrays.binarySearch(vertexIds, rs.getInt(1));
+                    arcTarget[arc] = Arrays.binarySearch(vertexIds, rs.getInt(2));
+                    if (arcSource[arc] < 0 || arcTarget[arc] < 0) {
+                        throw new IllegalArgumentException("The contraction hierarchy of " + edges
+                                + " is corrupted, arc " + (arc + 1) + " links unknown nodes.");
+                    }
+                    arcWeight[arc] = rs.getDouble(3);
+                    arcEdgeId[arc] = rs.getInt(4);
+                    // ARC_ID starts at 1, a NULL child (original arc) gives -1
+                    arcFirst[arc] = rs.getInt(5) - 1;
+                    arcSecond[arc] = rs.getInt(6) - 1;
+                    arc++;
+                }
+            } finally {
+                rs.close();
+            }
+            return new ContractionHierarchy(vertexIds, rank,
+                    arcSource, arcTarget, arcWeight, arcEdgeId, arcFirst, arcSecond);
+        } finally {
+            st.close();
+        }
+    }
+
+    /**
+     * @return The comment of the table, null if the table does not exist or
+     * has no comment
+     */
+    private static String getRemarks(Connection connection, TableLocation location) throws SQLException {
+        final DatabaseMetaData metaData = connection.getMetaData();
+        final ResultSet rs = metaData.getTables(
+                location.getCatalog().isEmpty() ? null : location.getCatalog(),
+                location.getSchema().isEmpty() ? null : location.getSchema(),
+                location.getTable(), null);
+        try {
+            return rs.next() ? rs.getString("REMARKS") : null;
+        } finally {
+            rs.close();
+        }
+    }
+}
@@ -0,0 +1,599 @@
+/**
+ * H2GIS is a library that brings spatial support to the H2 Database Engine
+ * <http://www.h2database.com>. H2GIS is developed by CNRS
+ * <http://www.cnrs.fr/>.
+ *
+ * This code is part of the H2GIS project. H2GIS is free software; 
+ * you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation;
+ * version 3.0 of the License.
+ *
+ * H2GIS is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details <http://www.gnu.org/licenses/>.
+ *
+ *
+ * For more information, please consult: <http://www.h2gis.org/>
+ * or contact directly: info_at_h2gis.org
+ */
+
+package org.h2gis.network.functions;
+
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.GeometryFactory;
+import com.vividsolutions.jts.geom.MultiPolygon;
+import com.vividsolutions.jts.geom.Polygon;
+import com.vividsolutions.jts.geom.PrecisionModel;
+import com.vividsolutions.jts.operation.union.CascadedPolygonUnion;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.h2.tools.SimpleResultSet;
+import org.h2.value.Value;
+import org.h2.value.ValueArray;
+import org.h2.value.ValueString;
+import org.h2gis.api.ScalarFunction;
+import org.h2gis.functions.spatial.mesh.DelaunayData;
+import org.h2gis.utilities.TableLocation;
+import org.h2gis.utilities.TableUtilities;
+import org.h2gis.utilities.jts_utils.Contouring;
+import org.h2gis.utilities.jts_utils.TriMarkers;
+
+import static org.h2gis.network.functions.GraphConstants.CUTOFF;
+import static org.h2gis.network.functions.GraphConstants.EDGE_ID;
+import static org.h2gis.network.functions.GraphConstants.END_NODE;
+import static org.h2gis.network.functions.GraphConstants.SOURCE;
+import static org.h2gis.network.functions.GraphConstants.START_NODE;
+import static org.h2gis.network.functions.GraphConstants.THE_GEOM;
+import static org.h2gis.utilities.TableUtilities.isColumnListConnection;
+
+/**
+ * Computes the isochrone bands around one or several source vertices.
+ * <p/>
+ * A single Dijkstra search per source, limited to the largest cut-off, gives
+ * the distance of the vertices. The distance is then interpolated along the
+ * edge geometries, adding the points where an edge crosses a cut-off, and the
+ * sampled points are triangulated with {@link DelaunayData}. Each triangle is
+ * split by the cut-offs with {@link Contouring} and the parts of each band are
+ * merged into one geometry. Triangles with a side longer than a given length
+ * may be removed, so that the bands follow concave networks.
+ */
+public class ST_Isochrone extends GraphFunction implements ScalarFunction {
+
+    public static final String CUTOFF_ERROR = "The cut-offs must be positive finite distances: ";
+    public static final String MAX_SIDE_ERROR = "The maximum triangle side must be positive: ";
+    public static final String REMARKS =
+            "`ST_Isochrone` computes the isochrone bands around one or several source\n" +
+            "vertices of a graph. The distance is interpolated along the edge geometries,\n" +
+            "which are triangulated and split by the cut-offs. Each row holds the area\n" +
+            "whose distance to the source lies between the previous cut-off and its own\n" +
+            "cut-off. Possible signatures:\n" +
+            "* `ST_Isochrone('INPUT_EDGES', 'o[ - eo]', s, c)`\n" +
+            "* `ST_Isochrone('INPUT_EDGES', 'o[ - eo]', 'w', s, c)`\n" +
+            "* `ST_Isochrone('INPUT_EDGES', 'o[ - eo]', 'w', s, c, a)`\n" +
+            "\n" +
+            "where\n" +
+            "* `INPUT_EDGES` = Edges table produced by `ST_Graph` from table `INPUT`\n" +
+            "* `o` = Global orientation (directed, reversed or undirected)\n" +
+            "* `eo` = Edge orientation (1 = directed, -1 = reversed, 0 = undirected).\n" +
+            "   Required if global orientation is directed or reversed.\n" +
+            "* `w` = Name of column containing edge weights as `DOUBLES`, `NULL` for\n" +
+            "   unweighted graphs\n" +
+            "* `s` = Source vertex id, or comma-separated list of source vertex ids '1, 2, 3'\n" +
+            "* `c` = Cut-off, comma-separated list of cut-offs '10, 20, 30' or array of\n" +
+            "   cut-offs\n" +
+            "* `a` = Maximum length of the triangle sides (a `DOUBLE`), longer triangles are\n" +
+            "   removed. Not limited by default.\n";
+
+    /**
+     * Constructor
+     */
+    public ST_Isochrone() {
+        addProperty(PROP_REMARKS, REMARKS);
+    }
+
+    @Override
+    public String getJavaStaticMethod() {
+        return "getIsochrones";
+    }
+
+    /**
+     * @param connection  Connection
+     * @param inputTable  Edges table produced by ST_Graph
+     * @param orientation Orientation string
+     * @param source      Source vertex id or comma-separated list of source vertex ids
+     * @param cutoffs     Cut-off, comma-separated list of cut-offs or array of cut-offs
+     * @return Isochrone bands
+     * @throws SQLException
+     */
+    public static ResultSet getIsochrones(Connection connection,
+                                          String inputTable,
+                                          String orientation,
+                                          Value source,
+                                          Value cutoffs) throws SQLException {
+        return isochrones(connection, inputTable, orientation, null, source, cutoffs, Double.POSITIVE_INFINITY);
+    }
+
+    /**
+     * @param connection  Connection
+     * @param inputTable  Edges table produced by ST_Graph
+     * @param orientation Orientation string
+     * @param weight      Weight column name, null for unweighted graphs
+     * @param source      Source vertex id or comma-separated list of source vertex ids
+     * @param cutoffs     Cut-off, comma-separated list of cut-offs or array of cut-offs
+     * @return Isochrone bands
+     * @throws SQLException
+     */
+    public static ResultSet getIsochrones(Connection connection,
+                                          String inputTable,
+                                          String orientation,
+                                          String weight,
+                                          Value source,
+                                          Value cutoffs) throws SQLException {
+        return isochrones(connection, inputTable, orientation, weight, source, cutoffs, Double.POSITIVE_INFINITY);
+    }
+
+    /**
+     * @param connection  Connection
+     * @param inputTable  Edges table produced by ST_Graph
+     * @param orientation Orientation string
+     * @param weight      Weight column name, null for unweighted graphs
+     * @param source      Source vertex id or comma-separated list of source vertex ids
+     * @param cutoffs     Cut-off, comma-separated list of cut-offs or array of cut-offs
+     * @param maxSide     Maximum length of the triangle sides
+     * @return Isochrone bands
+     * @throws SQLException
+     */
+    public static ResultSet getIsochrones(Connection connection,
+                                          String inputTable,
+                                          String orientation,
+                                          String weight,
+                                          Value source,
+                                          Value cutoffs,
+                                          double maxSide) throws SQLException {
+        return isochrones(connection, inputTable, orientation, weight, source, cutoffs, maxSide);
+    }
+
+    private static ResultSet isochrones(Connection connection,
+                                        String inputTable,
+                                        String orientation,
+                                        String weight,
+                                        Value source,
+                                        Value cutoffs,
+                                        double maxSide) throws SQLException {
+        final SimpleResultSet output = prepareResultSet();
+        if (isColumnListConnection(connection)) {
+            return output;
+        }
+        final int[] sourceIDs = source instanceof ValueString
+                ? GraphFunctionParser.parseDestinationsString(source.getString())
+                : new int[]{source.getInt()};
+        final double[] levels = parseCutoffs(cutoffs);
+        if (!(maxSide > 0)) {
+            throw new IllegalArgumentException(MAX_SIDE_ERROR + maxSide);
+        }
+        final TableLocation tableName = TableUtilities.parseInputTable(connection, inputTable);
+        final String geometryField = ST_ShortestPath.getFirstGeometryField(connection, tableName);
+        if (geometryField == null) {
+            throw new IllegalArgumentException("ST_Isochrone requires the edge geometries, "
+                    + tableName + " has no geometry field.");
+        }
+        final CSRGraph graph = prepareCSRGraph(connection, inputTable, orientation, weight);
+        final int[] sources = new int[sourceIDs.length];
+        for (int i = 0; i < sources.length; i++) {
+            sources[i] = getVertexIndex(graph, sourceIDs[i]);
+        }
+        // The vertex coordinates tell how the edge geometries are oriented
+        final double[] x = new double[graph.getVertexCount()];
+        final double[] y = new double[graph.getVertexCount()];
+        final int srid = readVertexCoordinates(connection, tableName, graph, x, y);
+        final List<EdgeShape> shapes = readEdgeShapes(connection, tableName, geometryField, graph, x, y);
+        final GeometryFactory factory = new GeometryFactory(new PrecisionModel(), srid);
+
+        final Geometry[][] bands = computeBands(graph, shapes, sources, levels, maxSide, factory);
+        for (int i = 0; i < sources.length; i++) {
+            for (int l = 0; l < levels.length; l++) {
+                if (bands[i][l] != null) {
+                    output.addRow(bands[i][l], sourceIDs[i], levels[l]);
+                }
+            }
+        }
+        return output;
+    }
+
+    /**
+     * @return The distinct cut-offs in increasing order
+     */
+    private static double[] parseCutoffs(Value cutoffs) {
+        double[] levels;
+        if (cutoffs instanceof ValueArray) {
+            final Value[] values = ((ValueArray) cutoffs).getList();
+            levels = new double[values.length];
+            for (int i = 0; i < values.length; i++) {
+                levels[i] = values[i].getDouble();
+            }
+        } else if (cutoffs instanceof ValueString) {
+            final String[] values = cutoffs.getString().split(",");
+            levels = new double[values.length];
+            for (int i = 0; i < values.length; i++) {
+                levels[i] = Double.parseDouble(values[i].trim());
+            }
+        } else {
+            levels = new double[]{cutoffs.getDouble()};
+        }
+        if (levels.length == 0) {
+            throw new IllegalArgumentException(CUTOFF_ERROR + cutoffs);
+        }
+        for (double level : levels) {
+            if (!(level > 0) || Double.isInfinite(level)) {
+                throw new IllegalArgumentException(CUTOFF_ERROR + level);
+            }
+        }
+        Arrays.sort(levels);
+        int count = 0;
+        for (int i = 0; i < levels.length; i++) {
+            if (i == 0 || levels[i] != levels[i - 1]) {
+                levels[count++] = levels[i];
+            }
+        }
+        return Arrays.copyOf(levels, count);
+    }
+
+    /**
+     * Read the geometry of the edges that belong to the graph.
+     */
+    private static List<EdgeShape> readEdgeShapes(Connection connection,
+                                                  TableLocation tableName,
+                                                  String geometryField,
+                                                  CSRGraph graph,
+                                                  double[] x,
+                                                  double[] y) throws SQLException {
+        final List<EdgeShape> shapes = new ArrayList<EdgeShape>();
+        final Statement st = connection.createStatement();
+        try {
+            final ResultSet rs = st.executeQuery("SELECT " + EDGE_ID + ", " + START_NODE + ", " + END_NODE + ", "
+                    + geometryField + " FROM " + tableName);
+            try {
+                while (rs.next()) {
+                    final int start = graph.getVertexIndex(rs.getInt(2));
+                    final int end = graph.getVertexIndex(rs.getInt(3));
+                    final Geometry geometry = (Geometry) rs.getObject(4);
+                    if (start == -1 || end == -1 || geometry == null || geometry.isEmpty()) {
+                        continue;
+                    }
+                    final int edgeID = rs.getInt(1);
+                    final double forwardWeight = getArcWeight(graph, start, end, edgeID);
+                    final double backwardWeight = getArcWeight(graph, end, start, edgeID);
+                    if (forwardWeight < Double.POSITIVE_INFINITY || backwardWeight < Double.POSITIVE_INFINITY) {
+                        shapes.add(new EdgeShape(start, end, forwardWeight, backwardWeight,
+                                orient(geometry.getCoordinates(), start, end, x, y)));
+                    }
+                }
+            } finally {
+                rs.close();
+            }
+        } finally {
+            st.close();
+        }
+        return shapes;
+    }
+
+    /**
+     * @return The smallest weight of the arcs of the edge from the source to
+     * the target, infinity if there is none
+     */
+    private static double getArcWeight(CSRGraph graph, int source, int target, int edgeID) {
+        double weight = Double.POSITIVE_INFINITY;
+        final int end = graph.getFirstArc(source + 1);
+        for (int arc = graph.getFirstArc(source); arc < end; arc++) {
+            if (graph.getArcTarget(arc) == target && Math.abs(graph.getArcEdgeId(arc)) == edgeID) {
+                weight = Math.min(weight, graph.getArcWeight(arc));
+            }
+        }
+        return weight;
+    }
+
+    /**
+     * @return The coordinates from the start vertex to the end vertex. An edge
+     * oriented by slope may start at the last coordinate of its geometry.
+     */
+    private static Coordinate[] orient(Coordinate[] coordinates, int start, int end, double[] x, double[] y) {
+        if (Double.isNaN(x[start]) || Double.isNaN(x[end])) {
+            return coordinates;
+        }
+        final Coordinate first = coordinates[0];
+        final Coordinate last = coordinates[coordinates.length - 1];
+        final double forward = distance(first, x[start], y[start]) + distance(last, x[end], y[end]);
+        final double backward = distance(first, x[end], y[end]) + distance(last, x[start], y[start]);
+        if (backward < forward) {
+            final Coordinate[] reversed = new Coordinate[coordinates.length];
+            for (int i = 0; i < coordinates.length; i++) {
+                reversed[i] = coordinates[coordinates.length - 1 - i];
+            }
+            return reversed;
+        }
+        return coordinates;
+    }
+
+    private static double distance(Coordinate coordinate, double x, double y) {
+        return Math.hypot(coordinate.x - x, coordinate.y - y);
+    }
+
+    /**
+     * Compute the bands of each source. The sources are distributed among
+     * worker threads sharing the graph and the edge geometries.
+     *
+     * @return bands[i][l], band of sources[i] up to levels[l], null if empty
+     * @throws SQLException If the computation has been interrupted
+     */
+    private static Geometry[][] computeBands(CSRGraph graph, List<EdgeShape> shapes, int[] sources,
+                                             double[] levels, double maxSide, GeometryFactory factory)
+            throws SQLException {
+        final Geometry[][] bands = new Geometry[sources.length][];
+        final AtomicInteger nextSource = new AtomicInteger();
+        final int threadCount = Math.min(Runtime.getRuntime().availableProcessors(), sources.length);
+        if (threadCount <= 1) {
+            new IsochroneWorker(graph, shapes, sources, levels, maxSide, factory, bands, nextSource).run();
+            return bands;
+        }
+        ExecutorService executorService = Executors.newFixedThreadPool(threadCount);
+        try {
+            List<Future<?>> workers = new ArrayList<Future<?>>(threadCount);
+            for (int i = 0; i < threadCount; i++) {
+                workers.add(executorService.submit(
+                        new IsochroneWorker(graph, shapes, sources, levels, maxSide, factory, bands, nextSource)));
+            }
+            for (Future<?> worker : workers) {
+                worker.get();
+            }
+        } catch (InterruptedException ex) {
+            throw new SQLException(ex);
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) ex.getCause();
+            }
+            throw new SQLException(ex.getCause());
+        } finally {
+            executorService.shutdownNow();
+        }
+        return bands;
+    }
+
+    /**
+     * Edge geometry oriented from the start vertex to the end vertex, with
+     * the weight of the arcs that follow it in each direction.
+     */
+    private static class EdgeShape {
+        private final int start;
+        private final int end;
+        // Infinity if the edge cannot be followed in this direction
+        private final double forwardWeight;
+        private final double backwardWeight;
+        private final Coordinate[] coordinates;
+        // Position of each coordinate, from 0 at the start vertex to 1 at the end vertex
+        private final double[] positions;
+
+        EdgeShape(int start, int end, double forwardWeight, double backwardWeight, Coordinate[] coordinates) {
+            this.start = start;
+            this.end = end;
+            this.forwardWeight = forwardWeight;
+            this.backwardWeight = backwardWeight;
+            this.coordinates = coordinates;
+            positions = new double[coordinates.length];
+            for (int i = 1; i < coordinates.length; i++) {
+                positions[i] = positions[i - 1] + coordinates[i - 1].distance(coordinates[i]);
+            }
+            final double length = positions[coordinates.length - 1];
+            if (length > 0) {
+                for (int i = 1; i < coordinates.length; i++) {
+                    positions[i] /= length;
+                }
+            }
+        }
+    }
+
+    /**
+     * Takes the next source until all the sources have been processed.
+     */
+    private static class IsochroneWorker implements Runnable {
+        private final List<EdgeShape> shapes;
+        private final int[] sources;
+        private final double[] levels;
+        private final List<Double> levelList;
+        private final double maxSide;
+        private final GeometryFactory factory;
+        private final Geometry[][] bands;
+        private final AtomicInteger nextSource;
+        private final DijkstraSearch search;
+        // Distance of each sampled point, the smallest one if several edges share the point
+        private final Map<Coordinate, Double> pointDistances = new HashMap<Coordinate, Double>();
+
+        IsochroneWorker(CSRGraph graph, List<EdgeShape> shapes, int[] sources, double[] levels, double maxSide,
+                        GeometryFactory factory, Geometry[][] bands, AtomicInteger nextSource) {
+            this.shapes = shapes;
+            this.sources = sources;
+            this.levels = levels;
+            this.maxSide = maxSide;
+            this.factory = factory;
+            this.bands = bands;
+            this.nextSource = nextSource;
+            levelList = new ArrayList<Double>(levels.length);
+            for (double level : levels) {
+                levelList.add(level);
+            }
+            search = new DijkstraSearch(graph);
+        }
+
+        @Override
+        public void run() {
+            for (int i = nextSource.getAndIncrement(); i < sources.length && !Thread.currentThread().isInterrupted();
+                 i = nextSource.getAndIncrement()) {
+                bands[i] = computeBands(sources[i]);
+            }
+        }
+
+        private Geometry[] computeBands(int source) {
+            final double maxLevel = levels[levels.length - 1];
+            search.search(source, null, maxLevel);
+            pointDistances.clear();
+            for (EdgeShape shape : shapes) {
+                sample(shape, search.getDistance(shape.start), search.getDistance(shape.end), maxLevel);
+            }
+            final Geometry[] sourceBands = new Geometry[levels.length];
+            if (pointDistances.size() < 3) {
+                return sourceBands;
+            }
+            // The distance is stored as z, which the triangulation keeps
+            final Coordinate[] points = new Coordinate[pointDistances.size()];
+            int i = 0;
+            for (Map.Entry<Coordinate, Double> entry : pointDistances.entrySet()) {
+                points[i++] = new Coordinate(entry.getKey().x, entry.getKey().y, entry.getValue());
+            }
+            final DelaunayData delaunayData = new DelaunayData();
+            delaunayData.put(factory.createMultiPoint(points), DelaunayData.MODE.DELAUNAY);
+            delaunayData.triangulate();
+            final MultiPolygon triangles = delaunayData.getTriangles();
+            final List<List<Polygon>> parts = new ArrayList<List<Polygon>>(levels.length);
+            for (int l = 0; l < levels.length; l++) {
+                parts.add(new ArrayList<Polygon>());
+            }
+            for (int t = 0; t < triangles.getNumGeometries(); t++) {
+                final Coordinate[] vertices = triangles.getGeometryN(t).getCoordinates();
+                if (vertices[0].distance(vertices[1]) > maxSide || vertices[1].distance(vertices[2]) > maxSide
+                        || vertices[2].distance(vertices[0]) > maxSide) {
+                    continue;
+                }
+                final TriMarkers triangle = new TriMarkers(vertices[0], vertices[1], vertices[2],
+                        vertices[0].z, vertices[1].z, vertices[2].z);
+                for (Map.Entry<Short, Deque<TriMarkers>> level
+                        : Contouring.processTriangle(triangle, levelList).entrySet()) {
+                    for (TriMarkers part : level.getValue()) {
+                        final Polygon polygon = factory.createPolygon(new Coordinate[]{
+                                new Coordinate(part.p0.x, part.p0.y), new Coordinate(part.p1.x, part.p1.y),
+                                new Coordinate(part.p2.x, part.p2.y), new Coordinate(part.p0.x, part.p0.y)});
+                        if (polygon.getArea() > 0) {
+                            parts.get(level.getKey()).add(polygon);
+                        }
+                    }
+                }
+            }
+            for (int l = 0; l < levels.length; l++) {
+                if (!parts.get(l).isEmpty()) {
+                    sourceBands[l] = CascadedPolygonUnion.union(parts.get(l));
+                }
+            }
+            return sourceBands;
+        }
+
+        /**
+         * Sample the distance along an edge whose start or end vertex is
+         * within the largest cut-off. The distance is linear between the
+         * sampled points: the edge coordinates, the points where an edge
+         * followed in both directions is as far from both ends, and the
+         * points where the distance crosses a cut-off.
+         */
+        private void sample(EdgeShape shape, double startDistance, double endDistance, double maxLevel) {
+            final boolean fromStart = startDistance <= maxLevel && shape.forwardWeight < Double.POSITIVE_INFINITY;
+            final boolean fromEnd = endDistance <= maxLevel && shape.backwardWeight < Double.POSITIVE_INFINITY;
+            if (!fromStart && !fromEnd) {
+                return;
+            }
+            // Position where the distances from both ends are equal
+            final double middle = (endDistance + shape.backwardWeight - startDistance)
+                    / (shape.forwardWeight + shape.backwardWeight);
+            final Coordinate[] coordinates = shape.coordinates;
+            final double[] positions = shape.positions;
+            for (int i = 0; i < coordinates.length - 1; i++) {
+                final double a = positions[i];
+                final double b = positions[i + 1];
+                addPoint(coordinates[i], distanceAt(shape, startDistance, endDistance, a));
+                if (a < middle && middle < b) {
+                    samplePiece(shape, startDistance, endDistance, i, a, middle);
+                    addPoint(interpolate(coordinates, positions, i, middle),
+                            distanceAt(shape, startDistance, endDistance, middle));
+                    samplePiece(shape, startDistance, endDistance, i, middle, b);
+                } else {
+                    samplePiece(shape, startDistance, endDistance, i, a, b);
+                }
+            }
+            addPoint(coordinates[coordinates.length - 1], distanceAt(shape, startDistance, endDistance, 1));
+        }
+
+        /**
+         * Add the points where the distance crosses a cut-off between two
+         * positions of the segment i, the distance being linear in between.
+         */
+        private void samplePiece(EdgeShape shape, double startDistance, double endDistance, int i,
+                                 double a, double b) {
+            final double distanceA = distanceAt(shape, startDistance, endDistance, a);
+            final double distanceB = distanceAt(shape, startDistance, endDistance, b);
+            if (!(b > a) || distanceA == distanceB) {
+                return;
+            }
+            for (double level : levels) {
+                if ((distanceA < level && level < distanceB) || (distanceB < level && level < distanceA)) {
+                    final double position = a + (level - distanceA) / (distanceB - distanceA) * (b - a);
+                    addPoint(interpolate(shape.coordinates, shape.positions, i, position), level);
+                }
+            }
+        }
+
+        /**
+         * @return The distance from the source at the given position of the edge
+         */
+        private static double distanceAt(EdgeShape shape, double startDistance, double endDistance, double position) {
+            final double fromStart = shape.forwardWeight < Double.POSITIVE_INFINITY
+                    ? startDistance + position * shape.forwardWeight : Double.POSITIVE_INFINITY;
+            final double fromEnd = shape.backwardWeight < Double.POSITIVE_INFINITY
+                    ? endDistance + (1 - position) * shape.backwardWeight : Double.POSITIVE_INFINITY;
+            return Math.min(fromStart, fromEnd);
+        }
+
+        private static Coordinate interpolate(Coordinate[] coordinates, double[] positions, int i, double position) {
+            final Coordinate a = coordinates[i];
+            final Coordinate b = coordinates[i + 1];
+            final double ratio = (position - positions[i]) / (positions[i + 1] - positions[i]);
+            return new Coordinate(a.x + ratio * (b.x - a.x), a.y + ratio * (b.y - a.y));
+        }
+
+        private void addPoint(Coordinate coordinate, double distance) {
+            if (distance == Double.POSITIVE_INFINITY) {
+                return;
+            }
+            final Coordinate key = new Coordinate(coordinate.x, coordinate.y);
+            final Double previous = pointDistances.get(key);
+            if (previous == null || distance < previous) {
+                pointDistances.put(key, distance);
+            }
+        }
+    }
+
+    /**
+     * Return a new {@link org.h2.tools.SimpleResultSet} with THE_GEOM, SOURCE
+     * and CUTOFF columns.
+     * @return a new {@link org.h2.tools.SimpleResultSet} with THE_GEOM, SOURCE
+     * and CUTOFF columns
+     */
+    private static SimpleResultSet prepareResultSet() {
+        SimpleResultSet output = new SimpleResultSet();
+        output.addColumn(THE_GEOM, Types.JAVA_OBJECT, "GEOMETRY", 0, 0);
+        output.addColumn(SOURCE, Types.INTEGER, 10, 0);
+        output.addColumn(CUTOFF, Types.DOUBLE, 10, 0);
+        return output;
+    }
+}
@@ -22,7 +22,10 @@ package org.h2gis.network.functions;
 import com.vividsolutions.jts.geom.Geometry;
 
 import java.sql.*;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -52,6 +55,9 @@ import org.javanetworkanalyzer.model.KeyedGraph;
  */
 public class ST_ShortestPath extends GraphFunction implements ScalarFunction {
 
+    // Maximum number of edge ids in the IN list of a geometry query
+    private static final int EDGE_ID_BATCH_SIZE = 1000;
+
     private int globalID = 1;
 
     public static final String NO_GEOM_FIELD_ERROR = "The input table must contain a geometry field.";
@@ -61,6 +67,7 @@ public class ST_ShortestPath extends GraphFunction implements ScalarFunction {
             "Possible signatures:\n" +
             "* `ST_ShortestPath('input_edges', 'o[ - eo]', s, d)`  - One-to-One\n" +
             "* `ST_ShortestPath('input_edges', 'o[ - eo]', 'w', s, d)`  - One-to-One weighted\n" +
+            "* `ST_ShortestPath('input_edges', 'o[ - eo]', 'w', s, d, 'm')`  - One-to-One with a search method\n" +
             "\n" +
             "where\n" +
             "* `input_edges` = Edges table produced by `ST_Graph` from table `input`\n" +
@@ -69,7 +76,13 @@ public class ST_ShortestPath extends GraphFunction implements ScalarFunction {
             "  if global orientation is directed or reversed.\n" +
             "* `w` = Name of column containing edge weights as doubles\n" +
             "* `s` = Source vertex id\n" +
-            "* `d` = Destination vertex id\n";
+            "* `d` = Destination vertex id\n" +
+            "* `m` = Search method: 'dijkstra' (default, returns all the shortest paths),\n" +
+            "  'bidirectional', 'astar' (A* guided by the node coordinates of the\n" +
+            "  `input_nodes` table or of the edge geometries) or 'ch' (contraction\n" +
+            "  hierarchy built by `ST_GraphPreprocess` with the same orientation and\n" +
+            "  weight). These methods return a single shortest path. `w` may be NULL for\n" +
+            "  unweighted graphs.\n";
 
     /**
      * Constructor
@@ -119,6 +132,63 @@ public class ST_ShortestPath extends GraphFunction implements ScalarFunction {
         return oneToOne(connection, inputTable, orientation, weight, source, destination);
     }
 
+    /**
+     * @param connection  connection
+     * @param inputTable  Edges table produced by ST_Graph
+     * @param orientation Orientation string
+     * @param weight      Weight, null for unweighted graphs
+     * @param source      Source vertex id
+     * @param destination Destination vertex id
+     * @param method      Search method: dijkstra, bidirectional, astar or ch
+     * @return Shortest path
+     * @throws SQLException
+     */
+    public static ResultSet getShortestPath(Connection connection,
+                                            String inputTable,
+                                            String orientation,
+                                            String weight,
+                                            int source,
+                                            int destination,
+                                            String method) throws SQLException {
+        final GraphFunctionParser.SearchMethod searchMethod = GraphFunctionParser.parseSearchMethod(method);
+        if (searchMethod == GraphFunctionParser.SearchMethod.DIJKSTRA) {
+            return oneToOne(connection, inputTable, orientation, weight, source, destination);
+        }
+        final TableLocation tableName = TableUtilities.parseInputTable(connection, inputTable);
+        final String firstGeometryField =
+                getFirstGeometryField(connection, tableName);
+        final boolean containsGeomField = firstGeometryField != null;
+        final SimpleResultSet output = prepareResultSet(containsGeomField);
+        if (isColumnListConnection(connection)) {
+            return output;
+        }
+        final PointToPointSearch search =
+                preparePointToPointSearch(connection, inputTable, orientation, weight, searchMethod);
+        final double distance = search.search(getVertexIndex(search, source), getVertexIndex(search, destination));
+        if (distance != Double.POSITIVE_INFINITY) {
+            final Set<Integer> pathEdgeIDs = new HashSet<Integer>();
+            for (int i = 0; i < search.getPathLength(); i++) {
+                pathEdgeIDs.add(Math.abs(search.getPathEdgeId(i)));
+            }
+            final Map<Integer, Geometry> edgeGeometryMap =
+                    getEdgeGeometryMap(connection, tableName, firstGeometryField, pathEdgeIDs);
+            // Same numbering as the Dijkstra output: from the destination
+            // back to the source, in a single path.
+            for (int i = search.getPathLength() - 1, localID = 1; i >= 0; i--, localID++) {
+                final int edgeID = search.getPathEdgeId(i);
+                final int start = search.getVertexId(search.getPathStart(i));
+                final int end = search.getVertexId(search.getPathEnd(i));
+                if (containsGeomField) {
+                    output.addRow(edgeGeometryMap.get(Math.abs(edgeID)), edgeID, 1, localID,
+                            start, end, search.getPathWeight(i));
+                } else {
+                    output.addRow(edgeID, 1, localID, start, end, search.getPathWeight(i));
+                }
+            }
+        }
+        return output;
+    }
+
     private static ResultSet oneToOne(Connection connection,
                                       String inputTable,
                                       String orientation,
@@ -145,8 +215,10 @@ public class ST_ShortestPath extends GraphFunction implements ScalarFunction {
             // Need to create an object for the globalID recursion.
             final ST_ShortestPath f = new ST_ShortestPath();
             if (containsGeomField) {
+                final Set<Integer> pathEdgeIDs = new HashSet<Integer>();
+                collectPredEdgeIDs(graph, vDestination, pathEdgeIDs, new HashSet<VDijkstra>());
                 final Map<Integer, Geometry> edgeGeometryMap =
-                        getEdgeGeometryMap(connection, tableName, firstGeometryField);
+                        getEdgeGeometryMap(connection, tableName, firstGeometryField, pathEdgeIDs);
                 f.addPredEdges(graph, vDestination, output, edgeGeometryMap, 1);
             } else {
                 f.addPredEdges(graph, vDestination, output, 1);
@@ -155,6 +227,22 @@ public class ST_ShortestPath extends GraphFunction implements ScalarFunction {
         return output;
     }
 
+    /**
+     * Collect the ids of the edges of the shortest path(s) to the given vertex.
+     */
+    private static void collectPredEdgeIDs(KeyedGraph<VDijkstra, Edge> graph, VDijkstra dest,
+                                           Set<Integer> edgeIDs, Set<VDijkstra> visited) {
+        if (!visited.add(dest)) {
+            return;
+        }
+        for (Edge e : dest.getPredecessorEdges()) {
+            edgeIDs.add(Math.abs(e.getID()));
+            final VDijkstra edgeDestination = graph.getEdgeTarget(e);
+            collectPredEdgeIDs(graph, edgeDestination.equals(dest) ? graph.getEdgeSource(e) : edgeDestination,
+                    edgeIDs, visited);
+        }
+    }
+
     private void addPredEdges(KeyedGraph<VDijkstra, Edge> graph, VDijkstra dest, SimpleResultSet output,
                               Map<Integer, Geometry> edgeGeomMap, int localID) throws SQLException {
         // Rebuild the shortest path(s). (Yes, there could be more than
@@ -290,4 +378,55 @@ public class ST_ShortestPath extends GraphFunction implements ScalarFunction {
         output.addColumn(WEIGHT, Types.DOUBLE, 10, 0);
         return output;
     }
+
+    /**
+     * Return a map of the given edge ids to edge geometries, or null if the
+     * input table contains no geometry fields. Only the geometries of these
+     * edges are read.
+     *
+     * @param connection         Connection
+     * @param tableName          TableLocation
+     * @param firstGeometryField First geometry field of the table
+     * @param edgeIDs            Edge ids
+     * @return A map of edge ids to edge geometries, or null if the input table
+     * contains no geometry fields
+     * @throws SQLException
+     */
+    protected static Map<Integer, Geometry> getEdgeGeometryMap(Connection connection,
+                                                               TableLocation tableName,
+                                                               String firstGeometryField,
+                                                               Collection<Integer> edgeIDs)
+            throws SQLException {
+        if (firstGeometryField == null) {
+            return null;
+        }
+        final Map<Integer, Geometry> edgeGeomMap = new HashMap<Integer, Geometry>();
+        final List<Integer> ids = new ArrayList<Integer>(edgeIDs);
+        for (int from = 0; from < ids.size(); from += EDGE_ID_BATCH_SIZE) {
+            final List<Integer> batch = ids.subList(from, Math.min(ids.size(), from + EDGE_ID_BATCH_SIZE));
+            final StringBuilder query = new StringBuilder("SELECT " + EDGE_ID + ", " + firstGeometryField
+                    + " FROM " + tableName + " WHERE " + EDGE_ID + " IN (");
+            for (int i = 0; i < batch.size(); i++) {
+                query.append(i == 0 ? "?" : ", ?");
+            }
+            query.append(')');
+            final PreparedStatement pst = connection.prepareStatement(query.toString());
+            try {
+                for (int i = 0; i < batch.size(); i++) {
+                    pst.setInt(i + 1, batch.get(i));
+                }
+                final ResultSet resultSet = pst.executeQuery();
+                try {
+                    while (resultSet.next()) {
+                        edgeGeomMap.put(resultSet.getInt(1), (Geometry) resultSet.getObject(2));
+                    }
+                } finally {
+                    resultSet.close();
+                }
+            } finally {
+                pst.close();
+            }
+        }
+        return edgeGeomMap;
+    }
 }
@@ -21,10 +21,18 @@ package org.h2gis.network.functions;
 
 
 import java.sql.*;
-import java.util.HashMap;
-import java.util.HashSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.h2.tools.SimpleResultSet;
 import org.h2.value.Value;
 import org.h2.value.ValueInt;
@@ -35,14 +43,12 @@ import static org.h2gis.network.functions.GraphConstants.DISTANCE;
 import static org.h2gis.network.functions.GraphConstants.SOURCE;
 import static org.h2gis.utilities.TableUtilities.isColumnListConnection;
 import org.h2gis.utilities.JDBCUtilities;
-import org.javanetworkanalyzer.alg.Dijkstra;
-import org.javanetworkanalyzer.data.VDijkstra;
-import org.javanetworkanalyzer.model.Edge;
-import org.javanetworkanalyzer.model.KeyedGraph;
 
 /**
- * Calculates the length(s) of shortest path(s) between vertices in a JGraphT
- * graph produced from the input_edges table produced by ST_Graph.
+ * Calculates the length(s) of shortest path(s) between vertices in a graph
+ * produced from the input_edges table produced by ST_Graph. When there are
+ * several sources, they are processed in parallel on a shared read-only
+ * {@link CSRGraph}.
  *
  * @author Adam Gouge
  */
@@ -63,6 +69,9 @@ public class ST_ShortestPathLength extends GraphFunction implements ScalarFuncti
             "* `ST_ShortestPathLength('input_edges', 'o[ - eo]', 'w', 'sdt')` - Many-to-Many weighted\n" +
             "* `ST_ShortestPathLength('input_edges', 'o[ - eo]', 'w', s, d)` - One-to-One weighted\n" +
             "* `ST_ShortestPathLength('input_edges', 'o[ - eo]', 'w', s, 'ds')` - One-to-Several weighted\n" +
+            "* `ST_ShortestPathLength('input_edges', 'o[ - eo]', 'w', s, d, 'm')` - One-to-One with a search method\n" +
+            "* `ST_ShortestPathLength('input_edges', 'o[ - eo]', 'w', s, 'ds', 'm')` - One-to-Several with a search method\n" +
+            "* `ST_ShortestPathLength('input_edges', 'o[ - eo]', 'w', 'st', 'dt', 'm')` - Many-to-Many with a search method\n" +
             "\n" +
             "where\n" +
             "* `input_edges` = Edges table produced by `ST_Graph` from table `input`\n" +
@@ -74,7 +83,15 @@ public class ST_ShortestPathLength extends GraphFunction implements ScalarFuncti
             "* `d` = Destination vertex id\n" +
             "* `sdt` = Source-Destination table name (must contain columns\n" +
             "  " + SOURCE + " and " + DESTINATION + " containing integer vertex ids)\n" +
-            "* `ds` = Comma-separated Destination string ('dest1, dest2, ...')\n";
+            "* `ds` = Comma-separated Destination string ('dest1, dest2, ...')\n" +
+            "* `st` = Source table name, `dt` = Destination table name (integer vertex\n" +
+            "  ids in the first column)\n" +
+            "* `m` = Search method: 'dijkstra' (default), 'bidirectional', 'astar'\n" +
+            "  (A* guided by the node coordinates of the `input_nodes` table or of the\n" +
+            "  edge geometries) or 'ch' (contraction hierarchy built by\n" +
+            "  `ST_GraphPreprocess` with the same orientation and weight). Only 'dijkstra'\n" +
+            "  and 'ch' accept several sources or destinations. `w` may be NULL for\n" +
+            "  unweighted graphs.\n";
 
 
     /**
@@ -243,6 +260,110 @@ public class ST_ShortestPathLength extends GraphFunction implements ScalarFuncti
         }
     }
 
+    /**
+     * Calculate distances with the given search method for
+     * <ol>
+     * <li> One-to-One: <code>(arg4, arg5) = (s, d)</code>,</li>
+     * <li> One-to-Several: <code>(arg4, arg5) = (s, ds)</code>,</li>
+     * <li> Many-to-Many: <code>(arg4, arg5) = (st, dt)</code>.</li>
+     * </ol>
+     * The bidirectional and A* searches only compute One-to-One distances.
+     *
+     * @param connection  Connection
+     * @param inputTable  Edges table produced by ST_Graph
+     * @param orientation Orientation string
+     * @param weight      Weight column name, null for unweighted graphs
+     * @param arg4        Source vertex id -OR- Source table
+     * @param arg5        Destination vertex id -OR- Destination string -OR- Destination table
+     * @param method      Search method: dijkstra, bidirectional, astar or ch
+     * @return Distances table
+     * @throws SQLException
+     */
+    public static ResultSet getShortestPathLength(Connection connection,
+                                                  String inputTable,
+                                                  String orientation,
+                                                  String weight,
+                                                  Value arg4,
+                                                  Value arg5,
+                                                  String method) throws SQLException {
+        if (isColumnListConnection(connection)) {
+            return prepareResultSet();
+        }
+        final GraphFunctionParser.SearchMethod searchMethod = GraphFunctionParser.parseSearchMethod(method);
+        if (searchMethod == GraphFunctionParser.SearchMethod.DIJKSTRA) {
+            return getShortestPathLength(connection, inputTable, orientation, weight, arg4, arg5);
+        }
+        if (searchMethod == GraphFunctionParser.SearchMethod.CONTRACTION_HIERARCHY) {
+            return contractionHierarchy(connection, inputTable, orientation, weight, arg4, arg5);
+        }
+        if (!(arg4 instanceof ValueInt) || !(arg5 instanceof ValueInt)) {
+            throw new IllegalArgumentException("The " + method + " search method only computes "
+                    + "One-to-One distances.");
+        }
+        final int source = arg4.getInt();
+        final int destination = arg5.getInt();
+        final SimpleResultSet output = prepareResultSet();
+        final PointToPointSearch search =
+                preparePointToPointSearch(connection, inputTable, orientation, weight, searchMethod);
+        output.addRow(source, destination,
+                search.search(getVertexIndex(search, source), getVertexIndex(search, destination)));
+        return output;
+    }
+
+    private static ResultSet contractionHierarchy(Connection connection,
+                                                  String inputTable,
+                                                  String orientation,
+                                                  String weight,
+                                                  Value arg4,
+                                                  Value arg5) throws SQLException {
+        final SimpleResultSet output = prepareResultSet();
+        final ContractionHierarchy.Search search = new ContractionHierarchy.Search(
+                prepareContractionHierarchy(connection, inputTable, orientation, weight));
+        final int[] sources;
+        final int[] destinations;
+        if (arg4 instanceof ValueInt) {
+            sources = new int[]{getVertexIndex(search, arg4.getInt())};
+            if (arg5 instanceof ValueInt) {
+                destinations = new int[]{getVertexIndex(search, arg5.getInt())};
+            } else if (arg5 instanceof ValueString) {
+                final Set<Integer> destSet = new LinkedHashSet<Integer>();
+                for (int d : GraphFunctionParser.parseDestinationsString(arg5.getString())) {
+                    destSet.add(getVertexIndex(search, d));
+                }
+                destinations = toArray(destSet);
+            } else {
+                throw new IllegalArgumentException(ARG_ERROR + arg5);
+            }
+        } else if (arg4 instanceof ValueString) {
+            if (!(arg5 instanceof ValueString)) {
+                throw new IllegalArgumentException(ARG_ERROR + arg5);
+            }
+            final Statement st = connection.createStatement();
+            try {
+                destinations = toArray(getSet(st, search, arg5.getString()));
+                sources = toArray(getSet(st, search, arg4.getString()));
+            } finally {
+                st.close();
+            }
+        } else {
+            throw new IllegalArgumentException(ARG_ERROR + arg4);
+        }
+        if (sources.length == 1 && destinations.length == 1) {
+            output.addRow(search.getVertexId(sources[0]), search.getVertexId(destinations[0]),
+                    search.search(sources[0], destinations[0]));
+        } else {
+            // The backward searches of the destinations are shared by all the sources
+            final double[][] distances = search.distances(sources, destinations);
+            for (int i = 0; i < sources.length; i++) {
+                final int sourceID = search.getVertexId(sources[i]);
+                for (int j = 0; j < destinations.length; j++) {
+                    output.addRow(sourceID, search.getVertexId(destinations[j]), distances[i][j]);
+                }
+            }
+        }
+        return output;
+    }
+
     private static ResultSet oneToOne(Connection connection,
                                      String inputTable,
                                      String orientation,
@@ -250,13 +371,12 @@ public class ST_ShortestPathLength extends GraphFunction implements ScalarFuncti
                                      int source,
                                      int destination) throws SQLException {
         final SimpleResultSet output = prepareResultSet();
-        final KeyedGraph<VDijkstra, Edge> graph =
-                prepareGraph(connection, inputTable, orientation, weight,
-                        VDijkstra.class, Edge.class);
+        final CSRGraph graph = prepareCSRGraph(connection, inputTable, orientation, weight);
         // 7: (o, w, s, d)
-        final double distance = new Dijkstra<VDijkstra, Edge>(graph)
-                .oneToOne(graph.getVertex(source), graph.getVertex(destination));
-        output.addRow(source, destination, distance);
+        final int destinationIndex = getVertexIndex(graph, destination);
+        final DijkstraSearch search = new DijkstraSearch(graph);
+        search.search(getVertexIndex(graph, source), new int[]{destinationIndex}, Double.POSITIVE_INFINITY);
+        output.addRow(source, destination, search.getDistance(destinationIndex));
         return output;
     }
 
@@ -266,14 +386,12 @@ public class ST_ShortestPathLength extends GraphFunction implements ScalarFuncti
                                       String weight,
                                       int source) throws SQLException {
         final SimpleResultSet output = prepareResultSet();
-        final KeyedGraph<VDijkstra, Edge> graph =
-                prepareGraph(connection, inputTable, orientation, weight,
-                        VDijkstra.class, Edge.class);
+        final CSRGraph graph = prepareCSRGraph(connection, inputTable, orientation, weight);
         // 5: (o, w, s)
-        final Map<VDijkstra,Double> distances = new Dijkstra<VDijkstra, Edge>(graph)
-                        .oneToMany(graph.getVertex(source), graph.vertexSet());
-        for (Map.Entry<VDijkstra, Double> e : distances.entrySet()) {
-            output.addRow(source, e.getKey().getID(), e.getValue());
+        final double[] distances = computeDistances(graph,
+                new int[]{getVertexIndex(graph, source)}, new int[1][])[0];
+        for (int v = 0; v < distances.length; v++) {
+            output.addRow(source, graph.getVertexId(v), distances[v]);
         }
         return output;
     }
@@ -284,28 +402,22 @@ public class ST_ShortestPathLength extends GraphFunction implements ScalarFuncti
                                         String weight,
                                         String sourceDestinationTable) throws SQLException {
         final SimpleResultSet output = prepareResultSet();
-        final KeyedGraph<VDijkstra, Edge> graph =
-                prepareGraph(connection, inputTable, orientation, weight,
-                        VDijkstra.class, Edge.class);
+        final CSRGraph graph = prepareCSRGraph(connection, inputTable, orientation, weight);
         final Statement st = connection.createStatement();
         try {
             // Prepare the source-destination map from the source-destination table.
-            Map<VDijkstra, Set<VDijkstra>> sourceDestinationMap =
+            Map<Integer, Set<Integer>> sourceDestinationMap =
                     prepareSourceDestinationMap(st, sourceDestinationTable, graph);
-
-            // Reusable Dijkstra object.
-            final Dijkstra<VDijkstra, Edge> dijkstra = new Dijkstra<VDijkstra, Edge>(graph);
-
-            // 6: (o, w, sdt). Do One-to-Many many times and store the results.
-            for (Map.Entry<VDijkstra, Set<VDijkstra>> sourceToDestSetMap : sourceDestinationMap.entrySet()) {
-                Map<VDijkstra, Double> distances =
-                        dijkstra.oneToMany(sourceToDestSetMap.getKey(),
-                                           sourceToDestSetMap.getValue());
-                for (Map.Entry<VDijkstra, Double> destToDistMap : distances.entrySet()) {
-                    output.addRow(sourceToDestSetMap.getKey().getID(),
-                            destToDistMap.getKey().getID(), destToDistMap.getValue());
-                }
+            final int[] sources = new int[sourceDestinationMap.size()];
+            final int[][] targets = new int[sources.length][];
+            int i = 0;
+            for (Map.Entry<Integer, Set<Integer>> sourceToDestSetMap : sourceDestinationMap.entrySet()) {
+                sources[i] = sourceToDestSetMap.getKey();
+                targets[i] = toArray(sourceToDestSetMap.getValue());
+                i++;
             }
+            // 6: (o, w, sdt). Do One-to-Many for each source and store the results.
+            addRows(output, graph, sources, targets, computeDistances(graph, sources, targets));
         } finally {
             st.close();
         }
@@ -320,22 +432,14 @@ public class ST_ShortestPathLength extends GraphFunction implements ScalarFuncti
             String sourceTable,
             String destTable) throws SQLException {
         final SimpleResultSet output = prepareResultSet();
-        final KeyedGraph<VDijkstra, Edge> graph =
-                prepareGraph(connection, inputTable, orientation, weight,
-                        VDijkstra.class, Edge.class);
+        final CSRGraph graph = prepareCSRGraph(connection, inputTable, orientation, weight);
         final Statement st = connection.createStatement();
         try {
-            final Set<VDijkstra> destSet = getSet(st, graph, destTable);
-            final Set<VDijkstra> sourceSet = getSet(st, graph, sourceTable);
-            final Dijkstra<VDijkstra, Edge> dijkstra = new Dijkstra<VDijkstra, Edge>(graph);
-            for (VDijkstra source : sourceSet) {
-                Map<VDijkstra, Double> distances =
-                        dijkstra.oneToMany(source, destSet);
-                for (Map.Entry<VDijkstra, Double> destToDistMap : distances.entrySet()) {
-                    output.addRow(source.getID(),
-                            destToDistMap.getKey().getID(), destToDistMap.getValue());
-                }
-            }
+            final int[] destinations = toArray(getSet(st, graph, destTable));
+            final int[] sources = toArray(getSet(st, graph, sourceTable));
+            final int[][] targets = new int[sources.length][];
+            Arrays.fill(targets, destinations);
+            addRows(output, graph, sources, targets, computeDistances(graph, sources, targets));
         } finally {
             st.close();
         }
@@ -344,27 +448,49 @@ public class ST_ShortestPathLength extends GraphFunction implements ScalarFuncti
 
     /**
      * Puts the integers contained in the first column of the table in a Set of
-     * corresponding VDijkstra.
+     * corresponding vertex indices.
      *
      * @param st        Statement
      * @param graph     Graph
      * @param tableName Table
-     * @return Set of VDijkstra
+     * @return Set of vertex indices
      * @throws SQLException
      */
-    private static Set<VDijkstra> getSet(Statement st,
-            KeyedGraph<VDijkstra, Edge> graph, String tableName) throws SQLException {
+    private static Set<Integer> getSet(Statement st,
+            CSRGraph graph, String tableName) throws SQLException {
+        final Set<Integer> set = new LinkedHashSet<Integer>();
+        for (int vertexID : getIdSet(st, tableName)) {
+            set.add(getVertexIndex(graph, vertexID));
+        }
+        return set;
+    }
+
+    /**
+     * Puts the integers contained in the first column of the table in a Set of
+     * corresponding vertex indices of the search.
+     *
+     * @param st        Statement
+     * @param search    Point-to-point search
+     * @param tableName Table
+     * @return Set of vertex indices
+     * @throws SQLException
+     */
+    private static Set<Integer> getSet(Statement st,
+            PointToPointSearch search, String tableName) throws SQLException {
+        final Set<Integer> set = new LinkedHashSet<Integer>();
+        for (int vertexID : getIdSet(st, tableName)) {
+            set.add(getVertexIndex(search, vertexID));
+        }
+        return set;
+    }
+
+    private static Set<Integer> getIdSet(Statement st, String tableName) throws SQLException {
         final ResultSet intSet =
                 st.executeQuery("SELECT * FROM " + tableName);
         try {
-            final Set<VDijkstra> set = new HashSet<VDijkstra>();
+            final Set<Integer> set = new LinkedHashSet<Integer>();
             while (intSet.next()) {
-                final int vertexID = intSet.getInt(1);
-                final VDijkstra vertex = graph.getVertex(vertexID);
-                if (vertex == null) {
-                    throw new IllegalArgumentException("The graph does not contain vertex " + vertexID);
-                }
-                set.add(vertex);
+                set.add(intSet.getInt(1));
             }
             if (set.isEmpty()) {
                 throw new IllegalArgumentException("Table " + tableName + " was empty.");
@@ -382,25 +508,17 @@ public class ST_ShortestPathLength extends GraphFunction implements ScalarFuncti
                                           int source,
                                           String destString) throws SQLException {
         final SimpleResultSet output = prepareResultSet();
-        final KeyedGraph<VDijkstra, Edge> graph =
-                prepareGraph(connection, inputTable, orientation, weight,
-                        VDijkstra.class, Edge.class);
+        final CSRGraph graph = prepareCSRGraph(connection, inputTable, orientation, weight);
 
         final int[] destIDs = GraphFunctionParser.parseDestinationsString(destString);
-        Set<VDijkstra> destSet = new HashSet<VDijkstra>();
+        Set<Integer> destSet = new LinkedHashSet<Integer>();
         for (int d : destIDs)  {
-            final VDijkstra dest = graph.getVertex(d);
-            if (dest == null) {
-                throw new IllegalArgumentException("The graph does not contain vertex " + d);
-            }
-            destSet.add(dest);
+            destSet.add(getVertexIndex(graph, d));
         }
         // 8: (o, w, s, ds)
-        final Map<VDijkstra, Double> distances = new Dijkstra<VDijkstra, Edge>(graph)
-                .oneToMany(graph.getVertex(source), destSet);
-        for (Map.Entry<VDijkstra, Double> e : distances.entrySet()) {
-            output.addRow(source, e.getKey().getID(), e.getValue());
-        }
+        final int[] sources = new int[]{getVertexIndex(graph, source)};
+        final int[][] targets = new int[][]{toArray(destSet)};
+        addRows(output, graph, sources, targets, computeDistances(graph, sources, targets));
         return output;
     }
 
@@ -410,13 +528,13 @@ public class ST_ShortestPathLength extends GraphFunction implements ScalarFuncti
      *
      * @param sourceDestinationTable Source-Destination table name
      * @param graph                  Graph
-     * @return Source-Destination map
+     * @return Source-Destination map of vertex indices
      * @throws SQLException
      */
-    private static Map<VDijkstra, Set<VDijkstra>> prepareSourceDestinationMap(
+    private static Map<Integer, Set<Integer>> prepareSourceDestinationMap(
             Statement st,
             String sourceDestinationTable,
-            KeyedGraph<VDijkstra, Edge> graph) throws SQLException {
+            CSRGraph graph) throws SQLException {
         final ResultSet sourceDestinationRS =
                 st.executeQuery("SELECT " +
                         SOURCE + ", " + DESTINATION +
@@ -424,14 +542,14 @@ public class ST_ShortestPathLength extends GraphFunction implements ScalarFuncti
         try {
             // Make sure the source-destination table has columns named
             // SOURCE and DESTINATION. An SQLException is thrown if not.
-            Map<VDijkstra, Set<VDijkstra>> map = new HashMap<VDijkstra, Set<VDijkstra>>();
+            Map<Integer, Set<Integer>> map = new LinkedHashMap<Integer, Set<Integer>>();
             while (sourceDestinationRS.next()) {
-                final VDijkstra source = graph.getVertex(sourceDestinationRS.getInt(SOURCE_INDEX));
-                final VDijkstra destination = graph.getVertex(sourceDestinationRS.getInt(DESTINATION_INDEX));
-                Set<VDijkstra> targets = map.get(source);
+                final int source = getVertexIndex(graph, sourceDestinationRS.getInt(SOURCE_INDEX));
+                final int destination = getVertexIndex(graph, sourceDestinationRS.getInt(DESTINATION_INDEX));
+                Set<Integer> targets = map.get(source);
                 // Lazy initialize if the destinations set is null.
                 if (targets == null) {
-                    targets = new HashSet<VDijkstra>();
+                    targets = new LinkedHashSet<Integer>();
                     map.put(source, targets);
                 }
                 // Add the destination.
@@ -446,6 +564,112 @@ public class ST_ShortestPathLength extends GraphFunction implements ScalarFuncti
         }
     }
 
+    private static int[] toArray(Set<Integer> set) {
+        final int[] array = new int[set.size()];
+        int i = 0;
+        for (int value : set) {
+            array[i++] = value;
+        }
+        return array;
+    }
+
+    private static void addRows(SimpleResultSet output, CSRGraph graph, int[] sources, int[][] targets,
+                                double[][] distances) {
+        for (int i = 0; i < sources.length; i++) {
+            final int sourceID = graph.getVertexId(sources[i]);
+            for (int j = 0; j < targets[i].length; j++) {
+                output.addRow(sourceID, graph.getVertexId(targets[i][j]), distances[i][j]);
+            }
+        }
+    }
+
+    /**
+     * Compute the distances from each source to its targets. The sources are
+     * distributed among worker threads sharing the graph, each worker owns
+     * its own {@link DijkstraSearch}.
+     *
+     * @param graph   Graph
+     * @param sources Source vertex indices
+     * @param targets targets[i] holds the target vertex indices of sources[i],
+     *                or null for all the vertices
+     * @return distances[i][j], distance from sources[i] to targets[i][j], or to
+     * the vertex j if targets[i] is null
+     * @throws SQLException If the computation has been interrupted
+     */
+    static double[][] computeDistances(CSRGraph graph, int[] sources, int[][] targets) throws SQLException {
+        final double[][] distances = new double[sources.length][];
+        final AtomicInteger nextSource = new AtomicInteger();
+        final int threadCount = Math.min(Runtime.getRuntime().availableProcessors(), sources.length);
+        if (threadCount <= 1) {
+            new DistanceWorker(graph, sources, targets, distances, nextSource).run();
+            return distances;
+        }
+        ExecutorService executorService = Executors.newFixedThreadPool(threadCount);
+        try {
+            List<Future<?>> workers = new ArrayList<Future<?>>(threadCount);
+            for (int i = 0; i < threadCount; i++) {
+                workers.add(executorService.submit(
+                        new DistanceWorker(graph, sources, targets, distances, nextSource)));
+            }
+            for (Future<?> worker : workers) {
+                worker.get();
+            }
+        } catch (InterruptedException ex) {
+            throw new SQLException(ex);
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) ex.getCause();
+            }
+            throw new SQLException(ex.getCause());
+        } finally {
+            executorService.shutdownNow();
+        }
+        return distances;
+    }
+
+    /**
+     * Takes the next source until all the sources have been processed.
+     */
+    private static class DistanceWorker implements Runnable {
+        private final CSRGraph graph;
+        private final int[] sources;
+        private final int[][] targets;
+        private final double[][] distances;
+        private final AtomicInteger nextSource;
+
+        DistanceWorker(CSRGraph graph, int[] sources, int[][] targets, double[][] distances,
+                       AtomicInteger nextSource) {
+            this.graph = graph;
+            this.sources = sources;
+            this.targets = targets;
+            this.distances = distances;
+            this.nextSource = nextSource;
+        }
+
+        @Override
+        public void run() {
+            final DijkstraSearch search = new DijkstraSearch(graph);
+            for (int i = nextSource.getAndIncrement(); i < sources.length && !Thread.currentThread().isInterrupted();
+                 i = nextSource.getAndIncrement()) {
+                final int[] sourceTargets = targets[i];
+                search.search(sources[i], sourceTargets, Double.POSITIVE_INFINITY);
+                final double[] sourceDistances;
+                if (sourceTargets == null) {
+                    sourceDistances = new double[graph.getVertexCount()];
+                    for (int v = 0; v < sourceDistances.length; v++) {
+                        sourceDistances[v] = search.getDistance(v);
+                    }
+                } else {
+                    sourceDistances = new double[sourceTargets.length];
+                    for (int j = 0; j < sourceTargets.length; j++) {
+                        sourceDistances[j] = search.getDistance(sourceTargets[j]);
+                    }
+                }
+                distances[i] = sourceDistances;
+            }
+        }
+    }
+
     /**
      * Return a new {@link org.h2.tools.SimpleResultSet} with SOURCE,
      * DESTINATION and DISTANCE columns.
@@ -0,0 +1,106 @@
+/**
+ * H2GIS is a library that brings spatial support to the H2 Database Engine
+ * <http://www.h2database.com>. H2GIS is developed by CNRS
+ * <http://www.cnrs.fr/>.
+ *
+ * This code is part of the H2GIS project. H2GIS is free software; 
+ * you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation;
+ * version 3.0 of the License.
+ *
+ * H2GIS is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details <http://www.gnu.org/licenses/>.
+ *
+ *
+ * For more information, please consult: <http://www.h2gis.org/>
+ * or contact directly: info_at_h2gis.org
+ */
+
+package org.h2gis.network.functions;
+
+import java.util.Arrays;
+
+/**
+ * Binary min-heap of vertex indices used by the searches on a
+ * {@link CSRGraph}. Keys are never decreased in place: a vertex is pushed
+ * again with its new key and the outdated entries are skipped by the caller.
+ */
+final class VertexHeap {
+
+    private int[] vertices = new int[64];
+    private double[] keys = new double[64];
+    private int size = 0;
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    void clear() {
+        size = 0;
+    }
+
+    /**
+     * @return The vertex with the smallest key
+     */
+    int peekVertex() {
+        return vertices[0];
+    }
+
+    /**
+     * @return The smallest key, infinity if the heap is empty
+     */
+    double peekKey() {
+        return size == 0 ? Double.POSITIVE_INFINITY : keys[0];
+    }
+
+    void push(int vertex, double key) {
+        if (size == vertices.length) {
+            vertices = Arrays.copyOf(vertices, size * 2);
+            keys = Arrays.copyOf(keys, size * 2);
+        }
+        int i = size++;
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (keys[parent] <= key) {
+                break;
+            }
+            vertices[i] = vertices[parent];
+            keys[i] = keys[parent];
+            i = parent;
+        }
+        vertices[i] = vertex;
+        keys[i] = key;
+    }
+
+    /**
+     * Remove the vertex with the smallest key.
+     */
+    void pop() {
+        size--;
+        if (size == 0) {
+            return;
+        }
+        final int vertex = vertices[size];
+        final double key = keys[size];
+        int i = 0;
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= size) {
+                break;
+            }
+            if (child + 1 < size && keys[child + 1] < keys[child]) {
+                child++;
+            }
+            if (key <= keys[child]) {
+                break;
+            }
+            vertices[i] = vertices[child];
+            keys[i] = keys[child];
+            i = child;
+        }
+        vertices[i] = vertex;
+        keys[i] = key;
+    }
+}
@@ -363,6 +363,181 @@ public class GraphCreatorTest {
         }
     }
 
+    @Test
+    public void testCSRGraphWDO() throws SQLException {
+        final CSRGraph graph = new GraphCreator(connection,
+                "CORMEN_EDGES_ALL",
+                GraphFunctionParser.Orientation.DIRECTED, "edge_orientation", "weight").prepareCSRGraph();
+        assertEquals(5, graph.getVertexCount());
+        assertEquals(11, graph.getArcCount());
+        assertEquals(-1, graph.getVertexIndex(6));
+        checkArc(graph, 1, 1, 2, 10.0);
+        checkArc(graph, 2, 4, 2, 1.0);
+        checkArc(graph, 10, 5, 1, 7.0);
+        checkArc(graph, -10, 1, 5, 7.0);
+        checkArc(graph, 9, 5, 4, 6.0);
+    }
+
+    @Test
+    public void testCSRGraphU() throws SQLException {
+        final CSRGraph graph = new GraphCreator(connection,
+                "CORMEN_EDGES_ALL",
+                GraphFunctionParser.Orientation.UNDIRECTED, null, null).prepareCSRGraph();
+        assertEquals(5, graph.getVertexCount());
+        assertEquals(20, graph.getArcCount());
+        checkArc(graph, 2, 2, 4, 1.0);
+        checkArc(graph, 2, 4, 2, 1.0);
+        checkArc(graph, 10, 1, 5, 1.0);
+    }
+
+    @Test
+    public void testCSRGraphColumnOrder() throws SQLException {
+        // Only the graph columns are read, whatever their position and case
+        final Statement st = connection.createStatement();
+        try {
+            st.execute("DROP TABLE IF EXISTS WIDE_EDGES");
+            st.execute("CREATE TABLE WIDE_EDGES(\"weight\" DOUBLE, DESCRIPTION VARCHAR, END_NODE INT, " +
+                    "EDGE_ORIENTATION INT, THE_GEOM LINESTRING, START_NODE INT, EDGE_ID INT) AS " +
+                    "SELECT WEIGHT, 'road', END_NODE, EDGE_ORIENTATION, ROAD, START_NODE, EDGE_ID FROM CORMEN_EDGES_ALL");
+            final CSRGraph graph = new GraphCreator(connection,
+                    "WIDE_EDGES",
+                    GraphFunctionParser.Orientation.DIRECTED, "edge_orientation", "weight").prepareCSRGraph();
+            assertEquals(5, graph.getVertexCount());
+            assertEquals(11, graph.getArcCount());
+            checkArc(graph, 1, 1, 2, 10.0);
+            checkArc(graph, 2, 4, 2, 1.0);
+            checkArc(graph, -10, 1, 5, 7.0);
+        } finally {
+            st.execute("DROP TABLE WIDE_EDGES");
+            st.close();
+        }
+    }
+
+    @Test
+    public void testGraphCache() throws SQLException {
+        final Statement st = connection.createStatement();
+        st.execute("DROP TABLE IF EXISTS CACHE_EDGES; CREATE TABLE CACHE_EDGES AS SELECT * FROM CORMEN_EDGES_ALL");
+        final GraphCache cache = GraphCache.getInstance(connection);
+        try {
+            cache.clear();
+            CSRGraph graph = GraphFunction.prepareCSRGraph(connection, "CACHE_EDGES", "directed - edge_orientation", "weight");
+            assertTrue(graph == GraphFunction.prepareCSRGraph(connection, "cache_edges", "directed - edge_orientation", "weight"));
+            assertEquals(1, cache.getHitCount());
+            assertEquals(1, cache.getMissCount());
+            // Another orientation is another graph
+            CSRGraph undirected = GraphFunction.prepareCSRGraph(connection, "CACHE_EDGES", "undirected", null);
+            assertTrue(graph != undirected);
+            assertEquals(2, cache.size());
+            // A modification of the table reloads the graph
+            st.execute("UPDATE CACHE_EDGES SET WEIGHT = 20.0 WHERE EDGE_ID = 1");
+            CSRGraph updated = GraphFunction.prepareCSRGraph(connection, "CACHE_EDGES", "directed - edge_orientation", "weight");
+            assertTrue(graph != updated);
+            checkArc(updated, 1, 1, 2, 20.0);
+            // Graphs larger than the memory bound are not kept
+            cache.setMaxMemory(graph.getMemoryUsage() - 1);
+            assertEquals(0, cache.size());
+            assertEquals(0, cache.getUsedMemory());
+        } finally {
+            cache.setMaxMemory(GraphCache.DEFAULT_MAX_MEMORY);
+            cache.clear();
+            st.execute("DROP TABLE CACHE_EDGES");
+            st.close();
+        }
+    }
+
+    @Test
+    public void testGraphCacheDerivedValues() throws SQLException {
+        final Statement st = connection.createStatement();
+        st.execute("DROP TABLE IF EXISTS CACHE_EDGES; CREATE TABLE CACHE_EDGES AS SELECT * FROM CORMEN_EDGES_ALL");
+        final GraphCache cache = GraphCache.getInstance(connection);
+        try {
+            cache.clear();
+            CSRGraph graph = GraphFunction.prepareCSRGraph(connection, "CACHE_EDGES", "directed - edge_orientation", "weight");
+            CSRGraph reversed = GraphFunction.prepareReversedGraph(connection, "CACHE_EDGES", "directed - edge_orientation", "weight", graph);
+            assertTrue(reversed == GraphFunction.prepareReversedGraph(connection, "CACHE_EDGES", "directed - edge_orientation", "weight", graph));
+            checkArc(reversed, 1, 2, 1, 10.0);
+            AStarSearch search = GraphFunction.prepareAStarSearch(connection, "CACHE_EDGES", "directed - edge_orientation", "weight");
+            assertTrue(graph == search.getGraph());
+            assertTrue(search.getCoordinates() == GraphFunction.prepareAStarSearch(connection, "CACHE_EDGES", "directed - edge_orientation", "weight").getCoordinates());
+            // The reversed graph and the coordinates follow the graph
+            st.execute("UPDATE CACHE_EDGES SET WEIGHT = 20.0 WHERE EDGE_ID = 1");
+            CSRGraph updated = GraphFunction.prepareCSRGraph(connection, "CACHE_EDGES", "directed - edge_orientation", "weight");
+            CSRGraph updatedReversed = GraphFunction.prepareReversedGraph(connection, "CACHE_EDGES", "directed - edge_orientation", "weight", updated);
+            assertTrue(reversed != updatedReversed);
+            checkArc(updatedReversed, 1, 2, 1, 20.0);
+            assertTrue(search.getCoordinates() != GraphFunction.prepareAStarSearch(connection, "CACHE_EDGES", "directed - edge_orientation", "weight").getCoordinates());
+        } finally {
+            cache.clear();
+            st.execute("DROP TABLE CACHE_EDGES");
+            st.close();
+        }
+    }
+
+    @Test
+    public void testGraphCacheUncommittedChanges() throws Exception {
+        final Statement st = connection.createStatement();
+        st.execute("DROP TABLE IF EXISTS CACHE_EDGES; CREATE TABLE CACHE_EDGES AS SELECT * FROM CORMEN_EDGES_ALL");
+        final Connection other = H2GISDBFactory.openSpatialDataBase("GraphCreatorTest");
+        final GraphCache cache = GraphCache.getInstance(connection);
+        assertTrue(cache == GraphCache.getInstance(other));
+        try {
+            cache.clear();
+            other.setAutoCommit(false);
+            final Statement otherSt = other.createStatement();
+            otherSt.execute("UPDATE CACHE_EDGES SET WEIGHT = 20.0 WHERE EDGE_ID = 1");
+            // The graph of the uncommitted changes is never shared
+            CSRGraph uncommitted = GraphFunction.prepareCSRGraph(other, "CACHE_EDGES", "directed - edge_orientation", "weight");
+            checkArc(uncommitted, 1, 1, 2, 20.0);
+            GraphFunction.prepareCSRGraph(connection, "CACHE_EDGES", "directed - edge_orientation", "weight");
+            assertEquals(0, cache.size());
+            assertEquals(0, cache.getHitCount());
+            other.rollback();
+            otherSt.close();
+            // Once rolled back, the committed graph is cached again
+            CSRGraph graph = GraphFunction.prepareCSRGraph(other, "CACHE_EDGES", "directed - edge_orientation", "weight");
+            checkArc(graph, 1, 1, 2, 10.0);
+            assertTrue(graph == GraphFunction.prepareCSRGraph(connection, "CACHE_EDGES", "directed - edge_orientation", "weight"));
+            assertEquals(1, cache.getHitCount());
+        } finally {
+            other.close();
+            cache.clear();
+            st.execute("DROP TABLE CACHE_EDGES");
+            st.close();
+        }
+    }
+
+    @Test
+    public void testGraphCachePerDatabase() throws Exception {
+        final Connection otherDatabase = H2GISDBFactory.createSpatialDataBase("GraphCreatorTest_OTHER");
+        try {
+            registerCormenGraph(otherDatabase);
+            final GraphCache cache = GraphCache.getInstance(connection);
+            final GraphCache otherCache = GraphCache.getInstance(otherDatabase);
+            assertTrue(cache != otherCache);
+            cache.clear();
+            otherCache.clear();
+            CSRGraph graph = GraphFunction.prepareCSRGraph(connection, "CORMEN_EDGES_ALL", "undirected", null);
+            assertTrue(graph != GraphFunction.prepareCSRGraph(otherDatabase, "CORMEN_EDGES_ALL", "undirected", null));
+            assertEquals(1, cache.size());
+            assertEquals(1, otherCache.size());
+            cache.clear();
+        } finally {
+            otherDatabase.close();
+        }
+    }
+
+    private static void checkArc(CSRGraph graph, int edgeID, int source, int target, double weight) {
+        final int v = graph.getVertexIndex(source);
+        for (int arc = graph.getFirstArc(v); arc < graph.getFirstArc(v + 1); arc++) {
+            if (graph.getArcEdgeId(arc) == edgeID) {
+                assertEquals(target, graph.getVertexId(graph.getArcTarget(arc)));
+                assertEquals(weight, graph.getArcWeight(arc), TOLERANCE);
+                return;
+            }
+        }
+        Assert.fail("Arc " + edgeID + " not found from " + source);
+    }
+
     @Test(expected = IllegalArgumentException.class)
     public void testNullOrientation() throws SQLException {
         testOrientation("NULL");
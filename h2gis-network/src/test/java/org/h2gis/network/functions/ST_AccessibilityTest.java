@@ -291,6 +291,69 @@ public class ST_AccessibilityTest {
         }
     }
 
+    @Test
+    public void testManyDestinations() throws Exception {
+        // A 30x30 grid with mixed edge orientations and 40 destinations
+        st.execute("DROP TABLE IF EXISTS GRID_EDGES; DROP TABLE IF EXISTS GRID_DEST;" +
+                "CREATE TABLE GRID_EDGES(EDGE_ID INT AUTO_INCREMENT PRIMARY KEY, START_NODE INT, END_NODE INT, " +
+                "WEIGHT DOUBLE, EDGE_ORIENTATION INT);" +
+                "INSERT INTO GRID_EDGES(START_NODE, END_NODE, WEIGHT, EDGE_ORIENTATION) " +
+                "SELECT A.X * 30 + B.X + 1, A.X * 30 + B.X + 2, 1 + MOD(A.X * 7 + B.X * 13, 10) / 10.0, " +
+                "MOD(A.X + B.X, 3) - 1 FROM SYSTEM_RANGE(0, 29) A, SYSTEM_RANGE(0, 28) B;" +
+                "INSERT INTO GRID_EDGES(START_NODE, END_NODE, WEIGHT, EDGE_ORIENTATION) " +
+                "SELECT A.X * 30 + B.X + 1, A.X * 30 + B.X + 31, 1 + MOD(A.X * 11 + B.X * 3, 10) / 10.0, " +
+                "MOD(A.X * 2 + B.X, 3) - 1 FROM SYSTEM_RANGE(0, 28) A, SYSTEM_RANGE(0, 29) B;" +
+                "CREATE TABLE GRID_DEST(DESTINATION INT);" +
+                "INSERT INTO GRID_DEST SELECT MOD(X * 397, 900) + 1 FROM SYSTEM_RANGE(0, 39);");
+        // Closest destination computed with one search per destination
+        final Map<Integer, Double> distances = new HashMap<Integer, Double>();
+        final Map<Integer, Integer> closest = new HashMap<Integer, Integer>();
+        final ResultSet dest = connection.createStatement().executeQuery("SELECT DESTINATION FROM GRID_DEST");
+        try {
+            while (dest.next()) {
+                final int destination = dest.getInt(1);
+                final ResultSet sPL = st.executeQuery(
+                        "SELECT * FROM ST_ShortestPathLength('GRID_EDGES', " +
+                        "'reversed - edge_orientation', 'weight', " + destination + ")");
+                try {
+                    while (sPL.next()) {
+                        final int vertex = sPL.getInt(DESTINATION);
+                        final double distance = sPL.getDouble(DISTANCE);
+                        if (!Double.isInfinite(distance)
+                                && (!distances.containsKey(vertex) || distance < distances.get(vertex))) {
+                            distances.put(vertex, distance);
+                            closest.put(vertex, destination);
+                        }
+                    }
+                } finally {
+                    sPL.close();
+                }
+            }
+        } finally {
+            dest.close();
+        }
+        final ResultSet aCC = st.executeQuery(
+                "SELECT * FROM ST_Accessibility('GRID_EDGES', " +
+                "'directed - edge_orientation', 'weight', 'GRID_DEST')");
+        int count = 0;
+        try {
+            while (aCC.next()) {
+                final int vertex = aCC.getInt(SOURCE);
+                if (distances.containsKey(vertex)) {
+                    assertEquals((int) closest.get(vertex), aCC.getInt(CLOSEST_DEST));
+                    assertEquals(distances.get(vertex), aCC.getDouble(DISTANCE), 1e-9);
+                } else {
+                    assertEquals(-1, aCC.getInt(CLOSEST_DEST));
+                    assertEquals(Double.POSITIVE_INFINITY, aCC.getDouble(DISTANCE), TOLERANCE);
+                }
+                count++;
+            }
+        } finally {
+            aCC.close();
+        }
+        assertEquals(900, count);
+    }
+
     private ResultSet compute(String orientation, String weight, String destinationString) throws SQLException {
         return st.executeQuery(
                 "SELECT * FROM ST_Accessibility('CORMEN_EDGES_ALL', "
@@ -152,6 +152,21 @@ public class ST_ConnectedComponentsTest {
                 getEdgePartition(st.executeQuery("SELECT * FROM " + name + EDGE_COMP_SUFFIX)));
     }
 
+    @Test
+    public void testLongDirectedCycle() throws Exception {
+        // 1 -> 2 -> ... -> n -> 1, deep enough to overflow a recursive search
+        final int n = 100000;
+        st.execute("DROP TABLE IF EXISTS CYCLE, CYCLE" + NODE_COMP_SUFFIX + ", CYCLE" + EDGE_COMP_SUFFIX);
+        st.execute("CREATE TABLE CYCLE(EDGE_ID INT, START_NODE INT, END_NODE INT, EDGE_ORIENTATION INT) AS " +
+                "SELECT X, X, MOD(X, " + n + ") + 1, 1 FROM SYSTEM_RANGE(1, " + n + ")");
+        checkBoolean(st.executeQuery("SELECT ST_ConnectedComponents('CYCLE', " + DO + ")"));
+        assertEquals(getOneElementPartition(n),
+                getVertexPartition(st.executeQuery("SELECT * FROM CYCLE" + NODE_COMP_SUFFIX)));
+        assertEquals(getOneElementPartition(n),
+                getEdgePartition(st.executeQuery("SELECT * FROM CYCLE" + EDGE_COMP_SUFFIX)));
+        st.execute("DROP TABLE CYCLE, CYCLE" + NODE_COMP_SUFFIX + ", CYCLE" + EDGE_COMP_SUFFIX);
+    }
+
     private Set<Set<Integer>> getOneElementPartition(int n) {
         Set<Set<Integer>> p = new HashSet<Set<Integer>>();
         Set<Integer> component = new HashSet<Integer>();
@@ -21,6 +21,7 @@ package org.h2gis.network.functions;
 
 
 import java.sql.*;
+import org.h2gis.api.EmptyProgressVisitor;
 import org.h2gis.functions.factory.H2GISDBFactory;
 import org.h2gis.functions.factory.H2GISFunctions;
 
@@ -30,6 +31,7 @@ import static org.h2gis.network.functions.GraphConstants.END_NODE;
 import static org.h2gis.network.functions.GraphConstants.NODE_CENT_SUFFIX;
 import static org.h2gis.network.functions.GraphConstants.START_NODE;
 import static org.h2gis.network.functions.ST_GraphAnalysis.BATCH_SIZE;
+import org.h2gis.utilities.JDBCUtilities;
 import org.junit.*;
 import static org.junit.Assert.*;
 
@@ -408,6 +410,76 @@ public class ST_GraphAnalysisTest {
                 new double[]{0., 4./7, 6./7, 2./7, 3./7, 0., 1., 2./7, 6./7, 4./7, 1./7, 2./7, 2./7});
     }
 
+    @Test
+    public void testAllPivots() throws Exception {
+        st.execute("DROP TABLE IF EXISTS CORMEN_EDGES_ALL" + NODE_CENT_SUFFIX);
+        st.execute("DROP TABLE IF EXISTS CORMEN_EDGES_ALL" + EDGE_CENT_SUFFIX);
+
+        // As many pivots as nodes gives the exact values of the WDO case.
+        checkBoolean(st.executeQuery("SELECT ST_GraphAnalysis('CORMEN_EDGES_ALL', " + DO + ", " + W + ", 5)"));
+        checkNodes(st.executeQuery("SELECT * FROM CORMEN_EDGES_ALL" + NODE_CENT_SUFFIX),
+                new double[]{
+                        4.0 / (0.0 + 8.0 + 5.0 + 13.0 + 7.0),
+                        4.0 / (11.0 + 0.0 + 2.0 + 10.0 + 4.0),
+                        4.0 / (9.0 + 3.0 + 0.0 + 8.0 + 2.0),
+                        4.0 / (11.0 + 1.0 + 3.0 + 0.0 + 4.0),
+                        4.0 / (7.0 + 7.0 + 9.0 + 6.0 + 0.0)},
+                WDO_WRO_NODE_BETWEENNESS
+        );
+        checkEdges(st.executeQuery("SELECT * FROM CORMEN_EDGES_ALL" + EDGE_CENT_SUFFIX),
+                WDO_WRO_EDGE_BETWEENNESS);
+    }
+
+    @Test
+    public void testPivots() throws Exception {
+        final int n = 5 * BATCH_SIZE;
+        final String tableName = createLineGraphTable(connection, n);
+        checkBoolean(st.executeQuery("SELECT ST_GraphAnalysis('" + tableName + "', 'undirected', NULL, 50);"));
+        ResultSet nodeCent = st.executeQuery("SELECT COUNT(*), MIN(" + GraphConstants.BETWEENNESS + "), MAX("
+                + GraphConstants.BETWEENNESS + "), MIN(" + GraphConstants.CLOSENESS + ") FROM " + tableName + "_NODE_CENT");
+        try {
+            assertTrue(nodeCent.next());
+            assertEquals(n, nodeCent.getInt(1));
+            assertEquals(0., nodeCent.getDouble(2), TOLERANCE);
+            assertEquals(1., nodeCent.getDouble(3), TOLERANCE);
+            assertTrue(nodeCent.getDouble(4) > 0);
+        } finally {
+            nodeCent.close();
+        }
+        // The middle of the line stays the most central node.
+        ResultSet middle = st.executeQuery("SELECT " + GraphConstants.BETWEENNESS + " FROM " + tableName
+                + "_NODE_CENT WHERE " + GraphConstants.NODE_ID + " = " + (n / 2));
+        try {
+            assertTrue(middle.next());
+            assertTrue(middle.getDouble(1) > 0.9);
+        } finally {
+            middle.close();
+        }
+        ResultSet edgeCent = st.executeQuery("SELECT COUNT(*) FROM " + tableName + "_EDGE_CENT");
+        try {
+            assertTrue(edgeCent.next());
+            assertEquals(n - 1, edgeCent.getInt(1));
+        } finally {
+            edgeCent.close();
+        }
+    }
+
+    @Test
+    public void testCanceled() throws Exception {
+        st.execute("DROP TABLE IF EXISTS CORMEN_EDGES_ALL" + NODE_CENT_SUFFIX);
+        st.execute("DROP TABLE IF EXISTS CORMEN_EDGES_ALL" + EDGE_CENT_SUFFIX);
+        final EmptyProgressVisitor progress = new EmptyProgressVisitor();
+        progress.cancel();
+        try {
+            ST_GraphAnalysis.analyze(connection, "CORMEN_EDGES_ALL", "undirected", null, 0, progress);
+            fail();
+        } catch (SQLException e) {
+            // Canceled before storing anything
+        }
+        assertFalse(JDBCUtilities.tableExists(connection, "CORMEN_EDGES_ALL" + NODE_CENT_SUFFIX));
+        assertFalse(JDBCUtilities.tableExists(connection, "CORMEN_EDGES_ALL" + EDGE_CENT_SUFFIX));
+    }
+
     @Test
     public void testLineGraphOdd() throws Exception {
         testBatchComputation(5 * BATCH_SIZE + 1);
@@ -0,0 +1,306 @@
+/**
+ * H2GIS is a library that brings spatial support to the H2 Database Engine
+ * <http://www.h2database.com>. H2GIS is developed by CNRS
+ * <http://www.cnrs.fr/>.
+ *
+ * This code is part of the H2GIS project. H2GIS is free software; 
+ * you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation;
+ * version 3.0 of the License.
+ *
+ * H2GIS is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details <http://www.gnu.org/licenses/>.
+ *
+ *
+ * For more information, please consult: <http://www.h2gis.org/>
+ * or contact directly: info_at_h2gis.org
+ */
+
+package org.h2gis.network.functions;
+
+import com.vividsolutions.jts.geom.Geometry;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertTrue;
+import org.h2.jdbc.JdbcSQLException;
+import org.h2gis.functions.factory.H2GISDBFactory;
+import org.h2gis.functions.factory.H2GISFunctions;
+import org.junit.*;
+import static org.junit.Assert.assertEquals;
+
+public class ST_GraphPreprocessTest {
+
+    private static Connection connection;
+    private Statement st;
+    private static final double TOLERANCE = 0.0;
+    private static final String DO = "'directed - edge_orientation'";
+    private static final String RO = "'reversed - edge_orientation'";
+    private static final String U = "'undirected'";
+    private static final String W = "'weight'";
+    private static final String CH = "'ch'";
+
+    @BeforeClass
+    public static void setUp() throws Exception {
+        // Keep a connection alive to not close the DataBase on each unit test
+        connection = H2GISDBFactory.createSpatialDataBase("ST_GraphPreprocessTest", true);
+        H2GISFunctions.registerFunction(connection.createStatement(), new ST_GraphPreprocess(), "");
+        H2GISFunctions.registerFunction(connection.createStatement(), new ST_ShortestPathLength(), "");
+        H2GISFunctions.registerFunction(connection.createStatement(), new ST_ShortestPath(), "");
+        GraphCreatorTest.registerCormenGraph(connection);
+        final Statement st = connection.createStatement();
+        try {
+            st.execute("CREATE TABLE source_table(source INT);" +
+                    "INSERT INTO source_table VALUES (1), (2), (3);" +
+                    "CREATE TABLE dest_table(destination INT);" +
+                    "INSERT INTO dest_table VALUES (1), (4), (5);");
+        } finally {
+            st.close();
+        }
+    }
+
+    @Before
+    public void setUpStatement() throws Exception {
+        st = connection.createStatement();
+    }
+
+    @After
+    public void tearDownStatement() throws Exception {
+        st.close();
+    }
+
+    @AfterClass
+    public static void tearDown() throws Exception {
+        connection.close();
+    }
+
+    private void dropHierarchy(String table) throws SQLException {
+        st.execute("DROP TABLE IF EXISTS " + table + "_CH_NODES");
+        st.execute("DROP TABLE IF EXISTS " + table + "_CH_ARCS");
+    }
+
+    private void preprocess(String table, String orientation, String weight) throws SQLException {
+        dropHierarchy(table);
+        final ResultSet rs = st.executeQuery("SELECT ST_GraphPreprocess('" + table + "', "
+                + orientation + ((weight != null) ? ", " + weight : "") + ")");
+        try {
+            assertTrue(rs.next());
+            assertTrue(rs.getBoolean(1));
+        } finally {
+            rs.close();
+        }
+    }
+
+    @Test
+    public void testTables() throws Exception {
+        preprocess("CORMEN_EDGES_ALL", DO, W);
+        try {
+            ResultSet rs = st.executeQuery("SELECT COUNT(*), COUNT(DISTINCT CH_RANK) FROM CORMEN_EDGES_ALL_CH_NODES");
+            assertTrue(rs.next());
+            assertEquals(5, rs.getInt(1));
+            assertEquals(5, rs.getInt(2));
+            rs.close();
+            // Every edge gives an original arc, plus one for the reverse of
+            // the undirected edge 10.
+            rs = st.executeQuery("SELECT COUNT(*) FROM CORMEN_EDGES_ALL_CH_ARCS WHERE EDGE_ID IS NOT NULL");
+            assertTrue(rs.next());
+            assertEquals(11, rs.getInt(1));
+            rs.close();
+            rs = st.executeQuery("SELECT COUNT(*) FROM CORMEN_EDGES_ALL_CH_ARCS " +
+                    "WHERE (EDGE_ID IS NULL) != (FIRST_ARC IS NOT NULL AND SECOND_ARC IS NOT NULL)");
+            assertTrue(rs.next());
+            assertEquals(0, rs.getInt(1));
+            rs.close();
+        } finally {
+            dropHierarchy("CORMEN_EDGES_ALL");
+        }
+    }
+
+    @Test
+    public void testKeepAutoCommit() throws Exception {
+        connection.setAutoCommit(false);
+        try {
+            preprocess("CORMEN_EDGES_ALL", DO, W);
+            assertFalse(connection.getAutoCommit());
+        } finally {
+            connection.setAutoCommit(true);
+            dropHierarchy("CORMEN_EDGES_ALL");
+        }
+    }
+
+    @Test
+    public void testFailureDropsCreatedTables() throws Exception {
+        dropHierarchy("CORMEN_EDGES_ALL");
+        st.execute("CREATE TABLE CORMEN_EDGES_ALL_CH_ARCS(ID INT)");
+        try {
+            st.executeQuery("SELECT ST_GraphPreprocess('CORMEN_EDGES_ALL', " + DO + ", " + W + ")");
+            Assert.fail("The arcs table already exists");
+        } catch (SQLException ex) {
+            // The nodes table created before the failure is dropped, the
+            // existing arcs table is kept
+            final ResultSet rs = st.executeQuery("SELECT TABLE_NAME FROM INFORMATION_SCHEMA.TABLES " +
+                    "WHERE TABLE_NAME LIKE 'CORMEN_EDGES_ALL_CH_%'");
+            assertTrue(rs.next());
+            assertEquals("CORMEN_EDGES_ALL_CH_ARCS", rs.getString(1));
+            assertFalse(rs.next());
+            rs.close();
+        } finally {
+            dropHierarchy("CORMEN_EDGES_ALL");
+        }
+        // A retry succeeds
+        preprocess("CORMEN_EDGES_ALL", DO, W);
+        dropHierarchy("CORMEN_EDGES_ALL");
+    }
+
+    @Test
+    public void oneToOne() throws Exception {
+        for (String orientation : new String[]{DO, RO, U}) {
+            for (String weight : new String[]{W, null}) {
+                preprocess("CORMEN_EDGES_ALL", orientation, weight);
+                final String w = weight == null ? "NULL" : weight;
+                for (int i = 1; i <= 5; i++) {
+                    for (int j = 1; j <= 5; j++) {
+                        assertEquals(getDistance(orientation, w, i, j, "'dijkstra'"),
+                                getDistance(orientation, w, i, j, CH), TOLERANCE);
+                    }
+                }
+            }
+        }
+        dropHierarchy("CORMEN_EDGES_ALL");
+    }
+
+    @Test
+    public void manyToMany() throws Exception {
+        for (String orientation : new String[]{DO, RO, U}) {
+            preprocess("CORMEN_EDGES_ALL", orientation, W);
+            ResultSet rs = st.executeQuery("SELECT * FROM ST_ShortestPathLength('CORMEN_EDGES_ALL', "
+                    + orientation + ", " + W + ", 'source_table', 'dest_table', " + CH + ")");
+            int count = 0;
+            while (rs.next()) {
+                count++;
+                assertEquals(getDistance(orientation, W, rs.getInt(1), rs.getInt(2), "'dijkstra'"),
+                        rs.getDouble(3), TOLERANCE);
+            }
+            rs.close();
+            assertEquals(9, count);
+            rs = st.executeQuery("SELECT * FROM ST_ShortestPathLength('CORMEN_EDGES_ALL', "
+                    + orientation + ", " + W + ", 2, '1, 3, 5', " + CH + ")");
+            count = 0;
+            while (rs.next()) {
+                count++;
+                assertEquals(2, rs.getInt(1));
+                assertEquals(getDistance(orientation, W, 2, rs.getInt(2), "'dijkstra'"),
+                        rs.getDouble(3), TOLERANCE);
+            }
+            rs.close();
+            assertEquals(3, count);
+        }
+        dropHierarchy("CORMEN_EDGES_ALL");
+    }
+
+    @Test
+    public void shortestPath() throws Exception {
+        preprocess("CORMEN_EDGES_ALL", DO, W);
+        final PreparedStatement geomSt = connection.prepareStatement("SELECT ROAD FROM CORMEN_EDGES_ALL WHERE EDGE_ID = ?");
+        try {
+            for (int i = 1; i <= 5; i++) {
+                for (int j = 1; j <= 5; j++) {
+                    final ResultSet rs = st.executeQuery("SELECT * FROM ST_ShortestPath('CORMEN_EDGES_ALL', "
+                            + DO + ", " + W + ", " + i + ", " + j + ", " + CH + ")");
+                    try {
+                        // The path is listed from the destination back to the source
+                        double length = 0;
+                        int expectedEnd = j;
+                        while (rs.next()) {
+                            assertEquals(expectedEnd, rs.getInt("DESTINATION"));
+                            assertTrue(rs.getObject("EDGE_ID") != null);
+                            // Only the geometries of the path edges are read
+                            geomSt.setInt(1, Math.abs(rs.getInt("EDGE_ID")));
+                            final ResultSet geomRs = geomSt.executeQuery();
+                            assertTrue(geomRs.next());
+                            assertTrue(((Geometry) geomRs.getObject(1)).equalsExact((Geometry) rs.getObject("THE_GEOM")));
+                            geomRs.close();
+                            expectedEnd = rs.getInt("SOURCE");
+                            length += rs.getDouble("WEIGHT");
+                        }
+                        assertEquals(i, expectedEnd);
+                        assertEquals(getDistance(DO, W, i, j, "'dijkstra'"), length, 1e-12);
+                    } finally {
+                        rs.close();
+                    }
+                }
+            }
+        } finally {
+            geomSt.close();
+            dropHierarchy("CORMEN_EDGES_ALL");
+        }
+    }
+
+    @Test
+    public void unreachable() throws Exception {
+        preprocess("COPY_EDGES_ALL", DO, W);
+        try {
+            ResultSet rs = st.executeQuery("SELECT * FROM ST_ShortestPathLength('COPY_EDGES_ALL', "
+                    + DO + ", " + W + ", 7, 6, " + CH + ")");
+            assertTrue(rs.next());
+            assertEquals(Double.POSITIVE_INFINITY, rs.getDouble(3), TOLERANCE);
+            assertFalse(rs.next());
+            rs.close();
+        } finally {
+            dropHierarchy("COPY_EDGES_ALL");
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testOtherOrientation() throws Throwable {
+        preprocess("CORMEN_EDGES_ALL", DO, W);
+        try {
+            getDistance(U, W, 1, 2, CH);
+        } catch (JdbcSQLException e) {
+            throw e.getOriginalCause();
+        } finally {
+            dropHierarchy("CORMEN_EDGES_ALL");
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNoHierarchy() throws Throwable {
+        try {
+            getDistance(DO, W, 1, 2, CH);
+        } catch (JdbcSQLException e) {
+            throw e.getOriginalCause();
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testManyToManyBidirectional() throws Throwable {
+        try {
+            st.executeQuery("SELECT * FROM ST_ShortestPathLength('CORMEN_EDGES_ALL', "
+                    + DO + ", " + W + ", 'source_table', 'dest_table', 'bidirectional')");
+        } catch (JdbcSQLException e) {
+            throw e.getOriginalCause();
+        }
+    }
+
+    private double getDistance(String orientation, String weight,
+                               int source, int destination, String method) throws SQLException {
+        ResultSet rs = st.executeQuery(
+                "SELECT * FROM ST_ShortestPathLength('CORMEN_EDGES_ALL', " + orientation + ", " + weight
+                        + ", " + source + ", " + destination + ", " + method + ")");
+        try {
+            assertTrue(rs.next());
+            final double distance = rs.getDouble(ST_ShortestPathLength.DISTANCE_INDEX);
+            assertFalse(rs.next());
+            return distance;
+        } finally {
+            rs.close();
+        }
+    }
+}
@@ -0,0 +1,180 @@
+/**
+ * H2GIS is a library that brings spatial support to the H2 Database Engine
+ * <http://www.h2database.com>. H2GIS is developed by CNRS
+ * <http://www.cnrs.fr/>.
+ *
+ * This code is part of the H2GIS project. H2GIS is free software; 
+ * you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation;
+ * version 3.0 of the License.
+ *
+ * H2GIS is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details <http://www.gnu.org/licenses/>.
+ *
+ *
+ * For more information, please consult: <http://www.h2gis.org/>
+ * or contact directly: info_at_h2gis.org
+ */
+
+package org.h2gis.network.functions;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import org.h2.jdbc.JdbcSQLException;
+import org.h2gis.functions.factory.H2GISDBFactory;
+import org.h2gis.functions.factory.H2GISFunctions;
+import org.junit.*;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ST_IsochroneTest {
+
+    private static Connection connection;
+    private Statement st;
+    private static final double TOLERANCE = 1e-9;
+    private static final String U = "'undirected'";
+
+    @BeforeClass
+    public static void setUp() throws Exception {
+        // Keep a connection alive to not close the DataBase on each unit test
+        connection = H2GISDBFactory.createSpatialDataBase("ST_IsochroneTest", true);
+        H2GISFunctions.registerFunction(connection.createStatement(), new ST_Isochrone(), "");
+        registerGrid(connection);
+    }
+
+    @Before
+    public void setUpStatement() throws Exception {
+        st = connection.createStatement();
+    }
+
+    @After
+    public void tearDownStatement() throws Exception {
+        st.close();
+    }
+
+    @AfterClass
+    public static void tearDown() throws Exception {
+        connection.close();
+    }
+
+    /**
+     * Unweighted 10x10 grid of unit edges, GRID_EDGES_ALL holds the edges
+     * produced by ST_Graph with their geometry.
+     */
+    private static void registerGrid(Connection connection) throws SQLException {
+        final Statement st = connection.createStatement();
+        try {
+            st.execute("DROP TABLE IF EXISTS GRID, GRID_NODES, GRID_EDGES, GRID_EDGES_ALL");
+            st.execute("CREATE TABLE GRID(THE_GEOM LINESTRING, ID INT AUTO_INCREMENT PRIMARY KEY)");
+            st.execute("INSERT INTO GRID(THE_GEOM) SELECT ST_MakeLine(ST_MakePoint(A.X, B.X), " +
+                    "ST_MakePoint(A.X + 1, B.X)) FROM SYSTEM_RANGE(0, 9) A, SYSTEM_RANGE(0, 10) B");
+            st.execute("INSERT INTO GRID(THE_GEOM) SELECT ST_MakeLine(ST_MakePoint(B.X, A.X), " +
+                    "ST_MakePoint(B.X, A.X + 1)) FROM SYSTEM_RANGE(0, 9) A, SYSTEM_RANGE(0, 10) B");
+            st.execute("CALL ST_Graph('GRID')");
+            st.execute("CREATE TABLE GRID_EDGES_ALL AS SELECT B.*, A.THE_GEOM " +
+                    "FROM GRID A, GRID_EDGES B WHERE A.ID = B.EDGE_ID");
+        } finally {
+            st.close();
+        }
+    }
+
+    private int getNodeId(double x, double y) throws SQLException {
+        final ResultSet rs = st.executeQuery("SELECT NODE_ID FROM GRID_NODES " +
+                "WHERE ST_Equals(THE_GEOM, ST_MakePoint(" + x + ", " + y + "))");
+        try {
+            assertTrue(rs.next());
+            return rs.getInt(1);
+        } finally {
+            rs.close();
+        }
+    }
+
+    @Test
+    public void testBands() throws Exception {
+        // The distance to the center is |x - 5| + |y - 5|, it is linear on the
+        // triangles that do not cross the lines x = 5 or y = 5, so the bands
+        // are exact diamonds.
+        final int center = getNodeId(5, 5);
+        final ResultSet rs = st.executeQuery("SELECT SOURCE, CUTOFF, ST_Area(THE_GEOM) FROM " +
+                "ST_Isochrone('GRID_EDGES_ALL', " + U + ", " + center + ", '3.5, 2') ORDER BY CUTOFF");
+        try {
+            assertTrue(rs.next());
+            assertEquals(center, rs.getInt(1));
+            assertEquals(2, rs.getDouble(2), TOLERANCE);
+            assertEquals(8, rs.getDouble(3), TOLERANCE);
+            assertTrue(rs.next());
+            assertEquals(center, rs.getInt(1));
+            assertEquals(3.5, rs.getDouble(2), TOLERANCE);
+            // 2 * 3.5 * 3.5 - 8, the edges are crossed between two nodes
+            assertEquals(16.5, rs.getDouble(3), TOLERANCE);
+            assertFalse(rs.next());
+        } finally {
+            rs.close();
+        }
+    }
+
+    @Test
+    public void testSeveralSources() throws Exception {
+        final int first = getNodeId(0, 0);
+        final int second = getNodeId(10, 10);
+        final ResultSet rs = st.executeQuery("SELECT SOURCE, ST_Area(THE_GEOM) FROM " +
+                "ST_Isochrone('GRID_EDGES_ALL', " + U + ", NULL, '" + first + ", " + second + "', 2) " +
+                "ORDER BY SOURCE");
+        try {
+            // A corner of each diamond
+            for (int source : new int[]{Math.min(first, second), Math.max(first, second)}) {
+                assertTrue(rs.next());
+                assertEquals(source, rs.getInt(1));
+                assertEquals(2, rs.getDouble(2), TOLERANCE);
+            }
+            assertFalse(rs.next());
+        } finally {
+            rs.close();
+        }
+    }
+
+    @Test
+    public void testMaxSide() throws Exception {
+        st.execute("DROP TABLE IF EXISTS ROADS, ROADS_NODES, ROADS_EDGES, ROADS_EDGES_ALL");
+        st.execute("CREATE TABLE ROADS(THE_GEOM LINESTRING, ID INT AUTO_INCREMENT PRIMARY KEY);" +
+                "INSERT INTO ROADS(THE_GEOM) VALUES ('LINESTRING (0 0, 10 0)'), ('LINESTRING (10 0, 10 10)')");
+        st.execute("CALL ST_Graph('ROADS')");
+        st.execute("CREATE TABLE ROADS_EDGES_ALL AS SELECT B.*, A.THE_GEOM " +
+                "FROM ROADS A, ROADS_EDGES B WHERE A.ID = B.EDGE_ID");
+        // The triangle between both roads, the distances are the edge ids
+        ResultSet rs = st.executeQuery("SELECT ST_Area(THE_GEOM) FROM " +
+                "ST_Isochrone('ROADS_EDGES_ALL', " + U + ", 'EDGE_ID', 1, 100)");
+        try {
+            assertTrue(rs.next());
+            assertEquals(50, rs.getDouble(1), TOLERANCE);
+            assertFalse(rs.next());
+        } finally {
+            rs.close();
+        }
+        // Its sides are too long
+        rs = st.executeQuery("SELECT * FROM " +
+                "ST_Isochrone('ROADS_EDGES_ALL', " + U + ", 'EDGE_ID', 1, 100, 5)");
+        try {
+            assertFalse(rs.next());
+        } finally {
+            rs.close();
+        }
+        st.execute("DROP TABLE ROADS, ROADS_NODES, ROADS_EDGES, ROADS_EDGES_ALL");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNegativeCutoff() throws Throwable {
+        try {
+            st.executeQuery("SELECT * FROM ST_Isochrone('GRID_EDGES_ALL', " + U + ", 1, '-1, 2')");
+        } catch (JdbcSQLException e) {
+            assertTrue(e.getMessage().contains(ST_Isochrone.CUTOFF_ERROR + "-1.0"));
+            throw e.getOriginalCause();
+        }
+    }
+}
@@ -371,6 +371,64 @@ public class ST_ShortestPathLengthTest {
         oneToOne(W, U, 5, 5, 0.0);
     }
 
+    @Test
+    public void oneToOneSearchMethods() throws Exception {
+        // A* with the node coordinates in degrees read from the nodes table
+        st.execute("DROP TABLE IF EXISTS GEO_EDGES; DROP TABLE IF EXISTS GEO_NODES;" +
+                "CREATE TABLE GEO_EDGES AS SELECT * FROM CORMEN_EDGES_ALL;" +
+                "CREATE TABLE GEO_NODES(NODE_ID INT PRIMARY KEY, THE_GEOM POINT);" +
+                "INSERT INTO GEO_NODES VALUES (1, ST_GeomFromText('POINT (0 1)', 4326))," +
+                "(2, ST_GeomFromText('POINT (1 2)', 4326)), (3, ST_GeomFromText('POINT (1 0)', 4326))," +
+                "(4, ST_GeomFromText('POINT (2 2)', 4326)), (5, ST_GeomFromText('POINT (2 0)', 4326));");
+        try {
+            for (String table : new String[]{"CORMEN_EDGES_ALL", "GEO_EDGES"}) {
+                for (String orientation : new String[]{DO, RO, U}) {
+                    for (String weight : new String[]{W, "NULL"}) {
+                        for (int i = 1; i <= 5; i++) {
+                            for (int j = 1; j <= 5; j++) {
+                                final double expected = getDistance(table, orientation, weight, i, j, "'dijkstra'");
+                                assertEquals(expected,
+                                        getDistance(table, orientation, weight, i, j, "'bidirectional'"), TOLERANCE);
+                                assertEquals(expected,
+                                        getDistance(table, orientation, weight, i, j, "'astar'"), TOLERANCE);
+                            }
+                        }
+                    }
+                }
+            }
+            assertEquals(Double.POSITIVE_INFINITY,
+                    getDistance("COPY_EDGES_ALL", DO, W, 7, 6, "'bidirectional'"), TOLERANCE);
+            assertEquals(Double.POSITIVE_INFINITY,
+                    getDistance("COPY_EDGES_ALL", DO, W, 7, 6, "'astar'"), TOLERANCE);
+        } finally {
+            st.execute("DROP TABLE GEO_EDGES; DROP TABLE GEO_NODES");
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnknownSearchMethod() throws Throwable {
+        try {
+            getDistance("CORMEN_EDGES_ALL", DO, W, 1, 2, "'dfs'");
+        } catch (JdbcSQLException e) {
+            throw e.getOriginalCause();
+        }
+    }
+
+    private double getDistance(String table, String orientation, String weight,
+                               int source, int destination, String method) throws SQLException {
+        ResultSet rs = st.executeQuery(
+                "SELECT * FROM ST_ShortestPathLength('" + table + "', " + orientation + ", " + weight
+                        + ", " + source + ", " + destination + ", " + method + ")");
+        try {
+            assertTrue(rs.next());
+            final double distance = rs.getDouble(ST_ShortestPathLength.DISTANCE_INDEX);
+            assertFalse(rs.next());
+            return distance;
+        } finally {
+            rs.close();
+        }
+    }
+
     private void oneToOne(String orientation, String weight, int source, int destination, double distance) throws SQLException {
         ResultSet rs = st.executeQuery(
                 "SELECT * FROM ST_ShortestPathLength('CORMEN_EDGES_ALL', "
@@ -802,6 +802,35 @@ public class ST_ShortestPathTest {
                 new PathEdge("LINESTRING (3 1, 4 2)", 11, 1, 1, 7, 6, 1.0)});
     }
 
+    @Test
+    public void oneToOneSearchMethods() throws SQLException {
+        for (String method : new String[]{"'bidirectional'", "'astar'"}) {
+            check(oneToOne(DO, W, 2, 1, method), new PathEdge[]{
+                    new PathEdge("LINESTRING (2 0, 0 1)", 10, 1, 1, 5, 1, 7.0),
+                    new PathEdge("LINESTRING (1 0, 2 0)", 7, 1, 2, 3, 5, 2.0),
+                    new PathEdge("LINESTRING (1 2, 0.75 1, 1 0)", 3, 1, 3, 2, 3, 2.0)});
+            check(oneToOne(RO, W, 1, 2, method), new PathEdge[]{
+                    new PathEdge("LINESTRING (1 2, 0.75 1, 1 0)", 3, 1, 1, 3, 2, 2.0),
+                    new PathEdge("LINESTRING (1 0, 2 0)", 7, 1, 2, 5, 3, 2.0),
+                    new PathEdge("LINESTRING (2 0, 0 1)", 10, 1, 3, 1, 5, 7.0)});
+            check(oneToOne(U, "NULL", 2, 2, method), EMPTY);
+            // Unreachable destination
+            assertFalse(oneToOne("COPY_EDGES_ALL", DO, W, 7, 6, method).next());
+        }
+    }
+
+    private ResultSet oneToOne(String orientation, String weight,
+                               int source, int destination, String method) throws SQLException {
+        return oneToOne("CORMEN_EDGES_ALL", orientation, weight, source, destination, method);
+    }
+
+    private ResultSet oneToOne(String table, String orientation, String weight,
+                               int source, int destination, String method) throws SQLException {
+        return st.executeQuery(
+                "SELECT * FROM ST_ShortestPath('" + table + "', " + orientation + ", " + weight
+                        + ", " + source + ", " + destination + ", " + method + ")");
+    }
+
     private ResultSet oneToOne(String table, String orientation, String weight,
                                int source, int destination) throws SQLException {
         return st.executeQuery(
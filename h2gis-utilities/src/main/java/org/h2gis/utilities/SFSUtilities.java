@@ -493,10 +493,25 @@ public class SFSUtilities {
      * @throws SQLException 
      */
     public static void addTableSRIDConstraint(Connection connection, TableLocation tableLocation, int srid) throws SQLException {
+        addTableSRIDConstraint(connection, tableLocation, "the_geom", srid);
+    }
+
+    /**
+     * Alter a table to add a SRID constraint on the given geometry field.
+     * The srid must be greater than zero.
+     *
+     * @param connection
+     * @param tableLocation
+     * @param geometryField
+     * @param srid
+     * @throws SQLException
+     */
+    public static void addTableSRIDConstraint(Connection connection, TableLocation tableLocation, String geometryField,
+                                              int srid) throws SQLException {
         //Alter table to set the SRID constraint
         if (srid > 0) {
-            connection.createStatement().execute(String.format("ALTER TABLE %s ADD CHECK ST_SRID(the_geom)=%d",
-                    tableLocation.toString(), srid));
+            connection.createStatement().execute(String.format("ALTER TABLE %s ADD CHECK ST_SRID(%s)=%d",
+                    tableLocation.toString(), geometryField, srid));
         }
     }
 }